@@ -29,12 +29,14 @@ import de.esoco.lib.comm.http.ObjectSpaceHttpMethodHandler;
 import de.esoco.lib.json.JsonBuilder.ConvertJson;
 import de.esoco.lib.logging.Log;
 import de.esoco.lib.logging.LogLevel;
+import de.esoco.lib.logging.RingBufferLogging;
 import de.esoco.lib.manage.Stoppable;
 import de.esoco.lib.security.AuthenticationService;
 import de.esoco.lib.security.SecurityRelationTypes;
 import de.esoco.lib.text.TextUtil;
 
 import java.util.Date;
+import java.util.List;
 
 import org.obrel.core.Relatable;
 import org.obrel.core.RelationType;
@@ -121,6 +123,18 @@ public abstract class Service extends Application implements Stoppable
 	 */
 	public static final RelationType<String> LOG_LEVEL = newType();
 
+	/**
+	 * The control space flag to trigger a dump of the buffered log records if
+	 * a {@link RingBufferLogging} aspect has been registered.
+	 */
+	public static final RelationType<Boolean> DUMP_LOG = newFlagType();
+
+	/**
+	 * The status space attribute that contains the last dump of buffered log
+	 * records if a {@link RingBufferLogging} aspect has been registered.
+	 */
+	public static final RelationType<List<String>> LOG_DUMP = newType();
+
 	/** The {@link ObjectSpace} containing the server API. */
 	public static final RelationType<ObjectSpace<String>> API = newType();
 
@@ -258,6 +272,11 @@ public abstract class Service extends Application implements Stoppable
 		aControlSpace.set(LOG_LEVEL, Log.getGlobalMinimumLogLevel().name())
 					 .onChange(this::setLogLevel);
 
+		if (Log.getLogAspect(RingBufferLogging.class) != null)
+		{
+			aControlSpace.set(DUMP_LOG).onChange(bDump -> dumpLog());
+		}
+
 		return aControlSpace;
 	}
 
@@ -309,6 +328,15 @@ public abstract class Service extends Application implements Stoppable
 		aStatusSpace.set(NAME, sServiceName + " Status");
 		aStatusSpace.init(UPTIME);
 
+		RingBufferLogging rLogBuffer =
+			Log.getLogAspect(RingBufferLogging.class);
+
+		if (rLogBuffer != null)
+		{
+			rLogBuffer.set(RingBufferLogging.DUMP_HANDLER,
+						   rDump -> aStatusSpace.set(LOG_DUMP, rDump));
+		}
+
 		return aStatusSpace;
 	}
 
@@ -564,6 +592,24 @@ public abstract class Service extends Application implements Stoppable
 		return aServer;
 	}
 
+	/***************************************
+	 * Service method to dump the log records that are buffered by the
+	 * registered {@link RingBufferLogging} aspect into the status space.
+	 */
+	private void dumpLog()
+	{
+		try
+		{
+			Log.getLogAspect(RingBufferLogging.class).dump();
+		}
+		catch (Exception e)
+		{
+			throw new HttpStatusException(HttpStatusCode.INTERNAL_SERVER_ERROR,
+										  "Log dump failed",
+										  e);
+		}
+	}
+
 	/***************************************
 	 * Service method to set the log level.
 	 *
@@ -0,0 +1,294 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/********************************************************************
+ * A lock-free circuit breaker that isolates callers from a failing endpoint.
+ * After a certain number of consecutive failures the breaker opens and rejects
+ * all calls for a configurable time. After that time a single probe call is
+ * permitted (the half-open state). If the probe succeeds the breaker closes
+ * again, otherwise it re-opens for another period.
+ *
+ * <p>A circuit breaker can be assigned to an endpoint with the relation type
+ * {@link CommunicationRelationTypes#CIRCUIT_BREAKER} which will then be
+ * considered by all {@link EndpointFunction} invocations on that endpoint. The
+ * breaker also collects call metrics that can be queried through the
+ * corresponding get methods.</p>
+ *
+ * @author eso
+ */
+public class CircuitBreaker
+{
+	//~ Enums ------------------------------------------------------------------
+
+	/********************************************************************
+	 * Enumeration of the possible breaker states.
+	 */
+	public enum State { CLOSED, OPEN, HALF_OPEN }
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final int  nFailureThreshold;
+	private final long nOpenDuration;
+
+	private final AtomicReference<State> aState =
+		new AtomicReference<>(State.CLOSED);
+
+	private final AtomicInteger aConsecutiveFailures = new AtomicInteger();
+
+	private volatile long nOpenedAt;
+
+	private final LongAdder aSuccessCount   = new LongAdder();
+	private final LongAdder aFailureCount   = new LongAdder();
+	private final LongAdder aRejectionCount = new LongAdder();
+	private final LongAdder aOpenCount	    = new LongAdder();
+	private final LongAdder aRetryCount	    = new LongAdder();
+	private final LongAdder aTimeoutCount   = new LongAdder();
+	private final LongAdder aHedgeCount	    = new LongAdder();
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance.
+	 *
+	 * @param nFailureThreshold The number of consecutive failures after which
+	 *                          the breaker opens
+	 * @param nOpenDuration     The time in milliseconds for which an open
+	 *                          breaker rejects calls before permitting a probe
+	 *                          call
+	 */
+	public CircuitBreaker(int nFailureThreshold, long nOpenDuration)
+	{
+		if (nFailureThreshold <= 0 || nOpenDuration < 0)
+		{
+			throw new IllegalArgumentException("Invalid circuit breaker parameters");
+		}
+
+		this.nFailureThreshold = nFailureThreshold;
+		this.nOpenDuration     = nOpenDuration;
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Checks whether a call is currently permitted. If the breaker is open and
+	 * the open duration has elapsed exactly one caller will be permitted to
+	 * perform a probe call by switching the breaker into the half-open state.
+	 * Each successful invocation of this method must be followed by an
+	 * invocation of either {@link #recordSuccess()} or {@link
+	 * #recordFailure()}.
+	 *
+	 * @return TRUE if the call is permitted, FALSE if it must be rejected
+	 */
+	public boolean allowCall()
+	{
+		State eState = aState.get();
+
+		if (eState == State.CLOSED)
+		{
+			return true;
+		}
+		else if (eState == State.OPEN &&
+				 System.currentTimeMillis() - nOpenedAt >= nOpenDuration &&
+				 aState.compareAndSet(State.OPEN, State.HALF_OPEN))
+		{
+			return true;
+		}
+
+		aRejectionCount.increment();
+
+		return false;
+	}
+
+	/***************************************
+	 * Returns the number of failed calls.
+	 *
+	 * @return The failure count
+	 */
+	public final long getFailureCount()
+	{
+		return aFailureCount.sum();
+	}
+
+	/***************************************
+	 * Returns the number of hedged calls, i.e. calls that have been issued a
+	 * second time because the first attempt didn't respond in time.
+	 *
+	 * @return The hedged call count
+	 */
+	public final long getHedgeCount()
+	{
+		return aHedgeCount.sum();
+	}
+
+	/***************************************
+	 * Returns how often this breaker has switched to the open state.
+	 *
+	 * @return The open count
+	 */
+	public final long getOpenCount()
+	{
+		return aOpenCount.sum();
+	}
+
+	/***************************************
+	 * Returns the number of calls that have been rejected because the breaker
+	 * was open.
+	 *
+	 * @return The rejection count
+	 */
+	public final long getRejectionCount()
+	{
+		return aRejectionCount.sum();
+	}
+
+	/***************************************
+	 * Returns the number of retried calls.
+	 *
+	 * @return The retry count
+	 */
+	public final long getRetryCount()
+	{
+		return aRetryCount.sum();
+	}
+
+	/***************************************
+	 * Returns the current state of this breaker.
+	 *
+	 * @return The breaker state
+	 */
+	public final State getState()
+	{
+		return aState.get();
+	}
+
+	/***************************************
+	 * Returns the number of successful calls.
+	 *
+	 * @return The success count
+	 */
+	public final long getSuccessCount()
+	{
+		return aSuccessCount.sum();
+	}
+
+	/***************************************
+	 * Returns the number of calls that exceeded their deadline.
+	 *
+	 * @return The timeout count
+	 */
+	public final long getTimeoutCount()
+	{
+		return aTimeoutCount.sum();
+	}
+
+	/***************************************
+	 * Records a failed call. Opens the breaker if the failure threshold has
+	 * been reached or if the failed call was a half-open probe.
+	 */
+	public void recordFailure()
+	{
+		aFailureCount.increment();
+
+		if (aState.get() == State.HALF_OPEN ||
+			aConsecutiveFailures.incrementAndGet() >= nFailureThreshold)
+		{
+			open();
+		}
+	}
+
+	/***************************************
+	 * Records the hedging of a call.
+	 */
+	public void recordHedge()
+	{
+		aHedgeCount.increment();
+	}
+
+	/***************************************
+	 * Records the retry of a call.
+	 */
+	public void recordRetry()
+	{
+		aRetryCount.increment();
+	}
+
+	/***************************************
+	 * Records a successful call. This will close the breaker if it is
+	 * half-open.
+	 */
+	public void recordSuccess()
+	{
+		aSuccessCount.increment();
+		aConsecutiveFailures.set(0);
+		aState.compareAndSet(State.HALF_OPEN, State.CLOSED);
+	}
+
+	/***************************************
+	 * Records a call that failed because it exceeded it's deadline. This will
+	 * also be counted as a failure.
+	 */
+	public void recordTimeout()
+	{
+		aTimeoutCount.increment();
+		recordFailure();
+	}
+
+	/***************************************
+	 * Resets this breaker into the closed state.
+	 */
+	public void reset()
+	{
+		aConsecutiveFailures.set(0);
+		aState.set(State.CLOSED);
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	@SuppressWarnings("boxing")
+	public String toString()
+	{
+		return String.format("%s[%s, success: %d, failure: %d, rejected: %d]",
+							 getClass().getSimpleName(),
+							 aState.get(),
+							 aSuccessCount.sum(),
+							 aFailureCount.sum(),
+							 aRejectionCount.sum());
+	}
+
+	/***************************************
+	 * Switches this breaker into the open state.
+	 */
+	private void open()
+	{
+		nOpenedAt = System.currentTimeMillis();
+
+		if (aState.getAndSet(State.OPEN) != State.OPEN)
+		{
+			aOpenCount.increment();
+		}
+
+		aConsecutiveFailures.set(0);
+	}
+}
@@ -84,4 +84,15 @@ public class CommunicationChain<I, V, O> extends CommunicationMethod<I, O>
 	{
 		return fValue;
 	}
+
+	/***************************************
+	 * Returns the idempotence of the chained communication method.
+	 *
+	 * @see CommunicationMethod#isIdempotent()
+	 */
+	@Override
+	public boolean isIdempotent()
+	{
+		return fMethod.isIdempotent();
+	}
 }
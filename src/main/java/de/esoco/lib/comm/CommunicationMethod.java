@@ -201,6 +201,20 @@ public abstract class CommunicationMethod<I, O>
 		return evaluate(rInput, rConnection);
 	}
 
+	/***************************************
+	 * Checks whether this method is idempotent, i.e. whether it can be invoked
+	 * multiple times with the same input without different side effects. This
+	 * is used to decide whether a call may be hedged by issuing it a second
+	 * time (see {@link CommunicationRelationTypes#HEDGE_DELAY}). The default
+	 * implementation returns FALSE.
+	 *
+	 * @return TRUE if this method is idempotent
+	 */
+	public boolean isIdempotent()
+	{
+		return false;
+	}
+
 	/***************************************
 	 * Semantic variant of {@link #from(Endpoint)} that indicates that a
 	 * communication method is executed at a certain endpoint.
@@ -82,6 +82,15 @@ public class CommunicationRelationTypes
 	/** A relation type to store a writer for a socket input stream. */
 	public static final RelationType<PrintWriter> SOCKET_WRITER = newType();
 
+	/**
+	 * A flag that enables the multiplexing of requests over a single socket of
+	 * a {@link SocketEndpoint}. If set connections to the endpoint will not
+	 * open their own socket but share the socket of the endpoint which must
+	 * then be accessed with {@link SocketEndpoint.MultiplexedRequest}.
+	 */
+	public static final RelationType<Boolean> SOCKET_MULTIPLEXING =
+		newFlagType();
+
 	/**
 	 * Defines the character encoding of a request. Has a default value of
 	 * {@link StandardCharsets#UTF_8}.
@@ -135,6 +144,82 @@ public class CommunicationRelationTypes
 	public static final RelationType<Integer> CONNECTION_TIMEOUT =
 		newInitialValueType(60 * 1000);
 
+	/**
+	 * The maximum number of times that a failed endpoint call will be retried
+	 * by an {@link EndpointFunction}. Only calls of idempotent methods are
+	 * retried (see {@link CommunicationMethod#isIdempotent()}) because a
+	 * failed call may already have been processed by the endpoint. Defaults
+	 * to zero, i.e. no retries.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> MAX_RETRIES =
+		newInitialValueType(0);
+
+	/**
+	 * The initial delay in milliseconds before a failed endpoint call is
+	 * retried. The delay will be doubled on each subsequent retry (up to {@link
+	 * #MAX_RETRY_DELAY}) and randomized by a jitter of up to 50% to prevent
+	 * synchronized retries of multiple clients. Defaults to 100 milliseconds.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> RETRY_DELAY =
+		newInitialValueType(100);
+
+	/**
+	 * The maximum delay in milliseconds between retries of a failed endpoint
+	 * call. Defaults to 10 seconds.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> MAX_RETRY_DELAY =
+		newInitialValueType(10 * 1000);
+
+	/**
+	 * The total time budget in milliseconds for a call of an {@link
+	 * EndpointFunction}, including all retries. If the deadline is exceeded
+	 * the call will fail with a {@link CommunicationException}. Defaults to
+	 * zero which means that no deadline is applied.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> REQUEST_DEADLINE =
+		newInitialValueType(0);
+
+	/**
+	 * The delay in milliseconds after which an idempotent endpoint call (see
+	 * {@link CommunicationMethod#isIdempotent()}) will be issued a second time
+	 * if the first call hasn't responded yet. The result of the first call to
+	 * respond successfully will then be used. Defaults to zero which disables
+	 * hedged requests.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> HEDGE_DELAY =
+		newInitialValueType(0);
+
+	/**
+	 * A {@link CircuitBreaker} that isolates the calls of an {@link
+	 * EndpointFunction} from a failing endpoint.
+	 */
+	public static final RelationType<CircuitBreaker> CIRCUIT_BREAKER =
+		newType();
+
+	/**
+	 * The number of consecutive failures after which an endpoint of a {@link
+	 * LoadBalancingEndpoint} will be temporarily ejected from the balancing.
+	 * Defaults to 3.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> EJECTION_THRESHOLD =
+		newInitialValueType(3);
+
+	/**
+	 * The time in milliseconds for which a failing endpoint will be ejected
+	 * from a {@link LoadBalancingEndpoint}. After that time a single probe
+	 * call will be sent to the endpoint to check whether it can be used
+	 * again. Defaults to 30 seconds.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> EJECTION_DURATION =
+		newInitialValueType(30 * 1000);
+
 	/**
 	 * The maximum number of (concurrent) connections to or from a communication
 	 * component.
@@ -42,6 +42,8 @@ public class Connection extends RelatedObject implements Closeable
 
 	private final Endpoint rEndpoint;
 
+	private Runnable fCloseHandler = null;
+
 	//~ Constructors -----------------------------------------------------------
 
 	/***************************************
@@ -78,6 +80,13 @@ public class Connection extends RelatedObject implements Closeable
 				throw new CommunicationException(e);
 			}
 		}
+		finally
+		{
+			if (fCloseHandler != null)
+			{
+				fCloseHandler.run();
+			}
+		}
 
 		set(CLOSED);
 	}
@@ -131,4 +140,31 @@ public class Connection extends RelatedObject implements Closeable
 	{
 		return get(USER_NAME);
 	}
+
+	/***************************************
+	 * Adds a handler that will be invoked after this connection has been
+	 * closed, even if closing failed. Used by endpoints that delegate the
+	 * creation of connections to other endpoints. Handlers must tolerate
+	 * multiple invocations if the connection is closed more than once.
+	 *
+	 * @param fHandler The close handler
+	 */
+	void addCloseHandler(Runnable fHandler)
+	{
+		Runnable fPrevious = fCloseHandler;
+
+		if (fPrevious == null)
+		{
+			fCloseHandler = fHandler;
+		}
+		else
+		{
+			fCloseHandler =
+				() ->
+				{
+					fPrevious.run();
+					fHandler.run();
+				};
+		}
+	}
 }
@@ -28,15 +28,20 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 
-import java.util.HashMap;
+import java.lang.reflect.Constructor;
+
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.obrel.core.FluentRelatable;
 import org.obrel.core.ObjectRelations;
 import org.obrel.core.Params;
 import org.obrel.core.ProvidesConfiguration;
 import org.obrel.core.Relatable;
+import org.obrel.core.RelatedObject;
 import org.obrel.core.RelationType;
 import org.obrel.core.RelationTypes;
 
@@ -98,8 +103,18 @@ public abstract class Endpoint extends AbstractFunction<Relatable, Connection>
 	protected static final RelationType<InputStream> ENDPOINT_INPUT_STREAM =
 		newType(PRIVATE);
 
+	private static final int MAX_CACHED_DEFINITIONS = 256;
+
 	private static Map<String, Class<? extends Endpoint>> aEndpointRegistry =
-		new HashMap<>();
+		new ConcurrentHashMap<>();
+
+	private static Map<String, EndpointDefinition> aEndpointDefinitions =
+		new ConcurrentHashMap<>();
+
+	private static Map<String, Endpoint> aSharedEndpoints =
+		new ConcurrentHashMap<>();
+
+	private static volatile int nDefaultParamsVersion = 0;
 
 	/**
 	 * A relatable object that provides global configuration data for all
@@ -116,12 +131,19 @@ public abstract class Endpoint extends AbstractFunction<Relatable, Connection>
 		RelationTypes.init(Endpoint.class);
 	}
 
+	//~ Instance fields --------------------------------------------------------
+
+	private boolean bShared = false;
+
+	private volatile Relatable aConnectionConfig     = null;
+	private volatile int	   nConnectionConfigVersion = -1;
+
 	//~ Constructors -----------------------------------------------------------
 
 	/***************************************
 	 * The standard constructor. All subclasses must provide a no-arguments
-	 * constructor because it is used by the factory method {@link #at(String)}
-	 * to create new endpoint instances.
+	 * constructor (which doesn't need to be public) because it is used by the
+	 * factory method {@link #at(String)} to create new endpoint instances.
 	 */
 	public Endpoint()
 	{
@@ -142,69 +164,51 @@ public abstract class Endpoint extends AbstractFunction<Relatable, Connection>
 	 */
 	public static Endpoint at(String sEndpointUri)
 	{
-		URI		 aUri	    = createUri(sEndpointUri);
-		String   sScheme    = aUri.getScheme().toUpperCase();
-		Boolean  bEncrypted = Boolean.valueOf(sScheme.endsWith("S"));
-		Endpoint aEndpoint;
-
-		Class<? extends Endpoint> aEndpointClass =
-			aEndpointRegistry.get(sScheme);
+		String sAddress  = sEndpointUri;
+		String sUserName = null;
+		String sPassword = null;
 
-		if (aEndpointClass == null)
+		if (sEndpointUri.indexOf('@') >= 0)
 		{
-			aEndpointClass = getDefaultEndpoint(sScheme);
-		}
+			URI    rUri		 = createUri(sEndpointUri);
+			String sUserInfo = rUri.getUserInfo();
 
-		if (aEndpointClass != null)
-		{
-			try
+			if (sUserInfo != null)
 			{
-				aEndpoint = aEndpointClass.newInstance();
-				aEndpoint.set(ENDPOINT_SCHEME, sScheme);
-				aEndpoint.set(USER_NAME,
-							  getUserInfoField(aUri, UserInfoField.USERNAME));
-				aEndpoint.set(PASSWORD,
-							  getUserInfoField(aUri, UserInfoField.PASSWORD));
-
-				String sUserInfo = aUri.getUserInfo();
-
-				if (sUserInfo != null)
-				{
-					// remove authentication data from URI string after storing
-					// user and password to prevent it from leaking when the
-					// endpoint address is accessed
-					sEndpointUri = sEndpointUri.replaceAll(sUserInfo + "@", "");
-				}
+				// remove authentication data from the address so that it
+				// cannot leak through the endpoint address or the static
+				// definition cache
+				sAddress  = sEndpointUri.replace(sUserInfo + "@", "");
+				sUserName = getUserInfoField(rUri, UserInfoField.USERNAME);
+				sPassword = getUserInfoField(rUri, UserInfoField.PASSWORD);
+			}
+		}
 
-				aEndpoint.set(ENDPOINT_ADDRESS, sEndpointUri);
+		EndpointDefinition rDefinition = aEndpointDefinitions.get(sAddress);
 
-				if (!aEndpoint.hasRelation(ENCRYPTION))
-				{
-					aEndpoint.set(ENCRYPTION, bEncrypted);
-				}
+		if (rDefinition == null)
+		{
+			rDefinition = new EndpointDefinition(sAddress);
 
-				aEndpoint.init();
-			}
-			catch (Exception e)
+			if (aEndpointDefinitions.size() >= MAX_CACHED_DEFINITIONS)
 			{
-				throw new CommunicationException("Could not create endpoint for scheme " +
-												 sScheme,
-												 e);
+				aEndpointDefinitions.clear();
 			}
-		}
-		else
-		{
-			throw new CommunicationException("No endpoint registered for scheme " +
-											 sScheme);
+
+			aEndpointDefinitions.put(sAddress, rDefinition);
 		}
 
-		return aEndpoint;
+		return rDefinition.createEndpoint(sUserName, sPassword);
 	}
 
 	/***************************************
 	 * Returns the default parameters for all endpoints. These parameters will
 	 * only be used if they are not overridden by any endpoint-specific
-	 * parameters.
+	 * parameters. Shared endpoints (see {@link #shared(String)}) cache the
+	 * default parameters in their connection configuration so that direct
+	 * modifications of the returned object will only be considered by them
+	 * after the default parameters have been set again with {@link
+	 * #setDefaultParams(Relatable)}.
 	 *
 	 * @return A relatable containing the default parameters for all endpoint
 	 *         instances
@@ -242,13 +246,14 @@ public abstract class Endpoint extends AbstractFunction<Relatable, Connection>
 		String					  sPrimaryScheme,
 		String... 				  sAdditionalSchemes)
 	{
-		RelationTypes.init(rEndpointClass);
-		aEndpointRegistry.put(sPrimaryScheme.toUpperCase(), rEndpointClass);
-
-		for (String sScheme : sAdditionalSchemes)
-		{
-			aEndpointRegistry.put(sScheme.toUpperCase(), rEndpointClass);
-		}
+		Set<String> aSchemes =
+			addEndpointType(rEndpointClass, sPrimaryScheme, sAdditionalSchemes);
+
+		// cached definitions and shared instances may refer to a previously
+		// registered type
+		aEndpointDefinitions.clear();
+		aSharedEndpoints.values()
+						.removeIf(e -> aSchemes.contains(e.get(ENDPOINT_SCHEME)));
 	}
 
 	/***************************************
@@ -264,6 +269,7 @@ public abstract class Endpoint extends AbstractFunction<Relatable, Connection>
 		Objects.nonNull(rDefaultParams);
 
 		aDefaultParams = rDefaultParams;
+		nDefaultParamsVersion++;
 	}
 
 	/***************************************
@@ -287,6 +293,34 @@ public abstract class Endpoint extends AbstractFunction<Relatable, Connection>
 										 aDefaultParams.get(Log.LOG_EXTENT));
 
 		aDefaultParams.set(Log.LOG_EXTENT, eLogExtent);
+		nDefaultParamsVersion++;
+	}
+
+	/***************************************
+	 * Returns a shared endpoint instance for a certain URI. In contrast to
+	 * {@link #at(String)} this method creates an endpoint only on the first
+	 * invocation for a URI and returns the same instance on subsequent calls.
+	 * This is intended for code that performs frequent calls to the same
+	 * endpoint. Because shared endpoints are used concurrently and cache their
+	 * connection configuration they must not be modified by the invoking
+	 * code. Endpoints that need to be configured should be created with {@link
+	 * #at(String)} instead.
+	 *
+	 * @param  sEndpointUri The URI to return the endpoint for
+	 *
+	 * @return The shared endpoint for the given URI
+	 */
+	public static Endpoint shared(String sEndpointUri)
+	{
+		return aSharedEndpoints.computeIfAbsent(sEndpointUri,
+												s ->
+												{
+													Endpoint aEndpoint = at(s);
+
+													aEndpoint.bShared = true;
+
+													return aEndpoint;
+												});
 	}
 
 	/***************************************
@@ -305,6 +339,39 @@ public abstract class Endpoint extends AbstractFunction<Relatable, Connection>
 		return rGlobalConfig.getConfigValue(rConfigType, rDefaultValue);
 	}
 
+	/***************************************
+	 * Adds an endpoint type to the registry without invalidating cached
+	 * definitions and shared endpoints.
+	 *
+	 * @param  rEndpointClass     The endpoint type to register
+	 * @param  sPrimaryScheme     The primary URI scheme
+	 * @param  sAdditionalSchemes Optional additional URI schemes
+	 *
+	 * @return The upper case URI schemes the type has been registered for
+	 */
+	private static Set<String> addEndpointType(
+		Class<? extends Endpoint> rEndpointClass,
+		String					  sPrimaryScheme,
+		String... 				  sAdditionalSchemes)
+	{
+		Set<String> aSchemes = new HashSet<>();
+
+		RelationTypes.init(rEndpointClass);
+		aSchemes.add(sPrimaryScheme.toUpperCase());
+
+		for (String sScheme : sAdditionalSchemes)
+		{
+			aSchemes.add(sScheme.toUpperCase());
+		}
+
+		for (String sScheme : aSchemes)
+		{
+			aEndpointRegistry.put(sScheme, rEndpointClass);
+		}
+
+		return aSchemes;
+	}
+
 	/***************************************
 	 * Converts a string into a URI and converts any occurring exception into a
 	 * runtime {@link CommunicationException}.
@@ -360,7 +427,9 @@ public abstract class Endpoint extends AbstractFunction<Relatable, Connection>
 				(Class<? extends Endpoint>) Class.forName(sPackage + "." +
 														  sDefaultName);
 
-			registerEndpointType(aEndpointClass, sPrefix, sPrefix + "s");
+			// no invalidation necessary because the scheme had no type yet;
+			// this may also be invoked while a shared endpoint is created
+			addEndpointType(aEndpointClass, sPrefix, sPrefix + "s");
 		}
 		catch (ClassNotFoundException e)
 		{
@@ -427,8 +496,17 @@ public abstract class Endpoint extends AbstractFunction<Relatable, Connection>
 	{
 		Connection aConnection = new Connection(this);
 
-		ObjectRelations.copyRelations(aDefaultParams, aConnection, true);
-		ObjectRelations.copyRelations(this, aConnection, true);
+		if (bShared)
+		{
+			ObjectRelations.copyRelations(getConnectionConfig(),
+										  aConnection,
+										  true);
+		}
+		else
+		{
+			ObjectRelations.copyRelations(aDefaultParams, aConnection, true);
+			ObjectRelations.copyRelations(this, aConnection, true);
+		}
 
 		if (rParams != null)
 		{
@@ -484,6 +562,23 @@ public abstract class Endpoint extends AbstractFunction<Relatable, Connection>
 		return new EndpointFunction<>(this, fMethod);
 	}
 
+	/***************************************
+	 * Will be invoked by {@link EndpointFunction} after a communication method
+	 * has been executed on a connection that has been created by this
+	 * endpoint. Can be overridden by subclasses that need to collect call
+	 * statistics. The default implementation does nothing.
+	 *
+	 * @param rConnection The connection on which the method has been executed
+	 * @param nDuration   The duration of the call in nanoseconds
+	 * @param bSuccess    TRUE if the call succeeded, FALSE if it failed because
+	 *                    of an error that may be caused by the endpoint
+	 */
+	protected void callFinished(Connection rConnection,
+								long	   nDuration,
+								boolean    bSuccess)
+	{
+	}
+
 	/***************************************
 	 * Closes any resources that have been acquired on initializing the given
 	 * connection. Any exception thrown by this method will be converted into a
@@ -515,4 +610,143 @@ public abstract class Endpoint extends AbstractFunction<Relatable, Connection>
 	protected void init()
 	{
 	}
+
+	/***************************************
+	 * Returns the precomputed connection configuration of a shared endpoint.
+	 * The configuration contains the merged relations of the default
+	 * parameters and this endpoint and must not be modified. It is not marked
+	 * as immutable because all relations are copied to new connections which
+	 * must remain modifiable. It will be re-created if the default parameters
+	 * are changed.
+	 *
+	 * @return The connection configuration
+	 */
+	private Relatable getConnectionConfig()
+	{
+		Relatable rConfig  = aConnectionConfig;
+		int		  nVersion = nDefaultParamsVersion;
+
+		if (rConfig == null || nConnectionConfigVersion != nVersion)
+		{
+			rConfig = new RelatedObject();
+
+			ObjectRelations.copyRelations(aDefaultParams, rConfig, true);
+			ObjectRelations.copyRelations(this, rConfig, true);
+
+			aConnectionConfig		 = rConfig;
+			nConnectionConfigVersion = nVersion;
+		}
+
+		return rConfig;
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * Contains the data that has been parsed from an endpoint URI. Instances
+	 * are cached by {@link Endpoint#at(String)} so that repeated invocations
+	 * for the same URI only need to create and initialize a new endpoint
+	 * instance. The URI of a definition never contains authentication data
+	 * which is instead provided on the creation of an endpoint.
+	 *
+	 * @author eso
+	 */
+	private static class EndpointDefinition
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private final String  sScheme;
+		private final String  sAddress;
+		private final Boolean bEncrypted;
+
+		private final Constructor<? extends Endpoint> rConstructor;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance by parsing an endpoint URI.
+		 *
+		 * @param  sEndpointUri The endpoint URI without authentication data
+		 *
+		 * @throws CommunicationException If the URI is invalid or if no
+		 *                                endpoint type is registered for it's
+		 *                                scheme
+		 */
+		EndpointDefinition(String sEndpointUri)
+		{
+			URI rUri = createUri(sEndpointUri);
+
+			sScheme    = rUri.getScheme().toUpperCase();
+			bEncrypted = Boolean.valueOf(sScheme.endsWith("S"));
+			sAddress   = sEndpointUri;
+
+			Class<? extends Endpoint> rEndpointClass =
+				aEndpointRegistry.get(sScheme);
+
+			if (rEndpointClass == null)
+			{
+				rEndpointClass = getDefaultEndpoint(sScheme);
+			}
+
+			if (rEndpointClass == null)
+			{
+				throw new CommunicationException("No endpoint registered for scheme " +
+												 sScheme);
+			}
+
+			try
+			{
+				rConstructor = rEndpointClass.getDeclaredConstructor();
+				rConstructor.setAccessible(true);
+			}
+			catch (Exception e)
+			{
+				throw new CommunicationException("Could not create endpoint for scheme " +
+												 sScheme,
+												 e);
+			}
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Creates a new endpoint instance from this definition.
+		 *
+		 * @param  sUserName The user name from the endpoint URI or NULL for
+		 *                   none
+		 * @param  sPassword The password from the endpoint URI or NULL for
+		 *                   none
+		 *
+		 * @return The new endpoint
+		 *
+		 * @throws CommunicationException If creating the endpoint fails
+		 */
+		Endpoint createEndpoint(String sUserName, String sPassword)
+		{
+			try
+			{
+				Endpoint aEndpoint = rConstructor.newInstance();
+
+				aEndpoint.set(ENDPOINT_SCHEME, sScheme);
+				aEndpoint.set(USER_NAME, sUserName);
+				aEndpoint.set(PASSWORD, sPassword);
+				aEndpoint.set(ENDPOINT_ADDRESS, sAddress);
+
+				if (!aEndpoint.hasRelation(ENCRYPTION))
+				{
+					aEndpoint.set(ENCRYPTION, bEncrypted);
+				}
+
+				aEndpoint.init();
+
+				return aEndpoint;
+			}
+			catch (Exception e)
+			{
+				throw new CommunicationException("Could not create endpoint for scheme " +
+												 sScheme,
+												 e);
+			}
+		}
+	}
 }
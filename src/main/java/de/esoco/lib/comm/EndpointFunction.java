@@ -16,11 +16,34 @@
 //++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 package de.esoco.lib.comm;
 
+import de.esoco.lib.comm.http.HttpStatusException;
 import de.esoco.lib.expression.Function;
 import de.esoco.lib.expression.function.AbstractBinaryFunction;
 import de.esoco.lib.expression.function.AbstractFunction;
+import de.esoco.lib.logging.Log;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 import org.obrel.core.Relatable;
+import org.obrel.core.RelationType;
+
+import static de.esoco.lib.comm.CommunicationRelationTypes.CIRCUIT_BREAKER;
+import static de.esoco.lib.comm.CommunicationRelationTypes.ENDPOINT_ADDRESS;
+import static de.esoco.lib.comm.CommunicationRelationTypes.HEDGE_DELAY;
+import static de.esoco.lib.comm.CommunicationRelationTypes.MAX_RETRIES;
+import static de.esoco.lib.comm.CommunicationRelationTypes.MAX_RETRY_DELAY;
+import static de.esoco.lib.comm.CommunicationRelationTypes.REQUEST_DEADLINE;
+import static de.esoco.lib.comm.CommunicationRelationTypes.RETRY_DELAY;
 
 
 /********************************************************************
@@ -28,11 +51,36 @@ import org.obrel.core.Relatable;
  * automatically performs the resource handling upon evaluation (i.e. closing
  * the endpoint {@link Connection}).
  *
+ * <p>The evaluation can be made resilient against failing or slow endpoints by
+ * setting the following relations on the endpoint or in the parameters of an
+ * evaluation (which take precedence):</p>
+ *
+ * <ul>
+ *   <li>{@link CommunicationRelationTypes#MAX_RETRIES}: the number of retries
+ *     after failed calls of idempotent methods (see {@link
+ *     CommunicationMethod#isIdempotent()}), with an exponential backoff that
+ *     is controlled by
+ *     {@link CommunicationRelationTypes#RETRY_DELAY} and {@link
+ *     CommunicationRelationTypes#MAX_RETRY_DELAY}.</li>
+ *   <li>{@link CommunicationRelationTypes#REQUEST_DEADLINE}: the total time
+ *     budget of a call, including all retries.</li>
+ *   <li>{@link CommunicationRelationTypes#HEDGE_DELAY}: the delay after which
+ *     a call of an idempotent method will be issued a second time if no
+ *     response has been received.</li>
+ *   <li>{@link CommunicationRelationTypes#CIRCUIT_BREAKER}: a {@link
+ *     CircuitBreaker} that rejects calls after repeated failures and collects
+ *     call metrics.</li>
+ * </ul>
+ *
  * @author eso
  */
 public class EndpointFunction<I, O>
 	extends AbstractBinaryFunction<I, Relatable, O>
 {
+	//~ Static fields/initializers ---------------------------------------------
+
+	private static ExecutorService aCallExecutor = null;
+
 	//~ Instance fields --------------------------------------------------------
 
 	private final Endpoint				    rEndpoint;
@@ -56,19 +104,116 @@ public class EndpointFunction<I, O>
 		this.fMethod   = fMethod;
 	}
 
+	//~ Static methods ---------------------------------------------------------
+
+	/***************************************
+	 * Returns the executor that is used to run calls that are subject to a
+	 * deadline or that are hedged. The executor threads are created on demand
+	 * and will be discarded after they have been idle for some time.
+	 *
+	 * @return The call executor
+	 */
+	private static synchronized ExecutorService getCallExecutor()
+	{
+		if (aCallExecutor == null)
+		{
+			aCallExecutor =
+				Executors.newCachedThreadPool(rRunnable ->
+				{
+					Thread aThread = new Thread(rRunnable, "EndpointCall");
+
+					aThread.setDaemon(true);
+
+					return aThread;
+				});
+		}
+
+		return aCallExecutor;
+	}
+
 	//~ Methods ----------------------------------------------------------------
 
 	/***************************************
 	 * {@inheritDoc}
 	 */
 	@Override
+	@SuppressWarnings("boxing")
 	public O evaluate(I rInput, Relatable rParams)
 	{
-		try (Connection rConnection = rEndpoint.connect(rParams))
+		CircuitBreaker rBreaker    = getConfig(rParams, CIRCUIT_BREAKER);
+		int			   nMaxRetries = getConfig(rParams, MAX_RETRIES);
+		int			   nDeadline   = getConfig(rParams, REQUEST_DEADLINE);
+		int			   nRetry	   = 0;
+
+		long nDeadlineTime =
+			nDeadline > 0 ? System.currentTimeMillis() + nDeadline
+						  : Long.MAX_VALUE;
+
+		while (true)
 		{
-			set(Endpoint.ENDPOINT_CONNECTION, rConnection);
+			if (rBreaker != null && !rBreaker.allowCall())
+			{
+				throw new CommunicationException("Circuit breaker open for %s",
+												 rEndpoint.get(ENDPOINT_ADDRESS));
+			}
 
-			return fMethod.evaluate(rInput, rConnection);
+			try
+			{
+				O rResult = executeCall(rInput, rParams, nDeadlineTime);
+
+				if (rBreaker != null)
+				{
+					rBreaker.recordSuccess();
+				}
+
+				return rResult;
+			}
+			catch (RuntimeException e)
+			{
+				boolean bTimeout = e.getCause() instanceof TimeoutException;
+
+				if (rBreaker != null)
+				{
+					if (bTimeout)
+					{
+						rBreaker.recordTimeout();
+					}
+					else
+					{
+						rBreaker.recordFailure();
+					}
+				}
+
+				long nDelay = getRetryDelay(rParams, nRetry);
+
+				// like hedging retries are limited to idempotent methods
+				// because a failed call may already have been processed
+				if (bTimeout || nRetry >= nMaxRetries ||
+					!fMethod.isIdempotent() || !isRetryable(e) ||
+					System.currentTimeMillis() + nDelay >= nDeadlineTime)
+				{
+					throw e;
+				}
+
+				waitForRetry(nDelay);
+				nRetry++;
+
+				if (rBreaker != null)
+				{
+					rBreaker.recordRetry();
+				}
+			}
+			catch (Error e)
+			{
+				// errors are not retried but must still complete the call so
+				// that a half-open breaker doesn't wait for the probe forever
+				if (rBreaker != null)
+				{
+					rBreaker.recordFailure();
+				}
+
+				throw e;
+			}
 		}
 	}
 
@@ -119,4 +264,368 @@ public class EndpointFunction<I, O>
 									  new CommunicationChain<>(fMethod,
 															   fOther));
 	}
+
+	/***************************************
+	 * Checks whether a call should be retried after a certain exception. The
+	 * default implementation returns FALSE for HTTP client errors (which will
+	 * not change on repetition) and TRUE for all other exceptions. Subclasses
+	 * can override this to implement a different retry strategy.
+	 *
+	 * @param  eError The exception that occurred
+	 *
+	 * @return TRUE if the call should be retried
+	 */
+	protected boolean isRetryable(RuntimeException eError)
+	{
+		return !(eError instanceof HttpStatusException &&
+				 ((HttpStatusException) eError).getStatusCode()
+				 .isClientError());
+	}
+
+	/***************************************
+	 * Aborts the asynchronous calls that are still active by reporting them as
+	 * failed to the endpoint and closing their connections. Closing the
+	 * connection will typically also terminate a blocked I/O operation of the
+	 * call.
+	 *
+	 * @param rActiveCalls A mapping from the connections of the active calls
+	 *                     to their start time
+	 */
+	@SuppressWarnings("boxing")
+	private void abortCalls(Map<Connection, Long> rActiveCalls)
+	{
+		for (Connection rConnection : rActiveCalls.keySet())
+		{
+			Long rStart = rActiveCalls.remove(rConnection);
+
+			// a NULL start time means that the call has just finished
+			if (rStart != null)
+			{
+				rEndpoint.callFinished(rConnection,
+									   System.nanoTime() - rStart,
+									   false);
+
+				try
+				{
+					rConnection.close();
+				}
+				catch (RuntimeException e)
+				{
+					Log.warn("Closing aborted connection failed", e);
+				}
+			}
+		}
+	}
+
+	/***************************************
+	 * Performs a single call of the communication method on a new connection
+	 * to the endpoint. If the call is executed asynchronously it's connection
+	 * is registered in a map of active calls so that it can be aborted by
+	 * {@link #abortCalls(Map)}. Whoever removes the connection from that map
+	 * is responsible for finishing and closing it.
+	 *
+	 * @param  rInput       The method input
+	 * @param  rParams      The connection parameters
+	 * @param  rActiveCalls The map of active asynchronous calls or NULL for a
+	 *                      synchronous call
+	 *
+	 * @return The method result
+	 */
+	@SuppressWarnings("boxing")
+	private O callMethod(I					   rInput,
+						 Relatable			   rParams,
+						 Map<Connection, Long> rActiveCalls)
+	{
+		long	   nStart	   = System.nanoTime();
+		Connection rConnection = rEndpoint.connect(rParams);
+		Throwable  eError	   = null;
+
+		if (rActiveCalls != null)
+		{
+			rActiveCalls.put(rConnection, nStart);
+		}
+		else
+		{
+			// only stored for synchronous calls because concurrent hedged
+			// calls would overwrite each other's connection
+			set(Endpoint.ENDPOINT_CONNECTION, rConnection);
+		}
+
+		try
+		{
+			return fMethod.evaluate(rInput, rConnection);
+		}
+		catch (Throwable e)
+		{
+			eError = e;
+			throw e;
+		}
+		finally
+		{
+			if (rActiveCalls == null || rActiveCalls.remove(rConnection) != null)
+			{
+				finishCall(rConnection, nStart, eError);
+			}
+		}
+	}
+
+	/***************************************
+	 * Executes a call of the communication method. If neither a deadline nor
+	 * hedging is active the call will be performed directly in the current
+	 * thread. Otherwise it will be run asynchronously to wait for it's result
+	 * with a timeout.
+	 *
+	 * @param  rInput        The method input
+	 * @param  rParams       The connection parameters
+	 * @param  nDeadlineTime The system time at which the deadline of the call
+	 *                       expires (Long.MAX_VALUE for none)
+	 *
+	 * @return The method result
+	 *
+	 * @throws CommunicationException If the call fails or exceeds the deadline
+	 */
+	@SuppressWarnings("boxing")
+	private O executeCall(I rInput, Relatable rParams, long nDeadlineTime)
+	{
+		int nHedgeDelay =
+			fMethod.isIdempotent() ? getConfig(rParams, HEDGE_DELAY) : 0;
+
+		if (nDeadlineTime == Long.MAX_VALUE && nHedgeDelay <= 0)
+		{
+			return callMethod(rInput, rParams, null);
+		}
+
+		Map<Connection, Long> aActiveCalls = new ConcurrentHashMap<>();
+
+		CompletableFuture<O> aCall =
+			CompletableFuture.supplyAsync(() ->
+										  callMethod(rInput,
+													 rParams,
+													 aActiveCalls),
+										  getCallExecutor());
+
+		try
+		{
+			if (nHedgeDelay > 0)
+			{
+				long nWait =
+					Math.min(nHedgeDelay,
+							 nDeadlineTime - System.currentTimeMillis());
+
+				try
+				{
+					return aCall.get(Math.max(nWait, 0), TimeUnit.MILLISECONDS);
+				}
+				catch (TimeoutException e)
+				{
+					if (System.currentTimeMillis() >= nDeadlineTime)
+					{
+						throw e;
+					}
+
+					aCall = hedgeCall(aCall, rInput, rParams, aActiveCalls);
+				}
+			}
+
+			if (nDeadlineTime == Long.MAX_VALUE)
+			{
+				return aCall.get();
+			}
+			else
+			{
+				long nRemaining = nDeadlineTime - System.currentTimeMillis();
+
+				return aCall.get(Math.max(nRemaining, 0),
+								 TimeUnit.MILLISECONDS);
+			}
+		}
+		catch (TimeoutException e)
+		{
+			aCall.cancel(true);
+			abortCalls(aActiveCalls);
+
+			throw new CommunicationException("Deadline exceeded for " +
+											 rEndpoint.get(ENDPOINT_ADDRESS),
+											 e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable eCause = e.getCause();
+
+			if (eCause instanceof RuntimeException)
+			{
+				throw (RuntimeException) eCause;
+			}
+			else if (eCause instanceof Error)
+			{
+				throw (Error) eCause;
+			}
+			else
+			{
+				throw new CommunicationException(e);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new CommunicationException(e);
+		}
+	}
+
+	/***************************************
+	 * Reports the result of a call to the endpoint and closes the call
+	 * connection. The result is reported before the connection is closed
+	 * because endpoints may treat closing without a result differently.
+	 *
+	 * @param rConnection The call connection
+	 * @param nStart      The start time of the call in nanoseconds
+	 * @param eError      The error that occurred or NULL for success
+	 */
+	private void finishCall(Connection rConnection,
+							long	   nStart,
+							Throwable  eError)
+	{
+		rEndpoint.callFinished(rConnection,
+							   System.nanoTime() - nStart,
+							   eError == null ||
+							   (eError instanceof RuntimeException &&
+								!isRetryable((RuntimeException) eError)));
+
+		try
+		{
+			rConnection.close();
+		}
+		catch (RuntimeException e)
+		{
+			if (eError == null)
+			{
+				throw e;
+			}
+			else
+			{
+				eError.addSuppressed(e);
+			}
+		}
+	}
+
+	/***************************************
+	 * Returns a configuration value for a call. Values from the call parameters
+	 * take precedence over those of the endpoint and the global default
+	 * parameters.
+	 *
+	 * @param  rParams The call parameters (may be NULL)
+	 * @param  rType   The configuration relation type
+	 *
+	 * @return The configuration value
+	 */
+	private <T> T getConfig(Relatable rParams, RelationType<T> rType)
+	{
+		Relatable rDefaults = Endpoint.getDefaultParams();
+
+		if (rParams != null && rParams.hasRelation(rType))
+		{
+			return rParams.get(rType);
+		}
+		else if (!rEndpoint.hasRelation(rType) && rDefaults.hasRelation(rType))
+		{
+			return rDefaults.get(rType);
+		}
+		else
+		{
+			return rEndpoint.get(rType);
+		}
+	}
+
+	/***************************************
+	 * Calculates the delay before a retry with an exponential backoff and a
+	 * random jitter.
+	 *
+	 * @param  rParams The call parameters
+	 * @param  nRetry  The zero-based index of the retry
+	 *
+	 * @return The retry delay in milliseconds
+	 */
+	@SuppressWarnings("boxing")
+	private long getRetryDelay(Relatable rParams, int nRetry)
+	{
+		long nInitialDelay = getConfig(rParams, RETRY_DELAY);
+		long nMaxDelay     = getConfig(rParams, MAX_RETRY_DELAY);
+		long nDelay		   =
+			Math.min(nMaxDelay, nInitialDelay << Math.min(nRetry, 20));
+
+		return ThreadLocalRandom.current().nextLong(nDelay / 2, nDelay + 1);
+	}
+
+	/***************************************
+	 * Issues a second call of the communication method and returns a future
+	 * that completes with the first successful result of either call. If both
+	 * calls fail the future fails with the exception of the last failed call.
+	 *
+	 * @param  aFirstCall   The future of the first call
+	 * @param  rInput       The method input
+	 * @param  rParams      The connection parameters
+	 * @param  rActiveCalls The map of active asynchronous calls
+	 *
+	 * @return The future for the combined result
+	 */
+	private CompletableFuture<O> hedgeCall(
+		CompletableFuture<O>  aFirstCall,
+		I					  rInput,
+		Relatable			  rParams,
+		Map<Connection, Long> rActiveCalls)
+	{
+		CompletableFuture<O> aResult  = new CompletableFuture<>();
+		AtomicInteger		 aPending = new AtomicInteger(2);
+		CircuitBreaker		 rBreaker = getConfig(rParams, CIRCUIT_BREAKER);
+
+		CompletableFuture<O> aHedgedCall =
+			CompletableFuture.supplyAsync(() ->
+										  callMethod(rInput,
+													 rParams,
+													 rActiveCalls),
+										  getCallExecutor());
+
+		if (rBreaker != null)
+		{
+			rBreaker.recordHedge();
+		}
+
+		BiConsumer<O, Throwable> fComplete =
+			(rValue, eError) ->
+			{
+				if (eError == null)
+				{
+					aResult.complete(rValue);
+				}
+				else if (aPending.decrementAndGet() == 0)
+				{
+					aResult.completeExceptionally(eError);
+				}
+			};
+
+		aFirstCall.whenComplete(fComplete);
+		aHedgedCall.whenComplete(fComplete);
+
+		return aResult;
+	}
+
+	/***************************************
+	 * Waits for a retry of a failed call.
+	 *
+	 * @param  nDelay The delay in milliseconds
+	 *
+	 * @throws CommunicationException If the current thread is interrupted
+	 */
+	private void waitForRetry(long nDelay)
+	{
+		try
+		{
+			Thread.sleep(nDelay);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new CommunicationException(e);
+		}
+	}
 }
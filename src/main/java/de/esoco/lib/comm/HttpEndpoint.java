@@ -329,6 +329,17 @@ public class HttpEndpoint extends Endpoint
 			return fProcessResponse;
 		}
 
+		/***************************************
+		 * Returns the idempotence of the HTTP request method.
+		 *
+		 * @see CommunicationMethod#isIdempotent()
+		 */
+		@Override
+		public boolean isIdempotent()
+		{
+			return eRequestMethod.isIdempotent();
+		}
+
 		/***************************************
 		 * Applies the request headers of this method and the given connection
 		 * to the given URL connection.
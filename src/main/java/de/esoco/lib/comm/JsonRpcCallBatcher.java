@@ -0,0 +1,371 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import de.esoco.lib.comm.JsonRpcEndpoint.JsonRpcBatchCall;
+import de.esoco.lib.comm.JsonRpcEndpoint.JsonRpcMethod;
+import de.esoco.lib.comm.JsonRpcEndpoint.JsonRpcRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+
+/********************************************************************
+ * A JSON RPC client that coalesces single method calls into batch calls. Calls
+ * that are issued through {@link #call(JsonRpcMethod, Object)} from arbitrary
+ * threads are collected until either the maximum batch size has been reached
+ * or the maximum delay since the first pending call has elapsed. Then all
+ * pending calls are sent to the endpoint in a single {@link JsonRpcBatchCall}
+ * and the future of each call is completed from the batch response.
+ *
+ * <p>Errors that are returned for single calls will only complete the future
+ * of the respective call exceptionally. If the batch request fails as a whole
+ * all futures of the batch will receive the exception. Batches are sent from
+ * a small pool of daemon threads so that a slow batch doesn't delay the
+ * following ones. An instance should be closed when it is no longer needed to
+ * send the remaining calls and to release the threads.</p>
+ *
+ * @author eso
+ */
+public class JsonRpcCallBatcher implements AutoCloseable
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	/** The default maximum number of calls in a batch. */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+	/** The default maximum delay of a call in milliseconds. */
+	public static final long DEFAULT_MAX_DELAY = 5;
+
+	/** The default number of batches that can be sent concurrently. */
+	public static final int DEFAULT_CONCURRENT_BATCHES = 2;
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final Endpoint rEndpoint;
+	private final long     nMaxDelay;
+	private final int	   nMaxBatchSize;
+
+	private final ScheduledExecutorService aExecutor;
+
+	private List<BatchedCall<?, ?>> aPendingCalls = new ArrayList<>();
+	private ScheduledFuture<?>	    aScheduledFlush;
+	private boolean				    bClosed;
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance with default parameters.
+	 *
+	 * @param rEndpoint The JSON RPC endpoint to send the batches to
+	 */
+	public JsonRpcCallBatcher(Endpoint rEndpoint)
+	{
+		this(rEndpoint,
+			 DEFAULT_MAX_DELAY,
+			 DEFAULT_MAX_BATCH_SIZE,
+			 DEFAULT_CONCURRENT_BATCHES);
+	}
+
+	/***************************************
+	 * Creates a new instance.
+	 *
+	 * @param rEndpoint          The JSON RPC endpoint to send the batches to
+	 * @param nMaxDelay          The maximum time in milliseconds that a call
+	 *                           will wait for other calls to be batched with
+	 * @param nMaxBatchSize      The maximum number of calls in a batch
+	 * @param nConcurrentBatches The maximum number of batches that will be
+	 *                           sent concurrently
+	 */
+	public JsonRpcCallBatcher(Endpoint rEndpoint,
+							  long	   nMaxDelay,
+							  int	   nMaxBatchSize,
+							  int	   nConcurrentBatches)
+	{
+		if (nMaxDelay < 0 || nMaxBatchSize <= 0 || nConcurrentBatches <= 0)
+		{
+			throw new IllegalArgumentException("Invalid batch parameters");
+		}
+
+		this.rEndpoint     = rEndpoint;
+		this.nMaxDelay     = nMaxDelay;
+		this.nMaxBatchSize = nMaxBatchSize;
+
+		aExecutor =
+			Executors.newScheduledThreadPool(nConcurrentBatches,
+											 rRunnable ->
+											 {
+												 Thread aThread =
+													 new Thread(rRunnable,
+																"JsonRpcCallBatcher");
+
+												 aThread.setDaemon(true);
+
+												 return aThread;
+											 });
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Adds a call of a JSON RPC method to the next batch.
+	 *
+	 * @param  rMethod The method to call
+	 * @param  rParams The call parameters
+	 *
+	 * @return A future that will be completed with the call result
+	 *
+	 * @throws IllegalStateException If this instance has already been closed
+	 */
+	public <P, R> CompletableFuture<R> call(
+		JsonRpcMethod<P, R> rMethod,
+		P					rParams)
+	{
+		BatchedCall<P, R> aCall = new BatchedCall<>(rMethod, rParams);
+
+		// the executor is only accessed while synchronized so that it cannot
+		// be shut down concurrently by close()
+		synchronized (this)
+		{
+			if (bClosed)
+			{
+				throw new IllegalStateException("Batcher closed");
+			}
+
+			aPendingCalls.add(aCall);
+
+			if (aPendingCalls.size() >= nMaxBatchSize)
+			{
+				List<BatchedCall<?, ?>> rBatch = takePendingCalls();
+
+				aExecutor.execute(() -> sendBatch(rBatch));
+			}
+			else if (aPendingCalls.size() == 1)
+			{
+				aScheduledFlush =
+					aExecutor.schedule(this::flush,
+									   nMaxDelay,
+									   TimeUnit.MILLISECONDS);
+			}
+		}
+
+		return aCall.aResult;
+	}
+
+	/***************************************
+	 * Sends all pending calls and shuts down the batch threads. Any further
+	 * invocation of {@link #call(JsonRpcMethod, Object)} will cause an
+	 * exception.
+	 */
+	@Override
+	public void close()
+	{
+		synchronized (this)
+		{
+			bClosed = true;
+			aExecutor.shutdown();
+		}
+
+		flush();
+	}
+
+	/***************************************
+	 * Sends all pending calls immediately in the current thread.
+	 */
+	public void flush()
+	{
+		List<BatchedCall<?, ?>> rCalls;
+
+		synchronized (this)
+		{
+			rCalls = takePendingCalls();
+		}
+
+		if (!rCalls.isEmpty())
+		{
+			sendBatch(rCalls);
+		}
+	}
+
+	/***************************************
+	 * Returns the number of calls that are waiting to be sent.
+	 *
+	 * @return The number of pending calls
+	 */
+	public synchronized int getPendingCount()
+	{
+		return aPendingCalls.size();
+	}
+
+	/***************************************
+	 * Creates the batch call that is used to send a list of calls.
+	 *
+	 * @return The new batch call
+	 */
+	JsonRpcBatchCall createBatchCall()
+	{
+		return new JsonRpcBatchCall();
+	}
+
+	/***************************************
+	 * Sends a list of calls as a JSON RPC batch and completes the futures of
+	 * the calls.
+	 *
+	 * @param rCalls The calls to send
+	 */
+	private void sendBatch(List<BatchedCall<?, ?>> rCalls)
+	{
+		JsonRpcBatchCall aBatch = createBatchCall();
+
+		for (BatchedCall<?, ?> rCall : rCalls)
+		{
+			aBatch.call(rCall, null);
+		}
+
+		try
+		{
+			aBatch.from(rEndpoint).send();
+		}
+		catch (Exception e)
+		{
+			for (BatchedCall<?, ?> rCall : rCalls)
+			{
+				rCall.aResult.completeExceptionally(e);
+			}
+		}
+		finally
+		{
+			for (BatchedCall<?, ?> rCall : rCalls)
+			{
+				if (!rCall.aResult.isDone())
+				{
+					rCall.aResult.completeExceptionally(new CommunicationException("No response for %s",
+																				   rCall));
+				}
+			}
+		}
+	}
+
+	/***************************************
+	 * Removes and returns the pending calls and cancels a scheduled flush.
+	 * Must be invoked while synchronized on this instance.
+	 *
+	 * @return The pending calls (may be empty)
+	 */
+	private List<BatchedCall<?, ?>> takePendingCalls()
+	{
+		List<BatchedCall<?, ?>> rCalls = aPendingCalls;
+
+		if (aScheduledFlush != null)
+		{
+			aScheduledFlush.cancel(false);
+			aScheduledFlush = null;
+		}
+
+		aPendingCalls = new ArrayList<>();
+
+		return rCalls;
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * A JSON RPC request that performs a single method call in a batch and
+	 * completes a future with the result of the call.
+	 *
+	 * @author eso
+	 */
+	static class BatchedCall<P, R> extends JsonRpcRequest<P, R>
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private final JsonRpcMethod<P, R>  rMethod;
+		private final CompletableFuture<R> aResult = new CompletableFuture<>();
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param rMethod The method to call
+		 * @param rParams The call parameters
+		 */
+		BatchedCall(JsonRpcMethod<P, R> rMethod, P rParams)
+		{
+			super(rMethod.getToken(), rParams);
+
+			this.rMethod = rMethod;
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Object buildRequest(P rInput, int nId)
+		{
+			return rMethod.buildRequest(rInput, nId);
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString()
+		{
+			return rMethod.getToken() + "(" + getDefaultInput() + ")";
+		}
+
+		/***************************************
+		 * Overridden to complete the result future of this call.
+		 *
+		 * @see JsonRpcRequest#parseResponse(JsonRpcResponse)
+		 */
+		@Override
+		protected R parseResponse(JsonRpcResponse rResponse)
+		{
+			R rValue = null;
+
+			try
+			{
+				rValue = rMethod.parseResponse(rResponse);
+				aResult.complete(rValue);
+			}
+			catch (RuntimeException e)
+			{
+				aResult.completeExceptionally(e);
+			}
+
+			return rValue;
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected R parseResult(String sJsonResult)
+		{
+			return rMethod.parseResult(sJsonResult);
+		}
+	}
+}
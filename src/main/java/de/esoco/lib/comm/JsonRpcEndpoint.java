@@ -20,15 +20,23 @@ import de.esoco.lib.expression.Functions;
 import de.esoco.lib.json.Json;
 import de.esoco.lib.json.JsonObject;
 import de.esoco.lib.json.JsonParser;
+import de.esoco.lib.logging.Log;
 
 import java.net.URI;
 import java.net.URL;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -38,6 +46,7 @@ import org.obrel.core.RelationType;
 import static de.esoco.lib.comm.CommunicationRelationTypes.HTTP_REQUEST_HEADERS;
 
 import static org.obrel.core.RelationTypeModifier.PRIVATE;
+import static org.obrel.core.RelationTypes.newInitialValueType;
 import static org.obrel.core.RelationTypes.newType;
 
 
@@ -56,12 +65,51 @@ public class JsonRpcEndpoint extends Endpoint
 	public static final RelationType<JsonRpcBatchCall> RPC_BATCH_CALL =
 		newType();
 
+	/**
+	 * The maximum number of calls that a {@link JsonRpcBatchMethod} will send
+	 * in a single request. Larger batches will be split into sub-batches which
+	 * are executed concurrently (see {@link #RPC_PARALLEL_BATCHES}). The
+	 * default value of zero disables the splitting of batches.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> RPC_MAX_BATCH_SIZE =
+		newInitialValueType(0);
+
+	/**
+	 * The maximum number of sub-batches that will be executed concurrently if
+	 * a batch is split because of {@link #RPC_MAX_BATCH_SIZE}. Each concurrent
+	 * sub-batch uses a separate connection from a pool of the endpoint.
+	 * Defaults to 4.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> RPC_PARALLEL_BATCHES =
+		newInitialValueType(4);
+
+	/**
+	 * The time in milliseconds after which an unused connection in the pool
+	 * for concurrent sub-batches will be closed. Idle connections are removed
+	 * when the pool is accessed, all remaining connections can be closed with
+	 * {@link #closeConnectionPool()}. Defaults to 60 seconds.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> RPC_POOL_IDLE_TIME =
+		newInitialValueType(60 * 1000);
+
 	private static final RelationType<Connection> RPC_SERVER_CONNECTION =
 		newType(PRIVATE);
 
+	private static final RelationType<Long> RPC_POOL_RELEASE_TIME =
+		newType(PRIVATE);
+
+	private static ExecutorService aBatchExecutor = null;
+
 	private static final RelationType<CommunicationMethod<String, String>> RPC_SERVER_METHOD =
 		newType(PRIVATE);
 
+	//~ Instance fields --------------------------------------------------------
+
+	private final Deque<Connection> aConnectionPool = new ArrayDeque<>();
+
 	//~ Static methods ---------------------------------------------------------
 
 	/***************************************
@@ -159,8 +207,50 @@ public class JsonRpcEndpoint extends Endpoint
 		return new JsonRpcMethod<P, R>(sMethod, rDefaultParams, fParseResponse);
 	}
 
+	/***************************************
+	 * Returns the executor that is used to run concurrent sub-batches. The
+	 * executor threads are created on demand and will be discarded after they
+	 * have been idle for some time.
+	 *
+	 * @return The batch executor
+	 */
+	private static synchronized ExecutorService getBatchExecutor()
+	{
+		if (aBatchExecutor == null)
+		{
+			aBatchExecutor =
+				Executors.newCachedThreadPool(rRunnable ->
+				{
+					Thread aThread = new Thread(rRunnable, "JsonRpcBatch");
+
+					aThread.setDaemon(true);
+
+					return aThread;
+				});
+		}
+
+		return aBatchExecutor;
+	}
+
 	//~ Methods ----------------------------------------------------------------
 
+	/***************************************
+	 * Closes all pooled connections that have been opened for the concurrent
+	 * execution of sub-batches.
+	 */
+	public void closeConnectionPool()
+	{
+		List<Connection> aConnections;
+
+		synchronized (aConnectionPool)
+		{
+			aConnections = new ArrayList<>(aConnectionPool);
+			aConnectionPool.clear();
+		}
+
+		closeConnections(aConnections);
+	}
+
 	/***************************************
 	 * {@inheritDoc}
 	 */
@@ -170,6 +260,115 @@ public class JsonRpcEndpoint extends Endpoint
 		rConnection.get(RPC_SERVER_CONNECTION).close();
 	}
 
+	/***************************************
+	 * Executes a batch by splitting it into sub-batches which are sent
+	 * concurrently. The calling thread executes sub-batches on the given
+	 * connection while additional workers use connections from the pool of
+	 * this endpoint. Pooled connections are created without the parameters of
+	 * the calling connection, i.e. only with the endpoint configuration. If a
+	 * sub-batch fails the remaining sub-batches are not sent and the error is
+	 * thrown after all workers have terminated.
+	 *
+	 * @param  rBatch           The batch method
+	 * @param  rConnection      The connection of the invocation
+	 * @param  rInputs          The batch inputs
+	 * @param  nMaxBatchSize    The maximum sub-batch size
+	 * @param  nParallelBatches The maximum number of concurrent sub-batches
+	 *
+	 * @return The batch results in the order of the inputs
+	 */
+	<P, R> List<R> executeSplitBatch(JsonRpcBatchMethod<P, R> rBatch,
+									 Connection				  rConnection,
+									 List<P>				  rInputs,
+									 int					  nMaxBatchSize,
+									 int					  nParallelBatches)
+	{
+		int nInputs  = rInputs.size();
+		int nBatches = (nInputs + nMaxBatchSize - 1) / nMaxBatchSize;
+		int nWorkers = Math.max(1, Math.min(nParallelBatches, nBatches));
+
+		List<List<R>> aResults   = new ArrayList<>(nBatches);
+		AtomicInteger aNextBatch = new AtomicInteger();
+
+		List<CompletableFuture<Void>> aWorkers = new ArrayList<>(nWorkers);
+
+		aResults.addAll(Collections.nCopies(nBatches, null));
+
+		for (int i = 1; i < nWorkers; i++)
+		{
+			aWorkers.add(CompletableFuture.runAsync(() ->
+													executeSubBatches(rBatch,
+																	  null,
+																	  rInputs,
+																	  nMaxBatchSize,
+																	  aNextBatch,
+																	  aResults),
+													getBatchExecutor()));
+		}
+
+		RuntimeException eError = null;
+
+		try
+		{
+			executeSubBatches(rBatch,
+							  rConnection,
+							  rInputs,
+							  nMaxBatchSize,
+							  aNextBatch,
+							  aResults);
+		}
+		catch (RuntimeException e)
+		{
+			eError = e;
+		}
+
+		// always wait for the workers so that no sub-batch is still being sent
+		// after the call has returned or failed
+		for (CompletableFuture<Void> rWorker : aWorkers)
+		{
+			try
+			{
+				rWorker.join();
+			}
+			catch (CompletionException e)
+			{
+				Throwable eCause = e.getCause();
+
+				if (eCause instanceof Error)
+				{
+					throw (Error) eCause;
+				}
+
+				RuntimeException eWorkerError =
+					eCause instanceof RuntimeException
+					? (RuntimeException) eCause : new CommunicationException(e);
+
+				if (eError == null)
+				{
+					eError = eWorkerError;
+				}
+				else
+				{
+					eError.addSuppressed(eWorkerError);
+				}
+			}
+		}
+
+		if (eError != null)
+		{
+			throw eError;
+		}
+
+		List<R> aResult = new ArrayList<>(nInputs);
+
+		for (List<R> rSubResult : aResults)
+		{
+			aResult.addAll(rSubResult);
+		}
+
+		return aResult;
+	}
+
 	/***************************************
 	 * {@inheritDoc}
 	 */
@@ -215,6 +414,169 @@ public class JsonRpcEndpoint extends Endpoint
 								 Arrays.asList("application/json"));
 	}
 
+	/***************************************
+	 * Closes connections that have been removed from the connection pool.
+	 *
+	 * @param rConnections The connections to close
+	 */
+	private void closeConnections(Collection<Connection> rConnections)
+	{
+		for (Connection rConnection : rConnections)
+		{
+			try
+			{
+				rConnection.close();
+			}
+			catch (RuntimeException e)
+			{
+				Log.warn("Closing pooled JSON RPC connection failed", e);
+			}
+		}
+	}
+
+	/***************************************
+	 * Executes sub-batches until all have been processed. The result lists are
+	 * synchronized on to make them visible to the calling thread. If a
+	 * sub-batch fails no further sub-batches will be handed out to any
+	 * worker.
+	 *
+	 * @param rBatch        The batch method
+	 * @param rConnection   The connection to use or NULL to use a pooled
+	 *                      connection
+	 * @param rInputs       The batch inputs
+	 * @param nMaxBatchSize The maximum sub-batch size
+	 * @param aNextBatch    The index of the next sub-batch to execute
+	 * @param rResults      The list to store the sub-batch results in
+	 */
+	private <P, R> void executeSubBatches(JsonRpcBatchMethod<P, R> rBatch,
+										  Connection			   rConnection,
+										  List<P>				   rInputs,
+										  int					   nMaxBatchSize,
+										  AtomicInteger			   aNextBatch,
+										  List<List<R>>			   rResults)
+	{
+		Connection rSubConnection =
+			rConnection != null ? rConnection : getPooledConnection();
+
+		boolean bSuccess = false;
+		int     nBatch;
+
+		try
+		{
+			while ((nBatch = aNextBatch.getAndIncrement()) < rResults.size())
+			{
+				int nStart = nBatch * nMaxBatchSize;
+				int nEnd   = Math.min(nStart + nMaxBatchSize, rInputs.size());
+
+				List<R> aSubResult =
+					rBatch.sendBatch(rSubConnection,
+									 rInputs.subList(nStart, nEnd));
+
+				synchronized (rResults)
+				{
+					rResults.set(nBatch, aSubResult);
+				}
+			}
+
+			bSuccess = true;
+		}
+		finally
+		{
+			if (!bSuccess)
+			{
+				// stop all workers from taking further sub-batches
+				aNextBatch.set(rResults.size());
+			}
+
+			if (rConnection == null)
+			{
+				if (bSuccess)
+				{
+					releasePooledConnection(rSubConnection);
+				}
+				else
+				{
+					rSubConnection.close();
+				}
+			}
+		}
+	}
+
+	/***************************************
+	 * Returns the most recently used connection from the pool or creates a new
+	 * one if the pool contains no connection that is still usable.
+	 *
+	 * @return The connection
+	 */
+	private Connection getPooledConnection()
+	{
+		List<Connection> aIdleConnections = new ArrayList<>();
+		Connection		 rConnection;
+
+		synchronized (aConnectionPool)
+		{
+			removeIdleConnections(aIdleConnections);
+			rConnection = aConnectionPool.pollFirst();
+		}
+
+		closeConnections(aIdleConnections);
+
+		return rConnection != null ? rConnection : connect();
+	}
+
+	/***************************************
+	 * Returns a connection to the pool. The pool is bounded by the maximum
+	 * number of concurrent sub-batch workers (i.e. {@link
+	 * #RPC_PARALLEL_BATCHES} minus the calling thread). Connections that
+	 * exceed this size or that have been idle too long are closed.
+	 *
+	 * @param rConnection The connection to release
+	 */
+	@SuppressWarnings("boxing")
+	private void releasePooledConnection(Connection rConnection)
+	{
+		List<Connection> aRemovedConnections = new ArrayList<>();
+		int				 nMaxSize			 = get(RPC_PARALLEL_BATCHES) - 1;
+
+		rConnection.set(RPC_POOL_RELEASE_TIME, System.currentTimeMillis());
+
+		synchronized (aConnectionPool)
+		{
+			aConnectionPool.offerFirst(rConnection);
+
+			while (aConnectionPool.size() > Math.max(nMaxSize, 0))
+			{
+				aRemovedConnections.add(aConnectionPool.pollLast());
+			}
+
+			removeIdleConnections(aRemovedConnections);
+		}
+
+		closeConnections(aRemovedConnections);
+	}
+
+	/***************************************
+	 * Removes the connections from the pool that have been idle for longer
+	 * than {@link #RPC_POOL_IDLE_TIME}. Because released connections are
+	 * added to the head of the pool the idle connections are always at it's
+	 * tail. Must be invoked while synchronized on the pool.
+	 *
+	 * @param rRemovedConnections A list to add the removed connections to
+	 */
+	@SuppressWarnings("boxing")
+	private void removeIdleConnections(List<Connection> rRemovedConnections)
+	{
+		long	   nIdleLimit =
+			System.currentTimeMillis() - get(RPC_POOL_IDLE_TIME);
+		Connection rOldest;
+
+		while ((rOldest = aConnectionPool.peekLast()) != null &&
+			   rOldest.get(RPC_POOL_RELEASE_TIME) < nIdleLimit)
+		{
+			rRemovedConnections.add(aConnectionPool.pollLast());
+		}
+	}
+
 	//~ Inner Classes ----------------------------------------------------------
 
 	/********************************************************************
@@ -270,8 +632,8 @@ public class JsonRpcEndpoint extends Endpoint
 		 * @return The parsed method response
 		 */
 		protected abstract R parseMethodResponse(
-			JsonObject aResponse,
-			List<P>    rInputs);
+			JsonRpcResponse aResponse,
+			List<P>			rInputs);
 
 		/***************************************
 		 * {@inheritDoc}
@@ -280,14 +642,11 @@ public class JsonRpcEndpoint extends Endpoint
 		protected List<R> parseRawResponse(String  sRawResponse,
 										   List<P> rInputs)
 		{
-			return Json.parseArray(sRawResponse, 1)
-					   .stream()
-					   .map(o -> Json.parseObject(o.toString(), 1))
-					   .sorted((j1, j2) ->
-							   j1.getInt("id", 0) - j2.getInt("id", 0))
-					   .map(aResponse ->
-							parseMethodResponse(aResponse, rInputs))
-					   .collect(Collectors.toList());
+			return JsonRpcResponse.parseBatch(sRawResponse)
+								  .stream()
+								  .map(aResponse ->
+									   parseMethodResponse(aResponse, rInputs))
+								  .collect(Collectors.toList());
 		}
 
 		/***************************************
@@ -380,7 +739,10 @@ public class JsonRpcEndpoint extends Endpoint
 		protected abstract R parseResult(String sJsonResult);
 
 		/***************************************
-		 * Parses the raw JSON response string.
+		 * Parses the raw JSON response string. The default implementation
+		 * scans the response in a single pass with {@link
+		 * JsonRpcResponse#parse(String)} and then invokes {@link
+		 * #parseResponse(JsonRpcResponse)}.
 		 *
 		 * @param  sRawResponse The raw JSON response
 		 * @param  rInput       The input value for which the response has been
@@ -390,37 +752,31 @@ public class JsonRpcEndpoint extends Endpoint
 		 */
 		protected R parseRawResponse(String sRawResponse, P rInput)
 		{
-			JsonObject aResponse = Json.parseObject(sRawResponse, 1);
-
-			return parseResponse(aResponse);
+			return parseResponse(JsonRpcResponse.parse(sRawResponse));
 		}
 
 		/***************************************
-		 * Parses the response to a method call and returns the raw result
-		 * value.
+		 * Parses the response to a method call and returns the result value.
+		 * The raw JSON of the result is parsed only once by {@link
+		 * #parseResult(String)}.
 		 *
-		 * @param  rResponse The JSON response object received from the server
+		 * @param  rResponse The response received from the server
 		 *
 		 * @return The parsed result
 		 *
 		 * @throws CommunicationException If an error response has been received
 		 */
-		protected R parseResponse(JsonObject rResponse)
+		protected R parseResponse(JsonRpcResponse rResponse)
 		{
-			Object aRawError = rResponse.get("error");
-
-			if (aRawError == null)
+			if (rResponse.isError())
 			{
-				return parseResult(rResponse.get("result").toString());
+				throw new CommunicationException(String.format("JSON RPC Error %s: %s",
+															   rResponse.getErrorCode(),
+															   rResponse.getErrorMessage()));
 			}
 			else
 			{
-				JsonObject aError =
-					new JsonParser().parseObject(aRawError.toString());
-
-				throw new CommunicationException(String.format("JSON RPC Error %s: %s",
-															   aError.get("code"),
-															   aError.get("message")));
+				return parseResult(rResponse.getResult());
 			}
 		}
 	}
@@ -549,10 +905,10 @@ public class JsonRpcEndpoint extends Endpoint
 		 */
 		@Override
 		protected Object parseMethodResponse(
-			JsonObject    aResponse,
-			List<Call<?>> rCalls)
+			JsonRpcResponse aResponse,
+			List<Call<?>>   rCalls)
 		{
-			int nId = aResponse.getInt("id", 0) - nFirstId;
+			int nId = aResponse.getId() - nFirstId;
 
 			if (nId >= 0 && nId < rCalls.size())
 			{
@@ -625,6 +981,38 @@ public class JsonRpcEndpoint extends Endpoint
 			return aMethodRequests;
 		}
 
+		/***************************************
+		 * Overridden to split the inputs into concurrently executed
+		 * sub-batches if the number of inputs exceeds the value of {@link
+		 * JsonRpcEndpoint#RPC_MAX_BATCH_SIZE}.
+		 *
+		 * @see JsonRpcRequest#doOn(Connection, Object)
+		 */
+		@Override
+		@SuppressWarnings("boxing")
+		public List<R> doOn(Connection rConnection, List<P> rInputs)
+		{
+			int nMaxBatchSize = rConnection.get(RPC_MAX_BATCH_SIZE);
+
+			if (nMaxBatchSize > 0 &&
+				rInputs.size() > nMaxBatchSize &&
+				rConnection.getEndpoint() instanceof JsonRpcEndpoint)
+			{
+				JsonRpcEndpoint rEndpoint =
+					(JsonRpcEndpoint) rConnection.getEndpoint();
+
+				return rEndpoint.executeSplitBatch(this,
+												   rConnection,
+												   rInputs,
+												   nMaxBatchSize,
+												   rConnection.get(RPC_PARALLEL_BATCHES));
+			}
+			else
+			{
+				return sendBatch(rConnection, rInputs);
+			}
+		}
+
 		/***************************************
 		 * {@inheritDoc}
 		 */
@@ -638,10 +1026,25 @@ public class JsonRpcEndpoint extends Endpoint
 		 * {@inheritDoc}
 		 */
 		@Override
-		protected R parseMethodResponse(JsonObject aResponse, List<P> rInput)
+		protected R parseMethodResponse(
+			JsonRpcResponse aResponse,
+			List<P>			rInput)
 		{
 			return rRpcMethod.parseResponse(aResponse);
 		}
+
+		/***************************************
+		 * Sends a batch of inputs in a single request over a connection.
+		 *
+		 * @param  rConnection The connection
+		 * @param  rInputs     The batch inputs
+		 *
+		 * @return The batch results
+		 */
+		List<R> sendBatch(Connection rConnection, List<P> rInputs)
+		{
+			return super.doOn(rConnection, rInputs);
+		}
 	}
 
 	/********************************************************************
@@ -815,7 +1218,7 @@ public class JsonRpcEndpoint extends Endpoint
 		 *
 		 * @return The parsed result
 		 */
-		public R processResponse(JsonObject rResponse)
+		public R processResponse(JsonRpcResponse rResponse)
 		{
 			R aResponse = rRequest.parseResponse(rResponse);
 
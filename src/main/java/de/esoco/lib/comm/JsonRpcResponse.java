@@ -0,0 +1,628 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+
+/********************************************************************
+ * Contains the data of a single JSON RPC response. Instances are created by
+ * the static parse methods which scan a raw JSON response string in a single
+ * pass. Only the top-level properties of a response are evaluated, the raw JSON
+ * of the result is kept as a substring of the response so that it can be
+ * parsed directly into the result datatype of the invoked method.
+ *
+ * @author eso
+ */
+public class JsonRpcResponse
+{
+	//~ Instance fields --------------------------------------------------------
+
+	private int    nId;
+	private String sResult;
+	private String sErrorCode;
+	private String sErrorMessage;
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance. Instances are only created by the parse methods.
+	 */
+	private JsonRpcResponse()
+	{
+	}
+
+	//~ Static methods ---------------------------------------------------------
+
+	/***************************************
+	 * Parses a single JSON RPC response object.
+	 *
+	 * @param  sJson The raw JSON response
+	 *
+	 * @return The parsed response
+	 *
+	 * @throws CommunicationException If the JSON data is invalid
+	 */
+	public static JsonRpcResponse parse(String sJson)
+	{
+		Scanner aScanner = new Scanner(sJson);
+
+		aScanner.skipWhitespace();
+
+		JsonRpcResponse aResponse = aScanner.readResponse();
+
+		aScanner.expectEnd();
+
+		return aResponse;
+	}
+
+	/***************************************
+	 * Parses the response to a JSON RPC batch request. The responses will be
+	 * returned in the order of their IDs. For convenience a single response
+	 * object will also be accepted and returned as a list with one element.
+	 *
+	 * @param  sJson The raw JSON batch response
+	 *
+	 * @return The parsed responses, sorted by ID
+	 *
+	 * @throws CommunicationException If the JSON data is invalid
+	 */
+	public static List<JsonRpcResponse> parseBatch(String sJson)
+	{
+		Scanner				  aScanner   = new Scanner(sJson);
+		List<JsonRpcResponse> aResponses = new ArrayList<>();
+
+		aScanner.skipWhitespace();
+
+		if (aScanner.peek() == '[')
+		{
+			aScanner.next();
+			aScanner.skipWhitespace();
+
+			if (aScanner.peek() == ']')
+			{
+				aScanner.next();
+			}
+			else
+			{
+				char cNext;
+
+				do
+				{
+					aScanner.skipWhitespace();
+					aResponses.add(aScanner.readResponse());
+					aScanner.skipWhitespace();
+					cNext = aScanner.next();
+				}
+				while (cNext == ',');
+
+				if (cNext != ']')
+				{
+					throw aScanner.error("Expected ']'");
+				}
+			}
+		}
+		else
+		{
+			aResponses.add(aScanner.readResponse());
+		}
+
+		aScanner.expectEnd();
+		aResponses.sort((r1, r2) -> Integer.compare(r1.nId, r2.nId));
+
+		return aResponses;
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Returns the raw JSON value of the error code if this is an error
+	 * response.
+	 *
+	 * @return The error code or NULL for none
+	 */
+	public final String getErrorCode()
+	{
+		return sErrorCode;
+	}
+
+	/***************************************
+	 * Returns the error message if this is an error response.
+	 *
+	 * @return The error message or NULL for none
+	 */
+	public final String getErrorMessage()
+	{
+		return sErrorMessage;
+	}
+
+	/***************************************
+	 * Returns the response ID. Will be 0 if the response had no numeric ID.
+	 *
+	 * @return The response ID
+	 */
+	public final int getId()
+	{
+		return nId;
+	}
+
+	/***************************************
+	 * Returns the raw JSON string of the result value.
+	 *
+	 * @return The raw result or NULL for none
+	 */
+	public final String getResult()
+	{
+		return sResult;
+	}
+
+	/***************************************
+	 * Checks whether this is an error response.
+	 *
+	 * @return TRUE if this response contains an error
+	 */
+	public final boolean isError()
+	{
+		return sErrorCode != null || sErrorMessage != null;
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	@SuppressWarnings("boxing")
+	public String toString()
+	{
+		return isError()
+			   ? String.format("JsonRpcResponse[%d, error %s: %s]",
+							   nId,
+							   sErrorCode,
+							   sErrorMessage)
+			   : String.format("JsonRpcResponse[%d, %s]", nId, sResult);
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * A simple scanner over the characters of a JSON string.
+	 *
+	 * @author eso
+	 */
+	static class Scanner
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private final String sJson;
+		private final int    nLength;
+		private int			 nPosition = 0;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param sJson The JSON string to scan
+		 */
+		Scanner(String sJson)
+		{
+			this.sJson   = sJson;
+			this.nLength = sJson.length();
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Creates an exception for invalid JSON data at the current position.
+		 *
+		 * @param  sMessage The error message
+		 *
+		 * @return The exception
+		 */
+		@SuppressWarnings("boxing")
+		CommunicationException error(String sMessage)
+		{
+			return new CommunicationException("Invalid JSON RPC response at %d: %s",
+											  nPosition,
+											  sMessage);
+		}
+
+		/***************************************
+		 * Checks that only whitespace remains.
+		 */
+		void expectEnd()
+		{
+			skipWhitespace();
+
+			if (nPosition < nLength)
+			{
+				throw error("Unexpected data");
+			}
+		}
+
+		/***************************************
+		 * Returns the next character and advances the position.
+		 *
+		 * @return The next character
+		 */
+		char next()
+		{
+			if (nPosition >= nLength)
+			{
+				throw error("Unexpected end of data");
+			}
+
+			return sJson.charAt(nPosition++);
+		}
+
+		/***************************************
+		 * Returns the next character without advancing the position.
+		 *
+		 * @return The next character or 0 at the end of the data
+		 */
+		char peek()
+		{
+			return nPosition < nLength ? sJson.charAt(nPosition) : 0;
+		}
+
+		/***************************************
+		 * Reads an error object and stores the code and message in a
+		 * response.
+		 *
+		 * @param rResponse The response to store the error in
+		 */
+		void readError(JsonRpcResponse rResponse)
+		{
+			if (peek() != '{')
+			{
+				String sValue = readRawValue();
+
+				// a null error (sent by some servers) is no error, other
+				// values are non-standard errors
+				if (!sValue.equals("null"))
+				{
+					rResponse.sErrorMessage = sValue;
+				}
+
+				return;
+			}
+
+			readObject(sKey ->
+					   {
+						   if (sKey.equals("code"))
+						   {
+							   rResponse.sErrorCode = readRawValue();
+						   }
+						   else if (sKey.equals("message") &&
+									peek() == '"')
+						   {
+							   rResponse.sErrorMessage = readString();
+						   }
+						   else
+						   {
+							   skipValue();
+						   }
+					   });
+
+			if (rResponse.sErrorCode == null && rResponse.sErrorMessage == null)
+			{
+				rResponse.sErrorMessage = "";
+			}
+		}
+
+		/***************************************
+		 * Reads the properties of an object and hands each key to a property
+		 * reader which must then consume the property value.
+		 *
+		 * @param fReadProperty The property reader function
+		 */
+		void readObject(Consumer<String> fReadProperty)
+		{
+			if (next() != '{')
+			{
+				throw error("Expected '{'");
+			}
+
+			skipWhitespace();
+
+			if (peek() == '}')
+			{
+				next();
+
+				return;
+			}
+
+			char cNext;
+
+			do
+			{
+				skipWhitespace();
+
+				String sKey = readString();
+
+				skipWhitespace();
+
+				if (next() != ':')
+				{
+					throw error("Expected ':'");
+				}
+
+				skipWhitespace();
+				fReadProperty.accept(sKey);
+				skipWhitespace();
+				cNext = next();
+			}
+			while (cNext == ',');
+
+			if (cNext != '}')
+			{
+				throw error("Expected '}'");
+			}
+		}
+
+		/***************************************
+		 * Reads the next value and returns it's raw JSON string.
+		 *
+		 * @return The raw JSON value
+		 */
+		String readRawValue()
+		{
+			int nStart = nPosition;
+
+			skipValue();
+
+			return sJson.substring(nStart, nPosition);
+		}
+
+		/***************************************
+		 * Reads a response object.
+		 *
+		 * @return The response
+		 */
+		JsonRpcResponse readResponse()
+		{
+			JsonRpcResponse aResponse = new JsonRpcResponse();
+
+			readObject(sKey ->
+					   {
+						   switch (sKey)
+						   {
+							   case "id":
+								   aResponse.nId = readId();
+								   break;
+
+							   case "result":
+								   aResponse.sResult = readRawValue();
+								   break;
+
+							   case "error":
+								   readError(aResponse);
+								   break;
+
+							   default:
+								   skipValue();
+						   }
+					   });
+
+			return aResponse;
+		}
+
+		/***************************************
+		 * Reads a string value and returns it without quotes and with
+		 * resolved escape sequences.
+		 *
+		 * @return The string value
+		 */
+		String readString()
+		{
+			if (next() != '"')
+			{
+				throw error("Expected string");
+			}
+
+			int			  nStart  = nPosition;
+			StringBuilder aString = null;
+
+			while (true)
+			{
+				char c = next();
+
+				if (c == '"')
+				{
+					break;
+				}
+				else if (c == '\\')
+				{
+					if (aString == null)
+					{
+						aString = new StringBuilder();
+					}
+
+					aString.append(sJson, nStart, nPosition - 1);
+					aString.append(readEscape());
+					nStart = nPosition;
+				}
+			}
+
+			if (aString == null)
+			{
+				return sJson.substring(nStart, nPosition - 1);
+			}
+			else
+			{
+				return aString.append(sJson, nStart, nPosition - 1).toString();
+			}
+		}
+
+		/***************************************
+		 * Skips whitespace characters.
+		 */
+		void skipWhitespace()
+		{
+			while (nPosition < nLength &&
+				   Character.isWhitespace(sJson.charAt(nPosition)))
+			{
+				nPosition++;
+			}
+		}
+
+		/***************************************
+		 * Skips the next JSON value of any type.
+		 */
+		void skipValue()
+		{
+			char c = peek();
+
+			if (c == '"')
+			{
+				skipString();
+			}
+			else if (c == '{' || c == '[')
+			{
+				int nDepth = 0;
+
+				do
+				{
+					c = peek();
+
+					if (c == '"')
+					{
+						skipString();
+					}
+					else
+					{
+						next();
+
+						if (c == '{' || c == '[')
+						{
+							nDepth++;
+						}
+						else if (c == '}' || c == ']')
+						{
+							nDepth--;
+						}
+					}
+				}
+				while (nDepth > 0);
+			}
+			else
+			{
+				int nStart = nPosition;
+
+				while (nPosition < nLength &&
+					   ",}] \t\r\n".indexOf(sJson.charAt(nPosition)) < 0)
+				{
+					nPosition++;
+				}
+
+				if (nPosition == nStart)
+				{
+					throw error("Expected value");
+				}
+			}
+		}
+
+		/***************************************
+		 * Reads the character of an escape sequence after the backslash.
+		 *
+		 * @return The escaped character
+		 */
+		private char readEscape()
+		{
+			char c = next();
+
+			switch (c)
+			{
+				case 'b':
+					return '\b';
+
+				case 'f':
+					return '\f';
+
+				case 'n':
+					return '\n';
+
+				case 'r':
+					return '\r';
+
+				case 't':
+					return '\t';
+
+				case 'u':
+
+					if (nPosition + 4 > nLength)
+					{
+						throw error("Invalid unicode escape");
+					}
+
+					String sHex = sJson.substring(nPosition, nPosition + 4);
+
+					nPosition += 4;
+
+					try
+					{
+						return (char) Integer.parseInt(sHex, 16);
+					}
+					catch (NumberFormatException e)
+					{
+						throw error("Invalid unicode escape");
+					}
+
+				default:
+					return c;
+			}
+		}
+
+		/***************************************
+		 * Reads a response ID. Non-numeric IDs will be mapped to 0.
+		 *
+		 * @return The ID
+		 */
+		private int readId()
+		{
+			String sId = peek() == '"' ? readString() : readRawValue();
+
+			try
+			{
+				return Integer.parseInt(sId);
+			}
+			catch (NumberFormatException e)
+			{
+				return 0;
+			}
+		}
+
+		/***************************************
+		 * Skips a string value without evaluating escape sequences.
+		 */
+		private void skipString()
+		{
+			next();
+
+			char c;
+
+			while ((c = next()) != '"')
+			{
+				if (c == '\\')
+				{
+					next();
+				}
+			}
+		}
+	}
+}
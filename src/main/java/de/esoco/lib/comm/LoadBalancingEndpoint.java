@@ -0,0 +1,604 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.obrel.core.Relatable;
+import org.obrel.core.RelationType;
+import org.obrel.core.RelationTypes;
+
+import static de.esoco.lib.comm.CommunicationRelationTypes.EJECTION_DURATION;
+import static de.esoco.lib.comm.CommunicationRelationTypes.EJECTION_THRESHOLD;
+import static de.esoco.lib.comm.CommunicationRelationTypes.ENDPOINT_ADDRESS;
+import static de.esoco.lib.comm.CommunicationRelationTypes.ENDPOINT_SCHEME;
+
+import static org.obrel.core.RelationTypeModifier.PRIVATE;
+import static org.obrel.core.RelationTypes.newType;
+
+
+/********************************************************************
+ * An endpoint that distributes connections over several other endpoints which
+ * provide the same service, e.g. multiple replicas of a REST service. The
+ * endpoint that will be used for a new connection is determined by the {@link
+ * Strategy} of the balancing endpoint. Endpoints that fail repeatedly will be
+ * ejected from the balancing for some time. The parameters for the ejection
+ * can be configured with the relation types {@link
+ * CommunicationRelationTypes#EJECTION_THRESHOLD} and {@link
+ * CommunicationRelationTypes#EJECTION_DURATION} which must be set on the
+ * balancing endpoint before it is used for the first time. If all endpoints
+ * have been ejected connections will be distributed over all of them to
+ * prevent a total outage caused by transient errors.
+ *
+ * <p>Connections are created by the balanced endpoints which must therefore be
+ * configured individually (see {@link #getEndpoints()}) or through the
+ * connection parameters. A connection counts as an outstanding request of
+ * it's endpoint until the call has finished or the connection is closed.
+ * Call statistics like the latency and failures are only recorded for calls
+ * that are performed through an {@link EndpointFunction}. Connections that
+ * are used directly only record failed connection attempts and count as a
+ * success of the endpoint when they are closed. Because each retry or hedged
+ * call of an endpoint function creates a new connection these will also be
+ * distributed to different endpoints.</p>
+ *
+ * @author eso
+ */
+public class LoadBalancingEndpoint extends Endpoint
+{
+	//~ Enums ------------------------------------------------------------------
+
+	/********************************************************************
+	 * Enumeration of the available load balancing strategies.
+	 *
+	 * <ul>
+	 *   <li>{@link #ROUND_ROBIN}: uses the endpoints in turn.</li>
+	 *   <li>{@link #LEAST_OUTSTANDING}: uses the endpoint with the least
+	 *     number of currently executing requests.</li>
+	 *   <li>{@link #POWER_OF_TWO_CHOICES}: randomly picks two endpoints and
+	 *     uses the one with the lower load, determined from the number of
+	 *     outstanding requests and the average latency of the endpoint.</li>
+	 * </ul>
+	 */
+	public enum Strategy { ROUND_ROBIN, LEAST_OUTSTANDING, POWER_OF_TWO_CHOICES }
+
+	//~ Static fields/initializers ---------------------------------------------
+
+	/** The weight of a new sample in the average latency calculation. */
+	private static final double LATENCY_SAMPLE_WEIGHT = 0.2;
+
+	private static final RelationType<Lease> BALANCING_LEASE =
+		newType(PRIVATE);
+
+	static
+	{
+		RelationTypes.init(LoadBalancingEndpoint.class);
+	}
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final Strategy     eStrategy;
+	private final List<Target> aTargets;
+
+	private final AtomicInteger aNextTarget = new AtomicInteger();
+
+	private volatile boolean bInitialized = false;
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance for certain endpoints.
+	 *
+	 * @param eStrategy  The balancing strategy
+	 * @param rEndpoints The endpoints to distribute connections over
+	 */
+	public LoadBalancingEndpoint(Strategy eStrategy, Endpoint... rEndpoints)
+	{
+		this(eStrategy, Arrays.asList(rEndpoints));
+	}
+
+	/***************************************
+	 * Creates a new instance for endpoints with certain URIs. The endpoints
+	 * will be created with {@link Endpoint#at(String)}.
+	 *
+	 * @param eStrategy     The balancing strategy
+	 * @param rEndpointUris The URIs of the endpoints to distribute connections
+	 *                      over
+	 */
+	public LoadBalancingEndpoint(Strategy eStrategy, String... rEndpointUris)
+	{
+		this(eStrategy, createEndpoints(rEndpointUris));
+	}
+
+	/***************************************
+	 * Creates a new instance for a list of endpoints.
+	 *
+	 * @param eStrategy  The balancing strategy
+	 * @param rEndpoints The endpoints to distribute connections over
+	 */
+	public LoadBalancingEndpoint(
+		Strategy	   eStrategy,
+		List<Endpoint> rEndpoints)
+	{
+		if (rEndpoints.isEmpty())
+		{
+			throw new IllegalArgumentException("No endpoints to balance");
+		}
+
+		List<Target> aTargetList = new ArrayList<>(rEndpoints.size());
+		List<String> aAddresses  = new ArrayList<>(rEndpoints.size());
+
+		for (Endpoint rEndpoint : rEndpoints)
+		{
+			aTargetList.add(new Target(rEndpoint));
+			aAddresses.add(rEndpoint.get(ENDPOINT_ADDRESS));
+		}
+
+		this.eStrategy = eStrategy;
+		this.aTargets  = Collections.unmodifiableList(aTargetList);
+
+		set(ENDPOINT_SCHEME, rEndpoints.get(0).get(ENDPOINT_SCHEME));
+		set(ENDPOINT_ADDRESS, aAddresses.toString());
+	}
+
+	//~ Static methods ---------------------------------------------------------
+
+	/***************************************
+	 * Creates endpoint instances from a list of URIs.
+	 *
+	 * @param  rEndpointUris The endpoint URIs
+	 *
+	 * @return A list of the new endpoints
+	 */
+	private static List<Endpoint> createEndpoints(String[] rEndpointUris)
+	{
+		List<Endpoint> aEndpoints = new ArrayList<>(rEndpointUris.length);
+
+		for (String sUri : rEndpointUris)
+		{
+			aEndpoints.add(Endpoint.at(sUri));
+		}
+
+		return aEndpoints;
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Overridden to create the connection on one of the balanced endpoints.
+	 * The returned connection will therefore refer to that endpoint.
+	 *
+	 * @see Endpoint#connect(Relatable)
+	 */
+	@Override
+	public Connection connect(Relatable rParams)
+	{
+		Target rTarget = selectTarget();
+
+		rTarget.aOutstanding.incrementAndGet();
+
+		try
+		{
+			Connection aConnection = rTarget.rEndpoint.connect(rParams);
+			Lease	   aLease	   = new Lease(rTarget);
+
+			aConnection.set(BALANCING_LEASE, aLease);
+			aConnection.addCloseHandler(aLease::connectionClosed);
+
+			return aConnection;
+		}
+		catch (RuntimeException e)
+		{
+			rTarget.aOutstanding.decrementAndGet();
+			rTarget.aBreaker.recordFailure();
+
+			throw e;
+		}
+	}
+
+	/***************************************
+	 * Returns the endpoints that are balanced by this instance.
+	 *
+	 * @return The list of balanced endpoints
+	 */
+	public List<Endpoint> getEndpoints()
+	{
+		List<Endpoint> aEndpoints = new ArrayList<>(aTargets.size());
+
+		for (Target rTarget : aTargets)
+		{
+			aEndpoints.add(rTarget.rEndpoint);
+		}
+
+		return aEndpoints;
+	}
+
+	/***************************************
+	 * Returns the balancing strategy of this instance.
+	 *
+	 * @return The strategy
+	 */
+	public final Strategy getStrategy()
+	{
+		return eStrategy;
+	}
+
+	/***************************************
+	 * Checks whether a certain endpoint has currently been ejected from the
+	 * balancing because of repeated failures.
+	 *
+	 * @param  rEndpoint The endpoint to check
+	 *
+	 * @return TRUE if the endpoint is ejected
+	 */
+	public boolean isEjected(Endpoint rEndpoint)
+	{
+		for (Target rTarget : aTargets)
+		{
+			if (rTarget.rEndpoint == rEndpoint)
+			{
+				return rTarget.aBreaker != null &&
+					   rTarget.aBreaker.getState() ==
+					   CircuitBreaker.State.OPEN;
+			}
+		}
+
+		return false;
+	}
+
+	/***************************************
+	 * Overridden to update the statistics of the endpoint that has been used
+	 * for the call.
+	 *
+	 * @see Endpoint#callFinished(Connection, long, boolean)
+	 */
+	@Override
+	protected void callFinished(Connection rConnection,
+								long	   nDuration,
+								boolean    bSuccess)
+	{
+		Lease rLease = rConnection.get(BALANCING_LEASE);
+
+		if (rLease != null && rLease.release())
+		{
+			Target rTarget = rLease.rTarget;
+
+			if (bSuccess)
+			{
+				rTarget.updateLatency(nDuration);
+				rTarget.aBreaker.recordSuccess();
+			}
+			else
+			{
+				rTarget.aBreaker.recordFailure();
+			}
+
+			rTarget.rEndpoint.callFinished(rConnection, nDuration, bSuccess);
+		}
+	}
+
+	/***************************************
+	 * Does nothing because connections are created and closed by the balanced
+	 * endpoints.
+	 *
+	 * @see Endpoint#closeConnection(Connection)
+	 */
+	@Override
+	protected void closeConnection(Connection rConnection)
+	{
+		// connections refer to the balanced endpoint which closes them
+	}
+
+	/***************************************
+	 * Does nothing because connections are created and initialized by the
+	 * balanced endpoints.
+	 *
+	 * @see Endpoint#initConnection(Connection)
+	 */
+	@Override
+	protected void initConnection(Connection rConnection)
+	{
+		// connections are initialized by the balanced endpoint
+	}
+
+	/***************************************
+	 * Creates the circuit breakers that control the ejection of the balanced
+	 * endpoints from the configuration of this instance.
+	 */
+	@SuppressWarnings("boxing")
+	private synchronized void initTargets()
+	{
+		if (!bInitialized)
+		{
+			int nThreshold = get(EJECTION_THRESHOLD);
+			int nDuration  = get(EJECTION_DURATION);
+
+			for (Target rTarget : aTargets)
+			{
+				rTarget.aBreaker = new CircuitBreaker(nThreshold, nDuration);
+			}
+
+			bInitialized = true;
+		}
+	}
+
+	/***************************************
+	 * Returns the index of the next target candidate according to the
+	 * balancing strategy.
+	 *
+	 * @param  rExcluded Flags for the targets that have been excluded because
+	 *                   they have been ejected
+	 * @param  nStart    The round-robin start index for this selection
+	 *
+	 * @return The index of the candidate target or -1 if no candidate is
+	 *         available
+	 */
+	private int nextCandidate(boolean[] rExcluded, int nStart)
+	{
+		int nCount     = aTargets.size();
+		int nCandidate = -1;
+
+		switch (eStrategy)
+		{
+			case ROUND_ROBIN:
+				for (int i = 0; i < nCount && nCandidate < 0; i++)
+				{
+					int nIndex = (nStart + i) % nCount;
+
+					if (!rExcluded[nIndex])
+					{
+						nCandidate = nIndex;
+					}
+				}
+
+				break;
+
+			case LEAST_OUTSTANDING:
+				int nMinimum = Integer.MAX_VALUE;
+
+				for (int i = 0; i < nCount; i++)
+				{
+					// start at round-robin index to distribute equal loads
+					int nIndex		 = (nStart + i) % nCount;
+					int nOutstanding = aTargets.get(nIndex).aOutstanding.get();
+
+					if (!rExcluded[nIndex] && nOutstanding < nMinimum)
+					{
+						nCandidate = nIndex;
+						nMinimum   = nOutstanding;
+					}
+				}
+
+				break;
+
+			case POWER_OF_TWO_CHOICES:
+				nCandidate = selectOfTwo(rExcluded);
+				break;
+
+			default:
+				throw new AssertionError("Unsupported strategy: " + eStrategy);
+		}
+
+		return nCandidate;
+	}
+
+	/***************************************
+	 * Randomly chooses two of the available targets and returns the index of
+	 * the one with the lower load.
+	 *
+	 * @param  rExcluded Flags for the targets that have been excluded
+	 *
+	 * @return The target index or -1 if no candidate is available
+	 */
+	private int selectOfTwo(boolean[] rExcluded)
+	{
+		int[] aAvailable = new int[rExcluded.length];
+		int   nAvailable = 0;
+
+		for (int i = 0; i < rExcluded.length; i++)
+		{
+			if (!rExcluded[i])
+			{
+				aAvailable[nAvailable++] = i;
+			}
+		}
+
+		if (nAvailable < 2)
+		{
+			return nAvailable == 1 ? aAvailable[0] : -1;
+		}
+
+		ThreadLocalRandom rRandom = ThreadLocalRandom.current();
+
+		int nFirst  = rRandom.nextInt(nAvailable);
+		int nSecond = rRandom.nextInt(nAvailable - 1);
+
+		if (nSecond >= nFirst)
+		{
+			nSecond++;
+		}
+
+		nFirst  = aAvailable[nFirst];
+		nSecond = aAvailable[nSecond];
+
+		return aTargets.get(nFirst).getLoad() <=
+			   aTargets.get(nSecond).getLoad() ? nFirst : nSecond;
+	}
+
+	/***************************************
+	 * Selects the target for a new connection.
+	 *
+	 * @return The selected target
+	 */
+	private Target selectTarget()
+	{
+		if (!bInitialized)
+		{
+			initTargets();
+		}
+
+		int		  nCount    = aTargets.size();
+		int		  nNext     = aNextTarget.getAndIncrement() & Integer.MAX_VALUE;
+		int		  nStart    = nNext % nCount;
+		boolean[] aExcluded = new boolean[nCount];
+		int		  nIndex;
+
+		while ((nIndex = nextCandidate(aExcluded, nStart)) >= 0)
+		{
+			Target rTarget = aTargets.get(nIndex);
+
+			if (rTarget.aBreaker.allowCall())
+			{
+				return rTarget;
+			}
+
+			aExcluded[nIndex] = true;
+		}
+
+		// all targets ejected: distribute calls evenly instead of failing
+		return aTargets.get(nStart);
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * Tracks the use of a target by a single connection so that the target
+	 * statistics are only updated once, either when the call has finished or
+	 * when the connection is closed.
+	 *
+	 * @author eso
+	 */
+	private static class Lease
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private final Target		rTarget;
+		private final AtomicBoolean aReleased = new AtomicBoolean();
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param rTarget The leased target
+		 */
+		Lease(Target rTarget)
+		{
+			this.rTarget = rTarget;
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Releases this lease when the connection has been closed. If no call
+		 * result has been recorded before the connection counts as a success
+		 * of the target. This also ends a half-open probe that would otherwise
+		 * keep the target ejected.
+		 */
+		void connectionClosed()
+		{
+			if (release())
+			{
+				rTarget.aBreaker.recordSuccess();
+			}
+		}
+
+		/***************************************
+		 * Releases this lease by decrementing the outstanding requests of
+		 * the target if this hasn't been done before.
+		 *
+		 * @return TRUE if this lease has been released by this call, FALSE if
+		 *         it had already been released
+		 */
+		boolean release()
+		{
+			if (aReleased.compareAndSet(false, true))
+			{
+				rTarget.aOutstanding.decrementAndGet();
+
+				return true;
+			}
+
+			return false;
+		}
+	}
+
+	/********************************************************************
+	 * Holds an endpoint and it's balancing statistics.
+	 *
+	 * @author eso
+	 */
+	private static class Target
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private final Endpoint rEndpoint;
+
+		private final AtomicInteger aOutstanding = new AtomicInteger();
+
+		private volatile CircuitBreaker aBreaker;
+		private volatile double		    fAverageLatency = 0;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param rEndpoint The target endpoint
+		 */
+		Target(Endpoint rEndpoint)
+		{
+			this.rEndpoint = rEndpoint;
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Returns the current load of this target which is an estimation of
+		 * the time a new request will take, based on the average latency and
+		 * the number of outstanding requests.
+		 *
+		 * @return The current load
+		 */
+		double getLoad()
+		{
+			return (fAverageLatency + 1) * (aOutstanding.get() + 1);
+		}
+
+		/***************************************
+		 * Updates the exponentially weighted moving average of the latency.
+		 * Concurrent updates may override each other which is acceptable for
+		 * an estimation value.
+		 *
+		 * @param nDuration The duration of the last call in nanoseconds
+		 */
+		void updateLatency(long nDuration)
+		{
+			double fAverage = fAverageLatency;
+
+			fAverageLatency =
+				fAverage == 0
+				? nDuration
+				: fAverage + LATENCY_SAMPLE_WEIGHT * (nDuration - fAverage);
+		}
+	}
+}
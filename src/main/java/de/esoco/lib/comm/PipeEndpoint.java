@@ -16,25 +16,39 @@
 //++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 package de.esoco.lib.comm;
 
-import de.esoco.lib.collection.ByteArray;
 import de.esoco.lib.io.LimitedOutputStream;
 import de.esoco.lib.io.RandomAccessFileOutputStream;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
+import java.nio.ByteBuffer;
+
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import org.obrel.core.RelationType;
+import org.obrel.core.RelationTypes;
 
 import static de.esoco.lib.comm.CommunicationRelationTypes.BUFFER_SIZE;
 import static de.esoco.lib.comm.CommunicationRelationTypes.MAX_REQUEST_SIZE;
+import static de.esoco.lib.comm.CommunicationRelationTypes.MAX_RESPONSE_SIZE;
 
+import static org.obrel.core.RelationTypeModifier.PRIVATE;
+import static org.obrel.core.RelationTypes.newFlagType;
 import static org.obrel.core.RelationTypes.newType;
 
 
 /********************************************************************
- * An endpoint that uses a named pipe for communication.
+ * An endpoint that uses a named pipe for communication. Responses are read in
+ * blocks of the size defined by {@link CommunicationRelationTypes#BUFFER_SIZE}
+ * into a buffer that is reused for all requests on a connection. By default
+ * the end of a response is detected when no more data is available in the
+ * pipe. If the flag {@link #PIPE_LENGTH_PREFIX} is set on the endpoint or the
+ * connection requests and responses will instead be framed by a 4-byte length
+ * prefix (in network byte order) which allows to read responses that are not
+ * written by the pipe server in one piece.
  *
  * @author eso
  */
@@ -45,8 +59,46 @@ public class PipeEndpoint extends Endpoint
 	/** The random access file used by a pipe endpoint. */
 	public static final RelationType<RandomAccessFile> PIPE_FILE = newType();
 
+	/**
+	 * A flag that enables the framing of pipe requests and responses with a
+	 * length prefix.
+	 */
+	public static final RelationType<Boolean> PIPE_LENGTH_PREFIX =
+		newFlagType();
+
+	private static final RelationType<byte[]> PIPE_BUFFER = newType(PRIVATE);
+
+	static
+	{
+		RelationTypes.init(PipeEndpoint.class);
+	}
+
 	//~ Static methods ---------------------------------------------------------
 
+	/***************************************
+	 * Factory method that creates a new pipe request that hands the response
+	 * data to a consumer while it is read from the pipe instead of collecting
+	 * it into a byte array. The byte buffers handed to the consumer are only
+	 * valid during the consumer invocation. The result of the request is the
+	 * total number of response bytes.
+	 *
+	 * @param  rDefaultInput The default input value
+	 * @param  fConvertInput Converts input values into the request bytes
+	 * @param  fConsumer     The consumer of the response data
+	 *
+	 * @return The new request
+	 */
+	public static <I> PipeRequest<I, Long> streamingRequest(
+		I					 rDefaultInput,
+		Function<I, byte[]>  fConvertInput,
+		Consumer<ByteBuffer> fConsumer)
+	{
+		return new StreamingPipeRequest<>("StreamingPipeRequest(%s)",
+										  rDefaultInput,
+										  fConvertInput,
+										  fConsumer);
+	}
+
 	/***************************************
 	 * Factory method that creates a new pipe request for text data request.
 	 *
@@ -77,6 +129,7 @@ public class PipeEndpoint extends Endpoint
 		{
 			rPipeFile.close();
 			rConnection.set(PIPE_FILE, null);
+			rConnection.set(PIPE_BUFFER, null);
 		}
 	}
 
@@ -144,25 +197,23 @@ public class PipeEndpoint extends Endpoint
 		public O doOn(Connection rConnection, I rInput) throws IOException
 		{
 			RandomAccessFile rPipeFile = rConnection.get(PIPE_FILE);
+			byte[]			 rRequest  = convertInput(rInput);
 
 			try (LimitedOutputStream rOutput =
 				 new LimitedOutputStream(new RandomAccessFileOutputStream(rPipeFile),
 										 rConnection.get(MAX_REQUEST_SIZE)))
 			{
-				rOutput.write(convertInput(rInput));
+				if (rConnection.hasFlag(PIPE_LENGTH_PREFIX))
+				{
+					rOutput.write(ByteBuffer.allocate(4)
+								  .putInt(rRequest.length)
+								  .array());
+				}
+
+				rOutput.write(rRequest);
 			}
 
-			ByteArray aRawResponse =
-				new ByteArray(rConnection.get(BUFFER_SIZE));
-
-			int nByte;
-
-			while ((nByte = rPipeFile.read()) != -1 && rPipeFile.length() > 0)
-			{
-				aRawResponse.add((byte) nByte);
-			}
-
-			return processResponse(aRawResponse.toByteArray());
+			return receiveResponse(rConnection, rPipeFile);
 		}
 
 		/***************************************
@@ -190,5 +241,218 @@ public class PipeEndpoint extends Endpoint
 		{
 			return fProcessResponse.apply(rRawResponse);
 		}
+
+		/***************************************
+		 * Reads the response data from the pipe and hands it to a consumer in
+		 * blocks. The byte buffer handed to the consumer is a view of the
+		 * connection's read buffer and only valid during the invocation of the
+		 * consumer.
+		 *
+		 * @param  rConnection The connection to read the response from
+		 * @param  rPipeFile   The pipe file
+		 * @param  fConsumer   The consumer of the response data blocks
+		 *
+		 * @return The total number of bytes read
+		 *
+		 * @throws IOException If reading from the pipe fails
+		 */
+		@SuppressWarnings("boxing")
+		protected long readResponse(Connection			 rConnection,
+									RandomAccessFile	 rPipeFile,
+									Consumer<ByteBuffer> fConsumer)
+			throws IOException
+		{
+			byte[] rBuffer = getBuffer(rConnection);
+			long   nTotal  = 0;
+
+			if (rConnection.hasFlag(PIPE_LENGTH_PREFIX))
+			{
+				int nRemaining = readLength(rConnection, rPipeFile, rBuffer);
+
+				while (nRemaining > 0)
+				{
+					int nCount = Math.min(nRemaining, rBuffer.length);
+
+					rPipeFile.readFully(rBuffer, 0, nCount);
+					fConsumer.accept(ByteBuffer.wrap(rBuffer, 0, nCount));
+					nRemaining -= nCount;
+					nTotal     += nCount;
+				}
+			}
+			else
+			{
+				int nMax = rConnection.get(MAX_RESPONSE_SIZE);
+				int nCount;
+
+				while ((nCount = rPipeFile.read(rBuffer)) != -1)
+				{
+					nTotal += nCount;
+
+					if (nTotal > nMax)
+					{
+						throw new CommunicationException("Response exceeds " +
+														 "maximum size of %d",
+														 nMax);
+					}
+
+					fConsumer.accept(ByteBuffer.wrap(rBuffer, 0, nCount));
+
+					// for pipes the file length is the available data
+					if (rPipeFile.length() == 0)
+					{
+						break;
+					}
+				}
+			}
+
+			return nTotal;
+		}
+
+		/***************************************
+		 * Receives the response to a request. The default implementation
+		 * collects the response data and invokes {@link
+		 * #processResponse(byte[])}. Length-prefixed responses will be read
+		 * directly into an array of the exact size.
+		 *
+		 * @param  rConnection The connection to read the response from
+		 * @param  rPipeFile   The pipe file
+		 *
+		 * @return The processed response
+		 *
+		 * @throws IOException If reading from the pipe fails
+		 */
+		protected O receiveResponse(
+			Connection		 rConnection,
+			RandomAccessFile rPipeFile) throws IOException
+		{
+			byte[] aRawResponse;
+
+			if (rConnection.hasFlag(PIPE_LENGTH_PREFIX))
+			{
+				aRawResponse =
+					new byte[readLength(rConnection,
+										rPipeFile,
+										getBuffer(rConnection))];
+
+				rPipeFile.readFully(aRawResponse);
+			}
+			else
+			{
+				ByteArrayOutputStream aResponse = new ByteArrayOutputStream();
+
+				readResponse(rConnection,
+							 rPipeFile,
+							 b ->
+							 aResponse.write(b.array(),
+											 b.arrayOffset() + b.position(),
+											 b.remaining()));
+
+				aRawResponse = aResponse.toByteArray();
+			}
+
+			return processResponse(aRawResponse);
+		}
+
+		/***************************************
+		 * Returns the read buffer of a connection and creates it on the first
+		 * access.
+		 *
+		 * @param  rConnection The connection
+		 *
+		 * @return The read buffer
+		 */
+		@SuppressWarnings("boxing")
+		private byte[] getBuffer(Connection rConnection)
+		{
+			byte[] rBuffer = rConnection.get(PIPE_BUFFER);
+
+			if (rBuffer == null)
+			{
+				rBuffer = new byte[rConnection.get(BUFFER_SIZE)];
+				rConnection.set(PIPE_BUFFER, rBuffer);
+			}
+
+			return rBuffer;
+		}
+
+		/***************************************
+		 * Reads the length prefix of a response.
+		 *
+		 * @param  rConnection The connection to read the response from
+		 * @param  rPipeFile   The pipe file
+		 * @param  rBuffer     The read buffer
+		 *
+		 * @return The response length
+		 *
+		 * @throws IOException If reading the length fails or if it is invalid
+		 */
+		@SuppressWarnings("boxing")
+		private int readLength(Connection		rConnection,
+							   RandomAccessFile rPipeFile,
+							   byte[]			rBuffer) throws IOException
+		{
+			rPipeFile.readFully(rBuffer, 0, 4);
+
+			int nLength = ByteBuffer.wrap(rBuffer, 0, 4).getInt();
+
+			if (nLength < 0 || nLength > rConnection.get(MAX_RESPONSE_SIZE))
+			{
+				throw new CommunicationException("Invalid response size: %d",
+												 nLength);
+			}
+
+			return nLength;
+		}
+	}
+
+	/********************************************************************
+	 * A pipe request that hands the response data to a consumer while it is
+	 * read from the pipe. The result of the request is the number of response
+	 * bytes.
+	 *
+	 * @author eso
+	 */
+	public static class StreamingPipeRequest<I> extends PipeRequest<I, Long>
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private Consumer<ByteBuffer> fConsumer;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param sRequestName  The request name
+		 * @param rDefaultInput The default input value
+		 * @param fConvertInput Will be invoked to convert input values to a
+		 *                      byte arrays that will be written to the pipe
+		 * @param fConsumer     The consumer of the response data
+		 */
+		public StreamingPipeRequest(String				 sRequestName,
+									I					 rDefaultInput,
+									Function<I, byte[]>  fConvertInput,
+									Consumer<ByteBuffer> fConsumer)
+		{
+			super(sRequestName, rDefaultInput, fConvertInput, null);
+
+			this.fConsumer = fConsumer;
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Overridden to stream the response to the consumer.
+		 *
+		 * @see PipeRequest#receiveResponse(Connection, RandomAccessFile)
+		 */
+		@Override
+		@SuppressWarnings("boxing")
+		protected Long receiveResponse(
+			Connection		 rConnection,
+			RandomAccessFile rPipeFile) throws IOException
+		{
+			return readResponse(rConnection, rPipeFile, fConsumer);
+		}
 	}
 }
@@ -26,6 +26,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 
 import java.net.Socket;
+import java.net.URI;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -83,6 +84,76 @@ public class SmtpEndpoint extends SocketEndpoint
 
 	//~ Static methods ---------------------------------------------------------
 
+	/***************************************
+	 * Sets missing sender or recipient addresses of an email from the query
+	 * parameters "from" and "to" of a connection's URI.
+	 *
+	 * @param  rConnection The SMTP connection
+	 * @param  rEmail      The email to initialize
+	 *
+	 * @throws NullPointerException If the sender or recipient address is
+	 *                              missing
+	 */
+	public static void initAddresses(Connection rConnection, Email rEmail)
+	{
+		if (!initAddresses(rConnection.getUri(), rEmail))
+		{
+			Objects.requireNonNull(rEmail.get(Email.SENDER_ADDRESS),
+								   "Missing sender address");
+			Objects.requireNonNull(rEmail.get(Email.RECIPIENT_ADDRESS),
+								   "Missing recipient address");
+		}
+	}
+
+	/***************************************
+	 * Sets missing sender or recipient addresses of an email from the query
+	 * parameters "from" and "to" of an SMTP endpoint URI.
+	 *
+	 * @param  rEndpointUri The URI of the SMTP endpoint
+	 * @param  rEmail       The email to initialize
+	 *
+	 * @return TRUE if the email has both a sender and a recipient address,
+	 *         FALSE if at least one of them is missing
+	 */
+	public static boolean initAddresses(URI rEndpointUri, Email rEmail)
+	{
+		String sFrom = rEmail.get(Email.SENDER_ADDRESS);
+		String sTo   = rEmail.get(Email.RECIPIENT_ADDRESS);
+
+		if (sFrom == null || sTo == null)
+		{
+			String			    sQuery		   = rEndpointUri.getQuery();
+			String[]		    aQueryElements =
+				sQuery != null ? sQuery.split("&") : new String[0];
+			Map<String, String> aParams		   = new HashMap<>();
+
+			for (String sElement : aQueryElements)
+			{
+				String[] aParam = sElement.split("=");
+
+				if (aParam.length == 2)
+				{
+					aParams.put(aParam[0].toLowerCase(), aParam[1]);
+				}
+			}
+
+			sFrom = sFrom == null ? aParams.get("from") : sFrom;
+			sTo   = sTo == null ? aParams.get("to") : sTo;
+
+			if (sFrom != null)
+			{
+				rEmail.set(Email.SENDER_ADDRESS, sFrom);
+			}
+
+			if (sTo != null)
+			{
+				rEmail.set(Email.RECIPIENT_ADDRESS, sTo);
+			}
+		}
+
+		return sFrom != null && sTo != null;
+	}
+
 	/***************************************
 	 * Factory method to create an instance of {@link SmtpRequest} without a
 	 * default email message.
@@ -162,35 +233,7 @@ public class SmtpEndpoint extends SocketEndpoint
 			SmtpProtocolHandler aSmtpHandler =
 				new SmtpProtocolHandler("localhost", rOutput, rInput);
 
-			String sFrom = rEmail.get(Email.SENDER_ADDRESS);
-			String sTo   = rEmail.get(Email.RECIPIENT_ADDRESS);
-
-			if (sFrom == null || sTo == null)
-			{
-				String			    sQuery		   =
-					rConnection.getUri().getQuery();
-				String[]		    aQueryElements = sQuery.split("&");
-				Map<String, String> aParams		   = new HashMap<>();
-
-				for (String sElement : aQueryElements)
-				{
-					String[] aParam = sElement.split("=");
-
-					if (aParam.length == 2)
-					{
-						aParams.put(aParam[0].toLowerCase(), aParam[1]);
-					}
-				}
-
-				sFrom = sFrom == null ? aParams.get("from") : sFrom;
-				sTo   = sTo == null ? aParams.get("to") : sTo;
-
-				Objects.requireNonNull(sFrom, "Missing sender address");
-				Objects.requireNonNull(sTo, "Missing recipient address");
-
-				rEmail.set(Email.SENDER_ADDRESS, sFrom);
-				rEmail.set(Email.RECIPIENT_ADDRESS, sTo);
-			}
+			initAddresses(rConnection, rEmail);
 
 			aSmtpHandler.connect(rConnection.get(USER_NAME),
 								 rConnection.get(PASSWORD));
@@ -18,13 +18,19 @@ package de.esoco.lib.comm;
 
 import de.esoco.lib.expression.Function;
 import de.esoco.lib.io.StreamUtil;
+import de.esoco.lib.logging.Log;
 import de.esoco.lib.net.NetUtil;
 import de.esoco.lib.net.NetUtil.SocketType;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
@@ -32,9 +38,24 @@ import java.io.Writer;
 import java.net.Socket;
 import java.net.URI;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.esoco.lib.comm.CommunicationRelationTypes.BUFFER_SIZE;
 import static de.esoco.lib.comm.CommunicationRelationTypes.CONNECTION_TIMEOUT;
 import static de.esoco.lib.comm.CommunicationRelationTypes.ENCRYPTION;
 import static de.esoco.lib.comm.CommunicationRelationTypes.ENDPOINT_SOCKET;
+import static de.esoco.lib.comm.CommunicationRelationTypes.MAX_RESPONSE_SIZE;
+import static de.esoco.lib.comm.CommunicationRelationTypes.REQUEST_ENCODING;
+import static de.esoco.lib.comm.CommunicationRelationTypes.RESPONSE_ENCODING;
+import static de.esoco.lib.comm.CommunicationRelationTypes.SOCKET_MULTIPLEXING;
 import static de.esoco.lib.comm.CommunicationRelationTypes.SOCKET_INPUT_STREAM;
 import static de.esoco.lib.comm.CommunicationRelationTypes.SOCKET_OUTPUT_STREAM;
 import static de.esoco.lib.comm.CommunicationRelationTypes.SOCKET_READER;
@@ -45,6 +66,14 @@ import static de.esoco.lib.comm.CommunicationRelationTypes.TRUST_SELF_SIGNED_CER
 /********************************************************************
  * An endpoint to an HTTP address.
  *
+ * <p>If the flag {@link CommunicationRelationTypes#SOCKET_MULTIPLEXING} is set
+ * on the endpoint connections will not open a socket for each connection.
+ * Instead all requests of type {@link MultiplexedRequest} will be sent over a
+ * single socket that is shared by all connections to the endpoint. Such
+ * requests are framed with a correlation ID that allows concurrent callers to
+ * pipeline their requests and the endpoint to send responses in any order.
+ * The shared socket can be closed with {@link #closeMultiplexer()}.</p>
+ *
  * @author eso
  */
 public class SocketEndpoint extends Endpoint
@@ -57,6 +86,10 @@ public class SocketEndpoint extends Endpoint
 	/** The URL scheme name for (SSL) encrypted socket connections. */
 	public static final String ENCRYPTED_SOCKET_URL_SCHEME = "sockets";
 
+	//~ Instance fields --------------------------------------------------------
+
+	private Multiplexer aMultiplexer = null;
+
 	//~ Static methods ---------------------------------------------------------
 
 	/***************************************
@@ -81,6 +114,21 @@ public class SocketEndpoint extends Endpoint
 								 fGetResponseSize);
 	}
 
+	/***************************************
+	 * Factory method that creates a new request that will be multiplexed over
+	 * the shared socket of an endpoint. The endpoint must have the flag {@link
+	 * CommunicationRelationTypes#SOCKET_MULTIPLEXING} set.
+	 *
+	 * @param  rDefaultRequest The default request data to send to the endpoint
+	 *
+	 * @return The request method
+	 */
+	public static MultiplexedRequest multiplexedRequest(byte[] rDefaultRequest)
+	{
+		return new MultiplexedRequest("MultiplexedRequest(%s)",
+									  rDefaultRequest);
+	}
+
 	/***************************************
 	 * Factory method that creates a new socket request for text-based
 	 * communication.
@@ -132,8 +180,100 @@ public class SocketEndpoint extends Endpoint
 		return sUrl;
 	}
 
+	/***************************************
+	 * Returns the buffered input stream of a connection's socket and creates
+	 * it on the first access. The buffer size is defined by the relation
+	 * {@link CommunicationRelationTypes#BUFFER_SIZE} of the connection.
+	 *
+	 * @param  rConnection The connection
+	 *
+	 * @return The buffered socket input stream
+	 *
+	 * @throws IOException If accessing the socket fails
+	 */
+	@SuppressWarnings("boxing")
+	private static InputStream getInputStream(Connection rConnection)
+		throws IOException
+	{
+		InputStream rInput = rConnection.get(SOCKET_INPUT_STREAM);
+
+		if (rInput == null)
+		{
+			Socket rSocket = rConnection.get(ENDPOINT_SOCKET);
+
+			rInput =
+				new BufferedInputStream(rSocket.getInputStream(),
+										rConnection.get(BUFFER_SIZE));
+			rConnection.set(SOCKET_INPUT_STREAM, rInput);
+		}
+
+		return rInput;
+	}
+
+	/***************************************
+	 * Returns the buffered output stream of a connection's socket and creates
+	 * it on the first access. The buffer size is defined by the relation
+	 * {@link CommunicationRelationTypes#BUFFER_SIZE} of the connection.
+	 *
+	 * @param  rConnection The connection
+	 *
+	 * @return The buffered socket output stream
+	 *
+	 * @throws IOException If accessing the socket fails
+	 */
+	@SuppressWarnings("boxing")
+	private static OutputStream getOutputStream(Connection rConnection)
+		throws IOException
+	{
+		OutputStream rOutput = rConnection.get(SOCKET_OUTPUT_STREAM);
+
+		if (rOutput == null)
+		{
+			Socket rSocket = rConnection.get(ENDPOINT_SOCKET);
+
+			rOutput =
+				new BufferedOutputStream(rSocket.getOutputStream(),
+										 rConnection.get(BUFFER_SIZE));
+			rConnection.set(SOCKET_OUTPUT_STREAM, rOutput);
+		}
+
+		return rOutput;
+	}
+
+	/***************************************
+	 * Returns the initial size of the buffer for reading a response.
+	 *
+	 * @param  rConnection   The connection to read the response from
+	 * @param  nResponseSize The (maximum) size of the response
+	 *
+	 * @return The read buffer size
+	 */
+	@SuppressWarnings("boxing")
+	private static int getReadBufferSize(
+		Connection rConnection,
+		int		   nResponseSize)
+	{
+		return Math.max(1,
+						Math.min(nResponseSize, rConnection.get(BUFFER_SIZE)));
+	}
+
 	//~ Methods ----------------------------------------------------------------
 
+	/***************************************
+	 * Closes the shared socket of this endpoint if it has been opened for
+	 * multiplexed requests. All pending requests will fail with a {@link
+	 * CommunicationException}. The next multiplexed request will open a new
+	 * socket.
+	 */
+	public synchronized void closeMultiplexer()
+	{
+		if (aMultiplexer != null)
+		{
+			aMultiplexer.close();
+			aMultiplexer = null;
+		}
+	}
+
 	/***************************************
 	 * {@inheritDoc}
 	 */
@@ -169,8 +309,25 @@ public class SocketEndpoint extends Endpoint
 	 * {@inheritDoc}
 	 */
 	@Override
-	@SuppressWarnings("boxing")
 	protected void initConnection(Connection rConnection) throws IOException
+	{
+		if (!rConnection.hasFlag(SOCKET_MULTIPLEXING))
+		{
+			rConnection.set(ENDPOINT_SOCKET, createSocket(rConnection));
+		}
+	}
+
+	/***************************************
+	 * Creates a new socket for a connection to this endpoint.
+	 *
+	 * @param  rConnection The connection to create the socket for
+	 *
+	 * @return The new socket
+	 *
+	 * @throws IOException If creating the socket fails
+	 */
+	@SuppressWarnings("boxing")
+	private Socket createSocket(Connection rConnection) throws IOException
 	{
 		URI		   rUri		   = rConnection.getUri();
 		SocketType eSocketType =
@@ -186,12 +343,38 @@ public class SocketEndpoint extends Endpoint
 			NetUtil.createSocket(rUri.getHost(), rUri.getPort(), eSocketType);
 
 		aSocket.setSoTimeout(rConnection.get(CONNECTION_TIMEOUT));
-		rConnection.set(ENDPOINT_SOCKET, aSocket);
 
 		if (eSocketType != SocketType.PLAIN && !hasRelation(ENCRYPTION))
 		{
 			rConnection.set(ENCRYPTION);
 		}
+
+		return aSocket;
+	}
+
+	/***************************************
+	 * Returns the multiplexer for the shared socket of this endpoint and
+	 * creates it if necessary.
+	 *
+	 * @param  rConnection The connection to create the socket from
+	 *
+	 * @return The multiplexer
+	 *
+	 * @throws IOException If creating the socket fails
+	 */
+	@SuppressWarnings("boxing")
+	private synchronized Multiplexer getMultiplexer(Connection rConnection)
+		throws IOException
+	{
+		if (aMultiplexer == null || aMultiplexer.isClosed())
+		{
+			aMultiplexer =
+				new Multiplexer(createSocket(rConnection),
+								rConnection.get(BUFFER_SIZE),
+								rConnection.get(MAX_RESPONSE_SIZE));
+		}
+
+		return aMultiplexer;
 	}
 
 	//~ Inner Classes ----------------------------------------------------------
@@ -205,6 +388,13 @@ public class SocketEndpoint extends Endpoint
 	 * handling in {@link #sendRequest(Connection, OutputStream, InputStream,
 	 * Object)}.
 	 *
+	 * <p>The socket streams are buffered and will be reused for all requests on
+	 * the same connection. Several requests can be sent with {@link
+	 * #sendBatch(Connection, List)} which flushes the output only once after
+	 * all requests have been written and then reads the responses in the order
+	 * of the requests. This requires an implementation of the write and read
+	 * methods.</p>
+	 *
 	 * @author eso
 	 */
 	public static abstract class SocketRequest<I, O>
@@ -234,14 +424,78 @@ public class SocketEndpoint extends Endpoint
 		@Override
 		public O doOn(Connection rConnection, I rRequest) throws Exception
 		{
-			Socket		 aSocket = rConnection.get(ENDPOINT_SOCKET);
-			OutputStream rOutput = aSocket.getOutputStream();
-			InputStream  rInput  = aSocket.getInputStream();
+			return sendRequest(rConnection,
+							   getOutputStream(rConnection),
+							   getInputStream(rConnection),
+							   rRequest);
+		}
 
-			rConnection.set(SOCKET_OUTPUT_STREAM, rOutput);
-			rConnection.set(SOCKET_INPUT_STREAM, rInput);
+		/***************************************
+		 * Sends multiple requests over a connection with a single flush of
+		 * the socket output and then reads the responses in the order of the
+		 * requests. The requests will be written with {@link
+		 * #writeRequest(Connection, OutputStream, Object)} and the responses
+		 * read with {@link #readResponse(Connection, InputStream)}. Therefore
+		 * the endpoint must support the pipelining of requests.
+		 *
+		 * @param  rConnection The connection to send the requests over
+		 * @param  rRequests   The requests to send
+		 *
+		 * @return A list containing the responses in the order of the requests
+		 *
+		 * @throws CommunicationException If sending the requests or reading
+		 *                                the responses fails
+		 */
+		public List<O> sendBatch(Connection rConnection, List<I> rRequests)
+		{
+			List<O> aResponses = new ArrayList<>(rRequests.size());
+
+			try
+			{
+				OutputStream rOutput = getOutputStream(rConnection);
+				InputStream  rInput  = getInputStream(rConnection);
+
+				for (I rRequest : rRequests)
+				{
+					writeRequest(rConnection, rOutput, rRequest);
+				}
+
+				flushRequest(rConnection, rOutput);
+
+				for (int i = rRequests.size(); i > 0; i--)
+				{
+					aResponses.add(readResponse(rConnection, rInput));
+				}
+			}
+			catch (CommunicationException e)
+			{
+				throw e;
+			}
+			catch (Exception e)
+			{
+				throw new CommunicationException(e);
+			}
 
-			return sendRequest(rConnection, rOutput, rInput, rRequest);
+			return aResponses;
+		}
+
+		/***************************************
+		 * Flushes the output of the requests that have been written with
+		 * {@link #writeRequest(Connection, OutputStream, Object)} to the
+		 * socket. The default implementation flushes the given output stream.
+		 * Subclasses that write through stream wrappers like a {@link Writer}
+		 * must override this method to flush the wrapper.
+		 *
+		 * @param  rConnection   The connection to flush the requests of
+		 * @param  rOutputStream The socket output stream
+		 *
+		 * @throws Exception Any exception may be thrown to indicate errors
+		 */
+		protected void flushRequest(
+			Connection   rConnection,
+			OutputStream rOutputStream) throws Exception
+		{
+			rOutputStream.flush();
 		}
 
 		/***************************************
@@ -287,7 +541,7 @@ public class SocketEndpoint extends Endpoint
 								I			 rData) throws Exception
 		{
 			writeRequest(rConnection, rOutput, rData);
-			rOutput.flush();
+			flushRequest(rConnection, rOutput);
 
 			return readResponse(rConnection, rInput);
 		}
@@ -296,9 +550,10 @@ public class SocketEndpoint extends Endpoint
 		 * Must be implemented by subclasses to write a request to the given
 		 * output stream of the current socket if not overriding {@link
 		 * #sendRequest(Connection, OutputStream, InputStream, Object)}. The
-		 * implementation doesn't need to flush the output stream, this will be
-		 * handled by the base implementation. But it may be necessary to flush
-		 * stream wrappers like instances of {@link Writer}.
+		 * implementation must not flush the output stream, this will be
+		 * handled by {@link #flushRequest(Connection, OutputStream)} which
+		 * must be overridden if stream wrappers like instances of {@link
+		 * Writer} are used.
 		 *
 		 * <p>The default implementation does nothing.</p>
 		 *
@@ -365,7 +620,11 @@ public class SocketEndpoint extends Endpoint
 				@SuppressWarnings("boxing")
 				int nResponseSize = fGetResponseSize.evaluate(rInputStream);
 
-				rResult = StreamUtil.readAll(rInputStream, 1024, nResponseSize);
+				rResult =
+					StreamUtil.readAll(rInputStream,
+									   getReadBufferSize(rConnection,
+														 nResponseSize),
+									   nResponseSize);
 			}
 
 			return rResult;
@@ -383,6 +642,93 @@ public class SocketEndpoint extends Endpoint
 		}
 	}
 
+	/********************************************************************
+	 * A socket communication method that sends binary requests over the shared
+	 * socket of an endpoint that has the flag {@link
+	 * CommunicationRelationTypes#SOCKET_MULTIPLEXING} set. Any number of
+	 * threads can execute requests concurrently. Each request and response is
+	 * transferred in a frame that consists of a 4-byte correlation ID, a
+	 * 4-byte data length, and the data bytes (integers in network byte order).
+	 * The endpoint must reply to each request with a response frame containing
+	 * the correlation ID of the request but may send the responses in any
+	 * order.
+	 *
+	 * @author eso
+	 */
+	public static class MultiplexedRequest
+		extends CommunicationMethod<byte[], byte[]>
+	{
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param sMethodName     The name of this method
+		 * @param rDefaultRequest The default request bytes to send
+		 */
+		protected MultiplexedRequest(
+			String sMethodName,
+			byte[] rDefaultRequest)
+		{
+			super(sMethodName, rDefaultRequest);
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Sends the request and waits for the response until the connection
+		 * timeout is reached.
+		 *
+		 * @see CommunicationMethod#doOn(Connection, Object)
+		 */
+		@Override
+		@SuppressWarnings("boxing")
+		public byte[] doOn(Connection rConnection, byte[] rRequest)
+			throws Exception
+		{
+			CompletableFuture<byte[]> aResponse =
+				sendAsync(rConnection, rRequest);
+
+			try
+			{
+				return aResponse.get(rConnection.get(CONNECTION_TIMEOUT),
+									 TimeUnit.MILLISECONDS);
+			}
+			catch (TimeoutException e)
+			{
+				aResponse.cancel(false);
+				throw new CommunicationException("Response timeout", e);
+			}
+			catch (ExecutionException e)
+			{
+				Throwable eCause = e.getCause();
+
+				throw eCause instanceof Exception ? (Exception) eCause : e;
+			}
+		}
+
+		/***************************************
+		 * Sends a request over the shared socket of the connection's endpoint
+		 * without waiting for the response.
+		 *
+		 * @param  rConnection The connection to send the request over
+		 * @param  rRequest    The request data
+		 *
+		 * @return A future that will be completed with the response data
+		 *
+		 * @throws IOException If opening the shared socket fails
+		 */
+		public CompletableFuture<byte[]> sendAsync(
+			Connection rConnection,
+			byte[]	   rRequest) throws IOException
+		{
+			SocketEndpoint rEndpoint =
+				(SocketEndpoint) rConnection.getEndpoint();
+
+			return rEndpoint.getMultiplexer(rConnection).send(rRequest);
+		}
+	}
+
 	/********************************************************************
 	 * A socket communication method implementation that sends text data to an
 	 * endpoint socket and optionally receives a response.
@@ -418,6 +764,28 @@ public class SocketEndpoint extends Endpoint
 
 		//~ Methods ------------------------------------------------------------
 
+		/***************************************
+		 * Overridden to flush the writer of the connection.
+		 *
+		 * @see SocketRequest#flushRequest(Connection, OutputStream)
+		 */
+		@Override
+		protected void flushRequest(
+			Connection   rConnection,
+			OutputStream rOutputStream) throws Exception
+		{
+			PrintWriter rWriter = rConnection.get(SOCKET_WRITER);
+
+			if (rWriter != null)
+			{
+				rWriter.flush();
+			}
+			else
+			{
+				rOutputStream.flush();
+			}
+		}
+
 		/***************************************
 		 * {@inheritDoc}
 		 */
@@ -435,13 +803,19 @@ public class SocketEndpoint extends Endpoint
 
 				if (aReader == null)
 				{
-					aReader = new InputStreamReader(rInputStream);
+					aReader =
+						new InputStreamReader(rInputStream,
+											  rConnection.get(RESPONSE_ENCODING));
 					rConnection.set(SOCKET_READER, aReader);
 				}
 
 				int nResponseSize = fGetResponseSize.evaluate(aReader);
 
-				sResult = StreamUtil.readAll(aReader, 1024, nResponseSize);
+				sResult =
+					StreamUtil.readAll(aReader,
+									   getReadBufferSize(rConnection,
+														 nResponseSize),
+									   nResponseSize);
 			}
 
 			return sResult;
@@ -459,12 +833,238 @@ public class SocketEndpoint extends Endpoint
 
 			if (aWriter == null)
 			{
-				aWriter = new PrintWriter(rOutputStream);
+				aWriter =
+					new PrintWriter(new OutputStreamWriter(rOutputStream,
+														   rConnection.get(REQUEST_ENCODING)));
 				rConnection.set(SOCKET_WRITER, aWriter);
 			}
 
 			aWriter.println(sRequest);
-			aWriter.flush();
+		}
+	}
+
+	/********************************************************************
+	 * Manages the shared socket of an endpoint for multiplexed requests. A
+	 * daemon thread reads the response frames and dispatches them to the
+	 * futures of the pending requests. Request frames are written under a
+	 * lock and the buffered output is only flushed if no other writer is
+	 * waiting so that concurrent requests are coalesced into fewer network
+	 * packets.
+	 *
+	 * @author eso
+	 */
+	private static class Multiplexer implements Runnable
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private final Socket		   rSocket;
+		private final DataInputStream  aInput;
+		private final DataOutputStream aOutput;
+		private final int			   nMaxResponseSize;
+
+		private final AtomicInteger aNextId		    = new AtomicInteger();
+		private final AtomicInteger aWaitingWriters = new AtomicInteger();
+
+		private final Map<Integer, CompletableFuture<byte[]>> aPendingResponses =
+			new ConcurrentHashMap<>();
+
+		private volatile boolean bClosed = false;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance and starts the response reader thread.
+		 *
+		 * @param  rSocket          The socket to multiplex
+		 * @param  nBufferSize      The size of the socket stream buffers
+		 * @param  nMaxResponseSize The maximum size of a response frame
+		 *
+		 * @throws IOException If accessing the socket fails
+		 */
+		Multiplexer(Socket rSocket, int nBufferSize, int nMaxResponseSize)
+			throws IOException
+		{
+			this.rSocket		  = rSocket;
+			this.nMaxResponseSize = nMaxResponseSize;
+
+			aInput  =
+				new DataInputStream(new BufferedInputStream(rSocket
+															.getInputStream(),
+															nBufferSize));
+			aOutput =
+				new DataOutputStream(new BufferedOutputStream(rSocket
+															  .getOutputStream(),
+															  nBufferSize));
+
+			// the reader waits indefinitely, timeouts are handled per request
+			rSocket.setSoTimeout(0);
+
+			Thread aReader =
+				new Thread(this, "SocketMultiplexer-" + rSocket.getInetAddress());
+
+			aReader.setDaemon(true);
+			aReader.start();
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Reads the response frames and completes the corresponding futures.
+		 */
+		@Override
+		@SuppressWarnings("boxing")
+		public void run()
+		{
+			try
+			{
+				while (!bClosed)
+				{
+					int nId     = aInput.readInt();
+					int nLength = aInput.readInt();
+
+					if (nLength < 0 || nLength > nMaxResponseSize)
+					{
+						throw new IOException("Invalid response size: " +
+											  nLength);
+					}
+
+					byte[] aData = new byte[nLength];
+
+					aInput.readFully(aData);
+
+					CompletableFuture<byte[]> rResponse =
+						aPendingResponses.remove(nId);
+
+					if (rResponse != null)
+					{
+						rResponse.complete(aData);
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				if (!bClosed)
+				{
+					Log.warn("Multiplexed socket failed", e);
+					close(new CommunicationException(e));
+				}
+			}
+		}
+
+		/***************************************
+		 * Closes the socket and lets all pending requests fail.
+		 */
+		void close()
+		{
+			close(new CommunicationException("Multiplexed socket closed"));
+		}
+
+		/***************************************
+		 * Checks whether this multiplexer has been closed.
+		 *
+		 * @return TRUE if closed
+		 */
+		boolean isClosed()
+		{
+			return bClosed;
+		}
+
+		/***************************************
+		 * Sends a request frame.
+		 *
+		 * @param  rRequest The request data
+		 *
+		 * @return A future that will be completed with the response data
+		 *
+		 * @throws CommunicationException If writing the request fails
+		 */
+		@SuppressWarnings("boxing")
+		CompletableFuture<byte[]> send(byte[] rRequest)
+		{
+			checkOpen();
+
+			int						  nId	    = aNextId.incrementAndGet();
+			CompletableFuture<byte[]> aResponse = new CompletableFuture<>();
+
+			aPendingResponses.put(nId, aResponse);
+
+			// remove cancelled or failed requests from the pending map
+			aResponse.whenComplete((r, e) -> aPendingResponses.remove(nId));
+
+			if (bClosed)
+			{
+				// close() may have failed the pending requests before the
+				// insertion above so the entry must be removed explicitly
+				aPendingResponses.remove(nId);
+				checkOpen();
+			}
+
+			aWaitingWriters.incrementAndGet();
+
+			try
+			{
+				synchronized (aOutput)
+				{
+					aWaitingWriters.decrementAndGet();
+
+					aOutput.writeInt(nId);
+					aOutput.writeInt(rRequest.length);
+					aOutput.write(rRequest);
+
+					if (aWaitingWriters.get() == 0)
+					{
+						aOutput.flush();
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				CommunicationException eError = new CommunicationException(e);
+
+				close(eError);
+				throw eError;
+			}
+
+			return aResponse;
+		}
+
+		/***************************************
+		 * Checks that this multiplexer has not been closed.
+		 *
+		 * @throws CommunicationException If this multiplexer is closed
+		 */
+		private void checkOpen()
+		{
+			if (bClosed)
+			{
+				throw new CommunicationException("Multiplexed socket closed");
+			}
+		}
+
+		/***************************************
+		 * Closes the socket and lets all pending requests fail with a certain
+		 * exception.
+		 *
+		 * @param eError The exception to complete pending requests with
+		 */
+		private void close(CommunicationException eError)
+		{
+			bClosed = true;
+
+			try
+			{
+				rSocket.close();
+			}
+			catch (IOException e)
+			{
+				Log.warn("Closing multiplexed socket failed", e);
+			}
+
+			for (CompletableFuture<byte[]> rResponse :
+				 aPendingResponses.values())
+			{
+				rResponse.completeExceptionally(eError);
+			}
 		}
 	}
 }
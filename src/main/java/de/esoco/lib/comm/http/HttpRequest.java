@@ -36,6 +36,7 @@ import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.obrel.core.RelatedObject;
 import org.obrel.core.RelationType;
@@ -180,7 +181,8 @@ public class HttpRequest extends RelatedObject
 	}
 
 	/***************************************
-	 * Returns the value of a header field in this request.
+	 * Returns the value of a header field in this request. As defined by the
+	 * HTTP specification the field name is matched case-insensitively.
 	 *
 	 * @param  sName The name of the header field
 	 *
@@ -188,7 +190,23 @@ public class HttpRequest extends RelatedObject
 	 */
 	public final List<String> getHeaderField(String sName)
 	{
-		return aRequestHeaders.get(sName);
+		List<String> rValues = aRequestHeaders.get(sName);
+
+		if (rValues == null)
+		{
+			for (Entry<String, List<String>> rHeader :
+				 aRequestHeaders.entrySet())
+			{
+				if (sName.equalsIgnoreCase(rHeader.getKey()))
+				{
+					rValues = rHeader.getValue();
+
+					break;
+				}
+			}
+		}
+
+		return rValues;
 	}
 
 	/***************************************
@@ -24,6 +24,7 @@ import de.esoco.lib.comm.http.HttpStatusException.EmptyRequestException;
 import de.esoco.lib.datatype.Pair;
 import de.esoco.lib.io.EchoInputStream;
 import de.esoco.lib.logging.Log;
+import de.esoco.lib.logging.LogContext;
 import de.esoco.lib.security.AuthenticationService;
 
 import java.io.ByteArrayOutputStream;
@@ -32,6 +33,8 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 
+import java.net.InetAddress;
+
 import java.nio.charset.StandardCharsets;
 
 import java.util.Base64;
@@ -158,6 +161,11 @@ public class HttpRequestHandler extends RelatedObject implements RequestHandler
 	{
 		ByteArrayOutputStream aRequestCopy = new ByteArrayOutputStream(2048);
 		String				  sRequest     = null;
+		InetAddress			  rClient	   = get(IP_ADDRESS);
+
+		LogContext.Scope aLogScope =
+			LogContext.with(LogContext.CLIENT_IP,
+							rClient != null ? rClient.getHostAddress() : null);
 
 		try
 		{
@@ -165,7 +173,14 @@ public class HttpRequestHandler extends RelatedObject implements RequestHandler
 
 			HttpRequest rRequest = readRequest(rRequestStream);
 
-			rRequest.set(IP_ADDRESS, get(IP_ADDRESS));
+			List<String> rRequestId = rRequest.getHeaderField("X-Request-ID");
+
+			if (rRequestId != null && !rRequestId.isEmpty())
+			{
+				LogContext.put(LogContext.REQUEST_ID, rRequestId.get(0));
+			}
+
+			rRequest.set(IP_ADDRESS, rClient);
 			aThreadLocalRequest.set(rRequest);
 
 			checkAuthentication(rRequest);
@@ -231,6 +246,7 @@ public class HttpRequestHandler extends RelatedObject implements RequestHandler
 		finally
 		{
 			sRequest = aRequestCopy.toString(StandardCharsets.UTF_8.name());
+			aLogScope.close();
 		}
 
 		rResponseStream.flush();
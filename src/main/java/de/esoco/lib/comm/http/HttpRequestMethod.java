@@ -76,4 +76,16 @@ public enum HttpRequestMethod
 	{
 		return bDoesOutput;
 	}
+
+	/***************************************
+	 * Checks whether this request method is idempotent according to the HTTP
+	 * specification, i.e. whether the repeated execution of a request has the
+	 * same effect as a single execution.
+	 *
+	 * @return TRUE if this method is idempotent
+	 */
+	public boolean isIdempotent()
+	{
+		return this != POST && this != CONNECT;
+	}
 }
@@ -0,0 +1,557 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm.http;
+
+import de.esoco.lib.comm.http.HttpHeaderTypes.HttpHeaderField;
+import de.esoco.lib.comm.http.HttpRequestHandler.HttpRequestMethodHandler;
+import de.esoco.lib.json.Json;
+import de.esoco.lib.json.JsonObject;
+import de.esoco.lib.logging.Log;
+
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+
+/********************************************************************
+ * A HTTP request method handler that implements the server side of JSON RPC
+ * 2.0. It is the counterpart of {@link de.esoco.lib.comm.JsonRpcEndpoint} and
+ * can be used as the method handler of a {@link HttpRequestHandler} in a
+ * {@link de.esoco.lib.comm.Server}. RPC methods must be registered with one of
+ * the register methods. Upon registration an invoker is created for each method
+ * that performs the parameter parsing for the method's parameter datatype so
+ * that no lookup or reflection is needed when handling requests.
+ *
+ * <p>Only POST requests are supported. The elements of batch requests will be
+ * executed concurrently on the executor that has been set in the constructor.
+ * The responses to a batch are collected in the order of the batch requests
+ * into a single response body because {@link HttpResponse} needs the content
+ * length in advance. Notifications (i.e. requests without an ID) will be
+ * executed but don't create a response.</p>
+ *
+ * <p>Requests are parsed only to the first level so that the parameters are
+ * kept as raw JSON and parsed only once by the invoker into the parameter
+ * datatype of the method. For the same reason the elements of a batch are
+ * handed to the execution as raw JSON strings.</p>
+ *
+ * @author eso
+ */
+public class JsonRpcHttpMethodHandler implements HttpRequestMethodHandler
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	/** The supported JSON RPC version. */
+	public static final String JSON_RPC_VERSION = "2.0";
+
+	/** The JSON RPC error code for unparseable requests. */
+	public static final int PARSE_ERROR = -32700;
+
+	/** The JSON RPC error code for invalid request objects. */
+	public static final int INVALID_REQUEST = -32600;
+
+	/** The JSON RPC error code for unknown methods. */
+	public static final int METHOD_NOT_FOUND = -32601;
+
+	/** The JSON RPC error code for invalid method parameters. */
+	public static final int INVALID_PARAMS = -32602;
+
+	/** The JSON RPC error code for errors during method execution. */
+	public static final int INTERNAL_ERROR = -32603;
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final Executor rExecutor;
+
+	private final Map<String, MethodInvoker<?>> aMethods =
+		new ConcurrentHashMap<>();
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance that executes batch requests on the common
+	 * fork-join pool.
+	 */
+	public JsonRpcHttpMethodHandler()
+	{
+		this(ForkJoinPool.commonPool());
+	}
+
+	/***************************************
+	 * Creates a new instance that executes batch requests with a certain
+	 * executor.
+	 *
+	 * @param rExecutor The executor to run the elements of batch requests on
+	 */
+	public JsonRpcHttpMethodHandler(Executor rExecutor)
+	{
+		this.rExecutor = rExecutor;
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Always throws a {@link HttpStatusException} because JSON RPC requests
+	 * must be sent with the POST method.
+	 *
+	 * @see HttpRequestMethodHandler#doGet(HttpRequest)
+	 */
+	@Override
+	public HttpResponse doGet(HttpRequest rRequest) throws HttpStatusException
+	{
+		throw new HttpStatusException(HttpStatusCode.METHOD_NOT_ALLOWED,
+									  "JSON RPC requires POST");
+	}
+
+	/***************************************
+	 * Executes a single JSON RPC request or a batch of requests.
+	 *
+	 * @see HttpRequestMethodHandler#doPost(HttpRequest)
+	 */
+	@Override
+	public HttpResponse doPost(HttpRequest rRequest) throws HttpStatusException
+	{
+		String sBody;
+
+		try
+		{
+			sBody = rRequest.getBody().trim();
+		}
+		catch (IOException e)
+		{
+			throw new HttpStatusException(HttpStatusCode.BAD_REQUEST,
+										  "Could not access request data: " +
+										  e.getMessage());
+		}
+
+		String sResponse;
+
+		if (sBody.startsWith("["))
+		{
+			sResponse = executeBatch(sBody);
+		}
+		else
+		{
+			sResponse = execute(sBody);
+		}
+
+		HttpResponse aResponse =
+			new HttpResponse(sResponse != null ? sResponse : "");
+
+		aResponse.setHeader(HttpHeaderField.CONTENT_TYPE, "application/json");
+
+		return aResponse;
+	}
+
+	/***************************************
+	 * Returns the names of all registered methods.
+	 *
+	 * @return A collection of the method names
+	 */
+	public Set<String> getMethodNames()
+	{
+		return aMethods.keySet();
+	}
+
+	/***************************************
+	 * Registers a method that receives the generically parsed JSON value of
+	 * the request parameters (as returned by {@link Json#parse(String)}).
+	 *
+	 * @param  sMethod The name of the RPC method
+	 * @param  fMethod The function that implements the method
+	 *
+	 * @return This instance for concatenation
+	 */
+	public JsonRpcHttpMethodHandler register(
+		String				sMethod,
+		Function<Object, ?> fMethod)
+	{
+		aMethods.put(sMethod,
+					 new MethodInvoker<>(sParams -> Json.parse(sParams),
+										 fMethod));
+
+		return this;
+	}
+
+	/***************************************
+	 * Registers a method that receives the request parameters parsed into a
+	 * certain datatype.
+	 *
+	 * @param  sMethod     The name of the RPC method
+	 * @param  rParamsType The datatype to parse the request parameters into
+	 * @param  fMethod     The function that implements the method
+	 *
+	 * @return This instance for concatenation
+	 */
+	public <P> JsonRpcHttpMethodHandler register(
+		String				   sMethod,
+		Class<P>			   rParamsType,
+		Function<? super P, ?> fMethod)
+	{
+		aMethods.put(sMethod,
+					 new MethodInvoker<P>(sParams ->
+											  Json.parse(sParams, rParamsType),
+										  fMethod));
+
+		return this;
+	}
+
+	/***************************************
+	 * Removes a registered method.
+	 *
+	 * @param sMethod The name of the method to remove
+	 */
+	public void unregister(String sMethod)
+	{
+		aMethods.remove(sMethod);
+	}
+
+	/***************************************
+	 * Creates the JSON string of an error response.
+	 *
+	 * @param  rId      The request ID or NULL for none
+	 * @param  nCode    The error code
+	 * @param  sMessage The error message
+	 *
+	 * @return The error response
+	 */
+	protected String createErrorResponse(Object rId, int nCode, String sMessage)
+	{
+		StringBuilder aResponse = startResponse(rId);
+
+		aResponse.append(",\"error\":{\"code\":").append(nCode);
+		aResponse.append(",\"message\":");
+		aResponse.append(Json.toCompactJson(sMessage != null ? sMessage : ""));
+		aResponse.append("}}");
+
+		return aResponse.toString();
+	}
+
+	/***************************************
+	 * Executes a single JSON RPC request and returns the response.
+	 *
+	 * @param  sRequest The raw JSON request
+	 *
+	 * @return The JSON response or NULL if the request is a notification
+	 */
+	protected String execute(String sRequest)
+	{
+		return execute(sRequest, PARSE_ERROR);
+	}
+
+	/***************************************
+	 * Executes a batch of JSON RPC requests concurrently and returns the
+	 * combined response.
+	 *
+	 * @param  sBatch The raw JSON batch request
+	 *
+	 * @return The JSON response or NULL if the batch only contains
+	 *         notifications
+	 */
+	protected String executeBatch(String sBatch)
+	{
+		List<?> rRequests;
+
+		try
+		{
+			rRequests = Json.parseArray(sBatch, 1);
+		}
+		catch (RuntimeException e)
+		{
+			return createErrorResponse(null, PARSE_ERROR, e.getMessage());
+		}
+
+		int nCount = rRequests.size();
+
+		if (nCount == 0)
+		{
+			return createErrorResponse(null, INVALID_REQUEST, "Empty batch");
+		}
+
+		List<CompletableFuture<String>> aResponses = new ArrayList<>(nCount);
+
+		for (int i = 1; i < nCount; i++)
+		{
+			Object rRequest = rRequests.get(i);
+
+			aResponses.add(CompletableFuture.supplyAsync(() ->
+														 executeBatchElement(rRequest),
+														 rExecutor));
+		}
+
+		// execute the first request in the current thread
+		String		  sFirst    = executeBatchElement(rRequests.get(0));
+		StringBuilder aResponse = new StringBuilder(nCount * 64);
+
+		aResponse.append('[');
+		appendBatchResponse(aResponse, sFirst);
+
+		for (CompletableFuture<String> rResponse : aResponses)
+		{
+			appendBatchResponse(aResponse, rResponse.join());
+		}
+
+		if (aResponse.length() == 1)
+		{
+			// only notifications
+			return null;
+		}
+
+		return aResponse.append(']').toString();
+	}
+
+	/***************************************
+	 * Appends a single response to a batch response.
+	 *
+	 * @param aBatchResponse The batch response
+	 * @param sResponse      The response to append (NULL for notifications)
+	 */
+	private void appendBatchResponse(
+		StringBuilder aBatchResponse,
+		String		  sResponse)
+	{
+		if (sResponse != null)
+		{
+			if (aBatchResponse.length() > 1)
+			{
+				aBatchResponse.append(',');
+			}
+
+			aBatchResponse.append(sResponse);
+		}
+	}
+
+	/***************************************
+	 * Executes a single element of a batch request. Because the batch has
+	 * been parsed successfully elements that are NULL or cannot be parsed as
+	 * request objects are invalid requests instead of parse errors.
+	 *
+	 * @param  rRequest The batch element
+	 *
+	 * @return The JSON response or NULL if the request is a notification
+	 */
+	private String executeBatchElement(Object rRequest)
+	{
+		if (rRequest == null)
+		{
+			return createErrorResponse(null,
+									   INVALID_REQUEST,
+									   "Invalid request: null");
+		}
+
+		return execute(rRequest.toString(), INVALID_REQUEST);
+	}
+
+	/***************************************
+	 * Executes a single JSON RPC request and returns the response.
+	 *
+	 * @param  sRequest    The raw JSON request
+	 * @param  nParseError The error code to return if the request cannot be
+	 *                     parsed into a JSON object
+	 *
+	 * @return The JSON response or NULL if the request is a notification
+	 */
+	private String execute(String sRequest, int nParseError)
+	{
+		JsonObject aRequest;
+
+		try
+		{
+			aRequest = Json.parseObject(sRequest, 1);
+		}
+		catch (RuntimeException e)
+		{
+			return createErrorResponse(null, nParseError, e.getMessage());
+		}
+
+		Object rId	    = aRequest.get("id");
+		Object rVersion = aRequest.get("jsonrpc");
+		Object rMethod  = aRequest.get("method");
+
+		if (!JSON_RPC_VERSION.equals(rVersion))
+		{
+			return createErrorResponse(rId,
+									   INVALID_REQUEST,
+									   "Unsupported JSON RPC version: " +
+									   rVersion);
+		}
+
+		if (rMethod == null)
+		{
+			return createErrorResponse(rId,
+									   INVALID_REQUEST,
+									   "Missing method");
+		}
+
+		MethodInvoker<?> rInvoker = aMethods.get(rMethod.toString());
+
+		if (rInvoker == null)
+		{
+			return rId != null
+				   ? createErrorResponse(rId,
+										 METHOD_NOT_FOUND,
+										 "Unknown method: " + rMethod) : null;
+		}
+
+		Object rParams = aRequest.get("params");
+		String sResult;
+
+		try
+		{
+			sResult =
+				rInvoker.invoke(rParams != null ? rParams.toString() : null);
+		}
+		catch (InvalidParamsException e)
+		{
+			return rId != null
+				   ? createErrorResponse(rId, INVALID_PARAMS, e.getMessage())
+				   : null;
+		}
+		catch (Exception e)
+		{
+			Log.errorf(e, "JSON RPC method %s failed", rMethod);
+
+			return rId != null
+				   ? createErrorResponse(rId, INTERNAL_ERROR, e.getMessage())
+				   : null;
+		}
+
+		if (rId == null)
+		{
+			return null;
+		}
+
+		StringBuilder aResponse = startResponse(rId);
+
+		aResponse.append(",\"result\":").append(sResult).append('}');
+
+		return aResponse.toString();
+	}
+
+	/***************************************
+	 * Creates a string builder that contains the common start of a response
+	 * object.
+	 *
+	 * @param  rId The request ID
+	 *
+	 * @return The new string builder
+	 */
+	private StringBuilder startResponse(Object rId)
+	{
+		StringBuilder aResponse = new StringBuilder(64);
+
+		aResponse.append("{\"jsonrpc\":\"")
+				 .append(JSON_RPC_VERSION)
+				 .append("\",\"id\":");
+		aResponse.append(rId != null ? Json.toCompactJson(rId) : "null");
+
+		return aResponse;
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * An exception that signals invalid method parameters.
+	 *
+	 * @author eso
+	 */
+	static class InvalidParamsException extends Exception
+	{
+		//~ Static fields/initializers -----------------------------------------
+
+		private static final long serialVersionUID = 1L;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param eCause The causing exception
+		 */
+		InvalidParamsException(Exception eCause)
+		{
+			super("Invalid params: " + eCause.getMessage(), eCause);
+		}
+	}
+
+	/********************************************************************
+	 * Invokes a registered method with precomputed parameter parsing.
+	 *
+	 * @author eso
+	 */
+	static class MethodInvoker<P>
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private final Function<String, P>    fParseParams;
+		private final Function<? super P, ?> fMethod;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param fParseParams The function to parse the raw request parameters
+		 * @param fMethod      The method function
+		 */
+		MethodInvoker(
+			Function<String, P>	   fParseParams,
+			Function<? super P, ?> fMethod)
+		{
+			this.fParseParams = fParseParams;
+			this.fMethod	  = fMethod;
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Parses the raw parameters, invokes the method, and returns the
+		 * result as a compact JSON string.
+		 *
+		 * @param  sRawParams The raw JSON parameters or NULL for none
+		 *
+		 * @return The JSON result
+		 *
+		 * @throws InvalidParamsException If parsing the parameters fails
+		 */
+		String invoke(String sRawParams) throws InvalidParamsException
+		{
+			P rParams;
+
+			try
+			{
+				rParams =
+					sRawParams != null ? fParseParams.apply(sRawParams) : null;
+			}
+			catch (RuntimeException e)
+			{
+				throw new InvalidParamsException(e);
+			}
+
+			Object rResult = fMethod.apply(rParams);
+
+			return rResult != null ? Json.toCompactJson(rResult) : "null";
+		}
+	}
+}
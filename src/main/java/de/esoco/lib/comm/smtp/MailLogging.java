@@ -17,7 +17,6 @@
 package de.esoco.lib.comm.smtp;
 
 import de.esoco.lib.comm.Endpoint;
-import de.esoco.lib.comm.EndpointFunction;
 import de.esoco.lib.comm.SmtpEndpoint;
 import de.esoco.lib.logging.LogAspect;
 import de.esoco.lib.logging.LogLevel;
@@ -41,14 +40,19 @@ import static de.esoco.lib.comm.smtp.Email.email;
  * handled with caution because depending on the log volume that could put the
  * target mail server under heavy load.
  *
+ * <p>The emails are sent asynchronously through a {@link SmtpDeliveryQueue}
+ * so that bursts of log messages are delivered over a single SMTP session
+ * without blocking the logging.</p>
+ *
  * @author eso
  */
 public class MailLogging extends LogAspect<Email>
 {
 	//~ Instance fields --------------------------------------------------------
 
-	private Endpoint aMailServer;
-	private Email    aEmailTemplate = email();
+	private Endpoint		  aMailServer;
+	private SmtpDeliveryQueue aDeliveryQueue;
+	private Email			  aEmailTemplate = email();
 
 	//~ Constructors -----------------------------------------------------------
 
@@ -155,18 +159,42 @@ public class MailLogging extends LogAspect<Email>
 	}
 
 	/***************************************
-	 * {@inheritDoc}
+	 * Creates the delivery queue for the log emails. Failed deliveries are
+	 * reported to the error handling of this aspect instead of being logged
+	 * which would cause them to be sent again.
+	 *
+	 * @see LogAspect#init()
+	 */
+	@Override
+	protected void init()
+	{
+		aDeliveryQueue = new SmtpDeliveryQueue(aMailServer);
+		aDeliveryQueue.setFailureHandler((rEmail, e) -> handleLoggingError(e));
+	}
+
+	/***************************************
+	 * Queues the log emails for asynchronous delivery.
+	 *
+	 * @see LogAspect#processLogObjects(Collection)
 	 */
 	@Override
 	protected void processLogObjects(Collection<Email> rLogEmails)
 		throws Exception
 	{
-		EndpointFunction<Email, Void> fSendMail =
-			SmtpEndpoint.sendMail().on(aMailServer);
-
 		for (Email rEmail : rLogEmails)
 		{
-			fSendMail.send(rEmail);
+			aDeliveryQueue.deliver(rEmail);
 		}
 	}
+
+	/***************************************
+	 * Shuts down the delivery queue after the remaining emails have been sent.
+	 *
+	 * @see LogAspect#shutdown()
+	 */
+	@Override
+	protected void shutdown()
+	{
+		aDeliveryQueue.shutdown();
+	}
 }
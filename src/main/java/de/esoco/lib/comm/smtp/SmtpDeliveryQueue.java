@@ -0,0 +1,562 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm.smtp;
+
+import de.esoco.lib.comm.CommunicationException;
+import de.esoco.lib.comm.Connection;
+import de.esoco.lib.comm.Endpoint;
+import de.esoco.lib.comm.SmtpEndpoint;
+import de.esoco.lib.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+
+import java.net.Socket;
+import java.net.URI;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import static de.esoco.lib.comm.CommunicationRelationTypes.BUFFER_SIZE;
+import static de.esoco.lib.comm.CommunicationRelationTypes.ENDPOINT_ADDRESS;
+import static de.esoco.lib.comm.CommunicationRelationTypes.ENDPOINT_SOCKET;
+import static de.esoco.lib.comm.CommunicationRelationTypes.MAX_RETRIES;
+import static de.esoco.lib.comm.CommunicationRelationTypes.MAX_RETRY_DELAY;
+import static de.esoco.lib.comm.CommunicationRelationTypes.PASSWORD;
+import static de.esoco.lib.comm.CommunicationRelationTypes.RETRY_DELAY;
+import static de.esoco.lib.comm.CommunicationRelationTypes.USER_NAME;
+
+
+/********************************************************************
+ * A queue for the asynchronous delivery of emails to an SMTP server. Emails
+ * are sent by a background thread which keeps an authenticated SMTP session
+ * open while emails are available and sends all queued emails over that
+ * session, separated by the SMTP command RSET. If the server supports the
+ * PIPELINING extension it will be used to reduce the number of round trips.
+ * The session will be closed after it has been idle for a certain time or if
+ * the maximum number of emails per session has been reached.
+ *
+ * <p>If sending an email fails the session will be discarded and the email
+ * will be retried on a new session after an exponentially increasing delay.
+ * The retry parameters are taken from the relations {@link
+ * de.esoco.lib.comm.CommunicationRelationTypes#MAX_RETRIES}, {@link
+ * de.esoco.lib.comm.CommunicationRelationTypes#RETRY_DELAY}, and {@link
+ * de.esoco.lib.comm.CommunicationRelationTypes#MAX_RETRY_DELAY} of the SMTP
+ * endpoint. If no retry count is set on the endpoint a default of {@link
+ * #DEFAULT_MAX_RETRIES} will be used. Retries are scheduled so that other
+ * queued emails will be delivered while waiting for the retry delay.</p>
+ *
+ * <p>Deliveries that fail finally are counted (see {@link #getFailedCount()})
+ * and reported to the failure handler if one has been set with {@link
+ * #setFailureHandler(BiConsumer)}. Otherwise they will be logged as errors.
+ * Components that send log messages through this queue must set a failure
+ * handler to prevent logging loops.</p>
+ *
+ * @author eso
+ */
+public class SmtpDeliveryQueue
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	/** The default number of delivery retries. */
+	public static final int DEFAULT_MAX_RETRIES = 3;
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final Endpoint rEndpoint;
+	private final int	   nMaxSessionMails;
+	private final long     nIdleTimeout;
+
+	private final BlockingQueue<Delivery> aQueue = new LinkedBlockingQueue<>();
+
+	private final LongAdder aFailedCount = new LongAdder();
+
+	private volatile BiConsumer<Email, Exception> fFailureHandler = null;
+
+	private Thread		    aDeliveryThread = null;
+	private volatile boolean bShutdown	    = false;
+
+	private Connection		    aConnection = null;
+	private SmtpProtocolHandler aSession    = null;
+	private int				    nSessionMails;
+	private long			    nLastSendTime;
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance that sends up to 100 emails per SMTP session and
+	 * closes idle sessions after 10 seconds.
+	 *
+	 * @param rSmtpEndpoint The SMTP endpoint to send the emails to
+	 */
+	public SmtpDeliveryQueue(Endpoint rSmtpEndpoint)
+	{
+		this(rSmtpEndpoint, 100, 10 * 1000);
+	}
+
+	/***************************************
+	 * Creates a new instance.
+	 *
+	 * @param rSmtpEndpoint    The SMTP endpoint to send the emails to
+	 * @param nMaxSessionMails The maximum number of emails to send in a single
+	 *                         SMTP session
+	 * @param nIdleTimeout     The time in milliseconds after which an idle
+	 *                         SMTP session will be closed
+	 */
+	public SmtpDeliveryQueue(Endpoint rSmtpEndpoint,
+							 int	  nMaxSessionMails,
+							 long	  nIdleTimeout)
+	{
+		this.rEndpoint		  = rSmtpEndpoint;
+		this.nMaxSessionMails = nMaxSessionMails;
+		this.nIdleTimeout     = nIdleTimeout;
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Queues an email for delivery. The delivery thread will be started on the
+	 * first invocation.
+	 *
+	 * @param  rEmail The email to deliver
+	 *
+	 * @return A future that will be completed when the email has been
+	 *         delivered or if the delivery failed finally
+	 *
+	 * @throws IllegalStateException If this queue has been shut down
+	 */
+	public CompletableFuture<Void> deliver(Email rEmail)
+	{
+		if (bShutdown)
+		{
+			throw new IllegalStateException("Delivery queue has been shut down");
+		}
+
+		Delivery aDelivery = new Delivery(rEmail);
+
+		aQueue.add(aDelivery);
+		startDeliveryThread();
+
+		return aDelivery.aResult;
+	}
+
+	/***************************************
+	 * Returns the number of emails for which the delivery failed finally.
+	 *
+	 * @return The number of failed deliveries
+	 */
+	public long getFailedCount()
+	{
+		return aFailedCount.sum();
+	}
+
+	/***************************************
+	 * Returns the number of emails that are waiting for delivery.
+	 *
+	 * @return The number of queued emails
+	 */
+	public int getQueueSize()
+	{
+		return aQueue.size();
+	}
+
+	/***************************************
+	 * Sets a handler that will be notified of emails for which the delivery
+	 * failed finally. If set, failures will not be logged by this queue.
+	 *
+	 * @param fHandler The failure handler or NULL to log failures
+	 */
+	public void setFailureHandler(BiConsumer<Email, Exception> fHandler)
+	{
+		fFailureHandler = fHandler;
+	}
+
+	/***************************************
+	 * Shuts down this queue. Emails that are already queued will still be
+	 * delivered, after that the SMTP session will be closed and the delivery
+	 * thread terminates.
+	 */
+	public void shutdown()
+	{
+		bShutdown = true;
+
+		synchronized (this)
+		{
+			if (aDeliveryThread != null)
+			{
+				aDeliveryThread.interrupt();
+			}
+		}
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format("%s(%s)",
+							 getClass().getSimpleName(),
+							 rEndpoint.get(ENDPOINT_ADDRESS));
+	}
+
+	/***************************************
+	 * Closes the current SMTP session if one is open.
+	 *
+	 * @param bQuit TRUE to end the session with a QUIT command, FALSE to only
+	 *              close the connection after an error
+	 */
+	private void closeSession(boolean bQuit)
+	{
+		try
+		{
+			if (aSession != null && bQuit)
+			{
+				aSession.disconnect();
+			}
+		}
+		catch (Exception e)
+		{
+			Log.warn("SMTP disconnect failed", e);
+		}
+
+		try
+		{
+			if (aConnection != null)
+			{
+				aConnection.close();
+			}
+		}
+		catch (Exception e)
+		{
+			Log.warn("Closing SMTP connection failed", e);
+		}
+
+		aConnection = null;
+		aSession    = null;
+	}
+
+	/***************************************
+	 * Performs the delivery of queued emails until this queue is shut down.
+	 * Unexpected errors will fail the current delivery but will not terminate
+	 * the delivery thread. If the thread terminates nevertheless the scheduled
+	 * retries will be queued again for the next delivery thread which will be
+	 * started by {@link #deliver(Email)}.
+	 */
+	private void deliverQueuedMails()
+	{
+		PriorityQueue<Delivery> aRetries =
+			new PriorityQueue<>(Comparator.comparingLong(d -> d.nRetryTime));
+
+		try
+		{
+			while (!bShutdown || !aQueue.isEmpty() || !aRetries.isEmpty())
+			{
+				Delivery rDelivery = null;
+
+				try
+				{
+					rDelivery = nextDelivery(aRetries);
+
+					if (rDelivery != null)
+					{
+						send(rDelivery, aRetries);
+					}
+					else if (bShutdown ||
+							 System.currentTimeMillis() - nLastSendTime >=
+							 nIdleTimeout)
+					{
+						closeSession(true);
+					}
+				}
+				catch (RuntimeException e)
+				{
+					closeSession(false);
+
+					if (rDelivery != null && !rDelivery.aResult.isDone())
+					{
+						rDelivery.aResult.completeExceptionally(e);
+					}
+				}
+			}
+
+			closeSession(true);
+		}
+		finally
+		{
+			aQueue.addAll(aRetries);
+		}
+	}
+
+	/***************************************
+	 * Completes a delivery that failed finally and reports the failure. An
+	 * exception thrown by the failure handler will be added as a suppressed
+	 * exception to the delivery error.
+	 *
+	 * @param rDelivery The failed delivery
+	 * @param eError    The error that occurred
+	 */
+	private void fail(Delivery rDelivery, Exception eError)
+	{
+		BiConsumer<Email, Exception> fHandler = fFailureHandler;
+
+		aFailedCount.increment();
+
+		try
+		{
+			if (fHandler != null)
+			{
+				fHandler.accept(rDelivery.rEmail, eError);
+			}
+			else
+			{
+				Log.errorf(eError, "Email delivery to %s failed", rEndpoint);
+			}
+		}
+		catch (RuntimeException e)
+		{
+			eError.addSuppressed(e);
+		}
+		finally
+		{
+			rDelivery.aResult.completeExceptionally(eError);
+		}
+	}
+
+	/***************************************
+	 * Returns the maximum number of retries for a failed delivery.
+	 *
+	 * @return The maximum retry count
+	 */
+	@SuppressWarnings("boxing")
+	private int getMaxRetries()
+	{
+		return rEndpoint.hasRelation(MAX_RETRIES) ? rEndpoint.get(MAX_RETRIES)
+												  : DEFAULT_MAX_RETRIES;
+	}
+
+	/***************************************
+	 * Returns the next delivery to send. Retries that are due will be returned
+	 * first, otherwise the next delivery from the queue. If the queue is empty
+	 * this method waits until the idle timeout has elapsed or the next retry
+	 * is due. On shutdown all retries are due immediately.
+	 *
+	 * @param  rRetries The scheduled retries
+	 *
+	 * @return The next delivery or NULL if none is available
+	 */
+	private Delivery nextDelivery(PriorityQueue<Delivery> rRetries)
+	{
+		Delivery rRetry = rRetries.peek();
+		long     nWait  = nIdleTimeout;
+
+		if (rRetry != null)
+		{
+			nWait =
+				bShutdown ? 0 : rRetry.nRetryTime - System.currentTimeMillis();
+
+			if (nWait <= 0)
+			{
+				return rRetries.poll();
+			}
+		}
+
+		Delivery rDelivery = aQueue.poll();
+
+		if (rDelivery == null && !bShutdown)
+		{
+			try
+			{
+				rDelivery =
+					aQueue.poll(Math.min(nWait, nIdleTimeout),
+								TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				// interrupted by shutdown, continue with remaining mails
+			}
+		}
+
+		return rDelivery;
+	}
+
+	/***************************************
+	 * Opens a new SMTP session.
+	 *
+	 * @throws IOException If accessing the socket fails
+	 */
+	@SuppressWarnings("boxing")
+	private void openSession() throws IOException
+	{
+		aConnection = rEndpoint.connect();
+
+		Socket rSocket	   = aConnection.get(ENDPOINT_SOCKET);
+		int    nBufferSize = aConnection.get(BUFFER_SIZE);
+
+		aSession =
+			new SmtpProtocolHandler("localhost",
+									new BufferedOutputStream(rSocket
+															 .getOutputStream(),
+															 nBufferSize),
+									new BufferedInputStream(rSocket
+															.getInputStream(),
+															nBufferSize));
+
+		aSession.connect(aConnection.get(USER_NAME),
+						 aConnection.get(PASSWORD));
+		nSessionMails = 0;
+	}
+
+	/***************************************
+	 * Schedules the retry of a failed delivery after a backoff delay. The
+	 * delay doubles with each attempt and contains a random jitter.
+	 *
+	 * @param rDelivery The delivery to retry
+	 * @param rRetries  The scheduled retries to add the delivery to
+	 */
+	@SuppressWarnings("boxing")
+	private void scheduleRetry(
+		Delivery				rDelivery,
+		PriorityQueue<Delivery> rRetries)
+	{
+		long nDelay =
+			Math.min((long) rEndpoint.get(RETRY_DELAY) <<
+					 Math.min(rDelivery.nAttempt - 1, 20),
+					 rEndpoint.get(MAX_RETRY_DELAY));
+
+		nDelay -= ThreadLocalRandom.current().nextLong(nDelay / 2 + 1);
+
+		rDelivery.nRetryTime = System.currentTimeMillis() + nDelay;
+		rRetries.add(rDelivery);
+	}
+
+	/***************************************
+	 * Sends the email of a delivery over the current session which will be
+	 * opened if necessary. If sending fails the session will be closed and
+	 * the delivery will either be scheduled for a retry or fail finally if the
+	 * maximum number of retries has been reached. Emails without sender or
+	 * recipient address fail immediately without accessing the session.
+	 *
+	 * @param rDelivery The delivery to send
+	 * @param rRetries  The scheduled retries
+	 */
+	private void send(Delivery rDelivery, PriorityQueue<Delivery> rRetries)
+	{
+		URI rEndpointUri = URI.create(rEndpoint.get(ENDPOINT_ADDRESS));
+
+		if (!SmtpEndpoint.initAddresses(rEndpointUri, rDelivery.rEmail))
+		{
+			// retrying is useless
+			fail(rDelivery,
+				 new CommunicationException("Missing sender or recipient " +
+											"address"));
+
+			return;
+		}
+
+		try
+		{
+			if (aSession == null)
+			{
+				openSession();
+			}
+			else
+			{
+				aSession.reset();
+			}
+
+			aSession.send(rDelivery.rEmail);
+			rDelivery.aResult.complete(null);
+			nLastSendTime = System.currentTimeMillis();
+
+			if (++nSessionMails >= nMaxSessionMails)
+			{
+				closeSession(true);
+			}
+		}
+		catch (Exception e)
+		{
+			closeSession(false);
+
+			if (rDelivery.nAttempt++ < getMaxRetries())
+			{
+				scheduleRetry(rDelivery, rRetries);
+			}
+			else
+			{
+				fail(rDelivery,
+					 e instanceof CommunicationException
+					 ? e : new CommunicationException(e));
+			}
+		}
+	}
+
+	/***************************************
+	 * Starts the delivery thread if it is not running. This also restarts the
+	 * thread if it has terminated because of an error.
+	 */
+	private synchronized void startDeliveryThread()
+	{
+		if (aDeliveryThread == null || !aDeliveryThread.isAlive())
+		{
+			aDeliveryThread =
+				new Thread(this::deliverQueuedMails, "SmtpDeliveryQueue");
+
+			aDeliveryThread.setDaemon(true);
+			aDeliveryThread.start();
+		}
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * Holds an email to deliver and the delivery state.
+	 *
+	 * @author eso
+	 */
+	private static class Delivery
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private final Email					  rEmail;
+		private final CompletableFuture<Void> aResult =
+			new CompletableFuture<>();
+
+		private int  nAttempt   = 0;
+		private long nRetryTime = 0;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param rEmail The email to deliver
+		 */
+		Delivery(Email rEmail)
+		{
+			this.rEmail = rEmail;
+		}
+	}
+}
@@ -30,6 +30,8 @@ import java.time.format.DateTimeFormatter;
 
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
 
 import static de.esoco.lib.comm.smtp.Email.MESSAGE;
 import static de.esoco.lib.comm.smtp.Email.RECIPIENT_ADDRESS;
@@ -46,7 +48,11 @@ import static de.esoco.lib.comm.smtp.SmtpStatusCode.START_MAIL;
 
 /********************************************************************
  * A helper class that wraps output and input streams and perform SMTP requests
- * on them.
+ * on them. The output will only be flushed before responses are read so that
+ * the output stream should be buffered. After connecting multiple emails can
+ * be sent in the same session by invoking {@link #reset()} between them. If
+ * the server supports the PIPELINING extension the envelope commands of an
+ * email will be sent without waiting for the individual responses.
  *
  * @author eso
  */
@@ -58,6 +64,8 @@ public class SmtpProtocolHandler
 	private final DataOutputStream rOutput;
 	private final BufferedReader   rInput;
 
+	private final Set<String> aExtensions = new HashSet<>();
+
 	//~ Constructors -----------------------------------------------------------
 
 	/***************************************
@@ -90,9 +98,14 @@ public class SmtpProtocolHandler
 	{
 		checkResponse(READY);
 
+		boolean bExtended = send("EHLO " + sClient).readExtensions();
+
 		if (sUser != null)
 		{
-			send("EHLO " + sClient).skipResponses(OK);
+			if (!bExtended)
+			{
+				throw new CommunicationException("Server doesn't support authentication");
+			}
 
 			String sAuthPlain =
 				String.format("%1$s\u0000%1$s\u0000%2$s", sUser, sPassword);
@@ -103,7 +116,7 @@ public class SmtpProtocolHandler
 
 			send(sAuthPlain).checkResponse(OK, AUTH_SUCCESS);
 		}
-		else
+		else if (!bExtended)
 		{
 			send("HELO " + sClient).checkOk();
 		}
@@ -117,6 +130,28 @@ public class SmtpProtocolHandler
 		send("QUIT").skipResponses(OK, CLOSING);
 	}
 
+	/***************************************
+	 * Checks whether the server supports a certain SMTP extension. This is
+	 * only available after connecting.
+	 *
+	 * @param  sExtension The name of the extension (e.g. PIPELINING)
+	 *
+	 * @return TRUE if the extension is supported
+	 */
+	public boolean isExtensionSupported(String sExtension)
+	{
+		return aExtensions.contains(sExtension.toUpperCase());
+	}
+
+	/***************************************
+	 * Resets the current mail transaction. Must be invoked between the sending
+	 * of multiple emails in the same session.
+	 */
+	public void reset()
+	{
+		send("RSET").checkOk();
+	}
+
 	/***************************************
 	 * Sends an email after connecting (see {@link #connect(String, String)}).
 	 *
@@ -129,9 +164,22 @@ public class SmtpProtocolHandler
 		String sRecipientName    = rEmail.get(RECIPIENT_NAME);
 		String sRecipientAddress = rEmail.get(RECIPIENT_ADDRESS);
 
-		send("MAIL FROM:<%s>", sSenderAddress).checkOk();
-		send("RCPT TO:<%s>", sRecipientAddress).checkOk();
-		send("DATA").checkResponse(OK, START_MAIL);
+		if (isExtensionSupported("PIPELINING"))
+		{
+			send("MAIL FROM:<%s>", sSenderAddress);
+			send("RCPT TO:<%s>", sRecipientAddress);
+			send("DATA");
+			checkOk();
+			checkOk();
+			checkResponse(OK, START_MAIL);
+		}
+		else
+		{
+			send("MAIL FROM:<%s>", sSenderAddress).checkOk();
+			send("RCPT TO:<%s>", sRecipientAddress).checkOk();
+			send("DATA").checkResponse(OK, START_MAIL);
+		}
+
 		send("Date: %s",
 			 DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now()));
 		sendAddress("From", sSenderName, sSenderAddress);
@@ -172,7 +220,7 @@ public class SmtpProtocolHandler
 	{
 		try
 		{
-			String sResponse = rInput.readLine();
+			String sResponse = readLine();
 
 			for (SmtpStatusCode eStatus : eExpectedStatusCodes)
 			{
@@ -192,6 +240,50 @@ public class SmtpProtocolHandler
 		}
 	}
 
+	/***************************************
+	 * Reads the response to an EHLO command and stores the supported
+	 * extensions.
+	 *
+	 * @return TRUE if the server accepted the EHLO command, FALSE if it needs
+	 *         to be replaced with HELO
+	 */
+	boolean readExtensions()
+	{
+		try
+		{
+			String  sResponse;
+			boolean bFirst = true;
+
+			do
+			{
+				sResponse = readLine();
+
+				if (!sResponse.startsWith(OK.getCode()))
+				{
+					return false;
+				}
+
+				// the first line only contains the server greeting
+				if (!bFirst && sResponse.length() > 4)
+				{
+					aExtensions.add(sResponse.substring(4)
+								    .trim()
+								    .split(" ")[0]
+								    .toUpperCase());
+				}
+
+				bFirst = false;
+			}
+			while (sResponse.length() > 3 && sResponse.charAt(3) == '-');
+
+			return true;
+		}
+		catch (IOException e)
+		{
+			throw new CommunicationException(e);
+		}
+	}
+
 	/***************************************
 	 * Sends a data string to the SMTP server.
 	 *
@@ -242,6 +334,8 @@ public class SmtpProtocolHandler
 	{
 		try
 		{
+			rOutput.flush();
+
 			while (rInput.ready())
 			{
 				checkResponse(eStatusCodes);
@@ -252,4 +346,25 @@ public class SmtpProtocolHandler
 			throw new CommunicationException(e);
 		}
 	}
+
+	/***************************************
+	 * Flushes any pending output and then reads a response line.
+	 *
+	 * @return The response line
+	 *
+	 * @throws IOException If reading fails or the connection has been closed
+	 */
+	private String readLine() throws IOException
+	{
+		rOutput.flush();
+
+		String sResponse = rInput.readLine();
+
+		if (sResponse == null)
+		{
+			throw new IOException("Connection closed by server");
+		}
+
+		return sResponse;
+	}
 }
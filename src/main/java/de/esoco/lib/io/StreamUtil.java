@@ -16,8 +16,6 @@
 //++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
 package de.esoco.lib.io;
 
-import de.esoco.lib.collection.ByteArray;
-
 import java.io.EOFException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -26,6 +24,8 @@ import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
 
+import java.util.Arrays;
+
 
 /********************************************************************
  * Class containing tools for access to IO streams.
@@ -218,19 +218,30 @@ public final class StreamUtil
 			throw new IllegalArgumentException("Buffer size must be > 0");
 		}
 
-		ByteArray aReadBuffer = new ByteArray(nBufferSize);
-		byte[]    aBytes	  = new byte[nBufferSize];
-		int		  nReadMax    = Math.min(nMax, nBufferSize);
-		int		  nCount;
+		byte[] aBuffer = new byte[Math.max(Math.min(nBufferSize, nMax), 0)];
+		int    nSize   = 0;
+		int    nCount  = 0;
 
-		while (nMax > 0 && (nCount = rIn.read(aBytes, 0, nReadMax)) != -1)
+		while (nSize < nMax && nCount != -1)
 		{
-			aReadBuffer.add(aBytes, 0, nCount);
-			nMax     -= nCount;
-			nReadMax = Math.min(nMax, nBufferSize);
+			if (nSize == aBuffer.length)
+			{
+				// grow exponentially to prevent quadratic copying
+				int nNewLength =
+					(int) Math.min(Math.max(nSize * 2L, 1024), (long) nMax);
+
+				aBuffer = Arrays.copyOf(aBuffer, nNewLength);
+			}
+
+			nCount = rIn.read(aBuffer, nSize, aBuffer.length - nSize);
+
+			if (nCount > 0)
+			{
+				nSize += nCount;
+			}
 		}
 
-		return aReadBuffer.toByteArray();
+		return nSize == aBuffer.length ? aBuffer : Arrays.copyOf(aBuffer, nSize);
 	}
 
 	/***************************************
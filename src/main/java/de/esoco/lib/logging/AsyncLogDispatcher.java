@@ -0,0 +1,417 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+
+/********************************************************************
+ * Dispatches log records asynchronously to a processing function that is
+ * executed on a dedicated consumer thread. The records are queued in a bounded
+ * lock-free ring buffer that can be written by multiple threads concurrently.
+ * The behavior if the buffer is full is controlled by the {@link
+ * OverflowPolicy} of an instance.
+ *
+ * <p>Instances are typically created by {@link Log#enableAsyncLogging(int,
+ * OverflowPolicy, LogLevel)} which will dispatch all log records through the
+ * dispatcher. On VM shutdown all queued records will be processed before the
+ * consumer thread terminates.</p>
+ *
+ * @author eso
+ */
+public class AsyncLogDispatcher
+{
+	//~ Enums ------------------------------------------------------------------
+
+	/********************************************************************
+	 * Enumeration of the strategies for the handling of log records if the
+	 * ring buffer is full. BLOCK lets the logging thread wait until space is
+	 * available, DROP discards all records that don't fit into the buffer, and
+	 * DROP_BELOW_LEVEL only discards records with a level below a certain
+	 * threshold and blocks for all others.
+	 */
+	public enum OverflowPolicy { BLOCK, DROP, DROP_BELOW_LEVEL }
+
+	//~ Static fields/initializers ---------------------------------------------
+
+	private static final long MAX_IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(1);
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final Consumer<LogRecord> fProcessRecord;
+	private final OverflowPolicy	  eOverflowPolicy;
+	private final LogLevel			  eMinBlockingLevel;
+
+	private final int							  nMask;
+	private final AtomicReferenceArray<LogRecord> aRecords;
+	private final AtomicLongArray				  aSequences;
+	private final AtomicLong					  aTail = new AtomicLong();
+
+	private final LongAdder aDroppedRecords = new LongAdder();
+
+	private final Thread aConsumerThread;
+	private final Thread aShutdownHook;
+
+	private volatile long    nHead    = 0;
+	private volatile boolean bRunning = true;
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance and starts the consumer thread.
+	 *
+	 * @param fProcessRecord    The function that processes the log records
+	 * @param nCapacity         The capacity of the ring buffer (will be rounded
+	 *                          up to the next power of two of at least 2)
+	 * @param eOverflowPolicy   The policy for a full ring buffer
+	 * @param eMinBlockingLevel The minimum level of records that will never be
+	 *                          dropped if the policy is {@link
+	 *                          OverflowPolicy#DROP_BELOW_LEVEL}
+	 */
+	public AsyncLogDispatcher(Consumer<LogRecord> fProcessRecord,
+							  int				  nCapacity,
+							  OverflowPolicy	  eOverflowPolicy,
+							  LogLevel			  eMinBlockingLevel)
+	{
+		if (nCapacity <= 0 || nCapacity > (1 << 30))
+		{
+			throw new IllegalArgumentException("Invalid capacity: " +
+											   nCapacity);
+		}
+
+		int nSize = Integer.highestOneBit(nCapacity);
+
+		// a single slot would be reported as free for the next position while
+		// it still contains an unprocessed record
+		if (nSize < nCapacity || nSize == 1)
+		{
+			nSize <<= 1;
+		}
+
+		this.fProcessRecord    = fProcessRecord;
+		this.eOverflowPolicy   = eOverflowPolicy;
+		this.eMinBlockingLevel = eMinBlockingLevel;
+
+		nMask	   = nSize - 1;
+		aRecords   = new AtomicReferenceArray<>(nSize);
+		aSequences = new AtomicLongArray(nSize);
+
+		for (int i = 0; i < nSize; i++)
+		{
+			aSequences.set(i, i);
+		}
+
+		aConsumerThread = new Thread(this::processRecords, "AsyncLog");
+		aShutdownHook   = new Thread(this::shutdown, "AsyncLogShutdown");
+
+		aConsumerThread.setDaemon(true);
+		aConsumerThread.start();
+		Runtime.getRuntime().addShutdownHook(aShutdownHook);
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Waits until all records that have been queued before the invocation of
+	 * this method have been processed.
+	 */
+	public void flush()
+	{
+		long nTarget = aTail.get();
+
+		while (nHead < nTarget && aConsumerThread.isAlive())
+		{
+			LockSupport.unpark(aConsumerThread);
+			LockSupport.parkNanos(MAX_IDLE_WAIT);
+		}
+	}
+
+	/***************************************
+	 * Returns the ring buffer capacity.
+	 *
+	 * @return The capacity
+	 */
+	public final int getCapacity()
+	{
+		return nMask + 1;
+	}
+
+	/***************************************
+	 * Returns the number of records that have been dropped because the ring
+	 * buffer was full.
+	 *
+	 * @return The dropped record count
+	 */
+	public final long getDroppedCount()
+	{
+		return aDroppedRecords.sum();
+	}
+
+	/***************************************
+	 * Returns the overflow policy of this instance.
+	 *
+	 * @return The overflow policy
+	 */
+	public final OverflowPolicy getOverflowPolicy()
+	{
+		return eOverflowPolicy;
+	}
+
+	/***************************************
+	 * Returns the number of records that are waiting to be processed.
+	 *
+	 * @return The queue size
+	 */
+	public int getQueueSize()
+	{
+		return (int) (aTail.get() - nHead);
+	}
+
+	/***************************************
+	 * Queues a log record for processing. Depending on the overflow policy
+	 * this call will block if the ring buffer is full or the record will be
+	 * dropped. After shutdown and for records that are logged by the
+	 * processing function itself the records will be processed in the calling
+	 * thread because the consumer thread cannot wait for free space. Mutable
+	 * message values of queued records are replaced with snapshots (see
+	 * {@link LogRecord#snapshot()}).
+	 *
+	 * @param  rRecord The log record
+	 *
+	 * @return TRUE if the record has been queued, FALSE if it was dropped
+	 */
+	public boolean publish(LogRecord rRecord)
+	{
+		if (!bRunning || Thread.currentThread() == aConsumerThread)
+		{
+			synchronized (this)
+			{
+				fProcessRecord.accept(rRecord);
+			}
+
+			return true;
+		}
+
+		rRecord = rRecord.snapshot();
+
+		long nWait = 1;
+
+		while (!tryPublish(rRecord))
+		{
+			if (eOverflowPolicy == OverflowPolicy.DROP ||
+				(eOverflowPolicy == OverflowPolicy.DROP_BELOW_LEVEL &&
+				 rRecord.getLevel().compareTo(eMinBlockingLevel) < 0))
+			{
+				aDroppedRecords.increment();
+
+				return false;
+			}
+
+			LockSupport.unpark(aConsumerThread);
+			LockSupport.parkNanos(nWait);
+			nWait = Math.min(nWait * 2, MAX_IDLE_WAIT);
+
+			if (!bRunning)
+			{
+				return publish(rRecord);
+			}
+			else if (!aConsumerThread.isAlive())
+			{
+				// fall back to synchronous processing if the consumer thread
+				// has terminated unexpectedly
+				bRunning = false;
+
+				synchronized (this)
+				{
+					while (processNext())
+					{
+					}
+				}
+
+				return publish(rRecord);
+			}
+		}
+
+		if (!bRunning)
+		{
+			// the consumer may terminate concurrently without processing the
+			// record; therefore wait for it and process the remaining records
+			awaitConsumer();
+
+			synchronized (this)
+			{
+				while (processNext())
+				{
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/***************************************
+	 * Stops the consumer thread after all queued records have been processed.
+	 * Records that are published after this call will be processed
+	 * synchronously by the calling thread.
+	 */
+	public void shutdown()
+	{
+		if (bRunning)
+		{
+			bRunning = false;
+			LockSupport.unpark(aConsumerThread);
+
+			if (Thread.currentThread() != aConsumerThread)
+			{
+				awaitConsumer();
+			}
+
+			if (Thread.currentThread() != aShutdownHook)
+			{
+				try
+				{
+					Runtime.getRuntime().removeShutdownHook(aShutdownHook);
+				}
+				catch (IllegalStateException e)
+				{
+					// VM already shutting down
+				}
+			}
+		}
+	}
+
+	/***************************************
+	 * Waits until the consumer thread has terminated.
+	 */
+	private void awaitConsumer()
+	{
+		try
+		{
+			aConsumerThread.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/***************************************
+	 * Processes the next record if available.
+	 *
+	 * @return TRUE if a record has been processed, FALSE if the buffer is
+	 *         empty
+	 */
+	private boolean processNext()
+	{
+		long nPosition = nHead;
+		int  nIndex    = (int) (nPosition & nMask);
+
+		if (aSequences.get(nIndex) != nPosition + 1)
+		{
+			return false;
+		}
+
+		LogRecord rRecord = aRecords.get(nIndex);
+
+		aRecords.lazySet(nIndex, null);
+		aSequences.lazySet(nIndex, nPosition + nMask + 1);
+
+		try
+		{
+			synchronized (this)
+			{
+				fProcessRecord.accept(rRecord);
+			}
+		}
+		catch (Throwable e)
+		{
+			// errors must not terminate the consumer thread because blocked
+			// producers would otherwise wait forever
+			System.err.println("Async log processing failed: " + e);
+		}
+		finally
+		{
+			nHead = nPosition + 1;
+		}
+
+		return true;
+	}
+
+	/***************************************
+	 * The main loop of the consumer thread.
+	 */
+	private void processRecords()
+	{
+		long nWait = 1;
+
+		while (bRunning || nHead < aTail.get())
+		{
+			if (processNext())
+			{
+				nWait = 1;
+			}
+			else if (bRunning)
+			{
+				LockSupport.parkNanos(nWait);
+				nWait = Math.min(nWait * 2, MAX_IDLE_WAIT);
+			}
+			else
+			{
+				// a producer has claimed a slot but not written it yet
+				Thread.yield();
+			}
+		}
+	}
+
+	/***************************************
+	 * Tries to write a record into the next free slot of the ring buffer.
+	 *
+	 * @param  rRecord The record to publish
+	 *
+	 * @return TRUE if the record has been written, FALSE if the buffer is full
+	 */
+	private boolean tryPublish(LogRecord rRecord)
+	{
+		while (true)
+		{
+			long nPosition = aTail.get();
+			int  nIndex    = (int) (nPosition & nMask);
+			long nDiff     = aSequences.get(nIndex) - nPosition;
+
+			if (nDiff == 0)
+			{
+				if (aTail.compareAndSet(nPosition, nPosition + 1))
+				{
+					aRecords.lazySet(nIndex, rRecord);
+					aSequences.set(nIndex, nPosition + 1);
+
+					return true;
+				}
+			}
+			else if (nDiff < 0)
+			{
+				return false;
+			}
+		}
+	}
+}
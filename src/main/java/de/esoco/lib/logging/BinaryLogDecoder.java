@@ -0,0 +1,434 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IllegalFormatException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static de.esoco.lib.logging.BinaryLogging.ENTRY_FORMAT;
+import static de.esoco.lib.logging.BinaryLogging.ENTRY_LOCATION;
+import static de.esoco.lib.logging.BinaryLogging.ENTRY_RECORD;
+import static de.esoco.lib.logging.BinaryLogging.ENTRY_THREAD;
+import static de.esoco.lib.logging.BinaryLogging.MAGIC;
+import static de.esoco.lib.logging.BinaryLogging.VALUE_BOOLEAN;
+import static de.esoco.lib.logging.BinaryLogging.VALUE_CHAR;
+import static de.esoco.lib.logging.BinaryLogging.VALUE_DOUBLE;
+import static de.esoco.lib.logging.BinaryLogging.VALUE_INT;
+import static de.esoco.lib.logging.BinaryLogging.VALUE_LONG;
+import static de.esoco.lib.logging.BinaryLogging.VALUE_NULL;
+import static de.esoco.lib.logging.BinaryLogging.VALUE_STRING;
+import static de.esoco.lib.logging.BinaryLogging.VERSION;
+
+
+/********************************************************************
+ * Decodes the files that have been written by {@link BinaryLogging} into
+ * {@link LogRecord} instances that can then be rendered with a {@link
+ * LogRecordFormat}. Because decoded records have no log thread the name and
+ * ID of the original thread are stored in the record's log context under the
+ * keys {@link #CONTEXT_THREAD} and {@link #CONTEXT_THREAD_ID}. A causing
+ * exception is only available as it's string description.
+ *
+ * <p>This class can also be invoked from the command line to print a binary
+ * log file as text. The arguments are the file name and an optional log
+ * record format pattern (default: {@link #DEFAULT_FORMAT_PATTERN}).</p>
+ *
+ * @author eso
+ */
+public class BinaryLogDecoder
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	/** The log context key for the name of the original log thread. */
+	public static final String CONTEXT_THREAD = "thread";
+
+	/** The log context key for the ID of the original log thread. */
+	public static final String CONTEXT_THREAD_ID = "threadId";
+
+	/** The default pattern for the rendering of decoded records. */
+	public static final String DEFAULT_FORMAT_PATTERN =
+		"[{level:F%-5s}]{t:Dyyyy.MM.dd-HH:mm:ss.SSS} {context}: {message}";
+
+	private static final LogLevel[] LOG_LEVELS = LogLevel.values();
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final Path rLogFile;
+
+	private final Map<Integer, String>			  aFormats   = new HashMap<>();
+	private final Map<Integer, StackTraceElement> aLocations = new HashMap<>();
+	private final Map<Long, Map<String, String>>  aThreads   = new HashMap<>();
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance.
+	 *
+	 * @param rLogFile The binary log file to decode
+	 */
+	public BinaryLogDecoder(Path rLogFile)
+	{
+		this.rLogFile = rLogFile;
+	}
+
+	//~ Static methods ---------------------------------------------------------
+
+	/***************************************
+	 * Prints a binary log file as text to the console.
+	 *
+	 * @param  rArgs The file name and an optional format pattern
+	 *
+	 * @throws IOException If reading the file fails
+	 */
+	public static void main(String[] rArgs) throws IOException
+	{
+		if (rArgs.length == 0 || rArgs.length > 2)
+		{
+			System.err.println("Usage: BinaryLogDecoder <file> [format]");
+			System.exit(1);
+		}
+
+		LogRecordFormat aFormat =
+			new LogRecordFormat(rArgs.length > 1 ? rArgs[1]
+												 : DEFAULT_FORMAT_PATTERN);
+
+		new BinaryLogDecoder(Paths.get(rArgs[0])).decode(rRecord ->
+															 print(rRecord,
+																   aFormat));
+	}
+
+	/***************************************
+	 * Prints a decoded log record to the console.
+	 *
+	 * @param rRecord The log record
+	 * @param rFormat The log record format
+	 */
+	private static void print(LogRecord rRecord, LogRecordFormat rFormat)
+	{
+		System.out.println(rFormat.apply(rRecord));
+
+		if (rRecord.getCause() != null)
+		{
+			System.out.println("   Caused by " + rRecord.getCause());
+		}
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Decodes all log records in the file and hands them to a consumer.
+	 *
+	 * @param  fTarget The consumer of the decoded records
+	 *
+	 * @return The number of decoded records
+	 *
+	 * @throws IOException If reading the file fails or if it is not a binary
+	 *                     log file
+	 */
+	public int decode(Consumer<? super LogRecord> fTarget) throws IOException
+	{
+		int nCount = 0;
+
+		aFormats.clear();
+		aLocations.clear();
+		aThreads.clear();
+
+		try (DataInputStream aIn =
+			 new DataInputStream(
+				 new BufferedInputStream(Files.newInputStream(rLogFile))))
+		{
+			if (aIn.readInt() != MAGIC || aIn.readShort() != VERSION)
+			{
+				throw new IOException("Not a binary log file: " + rLogFile);
+			}
+
+			int nLength;
+
+			while ((nLength = readLength(aIn)) > 0)
+			{
+				byte nType = aIn.readByte();
+
+				if (nType == ENTRY_RECORD)
+				{
+					fTarget.accept(readRecord(aIn));
+					nCount++;
+				}
+				else if (nType == ENTRY_FORMAT)
+				{
+					aFormats.put(Integer.valueOf(aIn.readInt()),
+								 readString(aIn));
+				}
+				else if (nType == ENTRY_THREAD)
+				{
+					readThread(aIn);
+				}
+				else if (nType == ENTRY_LOCATION)
+				{
+					readLocation(aIn);
+				}
+				else
+				{
+					// skip unknown entries of future versions
+					aIn.skipBytes(nLength - 1);
+				}
+			}
+		}
+
+		return nCount;
+	}
+
+	/***************************************
+	 * Reads the length of the next entry.
+	 *
+	 * @param  rIn The input stream
+	 *
+	 * @return The entry length or 0 at the end of the data
+	 *
+	 * @throws IOException If reading fails
+	 */
+	private int readLength(DataInputStream rIn) throws IOException
+	{
+		try
+		{
+			return rIn.readInt();
+		}
+		catch (EOFException e)
+		{
+			return 0;
+		}
+	}
+
+	/***************************************
+	 * Reads a location dictionary entry.
+	 *
+	 * @param  rIn The input stream
+	 *
+	 * @throws IOException If reading fails
+	 */
+	private void readLocation(DataInputStream rIn) throws IOException
+	{
+		Integer rId   = Integer.valueOf(rIn.readInt());
+		int     nLine = rIn.readInt();
+
+		String sClass  = readString(rIn);
+		String sMethod = readString(rIn);
+		String sFile   = readString(rIn);
+
+		aLocations.put(rId,
+					   new StackTraceElement(sClass, sMethod, sFile, nLine));
+	}
+
+	/***************************************
+	 * Reads a log record entry.
+	 *
+	 * @param  rIn The input stream
+	 *
+	 * @return The decoded log record
+	 *
+	 * @throws IOException If reading fails
+	 */
+	private LogRecord readRecord(DataInputStream rIn) throws IOException
+	{
+		long	 nTime     = rIn.readLong();
+		Long	 rThreadId = Long.valueOf(rIn.readLong());
+		LogLevel eLevel    = LOG_LEVELS[rIn.readByte()];
+		int		 nFormatId = rIn.readInt();
+		int		 nLocation = rIn.readInt();
+		int		 nValues   = rIn.readInt();
+		Object[] aValues   = null;
+		String   sFormat;
+
+		if (nValues >= 0)
+		{
+			sFormat = aFormats.get(Integer.valueOf(nFormatId));
+			aValues = new Object[nValues];
+
+			for (int i = 0; i < nValues; i++)
+			{
+				aValues[i] = readValue(rIn);
+			}
+
+			try
+			{
+				String.format(sFormat, aValues);
+			}
+			catch (IllegalFormatException e)
+			{
+				// values that have been stored as strings may not match the
+				// format; render them unformatted
+				aValues = new Object[] { sFormat, Arrays.asList(aValues) };
+				sFormat = "%s %s";
+			}
+		}
+		else
+		{
+			sFormat = readString(rIn);
+		}
+
+		String			    sCause   = readString(rIn);
+		Map<String, String> rContext = aThreads.get(rThreadId);
+
+		return new LogRecord(eLevel,
+							 sCause != null ? new DecodedException(sCause)
+											: null,
+							 sFormat,
+							 aValues,
+							 nTime,
+							 aLocations.get(Integer.valueOf(nLocation)),
+							 rContext != null ? rContext
+											  : Collections.emptyMap());
+	}
+
+	/***************************************
+	 * Reads a string value.
+	 *
+	 * @param  rIn The input stream
+	 *
+	 * @return The string (NULL if a NULL value has been written)
+	 *
+	 * @throws IOException If reading fails
+	 */
+	private String readString(DataInputStream rIn) throws IOException
+	{
+		int nLength = rIn.readInt();
+
+		if (nLength < 0)
+		{
+			return null;
+		}
+
+		byte[] aBytes = new byte[nLength];
+
+		rIn.readFully(aBytes);
+
+		return new String(aBytes, StandardCharsets.UTF_8);
+	}
+
+	/***************************************
+	 * Reads a thread dictionary entry.
+	 *
+	 * @param  rIn The input stream
+	 *
+	 * @throws IOException If reading fails
+	 */
+	private void readThread(DataInputStream rIn) throws IOException
+	{
+		long				nId		 = rIn.readLong();
+		Map<String, String> aContext = new LinkedHashMap<>();
+
+		aContext.put(CONTEXT_THREAD, readString(rIn));
+		aContext.put(CONTEXT_THREAD_ID, Long.toString(nId));
+
+		aThreads.put(Long.valueOf(nId), Collections.unmodifiableMap(aContext));
+	}
+
+	/***************************************
+	 * Reads a typed message value.
+	 *
+	 * @param  rIn The input stream
+	 *
+	 * @return The value
+	 *
+	 * @throws IOException If reading fails or the value type is unknown
+	 */
+	@SuppressWarnings("boxing")
+	private Object readValue(DataInputStream rIn) throws IOException
+	{
+		byte nType = rIn.readByte();
+
+		switch (nType)
+		{
+			case VALUE_NULL:
+				return null;
+
+			case VALUE_INT:
+				return rIn.readInt();
+
+			case VALUE_LONG:
+				return rIn.readLong();
+
+			case VALUE_DOUBLE:
+				return rIn.readDouble();
+
+			case VALUE_BOOLEAN:
+				return rIn.readByte() != 0;
+
+			case VALUE_CHAR:
+				return rIn.readChar();
+
+			case VALUE_STRING:
+				return readString(rIn);
+
+			default:
+				throw new IOException("Unknown value type: " + nType);
+		}
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * An exception that only contains the string description of a causing
+	 * exception that has been decoded from a binary log file.
+	 *
+	 * @author eso
+	 */
+	static class DecodedException extends Exception
+	{
+		//~ Static fields/initializers -----------------------------------------
+
+		private static final long serialVersionUID = 1L;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param sDescription The exception description
+		 */
+		DecodedException(String sDescription)
+		{
+			super(sDescription, null, false, false);
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Returns the original exception description.
+		 *
+		 * @return The description
+		 */
+		@Override
+		public String toString()
+		{
+			return getMessage();
+		}
+	}
+}
@@ -0,0 +1,596 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.obrel.core.RelationType;
+import org.obrel.core.RelationTypes;
+
+import static org.obrel.core.RelationTypes.newInitialValueType;
+
+
+/********************************************************************
+ * A log aspect that writes log records in a compact binary encoding to a
+ * memory-mapped file. Instead of formatting the log message only the message
+ * format string and the raw message values are stored, together with the log
+ * time, level, and thread ID. Format strings, threads, and (optionally) log
+ * locations are written only once per file as dictionary entries and are then
+ * referenced by numeric IDs. This makes the logging cheap enough to keep high
+ * volume logging like TRACE enabled in production code. The binary files can
+ * be rendered as text with {@link BinaryLogDecoder}.
+ *
+ * <p>The file is mapped into memory in segments of {@link #LOG_MAP_SIZE}
+ * bytes. Encoded entries are copied into the mapping without flushing, the
+ * writing to storage is left to the operating system. If the log file already
+ * exists new entries will be appended to it. On shutdown the file is
+ * truncated to the size of the written data if possible, otherwise the rest of
+ * the last segment remains zero-filled which marks the end of the data.</p>
+ *
+ * <p>Message values of primitive wrapper types and strings are stored with
+ * their type, all other values are stored as their string representation.
+ * Causing exceptions are also only stored as their string description. If
+ * {@link #ENCODE_LOCATION} is TRUE the location of the log call will be
+ * encoded too. This requires that the location of records is captured (see
+ * {@link LogRecord#setCaptureLocation(boolean)}).</p>
+ *
+ * <p>The file format consists of a header (magic number and format version)
+ * followed by entries of the form [int length][byte type][data]. A length of
+ * zero or the end of the file terminate the data. Log messages without values
+ * are stored directly in the record entries.</p>
+ *
+ * @author eso
+ */
+public class BinaryLogging extends LogAspect<LogRecord>
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	/**
+	 * The size of the file segments that are mapped into memory. Defaults to
+	 * 16 MB.
+	 */
+	public static final RelationType<Integer> LOG_MAP_SIZE =
+		newInitialValueType(16 * 1024 * 1024);
+
+	/**
+	 * A flag to encode the source location of log calls. Defaults to FALSE
+	 * because the location lookup is comparatively expensive.
+	 */
+	public static final RelationType<Boolean> ENCODE_LOCATION =
+		newInitialValueType(Boolean.FALSE);
+
+	static final int   MAGIC   = 0x45534C42;
+	static final short VERSION = 1;
+
+	static final byte ENTRY_FORMAT   = 1;
+	static final byte ENTRY_THREAD   = 2;
+	static final byte ENTRY_LOCATION = 3;
+	static final byte ENTRY_RECORD   = 4;
+
+	static final byte VALUE_NULL    = 0;
+	static final byte VALUE_INT	    = 1;
+	static final byte VALUE_LONG    = 2;
+	static final byte VALUE_DOUBLE  = 3;
+	static final byte VALUE_BOOLEAN = 4;
+	static final byte VALUE_CHAR    = 5;
+	static final byte VALUE_STRING  = 6;
+
+	static
+	{
+		RelationTypes.init(BinaryLogging.class);
+	}
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final Path aLogFile;
+
+	private final Map<String, Integer>			  aFormatIds   = new HashMap<>();
+	private final Map<StackTraceElement, Integer> aLocationIds = new HashMap<>();
+	private final Set<Long>						  aThreadIds   = new HashSet<>();
+
+	private int		   nMapSize;
+	private boolean    bEncodeLocation;
+	private ByteBuffer aEntryBuffer;
+
+	private FileChannel		 aChannel;
+	private MappedByteBuffer aMapping;
+	private long			 nMapPosition;
+	private boolean			 bClosed;
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance that logs to a certain file.
+	 *
+	 * @param sFileName The name of the binary log file
+	 */
+	public BinaryLogging(String sFileName)
+	{
+		aLogFile = Paths.get(sFileName).toAbsolutePath();
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Returns the path of the binary log file.
+	 *
+	 * @return The log file path
+	 */
+	public final Path getLogFile()
+	{
+		return aLogFile;
+	}
+
+	/***************************************
+	 * Returns a snapshot of the log record which will be encoded in the
+	 * processing thread of this aspect. The snapshot contains the string
+	 * values of mutable message arguments so that they cannot be modified
+	 * concurrently by the logging code.
+	 *
+	 * @see LogAspect#createLogObject(LogRecord)
+	 */
+	@Override
+	protected LogRecord createLogObject(LogRecord rLogRecord)
+	{
+		return rLogRecord.snapshot();
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected String getLogInitMessage()
+	{
+		return "Starting binary logging to file " + aLogFile;
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void init()
+	{
+		nMapSize	    = get(LOG_MAP_SIZE).intValue();
+		bEncodeLocation = get(ENCODE_LOCATION).booleanValue();
+		aEntryBuffer    = ByteBuffer.allocate(1024);
+		bClosed		    = false;
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected synchronized void processLogObjects(
+		Collection<LogRecord> rLogRecords) throws Exception
+	{
+		if (bClosed)
+		{
+			// the processing thread outlived the shutdown timeout
+			return;
+		}
+
+		if (aChannel == null)
+		{
+			openFile();
+		}
+
+		for (LogRecord rRecord : rLogRecords)
+		{
+			encodeRecord(rRecord);
+		}
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected synchronized void shutdown()
+	{
+		bClosed = true;
+
+		if (aChannel != null)
+		{
+			try
+			{
+				long nSize = nMapPosition + aMapping.position();
+
+				aMapping = null;
+
+				try
+				{
+					aChannel.truncate(nSize);
+				}
+				catch (IOException e)
+				{
+					// file cannot be truncated while mapped on some platforms;
+					// the zero-filled rest marks the end of the data
+				}
+
+				aChannel.close();
+			}
+			catch (IOException e)
+			{
+				System.err.println("Closing binary log file failed: " + e);
+			}
+
+			aChannel = null;
+		}
+	}
+
+	/***************************************
+	 * Starts a new entry in the entry buffer.
+	 *
+	 * @param nType The entry type
+	 */
+	private void beginEntry(byte nType)
+	{
+		aEntryBuffer.clear();
+		aEntryBuffer.putInt(0);
+		aEntryBuffer.put(nType);
+	}
+
+	/***************************************
+	 * Encodes a log record and any dictionary entries it requires. Messages
+	 * without values are written directly instead of being added to the
+	 * format dictionary because they are often created by concatenation.
+	 *
+	 * @param  rRecord The log record
+	 *
+	 * @throws IOException If writing the entries fails
+	 */
+	private void encodeRecord(LogRecord rRecord) throws IOException
+	{
+		Thread    rThread   = rRecord.getLogThread();
+		Object[]  rValues   = rRecord.getMessageValues();
+		Throwable rCause    = rRecord.getCause();
+		long	  nThreadId = rThread != null ? rThread.getId() : -1;
+		int		  nValues   = rValues != null ? rValues.length : -1;
+		int		  nFormatId = -1;
+		int		  nLocation = -1;
+
+		if (rThread != null && aThreadIds.add(Long.valueOf(nThreadId)))
+		{
+			beginEntry(ENTRY_THREAD);
+			ensureCapacity(8).putLong(nThreadId);
+			putString(rThread.getName());
+			writeEntry();
+		}
+
+		if (rValues != null)
+		{
+			nFormatId = getFormatId(rRecord.getMessageFormat());
+		}
+
+		if (bEncodeLocation && rRecord.hasLocation())
+		{
+			nLocation = getLocationId(rRecord.getLogLocation());
+		}
+
+		beginEntry(ENTRY_RECORD);
+		ensureCapacity(29).putLong(rRecord.getTime())
+						  .putLong(nThreadId)
+						  .put((byte) rRecord.getLevel().ordinal())
+						  .putInt(nFormatId)
+						  .putInt(nLocation)
+						  .putInt(nValues);
+
+		if (rValues != null)
+		{
+			for (Object rValue : rValues)
+			{
+				putValue(rValue);
+			}
+		}
+		else
+		{
+			putString(rRecord.getMessageFormat());
+		}
+
+		putString(rCause != null ? rCause.toString() : null);
+		writeEntry();
+	}
+
+	/***************************************
+	 * Ensures that the entry buffer has a certain amount of remaining space by
+	 * replacing it with a larger buffer if necessary.
+	 *
+	 * @param  nSize The required number of bytes
+	 *
+	 * @return The entry buffer
+	 */
+	private ByteBuffer ensureCapacity(int nSize)
+	{
+		if (aEntryBuffer.remaining() < nSize)
+		{
+			int nCapacity =
+				Math.max(aEntryBuffer.capacity() * 2,
+						 aEntryBuffer.position() + nSize);
+
+			ByteBuffer aNewBuffer = ByteBuffer.allocate(nCapacity);
+
+			aEntryBuffer.flip();
+			aNewBuffer.put(aEntryBuffer);
+			aEntryBuffer = aNewBuffer;
+		}
+
+		return aEntryBuffer;
+	}
+
+	/***************************************
+	 * Returns the ID of a message format string and writes a dictionary entry
+	 * for new format strings.
+	 *
+	 * @param  sFormat The format string
+	 *
+	 * @return The format ID
+	 *
+	 * @throws IOException If writing the dictionary entry fails
+	 */
+	private int getFormatId(String sFormat) throws IOException
+	{
+		Integer rId = aFormatIds.get(sFormat);
+
+		if (rId == null)
+		{
+			rId = Integer.valueOf(aFormatIds.size());
+			aFormatIds.put(sFormat, rId);
+
+			beginEntry(ENTRY_FORMAT);
+			ensureCapacity(4).putInt(rId.intValue());
+			putString(sFormat);
+			writeEntry();
+		}
+
+		return rId.intValue();
+	}
+
+	/***************************************
+	 * Returns the ID of a log location and writes a dictionary entry for new
+	 * locations.
+	 *
+	 * @param  rLocation The log location
+	 *
+	 * @return The location ID
+	 *
+	 * @throws IOException If writing the dictionary entry fails
+	 */
+	private int getLocationId(StackTraceElement rLocation) throws IOException
+	{
+		Integer rId = aLocationIds.get(rLocation);
+
+		if (rId == null)
+		{
+			rId = Integer.valueOf(aLocationIds.size());
+			aLocationIds.put(rLocation, rId);
+
+			beginEntry(ENTRY_LOCATION);
+			ensureCapacity(8).putInt(rId.intValue())
+							 .putInt(rLocation.getLineNumber());
+			putString(rLocation.getClassName());
+			putString(rLocation.getMethodName());
+			putString(rLocation.getFileName());
+			writeEntry();
+		}
+
+		return rId.intValue();
+	}
+
+	/***************************************
+	 * Maps the next segment of the log file into memory.
+	 *
+	 * @param  nPosition The file position of the segment
+	 *
+	 * @throws IOException If the mapping fails
+	 */
+	private void mapSegment(long nPosition) throws IOException
+	{
+		nMapPosition = nPosition;
+		aMapping     = aChannel.map(MapMode.READ_WRITE, nPosition, nMapSize);
+	}
+
+	/***************************************
+	 * Opens the log file and maps the first segment after the existing data
+	 * into memory. A new file will be initialized with the file header.
+	 *
+	 * @throws IOException If opening the file fails
+	 */
+	private void openFile() throws IOException
+	{
+		long nPosition = Files.exists(aLogFile) ? readDataSize(aLogFile) : 0;
+
+		aFormatIds.clear();
+		aLocationIds.clear();
+		aThreadIds.clear();
+
+		aChannel =
+			FileChannel.open(aLogFile,
+							 StandardOpenOption.CREATE,
+							 StandardOpenOption.READ,
+							 StandardOpenOption.WRITE);
+
+		if (nPosition == 0)
+		{
+			mapSegment(0);
+			aMapping.putInt(MAGIC).putShort(VERSION);
+		}
+		else
+		{
+			mapSegment(nPosition);
+		}
+	}
+
+	/***************************************
+	 * Writes a string into the entry buffer.
+	 *
+	 * @param sValue The string value (may be NULL)
+	 */
+	private void putString(String sValue)
+	{
+		if (sValue != null)
+		{
+			byte[] aBytes = sValue.getBytes(StandardCharsets.UTF_8);
+
+			ensureCapacity(4 + aBytes.length).putInt(aBytes.length)
+											 .put(aBytes);
+		}
+		else
+		{
+			ensureCapacity(4).putInt(-1);
+		}
+	}
+
+	/***************************************
+	 * Writes a message value with it's type into the entry buffer.
+	 *
+	 * @param rValue The value to write
+	 */
+	private void putValue(Object rValue)
+	{
+		ByteBuffer rBuffer = ensureCapacity(9);
+
+		if (rValue == null)
+		{
+			rBuffer.put(VALUE_NULL);
+		}
+		else if (rValue instanceof Integer ||
+				 rValue instanceof Short ||
+				 rValue instanceof Byte)
+		{
+			rBuffer.put(VALUE_INT).putInt(((Number) rValue).intValue());
+		}
+		else if (rValue instanceof Long)
+		{
+			rBuffer.put(VALUE_LONG).putLong(((Long) rValue).longValue());
+		}
+		else if (rValue instanceof Double || rValue instanceof Float)
+		{
+			rBuffer.put(VALUE_DOUBLE)
+				   .putDouble(((Number) rValue).doubleValue());
+		}
+		else if (rValue instanceof Boolean)
+		{
+			rBuffer.put(VALUE_BOOLEAN)
+				   .put((byte) (((Boolean) rValue).booleanValue() ? 1 : 0));
+		}
+		else if (rValue instanceof Character)
+		{
+			rBuffer.put(VALUE_CHAR).putChar(((Character) rValue).charValue());
+		}
+		else
+		{
+			rBuffer.put(VALUE_STRING);
+			putString(rValue.toString());
+		}
+	}
+
+	/***************************************
+	 * Determines the size of the valid data in an existing binary log file.
+	 *
+	 * @param  rFile The file to check
+	 *
+	 * @return The data size or 0 if the file is empty
+	 *
+	 * @throws IOException If the file is invalid or cannot be read
+	 */
+	private long readDataSize(Path rFile) throws IOException
+	{
+		if (Files.size(rFile) == 0)
+		{
+			return 0;
+		}
+
+		try (DataInputStream aIn =
+			 new DataInputStream(
+				 new BufferedInputStream(Files.newInputStream(rFile))))
+		{
+			if (aIn.readInt() != MAGIC || aIn.readShort() != VERSION)
+			{
+				throw new IOException("Not a binary log file: " + rFile);
+			}
+
+			long nSize = 6;
+
+			try
+			{
+				int nLength;
+
+				while ((nLength = aIn.readInt()) > 0)
+				{
+					if (aIn.skipBytes(nLength) < nLength)
+					{
+						break;
+					}
+
+					nSize += 4 + nLength;
+				}
+			}
+			catch (EOFException e)
+			{
+				// end of data
+			}
+
+			return nSize;
+		}
+	}
+
+	/***************************************
+	 * Writes the entry buffer to the memory-mapped file and maps the next
+	 * segment if necessary.
+	 *
+	 * @throws IOException If mapping the next segment fails
+	 */
+	private void writeEntry() throws IOException
+	{
+		aEntryBuffer.putInt(0, aEntryBuffer.position() - 4);
+		aEntryBuffer.flip();
+
+		while (aEntryBuffer.hasRemaining())
+		{
+			if (!aMapping.hasRemaining())
+			{
+				mapSegment(nMapPosition + aMapping.position());
+			}
+
+			int nCount =
+				Math.min(aEntryBuffer.remaining(), aMapping.remaining());
+			int nLimit = aEntryBuffer.limit();
+
+			aEntryBuffer.limit(aEntryBuffer.position() + nCount);
+			aMapping.put(aEntryBuffer);
+			aEntryBuffer.limit(nLimit);
+		}
+	}
+}
@@ -0,0 +1,530 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.io.PrintWriter;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Map;
+
+
+/********************************************************************
+ * A precompiled log record format that renders log records without reflection
+ * into a reusable per-thread buffer. It supports a subset of the syntax of
+ * {@link LogRecordFormat}: the tokens level (l), message (m), time (t), cause
+ * (c), package, class, method, file, and line and additionally the tokens
+ * thread for the name of the logging thread and context for the fields of the
+ * {@link LogContext}. The level token supports a
+ * string format option of the form 'F%[-][width]s', the time token a date
+ * format option of the form 'D[pattern]'. Any other token will cause an
+ * {@link IllegalArgumentException} upon compilation.
+ *
+ * <p>Formatted dates are cached per thread for the current second if the date
+ * pattern doesn't contain milliseconds. Instances are thread-safe.</p>
+ *
+ * @author eso
+ */
+public class CompiledLogFormat
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final String				   sPattern;
+	private final TokenWriter[]			   aWriters;
+	private final ThreadLocal<FormatState> aThreadState;
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance by compiling a format pattern.
+	 *
+	 * @param  sPattern The format pattern
+	 *
+	 * @throws IllegalArgumentException If the pattern contains unsupported
+	 *                                  tokens or options
+	 */
+	public CompiledLogFormat(String sPattern)
+	{
+		this.sPattern = sPattern;
+
+		aWriters     = compile(sPattern);
+		aThreadState = ThreadLocal.withInitial(FormatState::new);
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Formats a log record into a new string.
+	 *
+	 * @param  rRecord The log record
+	 *
+	 * @return The formatted string
+	 */
+	public String format(LogRecord rRecord)
+	{
+		return render(rRecord).toString();
+	}
+
+	/***************************************
+	 * Appends a formatted log record to a string builder.
+	 *
+	 * @param rRecord The log record
+	 * @param rTarget The target string builder
+	 */
+	public void formatTo(LogRecord rRecord, StringBuilder rTarget)
+	{
+		rTarget.append(render(rRecord));
+	}
+
+	/***************************************
+	 * Returns the format pattern.
+	 *
+	 * @return The pattern
+	 */
+	public final String getPattern()
+	{
+		return sPattern;
+	}
+
+	/***************************************
+	 * Writes a formatted log record followed by a line separator to a print
+	 * writer. The record is rendered into a per-thread buffer which is written
+	 * directly without creating intermediate strings.
+	 *
+	 * @param rRecord The log record
+	 * @param rOut    The target writer
+	 */
+	public void println(LogRecord rRecord, PrintWriter rOut)
+	{
+		FormatState   rState  = aThreadState.get();
+		StringBuilder rBuffer = render(rRecord).append(LINE_SEPARATOR);
+		int			  nLength = rBuffer.length();
+
+		if (rState.aChars.length < nLength)
+		{
+			rState.aChars =
+				new char[Math.max(nLength, rState.aChars.length * 2)];
+		}
+
+		rBuffer.getChars(0, nLength, rState.aChars, 0);
+
+		// a single write so that concurrent lines cannot interleave
+		rOut.write(rState.aChars, 0, nLength);
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "[" + sPattern + "]";
+	}
+
+	/***************************************
+	 * Compiles a format pattern into token writers.
+	 *
+	 * @param  sPattern The pattern
+	 *
+	 * @return The token writers
+	 */
+	private TokenWriter[] compile(String sPattern)
+	{
+		List<TokenWriter> aResult = new ArrayList<>();
+		int				  nLength = sPattern.length();
+		int				  nStart  = 0;
+
+		while (nStart < nLength)
+		{
+			int nOpen = sPattern.indexOf('{', nStart);
+
+			if (nOpen < 0)
+			{
+				nOpen = nLength;
+			}
+
+			if (nOpen > nStart)
+			{
+				String sText = sPattern.substring(nStart, nOpen);
+
+				aResult.add((r, s, b) -> b.append(sText));
+			}
+
+			if (nOpen < nLength)
+			{
+				int nClose = sPattern.indexOf('}', nOpen);
+
+				if (nClose < 0)
+				{
+					throw new IllegalArgumentException("Unclosed token in " +
+													   sPattern);
+				}
+
+				aResult.add(createWriter(sPattern.substring(nOpen + 1,
+															nClose)));
+				nStart = nClose + 1;
+			}
+			else
+			{
+				nStart = nLength;
+			}
+		}
+
+		return aResult.toArray(new TokenWriter[aResult.size()]);
+	}
+
+	/***************************************
+	 * Creates the writer for the level token.
+	 *
+	 * @param  sOption The token option or NULL for none
+	 *
+	 * @return The token writer
+	 */
+	private TokenWriter createLevelWriter(String sOption)
+	{
+		if (sOption == null)
+		{
+			return (r, s, b) -> b.append(r.getLevel());
+		}
+
+		if (!sOption.matches("F%-?\\d*s"))
+		{
+			throw new IllegalArgumentException("Unsupported level format: " +
+											   sOption);
+		}
+
+		boolean bLeft  = sOption.charAt(2) == '-';
+		String  sWidth = sOption.substring(bLeft ? 3 : 2, sOption.length() - 1);
+		int     nWidth = sWidth.isEmpty() ? 0 : Integer.parseInt(sWidth);
+
+		return (r, s, b) ->
+			   {
+				   String sLevel = r.getLevel().name();
+				   int    nPad   = nWidth - sLevel.length();
+
+				   if (!bLeft)
+				   {
+					   pad(b, nPad);
+				   }
+
+				   b.append(sLevel);
+
+				   if (bLeft)
+				   {
+					   pad(b, nPad);
+				   }
+			   };
+	}
+
+	/***************************************
+	 * Creates the writer for the time token.
+	 *
+	 * @param  sOption The token option or NULL for none
+	 *
+	 * @return The token writer
+	 */
+	private TokenWriter createTimeWriter(String sOption)
+	{
+		if (sOption == null)
+		{
+			return (r, s, b) -> b.append(r.getTime());
+		}
+
+		if (!sOption.startsWith("D"))
+		{
+			throw new IllegalArgumentException("Unsupported time format: " +
+											   sOption);
+		}
+
+		String sDatePattern = sOption.substring(1);
+
+		DateTimeFormatter aFormatter =
+			DateTimeFormatter.ofPattern(sDatePattern)
+							 .withZone(ZoneId.systemDefault());
+
+		boolean bCacheable = sDatePattern.indexOf('S') < 0;
+
+		return (r, s, b) ->
+			   {
+				   long nSecond = r.getTime() / 1000;
+
+				   if (!bCacheable || nSecond != s.nCachedSecond ||
+					   s.rCachedFormatter != aFormatter)
+				   {
+					   s.sCachedTime	  =
+						   aFormatter.format(Instant.ofEpochMilli(r.getTime()));
+					   s.nCachedSecond    = nSecond;
+					   s.rCachedFormatter = aFormatter;
+				   }
+
+				   b.append(s.sCachedTime);
+			   };
+	}
+
+	/***************************************
+	 * Creates a writer for a single token.
+	 *
+	 * @param  sToken The token string without braces
+	 *
+	 * @return The token writer
+	 */
+	private TokenWriter createWriter(String sToken)
+	{
+		int    nColon  = sToken.indexOf(':');
+		String sName   = nColon >= 0 ? sToken.substring(0, nColon) : sToken;
+		String sOption = nColon >= 0 ? sToken.substring(nColon + 1) : null;
+
+		TokenWriter fWriter;
+
+		switch (sName)
+		{
+			case "l":
+			case "level":
+				fWriter = createLevelWriter(sOption);
+				sOption = null;
+				break;
+
+			case "t":
+			case "time":
+				fWriter = createTimeWriter(sOption);
+				sOption = null;
+				break;
+
+			case "m":
+			case "message":
+				fWriter = (r, s, b) -> writeMessage(r, s);
+				break;
+
+			case "c":
+			case "cause":
+				fWriter = (r, s, b) -> b.append(r.getCause());
+				break;
+
+			case "package":
+				fWriter = (r, s, b) -> writePackage(r, b);
+				break;
+
+			case "class":
+				fWriter = (r, s, b) -> writeClass(r, b);
+				break;
+
+			case "method":
+				fWriter = (r, s, b) -> b.append(r.getLogMethod());
+				break;
+
+			case "file":
+				fWriter = (r, s, b) -> b.append(r.getSourceFileName());
+				break;
+
+			case "line":
+				fWriter = (r, s, b) -> b.append(r.getLineNumber());
+				break;
+
+			case "thread":
+				fWriter = (r, s, b) -> writeThread(r, b);
+				break;
+
+			case "context":
+				fWriter = (r, s, b) -> writeContext(r, b);
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unsupported token: " +
+												   sToken);
+		}
+
+		if (sOption != null)
+		{
+			throw new IllegalArgumentException("Unsupported token option: " +
+											   sToken);
+		}
+
+		return fWriter;
+	}
+
+	/***************************************
+	 * Appends padding spaces.
+	 *
+	 * @param rBuffer The target buffer
+	 * @param nCount  The number of spaces (ignored if not positive)
+	 */
+	private void pad(StringBuilder rBuffer, int nCount)
+	{
+		while (nCount-- > 0)
+		{
+			rBuffer.append(' ');
+		}
+	}
+
+	/***************************************
+	 * Renders a record into the buffer of the current thread.
+	 *
+	 * @param  rRecord The log record
+	 *
+	 * @return The thread's buffer containing the rendered record
+	 */
+	private StringBuilder render(LogRecord rRecord)
+	{
+		FormatState   rState  = aThreadState.get();
+		StringBuilder rBuffer = rState.aBuffer;
+
+		rBuffer.setLength(0);
+
+		for (TokenWriter rWriter : aWriters)
+		{
+			rWriter.write(rRecord, rState, rBuffer);
+		}
+
+		return rBuffer;
+	}
+
+	/***************************************
+	 * Writes the simple name of the log class.
+	 *
+	 * @param rRecord The log record
+	 * @param rBuffer The target buffer
+	 */
+	private void writeClass(LogRecord rRecord, StringBuilder rBuffer)
+	{
+		String sClass = rRecord.getLogLocation().getClassName();
+
+		rBuffer.append(sClass, sClass.lastIndexOf('.') + 1, sClass.length());
+	}
+
+	/***************************************
+	 * Writes the fields of the log context if it is not empty.
+	 *
+	 * @param rRecord The log record
+	 * @param rBuffer The target buffer
+	 */
+	private void writeContext(LogRecord rRecord, StringBuilder rBuffer)
+	{
+		Map<String, String> rContext = rRecord.getContext();
+
+		if (!rContext.isEmpty())
+		{
+			rBuffer.append(rContext);
+		}
+	}
+
+	/***************************************
+	 * Writes the log message, formatting it directly into the buffer if
+	 * necessary.
+	 *
+	 * @param rRecord The log record
+	 * @param rState  The format state of the current thread
+	 */
+	private void writeMessage(LogRecord rRecord, FormatState rState)
+	{
+		Object[] rValues = rRecord.getMessageValues();
+
+		if (rValues != null)
+		{
+			rState.aFormatter.format(rRecord.getMessageFormat(), rValues);
+		}
+		else
+		{
+			rState.aBuffer.append(rRecord.getMessageFormat());
+		}
+	}
+
+	/***************************************
+	 * Writes the package name of the log class.
+	 *
+	 * @param rRecord The log record
+	 * @param rBuffer The target buffer
+	 */
+	private void writePackage(LogRecord rRecord, StringBuilder rBuffer)
+	{
+		String sClass = rRecord.getLogLocation().getClassName();
+		int    nPos   = sClass.lastIndexOf('.');
+
+		if (nPos > 0)
+		{
+			rBuffer.append(sClass, 0, nPos);
+		}
+	}
+
+	/***************************************
+	 * Writes the name of the logging thread. Records that have been decoded
+	 * from recorded data have no thread and will be rendered without a name.
+	 *
+	 * @param rRecord The log record
+	 * @param rBuffer The target buffer
+	 */
+	private void writeThread(LogRecord rRecord, StringBuilder rBuffer)
+	{
+		Thread rThread = rRecord.getLogThread();
+
+		if (rThread != null)
+		{
+			rBuffer.append(rThread.getName());
+		}
+	}
+
+	//~ Inner Interfaces -------------------------------------------------------
+
+	/********************************************************************
+	 * The interface for the writing of a single format token.
+	 *
+	 * @author eso
+	 */
+	@FunctionalInterface
+	interface TokenWriter
+	{
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Writes the token for a log record into a buffer.
+		 *
+		 * @param rRecord The log record
+		 * @param rState  The format state of the current thread
+		 * @param rBuffer The target buffer
+		 */
+		void write(LogRecord rRecord, FormatState rState, StringBuilder rBuffer);
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * The reusable per-thread state of a format.
+	 *
+	 * @author eso
+	 */
+	static class FormatState
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		final StringBuilder aBuffer    = new StringBuilder(256);
+		final Formatter     aFormatter = new Formatter(aBuffer);
+
+		char[] aChars = new char[256];
+
+		long			  nCachedSecond    = -1;
+		String			  sCachedTime	   = null;
+		DateTimeFormatter rCachedFormatter = null;
+	}
+}
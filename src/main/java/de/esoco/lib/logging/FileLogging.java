@@ -22,7 +22,10 @@ import static de.esoco.lib.expression.Functions.unchecked;
 
 
 /********************************************************************
- * A log aspect that appends log records to a file.
+ * A log aspect that appends log records to a file. The file is re-opened for
+ * each batch of log records and grows without limit. For high-volume logging
+ * with size and time based rolling of log files see {@link
+ * RollingFileLogging}.
  *
  * @author eso
  */
@@ -0,0 +1,484 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.io.PrintWriter;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import java.util.Collections;
+import java.util.Formatter;
+import java.util.Map;
+import java.util.Map.Entry;
+
+
+/********************************************************************
+ * Encodes log records as single-line JSON objects. The JSON is written
+ * directly into a reusable per-thread buffer without intermediate strings or
+ * maps. Each object contains the properties timestamp (ISO-8601 in UTC),
+ * level, message, and if available the thread, the logger (the name of the
+ * logging class), the source location, the causing exception with it's stack
+ * trace and the chain of causes, and the fields of the {@link LogContext} as
+ * an object with the name context. Additional static properties like a
+ * service or host name can be handed to the constructor and will be appended
+ * to each record.
+ *
+ * <p>Instances are thread-safe.</p>
+ *
+ * @author eso
+ */
+public class JsonLogFormat
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	private static final int MAX_CAUSE_DEPTH = 10;
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static final DateTimeFormatter TIMESTAMP_FORMAT =
+		DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss")
+						 .withZone(ZoneOffset.UTC);
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final String				   sStaticFields;
+	private final ThreadLocal<EncodeState> aThreadState =
+		ThreadLocal.withInitial(EncodeState::new);
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance without additional properties.
+	 */
+	public JsonLogFormat()
+	{
+		this(Collections.emptyMap());
+	}
+
+	/***************************************
+	 * Creates a new instance with additional static properties that will be
+	 * added to each record. Values that are numbers or booleans will be
+	 * written as JSON literals, all other values as strings.
+	 *
+	 * @param rStaticFields A mapping from property names to values
+	 */
+	public JsonLogFormat(Map<String, ?> rStaticFields)
+	{
+		StringBuilder aFields = new StringBuilder();
+
+		for (Entry<String, ?> rField : rStaticFields.entrySet())
+		{
+			writeProperty(aFields, rField.getKey(), rField.getValue());
+		}
+
+		sStaticFields = aFields.toString();
+	}
+
+	//~ Static methods ---------------------------------------------------------
+
+	/***************************************
+	 * Appends a string to a buffer as a quoted JSON string.
+	 *
+	 * @param rBuffer The target buffer
+	 * @param rValue  The string value
+	 */
+	static void appendString(StringBuilder rBuffer, CharSequence rValue)
+	{
+		rBuffer.append('"');
+		appendEscaped(rBuffer, rValue, 0, rValue.length());
+		rBuffer.append('"');
+	}
+
+	/***************************************
+	 * Appends a range of characters to a buffer with JSON escaping.
+	 *
+	 * @param rBuffer The target buffer
+	 * @param rValue  The characters to append
+	 * @param nStart  The start of the range
+	 * @param nEnd    The end of the range (exclusive)
+	 */
+	private static void appendEscaped(StringBuilder rBuffer,
+									  CharSequence  rValue,
+									  int			nStart,
+									  int			nEnd)
+	{
+		for (int i = nStart; i < nEnd; i++)
+		{
+			char c = rValue.charAt(i);
+
+			switch (c)
+			{
+				case '"':
+				case '\\':
+					rBuffer.append('\\').append(c);
+					break;
+
+				case '\n':
+					rBuffer.append("\\n");
+					break;
+
+				case '\r':
+					rBuffer.append("\\r");
+					break;
+
+				case '\t':
+					rBuffer.append("\\t");
+					break;
+
+				default:
+
+					if (c < 0x20)
+					{
+						rBuffer.append("\\u00")
+							   .append(HEX_DIGITS[c >> 4])
+							   .append(HEX_DIGITS[c & 0xF]);
+					}
+					else
+					{
+						rBuffer.append(c);
+					}
+			}
+		}
+	}
+
+	/***************************************
+	 * Appends a property with a value of arbitrary type.
+	 *
+	 * @param rBuffer The target buffer
+	 * @param sName   The property name
+	 * @param rValue  The property value (may be NULL)
+	 */
+	private static void writeProperty(StringBuilder rBuffer,
+									  String		sName,
+									  Object		rValue)
+	{
+		rBuffer.append(',');
+		appendString(rBuffer, sName);
+		rBuffer.append(':');
+
+		if (rValue == null)
+		{
+			rBuffer.append("null");
+		}
+		else if (rValue instanceof Number || rValue instanceof Boolean)
+		{
+			rBuffer.append(rValue);
+		}
+		else
+		{
+			appendString(rBuffer, rValue.toString());
+		}
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Encodes a log record into a new JSON string.
+	 *
+	 * @param  rRecord The log record
+	 *
+	 * @return The JSON string
+	 */
+	public String format(LogRecord rRecord)
+	{
+		return encode(rRecord).toString();
+	}
+
+	/***************************************
+	 * Appends the JSON encoding of a log record to a string builder.
+	 *
+	 * @param rRecord The log record
+	 * @param rTarget The target string builder
+	 */
+	public void formatTo(LogRecord rRecord, StringBuilder rTarget)
+	{
+		rTarget.append(encode(rRecord));
+	}
+
+	/***************************************
+	 * Writes the JSON encoding of a log record followed by a line separator to
+	 * a print writer.
+	 *
+	 * @param rRecord The log record
+	 * @param rOut    The target writer
+	 */
+	public void println(LogRecord rRecord, PrintWriter rOut)
+	{
+		EncodeState   rState  = aThreadState.get();
+		StringBuilder rBuffer = encode(rRecord).append(LINE_SEPARATOR);
+		int			  nLength = rBuffer.length();
+
+		if (rState.aChars.length < nLength)
+		{
+			rState.aChars =
+				new char[Math.max(nLength, rState.aChars.length * 2)];
+		}
+
+		rBuffer.getChars(0, nLength, rState.aChars, 0);
+
+		// a single write so that concurrent lines cannot interleave
+		rOut.write(rState.aChars, 0, nLength);
+	}
+
+	/***************************************
+	 * Encodes a log record into the buffer of the current thread.
+	 *
+	 * @param  rRecord The log record
+	 *
+	 * @return The buffer of the current thread
+	 */
+	protected StringBuilder encode(LogRecord rRecord)
+	{
+		EncodeState   rState  = aThreadState.get();
+		StringBuilder rBuffer = rState.aBuffer;
+
+		rBuffer.setLength(0);
+		rBuffer.append("{\"timestamp\":\"");
+		writeTimestamp(rRecord.getTime(), rState);
+		rBuffer.append("\",\"level\":\"")
+			   .append(rRecord.getLevel().name())
+			   .append('"');
+
+		// records decoded from recorded data have no thread
+		if (rRecord.getLogThread() != null)
+		{
+			rBuffer.append(",\"thread\":");
+			appendString(rBuffer, rRecord.getLogThread().getName());
+		}
+
+		if (rRecord.hasLocation())
+		{
+			StackTraceElement rLocation = rRecord.getLogLocation();
+
+			rBuffer.append(",\"logger\":");
+			appendString(rBuffer, rLocation.getClassName());
+			rBuffer.append(",\"location\":{\"method\":");
+			appendString(rBuffer, rLocation.getMethodName());
+
+			if (rLocation.getFileName() != null)
+			{
+				rBuffer.append(",\"file\":");
+				appendString(rBuffer, rLocation.getFileName());
+			}
+
+			rBuffer.append(",\"line\":")
+				   .append(rLocation.getLineNumber())
+				   .append('}');
+		}
+
+		rBuffer.append(",\"message\":");
+		writeMessage(rRecord, rState);
+
+		if (rRecord.getCause() != null)
+		{
+			rBuffer.append(",\"exception\":");
+			writeException(rBuffer, rRecord.getCause(), 0);
+		}
+
+		rBuffer.append(sStaticFields);
+		writeContext(rRecord, rBuffer);
+		rBuffer.append('}');
+
+		return rBuffer;
+	}
+
+	/***************************************
+	 * Writes the context properties of a log record. The default
+	 * implementation writes the {@link LogRecord#getContext() log context}
+	 * as a nested object if it is not empty. Subclasses can override this
+	 * method to write additional properties, each with a leading comma.
+	 *
+	 * @param rRecord The log record
+	 * @param rBuffer The target buffer
+	 */
+	protected void writeContext(LogRecord rRecord, StringBuilder rBuffer)
+	{
+		Map<String, String> rContext = rRecord.getContext();
+
+		if (!rContext.isEmpty())
+		{
+			char cSeparator = '{';
+
+			rBuffer.append(",\"context\":");
+
+			for (Entry<String, String> rField : rContext.entrySet())
+			{
+				rBuffer.append(cSeparator);
+				appendString(rBuffer, rField.getKey());
+				rBuffer.append(':');
+				appendString(rBuffer, rField.getValue());
+				cSeparator = ',';
+			}
+
+			rBuffer.append('}');
+		}
+	}
+
+	/***************************************
+	 * Writes an exception object including the causing exceptions.
+	 *
+	 * @param rBuffer    The target buffer
+	 * @param rException The exception
+	 * @param nDepth     The depth of the exception in the chain of causes
+	 */
+	private void writeException(StringBuilder rBuffer,
+								Throwable	  rException,
+								int			  nDepth)
+	{
+		StackTraceElement[] rStack = rException.getStackTrace();
+		int				    nCount =
+			Math.min(rStack.length, StackTraceRenderer.getMaxDepth());
+
+		rBuffer.append("{\"class\":");
+		appendString(rBuffer, rException.getClass().getName());
+
+		if (rException.getMessage() != null)
+		{
+			rBuffer.append(",\"message\":");
+			appendString(rBuffer, rException.getMessage());
+		}
+
+		rBuffer.append(",\"stack\":[");
+
+		for (int i = 0; i < nCount; i++)
+		{
+			StackTraceElement rElement = rStack[i];
+
+			if (i > 0)
+			{
+				rBuffer.append(',');
+			}
+
+			rBuffer.append('"');
+			appendEscaped(rBuffer,
+						  rElement.getClassName(),
+						  0,
+						  rElement.getClassName().length());
+			rBuffer.append('.');
+			appendEscaped(rBuffer,
+						  rElement.getMethodName(),
+						  0,
+						  rElement.getMethodName().length());
+			rBuffer.append(':').append(rElement.getLineNumber()).append('"');
+		}
+
+		rBuffer.append(']');
+
+		Throwable rCause = rException.getCause();
+
+		if (rCause != null && rCause != rException && nDepth < MAX_CAUSE_DEPTH)
+		{
+			rBuffer.append(",\"cause\":");
+			writeException(rBuffer, rCause, nDepth + 1);
+		}
+
+		rBuffer.append('}');
+	}
+
+	/***************************************
+	 * Writes the log message as a JSON string. Formatted messages are first
+	 * formatted into a per-thread scratch buffer which is then escaped into
+	 * the output.
+	 *
+	 * @param rRecord The log record
+	 * @param rState  The encoding state of the current thread
+	 */
+	private void writeMessage(LogRecord rRecord, EncodeState rState)
+	{
+		StringBuilder rBuffer = rState.aBuffer;
+		Object[]	  rValues = rRecord.getMessageValues();
+		String		  sFormat = rRecord.getMessageFormat();
+
+		if (sFormat == null)
+		{
+			rBuffer.append("null");
+		}
+		else if (rValues != null)
+		{
+			StringBuilder rMessage = rState.aMessage;
+
+			rMessage.setLength(0);
+			rState.aFormatter.format(sFormat, rValues);
+			rBuffer.append('"');
+			appendEscaped(rBuffer, rMessage, 0, rMessage.length());
+			rBuffer.append('"');
+		}
+		else
+		{
+			appendString(rBuffer, sFormat);
+		}
+	}
+
+	/***************************************
+	 * Writes the ISO-8601 timestamp of a record. The part up to the seconds is
+	 * cached per thread.
+	 *
+	 * @param nTime  The time in milliseconds
+	 * @param rState The encoding state of the current thread
+	 */
+	private void writeTimestamp(long nTime, EncodeState rState)
+	{
+		long nSecond = Math.floorDiv(nTime, 1000);
+		int  nMillis = (int) Math.floorMod(nTime, 1000);
+
+		if (nSecond != rState.nCachedSecond)
+		{
+			rState.sCachedSecond =
+				TIMESTAMP_FORMAT.format(Instant.ofEpochSecond(nSecond));
+			rState.nCachedSecond = nSecond;
+		}
+
+		rState.aBuffer.append(rState.sCachedSecond).append('.');
+
+		if (nMillis < 100)
+		{
+			rState.aBuffer.append('0');
+		}
+
+		if (nMillis < 10)
+		{
+			rState.aBuffer.append('0');
+		}
+
+		rState.aBuffer.append(nMillis).append('Z');
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * The reusable per-thread state of the encoding.
+	 *
+	 * @author eso
+	 */
+	static class EncodeState
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		final StringBuilder aBuffer    = new StringBuilder(512);
+		final StringBuilder aMessage   = new StringBuilder(256);
+		final Formatter     aFormatter = new Formatter(aMessage);
+
+		char[] aChars = new char[512];
+
+		long   nCachedSecond = Long.MIN_VALUE;
+		String sCachedSecond = null;
+	}
+}
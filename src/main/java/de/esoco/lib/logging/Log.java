@@ -17,18 +17,23 @@
 package de.esoco.lib.logging;
 
 import de.esoco.lib.expression.function.Group;
+import de.esoco.lib.logging.AsyncLogDispatcher.OverflowPolicy;
 import de.esoco.lib.reflect.ReflectUtil;
 
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 
+import java.nio.file.Paths;
+
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import org.obrel.core.RelationType;
 import org.obrel.core.RelationTypes;
@@ -63,6 +68,17 @@ import static org.obrel.core.RelationTypes.newInitialValueType;
  * place on actual output. If the formatting of message objects is expensive
  * these methods should be used to prevent unnecessary string conversions.</p>
  *
+ * <p>The format methods have overloads for up to four arguments and for single
+ * int and long arguments which check the log level before the argument array
+ * is created or primitive values are boxed. Messages that are expensive to
+ * create can be logged with the methods that accept a {@link Supplier} (like
+ * {@link #debug(Supplier)}), which will only be invoked if the log level is
+ * enabled. These checks consider the log levels that have been set for
+ * packages or classes. If such a level could disable the checked level the
+ * calling class will be determined from the current stack. To guard larger
+ * blocks of logging code without this overhead {@link #isLevelEnabled(Class,
+ * LogLevel)} can be used.</p>
+ *
  * <p>The logging can be controlled by several system properties which can be
  * set on the command line of a VM with the '-D' switch. The supported logging
  * properties are:</p>
@@ -78,6 +94,27 @@ import static org.obrel.core.RelationTypes.newInitialValueType;
  *     name]=[LogLevel], multiple entries must be separated by commas. If a
  *     package name is given the given log level applies to all classes in the
  *     package and it's sub-packages.</li>
+ *   <li>esoco.log.levels=[filename]: a properties file with package log levels
+ *     in the same format as 'esoco.log.plevels' (one entry per line). The file
+ *     will be watched and changes are applied at runtime (see {@link
+ *     LogLevelWatcher}).</li>
+ *   <li>esoco.log.async=[capacity]: enables asynchronous logging with a ring
+ *     buffer of the given capacity and a blocking overflow policy (see {@link
+ *     #enableAsyncLogging(int, OverflowPolicy, LogLevel)}).</li>
+ *   <li>esoco.log.json=[true|false]: if set to true the standard log handler
+ *     writes each log record as a single-line JSON object (see {@link
+ *     JsonLogFormat}).</li>
+ *   <li>esoco.log.ratelimit=[count]/[milliseconds]: limits the number of log
+ *     records per call site in a time window (see {@link
+ *     #enableRateLimiting(int, long, int)}).</li>
+ *   <li>esoco.log.location=[true|false]: if set to false the source location
+ *     of log calls will not be captured (see {@link
+ *     LogRecord#setCaptureLocation(boolean)}).</li>
+ *   <li>esoco.log.tracedepth=[frames]: the maximum number of stack frames
+ *     that are logged for each exception (see {@link StackTraceRenderer}).
+ *   </li>
+ *   <li>esoco.log.tracecache=[size]: the maximum number of rendered stack
+ *     traces to cache (see {@link StackTraceRenderer}).</li>
  * </ul>
  *
  * @author eso
@@ -100,10 +137,13 @@ public final class Log
 	public static final RelationType<LogLevel> LOG_LEVEL =
 		newInitialValueType(LogLevel.ERROR);
 
+	/** The pattern of the default log format */
+	public static final String DEFAULT_FORMAT_PATTERN =
+		"[{level:F%-5s}]{t:Dyyyy.MM.dd-HH:mm:ss}: {message}  [{package}.{class}.{method}() [{line}]]";
+
 	/** The default log string transformation for log output */
 	public static final LogRecordFormat DEFAULT_FORMAT =
-		new LogRecordFormat(
-			"[{level:F%-5s}]{t:Dyyyy.MM.dd-HH:mm:ss}: {message}  [{package}.{class}.{method}() [{line}]]");
+		new LogRecordFormat(DEFAULT_FORMAT_PATTERN);
 
 	/**
 	 * A log string transformation for the full exception stacktrace, including
@@ -115,13 +155,24 @@ public final class Log
 
 	private static final Object[] NO_ARGS = null;
 
-	private static Map<String, Consumer<? super LogRecord>> aLogHandlerRegistry =
-		new HashMap<>();
-	private static Map<String, Consumer<? super LogRecord>> aLogHandlerCache    =
-		new HashMap<>();
+	private static final Map<String, Consumer<? super LogRecord>> aLogHandlerRegistry =
+		new ConcurrentHashMap<>();
+
+	// replaced on changes instead of cleared for an atomic invalidation
+	private static volatile Map<String, Consumer<? super LogRecord>> aLogHandlerCache =
+		new ConcurrentHashMap<>();
 
-	private static Consumer<LogRecord> aStandardLogHandler;
-	private static Group<LogRecord>    aDefaultLogHandlers;
+	private static final Map<String, LogLevel> aLogLevelRegistry =
+		new ConcurrentHashMap<>();
+
+	private static volatile Map<String, LogLevel> aEffectiveLevelCache =
+		new ConcurrentHashMap<>();
+
+	private static volatile LogLevel eMaxPackageLevel = TRACE;
+
+	private static Consumer<LogRecord>					  aStandardLogHandler;
+	private static volatile Group<LogRecord>			  aDefaultLogHandlers;
+	private static volatile Consumer<? super LogRecord> aDefaultLogHandler;
 
 	private static LogLevelFilter aGlobalLevelFilter =
 		LogLevelFilter.startingAt(ERROR);
@@ -129,11 +180,20 @@ public final class Log
 	@SuppressWarnings("rawtypes")
 	private static Map<Class<? extends LogAspect>, LogAspect<?>> aLogAspects;
 
+	private static volatile AsyncLogDispatcher aAsyncDispatcher = null;
+	private static volatile LogRateLimiter	   aRateLimiter     = null;
+
+	private static volatile Consumer<? super LogRecord> fLogCapture   = null;
+	private static volatile int						nCaptureLevel = Integer.MAX_VALUE;
+
 	static
 	{
 		RelationTypes.init(Log.class);
 		setupStandardLogHandler();
 		setupPackageLogHandlers();
+		setupLevelWatcher();
+		setupAsyncLogging();
+		setupRateLimiting();
 	}
 
 	//~ Constructors -----------------------------------------------------------
@@ -161,15 +221,13 @@ public final class Log
 	{
 		Objects.requireNonNull(rHandler);
 
-		synchronized (aLogHandlerCache)
+		synchronized (aLogHandlerRegistry)
 		{
 			List<Consumer<? super LogRecord>> rFunctions =
 				aDefaultLogHandlers.getMembers();
 
 			rFunctions.add(rHandler);
-			aDefaultLogHandlers = new Group<>(rFunctions);
-
-			aLogHandlerCache.clear();
+			setDefaultLogHandlers(new Group<>(rFunctions));
 		}
 	}
 
@@ -220,6 +278,19 @@ public final class Log
 		logImpl(DEBUG, rCause, "%s", sMessage, NO_ARGS);
 	}
 
+	/***************************************
+	 * Logs a message that is only created if the debug log level is enabled.
+	 *
+	 * @param fMessage A function that returns the log message
+	 */
+	public static void debug(Supplier<String> fMessage)
+	{
+		if (isLogged(DEBUG))
+		{
+			logImpl(DEBUG, null, fMessage.get(), NO_ARGS);
+		}
+	}
+
 	/***************************************
 	 * Logs a formatted message at debug log level.
 	 *
@@ -231,6 +302,109 @@ public final class Log
 		logImpl(DEBUG, null, sFormat, rArgs);
 	}
 
+	/***************************************
+	 * Logs a formatted message with one argument at debug log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg    The format argument
+	 */
+	public static void debugf(String sFormat, Object rArg)
+	{
+		if (isLogged(DEBUG))
+		{
+			logImpl(DEBUG, null, sFormat, rArg);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with two arguments at debug log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 */
+	public static void debugf(String sFormat, Object rArg1, Object rArg2)
+	{
+		if (isLogged(DEBUG))
+		{
+			logImpl(DEBUG, null, sFormat, rArg1, rArg2);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with three arguments at debug log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 */
+	public static void debugf(String sFormat,
+							  Object rArg1,
+							  Object rArg2,
+							  Object rArg3)
+	{
+		if (isLogged(DEBUG))
+		{
+			logImpl(DEBUG, null, sFormat, rArg1, rArg2, rArg3);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with four arguments at debug log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 * @param rArg4   The fourth format argument
+	 */
+	public static void debugf(String sFormat,
+							  Object rArg1,
+							  Object rArg2,
+							  Object rArg3,
+							  Object rArg4)
+	{
+		if (isLogged(DEBUG))
+		{
+			logImpl(DEBUG, null, sFormat, rArg1, rArg2, rArg3, rArg4);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an int argument at debug log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void debugf(String sFormat, int nArg)
+	{
+		if (isLogged(DEBUG))
+		{
+			logImpl(DEBUG, null, sFormat, Integer.valueOf(nArg));
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an long argument at debug log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void debugf(String sFormat, long nArg)
+	{
+		if (isLogged(DEBUG))
+		{
+			logImpl(DEBUG, null, sFormat, Long.valueOf(nArg));
+		}
+	}
+
 	/***************************************
 	 * Logs a formatted message and an exception at debug log level.
 	 *
@@ -243,6 +417,79 @@ public final class Log
 		logImpl(DEBUG, rCause, sFormat, rArgs);
 	}
 
+	/***************************************
+	 * Disables asynchronous logging if it had been enabled with {@link
+	 * #enableAsyncLogging(int, OverflowPolicy, LogLevel)}. All queued log
+	 * records will be processed before this method returns.
+	 */
+	public static synchronized void disableAsyncLogging()
+	{
+		AsyncLogDispatcher rDispatcher = aAsyncDispatcher;
+
+		if (rDispatcher != null)
+		{
+			aAsyncDispatcher = null;
+			rDispatcher.shutdown();
+		}
+	}
+
+	/***************************************
+	 * Disables the rate limiting of log calls if it had been enabled with
+	 * {@link #enableRateLimiting(int, long, int)}.
+	 */
+	public static void disableRateLimiting()
+	{
+		aRateLimiter = null;
+	}
+
+	/***************************************
+	 * Enables asynchronous logging. The log records will then be created in
+	 * the logging thread but queued in a bounded ring buffer and handed to the
+	 * log handlers by a separate thread. Log handlers will therefore not be
+	 * invoked in the logging thread anymore. Queued records will be processed
+	 * before the VM terminates or when {@link #flush()} or {@link
+	 * #disableAsyncLogging()} are invoked. If asynchronous logging is already
+	 * enabled the existing dispatcher will be replaced.
+	 *
+	 * @param nCapacity         The capacity of the ring buffer
+	 * @param eOverflowPolicy   The policy for a full ring buffer
+	 * @param eMinBlockingLevel The minimum level of records that will never be
+	 *                          dropped if the policy is {@link
+	 *                          OverflowPolicy#DROP_BELOW_LEVEL}
+	 */
+	public static synchronized void enableAsyncLogging(
+		int			   nCapacity,
+		OverflowPolicy eOverflowPolicy,
+		LogLevel	   eMinBlockingLevel)
+	{
+		disableAsyncLogging();
+
+		aAsyncDispatcher =
+			new AsyncLogDispatcher(Log::processLogRecord,
+								   nCapacity,
+								   eOverflowPolicy,
+								   eMinBlockingLevel);
+	}
+
+	/***************************************
+	 * Enables the rate limiting of log calls per call site (see {@link
+	 * LogRateLimiter}). Records that exceed the limit will be suppressed and
+	 * summarized in a single record per call site and time window. An
+	 * existing rate limit will be replaced.
+	 *
+	 * @param nMaxRecords The maximum number of records per call site in a time
+	 *                    window
+	 * @param nWindow     The length of the time window in milliseconds
+	 * @param nSampleRate If greater than zero every n-th record that exceeds
+	 *                    the limit will still be logged
+	 */
+	public static void enableRateLimiting(int  nMaxRecords,
+										  long nWindow,
+										  int  nSampleRate)
+	{
+		aRateLimiter = new LogRateLimiter(nMaxRecords, nWindow, nSampleRate);
+	}
+
 	/***************************************
 	 * Logs a message at error log level.
 	 *
@@ -264,6 +511,19 @@ public final class Log
 		logImpl(ERROR, rCause, "%s", sMessage, NO_ARGS);
 	}
 
+	/***************************************
+	 * Logs a message that is only created if the error log level is enabled.
+	 *
+	 * @param fMessage A function that returns the log message
+	 */
+	public static void error(Supplier<String> fMessage)
+	{
+		if (isLogged(ERROR))
+		{
+			logImpl(ERROR, null, fMessage.get(), NO_ARGS);
+		}
+	}
+
 	/***************************************
 	 * Logs a formatted message at error log level.
 	 *
@@ -275,6 +535,109 @@ public final class Log
 		logImpl(ERROR, null, sFormat, rArgs);
 	}
 
+	/***************************************
+	 * Logs a formatted message with one argument at error log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg    The format argument
+	 */
+	public static void errorf(String sFormat, Object rArg)
+	{
+		if (isLogged(ERROR))
+		{
+			logImpl(ERROR, null, sFormat, rArg);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with two arguments at error log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 */
+	public static void errorf(String sFormat, Object rArg1, Object rArg2)
+	{
+		if (isLogged(ERROR))
+		{
+			logImpl(ERROR, null, sFormat, rArg1, rArg2);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with three arguments at error log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 */
+	public static void errorf(String sFormat,
+							  Object rArg1,
+							  Object rArg2,
+							  Object rArg3)
+	{
+		if (isLogged(ERROR))
+		{
+			logImpl(ERROR, null, sFormat, rArg1, rArg2, rArg3);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with four arguments at error log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 * @param rArg4   The fourth format argument
+	 */
+	public static void errorf(String sFormat,
+							  Object rArg1,
+							  Object rArg2,
+							  Object rArg3,
+							  Object rArg4)
+	{
+		if (isLogged(ERROR))
+		{
+			logImpl(ERROR, null, sFormat, rArg1, rArg2, rArg3, rArg4);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an int argument at error log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void errorf(String sFormat, int nArg)
+	{
+		if (isLogged(ERROR))
+		{
+			logImpl(ERROR, null, sFormat, Integer.valueOf(nArg));
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an long argument at error log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void errorf(String sFormat, long nArg)
+	{
+		if (isLogged(ERROR))
+		{
+			logImpl(ERROR, null, sFormat, Long.valueOf(nArg));
+		}
+	}
+
 	/***************************************
 	 * Logs a formatted message and an exception at error log level.
 	 *
@@ -308,6 +671,19 @@ public final class Log
 		logImpl(FATAL, rCause, "%s", sMessage, NO_ARGS);
 	}
 
+	/***************************************
+	 * Logs a message that is only created if the fatal log level is enabled.
+	 *
+	 * @param fMessage A function that returns the log message
+	 */
+	public static void fatal(Supplier<String> fMessage)
+	{
+		if (isLogged(FATAL))
+		{
+			logImpl(FATAL, null, fMessage.get(), NO_ARGS);
+		}
+	}
+
 	/***************************************
 	 * Logs a formatted message at fatal log level.
 	 *
@@ -319,6 +695,109 @@ public final class Log
 		logImpl(FATAL, null, sFormat, rArgs);
 	}
 
+	/***************************************
+	 * Logs a formatted message with one argument at fatal log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg    The format argument
+	 */
+	public static void fatalf(String sFormat, Object rArg)
+	{
+		if (isLogged(FATAL))
+		{
+			logImpl(FATAL, null, sFormat, rArg);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with two arguments at fatal log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 */
+	public static void fatalf(String sFormat, Object rArg1, Object rArg2)
+	{
+		if (isLogged(FATAL))
+		{
+			logImpl(FATAL, null, sFormat, rArg1, rArg2);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with three arguments at fatal log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 */
+	public static void fatalf(String sFormat,
+							  Object rArg1,
+							  Object rArg2,
+							  Object rArg3)
+	{
+		if (isLogged(FATAL))
+		{
+			logImpl(FATAL, null, sFormat, rArg1, rArg2, rArg3);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with four arguments at fatal log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 * @param rArg4   The fourth format argument
+	 */
+	public static void fatalf(String sFormat,
+							  Object rArg1,
+							  Object rArg2,
+							  Object rArg3,
+							  Object rArg4)
+	{
+		if (isLogged(FATAL))
+		{
+			logImpl(FATAL, null, sFormat, rArg1, rArg2, rArg3, rArg4);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an int argument at fatal log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void fatalf(String sFormat, int nArg)
+	{
+		if (isLogged(FATAL))
+		{
+			logImpl(FATAL, null, sFormat, Integer.valueOf(nArg));
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an long argument at fatal log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void fatalf(String sFormat, long nArg)
+	{
+		if (isLogged(FATAL))
+		{
+			logImpl(FATAL, null, sFormat, Long.valueOf(nArg));
+		}
+	}
+
 	/***************************************
 	 * Logs a formatted message and an exception at fatal log level.
 	 *
@@ -331,6 +810,30 @@ public final class Log
 		logImpl(FATAL, rCause, sFormat, rArgs);
 	}
 
+	/***************************************
+	 * Waits until all asynchronously queued log records have been processed.
+	 * Returns immediately if asynchronous logging is not enabled.
+	 */
+	public static void flush()
+	{
+		AsyncLogDispatcher rDispatcher = aAsyncDispatcher;
+
+		if (rDispatcher != null)
+		{
+			rDispatcher.flush();
+		}
+	}
+
+	/***************************************
+	 * Returns the dispatcher for asynchronous logging.
+	 *
+	 * @return The dispatcher or NULL if asynchronous logging is not enabled
+	 */
+	public static AsyncLogDispatcher getAsyncLogDispatcher()
+	{
+		return aAsyncDispatcher;
+	}
+
 	/***************************************
 	 * Returns the global minimum log level that is currently set.
 	 *
@@ -341,6 +844,31 @@ public final class Log
 		return aGlobalLevelFilter.getMinimumLevel();
 	}
 
+	/***************************************
+	 * Returns a log aspect that has been registered with {@link
+	 * #addLogAspect(LogAspect)}.
+	 *
+	 * @param  rLogAspectType The class of the log aspect
+	 *
+	 * @return The log aspect or NULL if no such aspect has been registered
+	 */
+	public static <A extends LogAspect<?>> A getLogAspect(
+		Class<A> rLogAspectType)
+	{
+		return aLogAspects != null
+			   ? rLogAspectType.cast(aLogAspects.get(rLogAspectType)) : null;
+	}
+
+	/***************************************
+	 * Returns the rate limiter of log calls.
+	 *
+	 * @return The rate limiter or NULL if rate limiting is not enabled
+	 */
+	public static LogRateLimiter getRateLimiter()
+	{
+		return aRateLimiter;
+	}
+
 	/***************************************
 	 * Returns the log handler that has been registered for a certain package or
 	 * class.
@@ -390,14 +918,130 @@ public final class Log
 	}
 
 	/***************************************
-	 * Logs a formatted message at info log level.
+	 * Logs a message that is only created if the info log level is enabled.
 	 *
-	 * @param sFormat The format of the log message
-	 * @param rArgs   The optional arguments to format as the log message
+	 * @param fMessage A function that returns the log message
 	 */
-	public static void infof(String sFormat, Object... rArgs)
+	public static void info(Supplier<String> fMessage)
 	{
-		logImpl(INFO, null, sFormat, rArgs);
+		if (isLogged(INFO))
+		{
+			logImpl(INFO, null, fMessage.get(), NO_ARGS);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message at info log level.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArgs   The optional arguments to format as the log message
+	 */
+	public static void infof(String sFormat, Object... rArgs)
+	{
+		logImpl(INFO, null, sFormat, rArgs);
+	}
+
+	/***************************************
+	 * Logs a formatted message with one argument at info log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg    The format argument
+	 */
+	public static void infof(String sFormat, Object rArg)
+	{
+		if (isLogged(INFO))
+		{
+			logImpl(INFO, null, sFormat, rArg);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with two arguments at info log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 */
+	public static void infof(String sFormat, Object rArg1, Object rArg2)
+	{
+		if (isLogged(INFO))
+		{
+			logImpl(INFO, null, sFormat, rArg1, rArg2);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with three arguments at info log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 */
+	public static void infof(String sFormat,
+							 Object rArg1,
+							 Object rArg2,
+							 Object rArg3)
+	{
+		if (isLogged(INFO))
+		{
+			logImpl(INFO, null, sFormat, rArg1, rArg2, rArg3);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with four arguments at info log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 * @param rArg4   The fourth format argument
+	 */
+	public static void infof(String sFormat,
+							 Object rArg1,
+							 Object rArg2,
+							 Object rArg3,
+							 Object rArg4)
+	{
+		if (isLogged(INFO))
+		{
+			logImpl(INFO, null, sFormat, rArg1, rArg2, rArg3, rArg4);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an int argument at info log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void infof(String sFormat, int nArg)
+	{
+		if (isLogged(INFO))
+		{
+			logImpl(INFO, null, sFormat, Integer.valueOf(nArg));
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an long argument at info log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void infof(String sFormat, long nArg)
+	{
+		if (isLogged(INFO))
+		{
+			logImpl(INFO, null, sFormat, Long.valueOf(nArg));
+		}
 	}
 
 	/***************************************
@@ -427,6 +1071,25 @@ public final class Log
 		return aGlobalLevelFilter.isLevelEnabled(rLevel);
 	}
 
+	/***************************************
+	 * Checks if a log level is enabled for logging from a certain class. This
+	 * considers the global log levels and the minimum log level that has been
+	 * set for the class or one of it's packages with {@link
+	 * #setLogLevel(String, LogLevel)}. The effective level of a class is cached
+	 * so that this method can be used to guard expensive log calls in
+	 * frequently executed code.
+	 *
+	 * @param  rClass The class to check the log level for
+	 * @param  eLevel The log level to check
+	 *
+	 * @return TRUE if the level is enabled for logging from the given class
+	 */
+	public static boolean isLevelEnabled(Class<?> rClass, LogLevel eLevel)
+	{
+		return aGlobalLevelFilter.isLevelEnabled(eLevel) &&
+			   eLevel.compareTo(getEffectiveLogLevel(rClass.getName())) >= 0;
+	}
+
 	/***************************************
 	 * Generic method to log a message at a certain log level.
 	 *
@@ -519,14 +1182,13 @@ public final class Log
 	public static void removeDefaultLogHandler(
 		Consumer<? super LogRecord> rHandler)
 	{
-		synchronized (aLogHandlerCache)
+		synchronized (aLogHandlerRegistry)
 		{
 			List<Consumer<? super LogRecord>> rFunctions =
 				aDefaultLogHandlers.getMembers();
 
 			rFunctions.remove(rHandler);
-			aDefaultLogHandlers = new Group<>(rFunctions);
-			aLogHandlerCache.clear();
+			setDefaultLogHandlers(new Group<>(rFunctions));
 		}
 	}
 
@@ -588,11 +1250,43 @@ public final class Log
 		aGlobalLevelFilter = LogLevelFilter.startingAt(rLevel);
 	}
 
+	/***************************************
+	 * Sets a function that captures all log records of a certain minimum level
+	 * independent of the global log levels and the log handlers. The capture
+	 * function will be invoked directly in the logging thread before the
+	 * record is handed to the log handlers and it will also receive the records
+	 * of levels that are globally disabled. It must therefore be fast and must
+	 * not block. Only one capture function can be set at a time.
+	 *
+	 * @param fCapture  The capture function or NULL to disable capturing
+	 * @param eMinLevel The minimum level of the records to capture
+	 */
+	public static void setLogCapture(
+		Consumer<? super LogRecord> fCapture,
+		LogLevel					eMinLevel)
+	{
+		if (fCapture != null)
+		{
+			fLogCapture   = fCapture;
+			nCaptureLevel = eMinLevel.ordinal();
+		}
+		else
+		{
+			nCaptureLevel = Integer.MAX_VALUE;
+			fLogCapture   = null;
+		}
+	}
+
 	/***************************************
 	 * Sets the minimum log level for a certain class or package. This will only
 	 * have an effect if the global log level is lower than the given package
 	 * level. This allows to reduce the log output for certain classes or
-	 * (parent) packages.
+	 * (parent) packages. The level is evaluated when a record is dispatched by
+	 * the closest level of the record's class or it's parent packages, so the
+	 * order in which the levels of related packages are set is irrelevant.
+	 * Levels of parent packages don't apply to classes below a package or
+	 * class for which a log handler has been registered. A log handler that
+	 * has been registered for the same name will be removed.
 	 *
 	 * @param sPackageOrClass The name of the class or package to set the log
 	 *                        level for
@@ -602,16 +1296,21 @@ public final class Log
 	 */
 	public static void setLogLevel(String sPackageOrClass, LogLevel eLevel)
 	{
-		// first clear any previous handler
-		registerLogHandler(sPackageOrClass, null);
-
-		if (eLevel != null)
+		synchronized (aLogHandlerRegistry)
 		{
-			registerLogHandler(
-				sPackageOrClass,
-				doIf(
-					LogLevelFilter.startingAt(eLevel),
-					findLogHandler(sPackageOrClass)));
+			// a level replaces any previous handler for the same name
+			aLogHandlerRegistry.remove(sPackageOrClass);
+
+			if (eLevel != null)
+			{
+				aLogLevelRegistry.put(sPackageOrClass, eLevel);
+			}
+			else
+			{
+				aLogLevelRegistry.remove(sPackageOrClass);
+			}
+
+			invalidateCaches(sPackageOrClass);
 		}
 	}
 
@@ -636,6 +1335,19 @@ public final class Log
 		logImpl(TRACE, rCause, "%s", sMessage, NO_ARGS);
 	}
 
+	/***************************************
+	 * Logs a message that is only created if the trace log level is enabled.
+	 *
+	 * @param fMessage A function that returns the log message
+	 */
+	public static void trace(Supplier<String> fMessage)
+	{
+		if (isLogged(TRACE))
+		{
+			logImpl(TRACE, null, fMessage.get(), NO_ARGS);
+		}
+	}
+
 	/***************************************
 	 * Logs a formatted message and an exception at trace log level.
 	 *
@@ -647,6 +1359,109 @@ public final class Log
 		logImpl(TRACE, null, sFormat, rArgs);
 	}
 
+	/***************************************
+	 * Logs a formatted message with one argument at trace log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg    The format argument
+	 */
+	public static void tracef(String sFormat, Object rArg)
+	{
+		if (isLogged(TRACE))
+		{
+			logImpl(TRACE, null, sFormat, rArg);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with two arguments at trace log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 */
+	public static void tracef(String sFormat, Object rArg1, Object rArg2)
+	{
+		if (isLogged(TRACE))
+		{
+			logImpl(TRACE, null, sFormat, rArg1, rArg2);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with three arguments at trace log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 */
+	public static void tracef(String sFormat,
+							  Object rArg1,
+							  Object rArg2,
+							  Object rArg3)
+	{
+		if (isLogged(TRACE))
+		{
+			logImpl(TRACE, null, sFormat, rArg1, rArg2, rArg3);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with four arguments at trace log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 * @param rArg4   The fourth format argument
+	 */
+	public static void tracef(String sFormat,
+							  Object rArg1,
+							  Object rArg2,
+							  Object rArg3,
+							  Object rArg4)
+	{
+		if (isLogged(TRACE))
+		{
+			logImpl(TRACE, null, sFormat, rArg1, rArg2, rArg3, rArg4);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an int argument at trace log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void tracef(String sFormat, int nArg)
+	{
+		if (isLogged(TRACE))
+		{
+			logImpl(TRACE, null, sFormat, Integer.valueOf(nArg));
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an long argument at trace log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void tracef(String sFormat, long nArg)
+	{
+		if (isLogged(TRACE))
+		{
+			logImpl(TRACE, null, sFormat, Long.valueOf(nArg));
+		}
+	}
+
 	/***************************************
 	 * Logs a formatted message at trace log level.
 	 *
@@ -680,6 +1495,19 @@ public final class Log
 		logImpl(WARN, rCause, "%s", sMessage, NO_ARGS);
 	}
 
+	/***************************************
+	 * Logs a message that is only created if the warn log level is enabled.
+	 *
+	 * @param fMessage A function that returns the log message
+	 */
+	public static void warn(Supplier<String> fMessage)
+	{
+		if (isLogged(WARN))
+		{
+			logImpl(WARN, null, fMessage.get(), NO_ARGS);
+		}
+	}
+
 	/***************************************
 	 * Logs a formatted message at warn log level.
 	 *
@@ -691,6 +1519,109 @@ public final class Log
 		logImpl(WARN, null, sFormat, rArgs);
 	}
 
+	/***************************************
+	 * Logs a formatted message with one argument at warn log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg    The format argument
+	 */
+	public static void warnf(String sFormat, Object rArg)
+	{
+		if (isLogged(WARN))
+		{
+			logImpl(WARN, null, sFormat, rArg);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with two arguments at warn log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 */
+	public static void warnf(String sFormat, Object rArg1, Object rArg2)
+	{
+		if (isLogged(WARN))
+		{
+			logImpl(WARN, null, sFormat, rArg1, rArg2);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with three arguments at warn log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 */
+	public static void warnf(String sFormat,
+							 Object rArg1,
+							 Object rArg2,
+							 Object rArg3)
+	{
+		if (isLogged(WARN))
+		{
+			logImpl(WARN, null, sFormat, rArg1, rArg2, rArg3);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with four arguments at warn log level. The
+	 * argument array will only be created if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param rArg1   The first format argument
+	 * @param rArg2   The second format argument
+	 * @param rArg3   The third format argument
+	 * @param rArg4   The fourth format argument
+	 */
+	public static void warnf(String sFormat,
+							 Object rArg1,
+							 Object rArg2,
+							 Object rArg3,
+							 Object rArg4)
+	{
+		if (isLogged(WARN))
+		{
+			logImpl(WARN, null, sFormat, rArg1, rArg2, rArg3, rArg4);
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an int argument at warn log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void warnf(String sFormat, int nArg)
+	{
+		if (isLogged(WARN))
+		{
+			logImpl(WARN, null, sFormat, Integer.valueOf(nArg));
+		}
+	}
+
+	/***************************************
+	 * Logs a formatted message with an long argument at warn log level. The
+	 * argument will only be boxed if the level is enabled.
+	 *
+	 * @param sFormat The format of the log message
+	 * @param nArg    The format argument
+	 */
+	public static void warnf(String sFormat, long nArg)
+	{
+		if (isLogged(WARN))
+		{
+			logImpl(WARN, null, sFormat, Long.valueOf(nArg));
+		}
+	}
+
 	/***************************************
 	 * Logs a formatted message and an exception at warn log level.
 	 *
@@ -703,6 +1634,30 @@ public final class Log
 		logImpl(WARN, rCause, sFormat, rArgs);
 	}
 
+	/***************************************
+	 * Returns a copy of a cache map without the entries of a certain package
+	 * or class and the classes below it.
+	 *
+	 * @param  rCache          The cache map to copy
+	 * @param  sPackageOrClass The package or class name to remove
+	 *
+	 * @return The new cache map
+	 */
+	private static <T> Map<String, T> copyUnaffected(
+		Map<String, T> rCache,
+		String		   sPackageOrClass)
+	{
+		Map<String, T> aCopy   = new ConcurrentHashMap<>(rCache);
+		String		   sPrefix = sPackageOrClass + ".";
+
+		aCopy.keySet()
+			 .removeIf(sName ->
+						   sName.equals(sPackageOrClass) ||
+						   sName.startsWith(sPrefix));
+
+		return aCopy;
+	}
+
 	/***************************************
 	 * Looks up the log handler that has been registered to perform logging
 	 * calls from a certain package. If no direct handler can be found this
@@ -732,16 +1687,68 @@ public final class Log
 		}
 		else
 		{
-			rHandler = asConsumer(aDefaultLogHandlers);
+			rHandler = aDefaultLogHandler;
 		}
 
 		return rHandler;
 	}
 
+	/***************************************
+	 * Returns the effective minimum log level for a class. This is the level
+	 * that has been set for the class or the closest of it's parent packages
+	 * with {@link #setLogLevel(String, LogLevel)}, or {@link LogLevel#TRACE}
+	 * if no such level has been set. A log handler that has been registered
+	 * for the class or a closer package than the closest level takes
+	 * precedence, i.e. the levels of the parent packages of that name are not
+	 * applied. The result is cached until the log configuration changes.
+	 *
+	 * @param  sClassName The name of the class
+	 *
+	 * @return The effective log level of the class
+	 */
+	private static LogLevel getEffectiveLogLevel(String sClassName)
+	{
+		Map<String, LogLevel> rCache = aEffectiveLevelCache;
+		LogLevel			  eLevel = rCache.get(sClassName);
+
+		if (eLevel == null)
+		{
+			String sName = sClassName;
+
+			while (sName != null && eLevel == null)
+			{
+				eLevel = aLogLevelRegistry.get(sName);
+
+				if (eLevel == null && aLogHandlerRegistry.containsKey(sName))
+				{
+					// the closest registration determines the log handling
+					eLevel = TRACE;
+				}
+
+				sName = ReflectUtil.getNamespace(sName);
+			}
+
+			if (eLevel == null)
+			{
+				eLevel = TRACE;
+			}
+
+			rCache.putIfAbsent(sClassName, eLevel);
+		}
+
+		return eLevel;
+	}
+
 	/***************************************
 	 * Internal method to return a log handler for a certain log record. If no
-	 * matching handler exists a new one will be created. Performs thread
-	 * synchronization.
+	 * matching handler exists a new one will be created. The lookup is
+	 * lock-free. If the handler configuration changes concurrently a handler
+	 * that has been determined from the previous configuration will only be
+	 * stored in the previous cache which has already been replaced. If no
+	 * package or class handlers have been registered the default handler will
+	 * be returned without querying the record location so that the stack
+	 * trace elements of the call site will only be created if a log handler
+	 * accesses them.
 	 *
 	 * @param  rRecord The log record to return the handler for
 	 *
@@ -749,24 +1756,145 @@ public final class Log
 	 */
 	private static Consumer<? super LogRecord> getLogHandler(LogRecord rRecord)
 	{
-		String sClassName = rRecord.getLogClass().getName();
+		if (aLogHandlerRegistry.isEmpty() || !rRecord.hasLocation())
+		{
+			return aDefaultLogHandler;
+		}
 
-		Consumer<? super LogRecord> rLogHandler = null;
+		Map<String, Consumer<? super LogRecord>> rCache = aLogHandlerCache;
 
-		synchronized (aLogHandlerCache)
+		String sClassName = rRecord.getLogLocation().getClassName();
+
+		Consumer<? super LogRecord> rLogHandler = rCache.get(sClassName);
+
+		if (rLogHandler == null)
 		{
-			rLogHandler = aLogHandlerCache.get(sClassName);
+			rLogHandler = findLogHandler(sClassName);
 
-			if (rLogHandler == null)
+			if (rLogHandler != null)
 			{
-				rLogHandler = findLogHandler(sClassName);
-				aLogHandlerCache.put(sClassName, rLogHandler);
+				rCache.putIfAbsent(sClassName, rLogHandler);
 			}
 		}
 
 		return rLogHandler;
 	}
 
+	/***************************************
+	 * Hands a log record to the log handler for the record's origin without
+	 * further checks.
+	 *
+	 * @param rLogRecord The log record
+	 */
+	private static void handleLogRecord(LogRecord rLogRecord)
+	{
+		if (!isPackageLevelEnabled(rLogRecord))
+		{
+			return;
+		}
+
+		Consumer<? super LogRecord> rLogHandler = getLogHandler(rLogRecord);
+
+		if (rLogHandler != null)
+		{
+			// synchronize on log handler to process requests sequentially
+			synchronized (rLogHandler)
+			{
+				rLogHandler.accept(rLogRecord);
+			}
+		}
+	}
+
+	/***************************************
+	 * Invalidates the cached log handlers and levels of a package or class and
+	 * all classes below it. Other entries are retained so that a configuration
+	 * change doesn't cause a re-resolution of all cached entries. The caches
+	 * are replaced by filtered copies instead of being modified so that
+	 * lookups that run concurrently with the change can only store entries
+	 * from the previous configuration in the discarded caches. Also updates
+	 * the maximum of all package and class levels. Must be invoked while
+	 * synchronized on the handler registry.
+	 *
+	 * @param sPackageOrClass The name of the package or class that changed
+	 */
+	private static void invalidateCaches(String sPackageOrClass)
+	{
+		LogLevel eMaxLevel = TRACE;
+
+		for (LogLevel eLevel : aLogLevelRegistry.values())
+		{
+			if (eLevel.compareTo(eMaxLevel) > 0)
+			{
+				eMaxLevel = eLevel;
+			}
+		}
+
+		aLogHandlerCache	 = copyUnaffected(aLogHandlerCache, sPackageOrClass);
+		aEffectiveLevelCache =
+			copyUnaffected(aEffectiveLevelCache, sPackageOrClass);
+		eMaxPackageLevel     = eMaxLevel;
+	}
+
+	/***************************************
+	 * Checks whether log records of a certain level will be created, either
+	 * because the level is enabled for the calling class (like {@link
+	 * #isLevelEnabled(Class, LogLevel)}) or because records of the level are
+	 * captured (see {@link #setLogCapture(Consumer, LogLevel)}). The calling
+	 * class will only be determined if a package or class level has been set
+	 * that could disable the given level. Otherwise this check doesn't
+	 * allocate any objects.
+	 *
+	 * @param  eLevel The log level to check
+	 *
+	 * @return TRUE if records of the given level will be created
+	 */
+	private static boolean isLogged(LogLevel eLevel)
+	{
+		if (eLevel.ordinal() >= nCaptureLevel)
+		{
+			return true;
+		}
+		else if (!aGlobalLevelFilter.isLevelEnabled(eLevel))
+		{
+			return false;
+		}
+		else if (eLevel.compareTo(eMaxPackageLevel) >= 0 ||
+				 !LogRecord.isCaptureLocation())
+		{
+			// no package level applies or the records have no location
+			return true;
+		}
+		else
+		{
+			String sCaller = LogRecord.getCallerClassName();
+
+			return eLevel.compareTo(getEffectiveLogLevel(sCaller)) >= 0;
+		}
+	}
+
+	/***************************************
+	 * Checks whether the level of a log record is enabled by the log level
+	 * that has been set for the record's class or one of it's packages with
+	 * {@link #setLogLevel(String, LogLevel)}. The location of the record will
+	 * only be queried if such levels exist.
+	 *
+	 * @param  rRecord The log record to check
+	 *
+	 * @return TRUE if the record's level is enabled for it's origin
+	 */
+	private static boolean isPackageLevelEnabled(LogRecord rRecord)
+	{
+		if (aLogLevelRegistry.isEmpty() || !rRecord.hasLocation())
+		{
+			return true;
+		}
+
+		String sClassName = rRecord.getLogLocation().getClassName();
+
+		return rRecord.getLevel().compareTo(getEffectiveLogLevel(sClassName)) >=
+			   0;
+	}
+
 	/***************************************
 	 * Internal method to log a message at a certain log level with a causing
 	 * exception. This method must always be invoked directly by all public log
@@ -783,26 +1911,53 @@ public final class Log
 								String    sMessageFormat,
 								Object... rMessageValues)
 	{
-		LogRecord aLogRecord = null;
+		boolean bEnabled = aGlobalLevelFilter.isLevelEnabled(eLevel);
+
+		Consumer<? super LogRecord> fCapture =
+			eLevel.ordinal() >= nCaptureLevel ? fLogCapture : null;
 
-		if (aGlobalLevelFilter.isLevelEnabled(eLevel))
+		if (bEnabled || fCapture != null)
 		{
-			aLogRecord =
+			LogRecord aLogRecord =
 				new LogRecord(eLevel, rCause, sMessageFormat, rMessageValues);
 
-			Consumer<? super LogRecord> rLogHandler = getLogHandler(aLogRecord);
+			if (fCapture != null)
+			{
+				fCapture.accept(aLogRecord);
+			}
 
-			if (rLogHandler != null)
+			if (bEnabled)
 			{
-				// synchronize on log handler to process requests sequentially
-				synchronized (rLogHandler)
+				AsyncLogDispatcher rDispatcher = aAsyncDispatcher;
+
+				if (rDispatcher != null)
 				{
-					rLogHandler.accept(aLogRecord);
+					rDispatcher.publish(aLogRecord);
+				}
+				else
+				{
+					processLogRecord(aLogRecord);
 				}
 			}
 		}
 	}
 
+	/***************************************
+	 * Hands a log record to the log handler for the record's origin.
+	 *
+	 * @param rLogRecord The log record
+	 */
+	private static void processLogRecord(LogRecord rLogRecord)
+	{
+		LogRateLimiter rLimiter = aRateLimiter;
+
+		if (rLimiter == null ||
+			rLimiter.permit(rLogRecord, Log::handleLogRecord))
+		{
+			handleLogRecord(rLogRecord);
+		}
+	}
+
 	/***************************************
 	 * Registers a log handler to be used for the logging of events from a
 	 * certain package (including sub-packages) or a single class. If a package
@@ -818,7 +1973,7 @@ public final class Log
 		String						sPackageOrClass,
 		Consumer<? super LogRecord> rNewHandler)
 	{
-		synchronized (aLogHandlerCache)
+		synchronized (aLogHandlerRegistry)
 		{
 			if (rNewHandler != null)
 			{
@@ -829,7 +1984,67 @@ public final class Log
 				aLogHandlerRegistry.remove(sPackageOrClass);
 			}
 
-			aLogHandlerCache.clear();
+			// a new handler replaces any level filter for the same name
+			aLogLevelRegistry.remove(sPackageOrClass);
+			invalidateCaches(sPackageOrClass);
+		}
+	}
+
+	/***************************************
+	 * Sets the default log handlers and invalidates the handler cache.
+	 *
+	 * @param rHandlers The new default log handlers
+	 */
+	private static void setDefaultLogHandlers(Group<LogRecord> rHandlers)
+	{
+		aDefaultLogHandlers = rHandlers;
+		aDefaultLogHandler  = asConsumer(rHandlers);
+		aLogHandlerCache    = new ConcurrentHashMap<>();
+	}
+
+	/***************************************
+	 * Evaluates the system property 'esoco.log.async' and enables asynchronous
+	 * logging if it is set.
+	 */
+	private static void setupAsyncLogging()
+	{
+		String sCapacity = System.getProperty("esoco.log.async");
+
+		if (sCapacity != null)
+		{
+			try
+			{
+				enableAsyncLogging(Integer.parseInt(sCapacity),
+								   OverflowPolicy.BLOCK,
+								   ERROR);
+			}
+			catch (IllegalArgumentException e)
+			{
+				Log.error("Invalid async log system property: " + sCapacity,
+						  e);
+			}
+		}
+	}
+
+	/***************************************
+	 * Evaluates the system property 'esoco.log.levels' and starts watching the
+	 * log level configuration file if it is set.
+	 */
+	private static void setupLevelWatcher()
+	{
+		String sLevelFile = System.getProperty("esoco.log.levels");
+
+		if (sLevelFile != null)
+		{
+			try
+			{
+				new LogLevelWatcher(Paths.get(sLevelFile)).start();
+			}
+			catch (Exception e)
+			{
+				Log.error("Invalid log levels system property: " + sLevelFile,
+						  e);
+			}
 		}
 	}
 
@@ -872,6 +2087,33 @@ public final class Log
 		}
 	}
 
+	/***************************************
+	 * Evaluates the system property 'esoco.log.ratelimit' and enables the rate
+	 * limiting of log calls if it is set.
+	 */
+	private static void setupRateLimiting()
+	{
+		String sRateLimit = System.getProperty("esoco.log.ratelimit");
+
+		if (sRateLimit != null)
+		{
+			try
+			{
+				String[] aLimit = sRateLimit.split("/");
+
+				enableRateLimiting(Integer.parseInt(aLimit[0]),
+								   Long.parseLong(aLimit[1]),
+								   0);
+			}
+			catch (RuntimeException e)
+			{
+				Log.error("Invalid log rate limit system property: " +
+						  sRateLimit,
+						  e);
+			}
+		}
+	}
+
 	/***************************************
 	 * Performs the static setup of the standard log handler.
 	 */
@@ -895,10 +2137,17 @@ public final class Log
 			}
 		}
 
-		LogRecordFormat aStackTop = new LogRecordFormat("  at {stacktop}");
+		LogRecordFormat   aStackTop = new LogRecordFormat("  at {stacktop}");
+		CompiledLogFormat aFormat   =
+			new CompiledLogFormat(DEFAULT_FORMAT_PATTERN);
+		PrintWriter		  rWriter   = rOut;
 
 		Consumer<LogRecord> fStandardLog =
-			asConsumer(println(rOut, "%s").from(DEFAULT_FORMAT));
+			rRecord ->
+			{
+				aFormat.println(rRecord, rWriter);
+				rWriter.flush();
+			};
 
 		Consumer<LogRecord> fTraceLog =
 			doIf(
@@ -911,8 +2160,24 @@ public final class Log
 				asConsumer(println(rOut, "%s").from(CAUSE_TRACE)),
 				fTraceLog);
 
-		aStandardLogHandler = asConsumer(Group.of(fStandardLog, fCauseLog));
-		aDefaultLogHandlers = Group.of(aStandardLogHandler);
+		if (Boolean.getBoolean("esoco.log.json"))
+		{
+			JsonLogFormat aJsonFormat = new JsonLogFormat();
+
+			aStandardLogHandler =
+				rRecord ->
+				{
+					aJsonFormat.println(rRecord, rWriter);
+					rWriter.flush();
+				};
+		}
+		else
+		{
+			aStandardLogHandler =
+				asConsumer(Group.of(fStandardLog, fCauseLog));
+		}
+
+		setDefaultLogHandlers(Group.of(aStandardLogHandler));
 
 		if (sLevel != null)
 		{
@@ -18,17 +18,20 @@ package de.esoco.lib.logging;
 
 import de.esoco.lib.expression.Action;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.obrel.core.RelatedObject;
 import org.obrel.core.RelationType;
 import org.obrel.core.RelationTypes;
 
 import static org.obrel.core.RelationTypes.newDefaultValueType;
+import static org.obrel.core.RelationTypes.newInitialValueType;
 import static org.obrel.core.RelationTypes.newIntType;
 
 
@@ -39,6 +42,13 @@ import static org.obrel.core.RelationTypes.newIntType;
  * to the logging back-end through a shared resource like a socket or a database
  * connection.
  *
+ * <p>The log objects that are created from log records are stored in a
+ * bounded queue which is drained by a dedicated background thread of each
+ * aspect. This thread hands the log objects in batches to {@link
+ * #processLogObjects(Collection)} so that application threads never perform
+ * the I/O of the logging back-end. If the queue is full new log objects will
+ * be dropped and counted (see {@link #getDroppedCount()}).</p>
+ *
  * <p>Log aspects can or sometimes must be configured by setting relation types
  * on the corresponding instance. Some standard configuration types are already
  * defined in this base class:</p>
@@ -47,6 +57,9 @@ import static org.obrel.core.RelationTypes.newIntType;
  *   <li>{@link #MIN_LOG_LEVEL}</li>
  *   <li>{@link #MIN_STACK_LOG_LEVEL}</li>
  *   <li>{@link #MAX_LOGGING_ERRORS}</li>
+ *   <li>{@link #LOG_QUEUE_CAPACITY}</li>
+ *   <li>{@link #LOG_BATCH_SIZE}</li>
+ *   <li>{@link #LOG_LINGER_TIME}</li>
  * </ul>
  *
  * <p>{@link #MIN_STACK_LOG_LEVEL} must be evaluated by subclasses, the other
@@ -86,6 +99,35 @@ public abstract class LogAspect<T> extends RelatedObject
 	 */
 	public static final RelationType<Integer> MAX_LOGGING_ERRORS = newIntType();
 
+	/**
+	 * The maximum number of log objects that can be queued for processing.
+	 * Log objects that don't fit into the queue will be dropped. Defaults to
+	 * 10000.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> LOG_QUEUE_CAPACITY =
+		newInitialValueType(10000);
+
+	/**
+	 * The maximum number of log objects that will be handed to {@link
+	 * #processLogObjects(Collection)} at once. Defaults to 100.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Integer> LOG_BATCH_SIZE =
+		newInitialValueType(100);
+
+	/**
+	 * The time in milliseconds that the processing thread waits for more log
+	 * objects after the first object of a batch has been queued. Defaults to
+	 * 50 milliseconds, a value of zero processes the available objects
+	 * immediately.
+	 */
+	@SuppressWarnings("boxing")
+	public static final RelationType<Long> LOG_LINGER_TIME =
+		newInitialValueType(50L);
+
+	private static final long SHUTDOWN_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
 	static
 	{
 		RelationTypes.init(LogAspect.class);
@@ -96,31 +138,51 @@ public abstract class LogAspect<T> extends RelatedObject
 	private boolean bLoggingInitialized = false;
 	private int     nErrorCount;
 
-	private Lock     aQueueAccessLock;
-	private Queue<T> aLogQueue;
+	private final LongAdder aDroppedCount = new LongAdder();
+
+	private BlockingQueue<T> aLogQueue;
+	private Thread			 aProcessingThread;
+
+	private volatile boolean bProcessing;
 
 	private Action<LogRecord> fLogFunction;
 
 	//~ Methods ----------------------------------------------------------------
 
+	/***************************************
+	 * Returns the number of log objects that have been dropped because the
+	 * log queue was full.
+	 *
+	 * @return The number of dropped log objects
+	 */
+	public final long getDroppedCount()
+	{
+		return aDroppedCount.sum();
+	}
+
 	/***************************************
 	 * Initializes the logging of this aspect. Multiple invocations of this
 	 * method will be ignored.
 	 */
+	@SuppressWarnings("boxing")
 	public final synchronized void initLogging()
 	{
 		if (!bLoggingInitialized)
 		{
-			nErrorCount		 = 0;
-			aQueueAccessLock = new ReentrantLock();
-			aLogQueue		 = new ConcurrentLinkedQueue<T>();
-			fLogFunction     = this::processLogRecord;
+			nErrorCount  = 0;
+			aLogQueue    = new ArrayBlockingQueue<>(get(LOG_QUEUE_CAPACITY));
+			fLogFunction = this::processLogRecord;
 
 			init();
 
+			bProcessing		  = true;
+			aProcessingThread = new Thread(this::processLogQueue, toString());
+			aProcessingThread.setDaemon(true);
+			aProcessingThread.start();
+
 			String sInitMessage = getLogInitMessage();
 
-			if (sInitMessage == null)
+			if (sInitMessage != null)
 			{
 				Log.info(sInitMessage);
 			}
@@ -131,18 +193,50 @@ public abstract class LogAspect<T> extends RelatedObject
 	}
 
 	/***************************************
-	 * Stops the logging of this aspect. Multiple invocations of this method
-	 * will be ignored.
+	 * Stops the logging of this aspect. All queued log objects will be
+	 * processed before the subclass is shut down. Multiple invocations of this
+	 * method will be ignored. The processing thread is awaited without holding
+	 * the lock of this instance so that subclasses can synchronize their
+	 * processing methods on it.
 	 */
-	public final synchronized void shutdownLogging()
+	public final void shutdownLogging()
 	{
-		if (bLoggingInitialized)
+		Thread rProcessingThread;
+
+		synchronized (this)
 		{
+			rProcessingThread = aProcessingThread;
+
+			if (!bLoggingInitialized || rProcessingThread == null)
+			{
+				return;
+			}
+
+			// reset to prevent concurrent shutdowns
+			aProcessingThread = null;
+			bProcessing		  = false;
 			Log.removeDefaultLogHandler(fLogFunction);
+		}
+
+		if (Thread.currentThread() != rProcessingThread)
+		{
+			try
+			{
+				rProcessingThread.join(SHUTDOWN_TIMEOUT);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		synchronized (this)
+		{
 			shutdown();
-			Log.infof("Log aspect %s has been shut down", this);
 			bLoggingInitialized = false;
 		}
+
+		Log.infof("Log aspect %s has been shut down", this);
 	}
 
 	/***************************************
@@ -199,6 +293,34 @@ public abstract class LogAspect<T> extends RelatedObject
 							 this);
 	}
 
+	/***************************************
+	 * Performs the error handling for a failed processing of log objects by
+	 * counting the errors and shutting down this aspect if the maximum number
+	 * of errors defined by {@link #MAX_LOGGING_ERRORS} has been reached. This
+	 * will be invoked automatically if {@link #processLogObjects(Collection)}
+	 * throws an exception. Subclasses that hand off the log objects to another
+	 * asynchronous component can invoke it to report errors that occur later.
+	 *
+	 * @param eError The error that occurred
+	 */
+	@SuppressWarnings("boxing")
+	protected synchronized void handleLoggingError(Exception eError)
+	{
+		if (++nErrorCount >= get(MAX_LOGGING_ERRORS))
+		{
+			bProcessing = false;
+			aLogQueue.clear();
+
+			// shutdown asynchronously because it waits for the processing
+			// thread which may be the current thread
+			new Thread(this::shutdownLogging).start();
+			Log.fatalf(eError,
+					   "Log aspect %s failed, stopped after %d errors",
+					   this.getClass().getSimpleName(),
+					   nErrorCount);
+		}
+	}
+
 	/***************************************
 	 * Will be invoked from {@link #initLogging()}. Can be implemented by
 	 * subclasses to initialize the internal state that is needed for the
@@ -219,35 +341,87 @@ public abstract class LogAspect<T> extends RelatedObject
 	}
 
 	/***************************************
-	 * Processes and empties the log object queue.
+	 * Hands a batch of log objects to {@link #processLogObjects(Collection)}
+	 * and performs the error handling. Errors are handled like exceptions
+	 * because they must not terminate the processing thread.
+	 *
+	 * @param rBatch The batch of log objects
+	 */
+	private void processBatch(List<T> rBatch)
+	{
+		try
+		{
+			processLogObjects(rBatch);
+		}
+		catch (Exception e)
+		{
+			handleLoggingError(e);
+		}
+		catch (Error e)
+		{
+			handleLoggingError(new IllegalStateException(e));
+		}
+	}
+
+	/***************************************
+	 * The main loop of the processing thread that drains the log object queue
+	 * in batches. After the first log object of a batch has been received the
+	 * thread waits for further objects until the batch is full or the linger
+	 * time has elapsed.
 	 */
 	@SuppressWarnings("boxing")
 	private void processLogQueue()
 	{
+		int     nBatchSize  = get(LOG_BATCH_SIZE);
+		long    nLingerTime =
+			TimeUnit.MILLISECONDS.toNanos(get(LOG_LINGER_TIME));
+		List<T> aBatch	    = new ArrayList<>(nBatchSize);
+
 		try
 		{
-			if (!aLogQueue.isEmpty())
+			while (bProcessing || !aLogQueue.isEmpty())
 			{
-				processLogObjects(aLogQueue);
-			}
+				T rFirst = aLogQueue.poll(100, TimeUnit.MILLISECONDS);
 
-			aLogQueue.clear();
+				if (rFirst != null)
+				{
+					long nDeadline = System.nanoTime() + nLingerTime;
+
+					aBatch.add(rFirst);
+					aLogQueue.drainTo(aBatch, nBatchSize - aBatch.size());
+
+					while (bProcessing && aBatch.size() < nBatchSize)
+					{
+						long nWait = nDeadline - System.nanoTime();
+						T    rNext = null;
+
+						if (nWait > 0)
+						{
+							rNext = aLogQueue.poll(nWait, TimeUnit.NANOSECONDS);
+						}
+
+						if (rNext == null)
+						{
+							break;
+						}
+
+						aBatch.add(rNext);
+						aLogQueue.drainTo(aBatch, nBatchSize - aBatch.size());
+					}
+
+					processBatch(aBatch);
+					aBatch.clear();
+				}
+			}
 		}
-		catch (Exception e)
+		catch (InterruptedException e)
 		{
-			if (++nErrorCount >= get(MAX_LOGGING_ERRORS))
-			{
-				shutdownLogging();
-				Log.fatalf(e,
-						   "Log aspect %s failed, stopped after %d errors",
-						   this.getClass().getSimpleName(),
-						   nErrorCount);
-			}
+			Thread.currentThread().interrupt();
 		}
 	}
 
 	/***************************************
-	 * Stores a new log entry based on a log record.
+	 * Stores a new log entry based on a log record in the log object queue.
 	 *
 	 * @param  rLogRecord The log record
 	 *
@@ -256,27 +430,14 @@ public abstract class LogAspect<T> extends RelatedObject
 	 */
 	private Object processLogRecord(LogRecord rLogRecord)
 	{
-		if (rLogRecord.getLevel().compareTo(get(MIN_LOG_LEVEL)) >= 0)
+		if (bProcessing &&
+			rLogRecord.getLevel().compareTo(get(MIN_LOG_LEVEL)) >= 0)
 		{
 			T aLogObject = createLogObject(rLogRecord);
 
-			if (aLogObject != null)
+			if (aLogObject != null && !aLogQueue.offer(aLogObject))
 			{
-				aLogQueue.add(aLogObject);
-
-				// only send queue if processing is not currently in progress to
-				// prevent opening multiple target connections
-				if (aQueueAccessLock.tryLock())
-				{
-					try
-					{
-						processLogQueue();
-					}
-					finally
-					{
-						aQueueAccessLock.unlock();
-					}
-				}
+				aDroppedCount.increment();
 			}
 		}
 
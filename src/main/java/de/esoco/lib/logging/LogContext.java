@@ -0,0 +1,282 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+
+/********************************************************************
+ * Manages contextual log fields of the current thread like request or
+ * transaction IDs (also known as mapped diagnostic context). The context of a
+ * thread is an immutable snapshot map that is replaced on each modification.
+ * Log records only store a reference to the snapshot that is current at their
+ * creation (see {@link LogRecord#getContext()}), so no map is copied when
+ * logging.
+ *
+ * <p>To prevent leaking context values in pooled threads context fields
+ * should be set with {@link #with(String, String)} in a try-with-resources
+ * block which restores the previous context on closing. If a thread's context
+ * becomes empty the thread-local value will be removed completely. The context
+ * of a thread can be propagated to other threads with the wrap methods.</p>
+ *
+ * @author eso
+ */
+public final class LogContext
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	/** The context key for the IP address of a client. */
+	public static final String CLIENT_IP = "clientIp";
+
+	/** The context key for a request ID. */
+	public static final String REQUEST_ID = "requestId";
+
+	/** The context key for a transaction ID. */
+	public static final String TRANSACTION_ID = "transactionId";
+
+	private static final ThreadLocal<Map<String, String>> aThreadContext =
+		new ThreadLocal<>();
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Private, only static use.
+	 */
+	private LogContext()
+	{
+	}
+
+	//~ Static methods ---------------------------------------------------------
+
+	/***************************************
+	 * Removes all context fields of the current thread.
+	 */
+	public static void clear()
+	{
+		aThreadContext.remove();
+	}
+
+	/***************************************
+	 * Returns the context snapshot of the current thread.
+	 *
+	 * @return The immutable context map (empty for none)
+	 */
+	public static Map<String, String> current()
+	{
+		Map<String, String> rContext = aThreadContext.get();
+
+		return rContext != null ? rContext : Collections.emptyMap();
+	}
+
+	/***************************************
+	 * Returns the value of a context field of the current thread.
+	 *
+	 * @param  sKey The field key
+	 *
+	 * @return The field value or NULL for none
+	 */
+	public static String get(String sKey)
+	{
+		return current().get(sKey);
+	}
+
+	/***************************************
+	 * Sets a context field of the current thread. The field must be removed
+	 * explicitly with {@link #remove(String)} when the context is left. For
+	 * nested code blocks {@link #with(String, String)} should be preferred.
+	 *
+	 * @param sKey   The field key
+	 * @param sValue The field value (NULL to remove the field)
+	 */
+	public static void put(String sKey, String sValue)
+	{
+		Map<String, String> rContext = current();
+		Map<String, String> aNew     = new LinkedHashMap<>(rContext);
+
+		if (sValue != null)
+		{
+			aNew.put(sKey, sValue);
+		}
+		else
+		{
+			aNew.remove(sKey);
+		}
+
+		set(aNew.isEmpty() ? null : Collections.unmodifiableMap(aNew));
+	}
+
+	/***************************************
+	 * Removes a context field of the current thread.
+	 *
+	 * @param sKey The field key
+	 */
+	public static void remove(String sKey)
+	{
+		if (current().containsKey(sKey))
+		{
+			put(sKey, null);
+		}
+	}
+
+	/***************************************
+	 * Sets a context field for a code block. The returned scope must be closed
+	 * at the end of the block to restore the previous context, preferably by
+	 * using a try-with-resources statement.
+	 *
+	 * @param  sKey   The field key
+	 * @param  sValue The field value (NULL to remove the field in the scope)
+	 *
+	 * @return The scope to close at the end of the block
+	 */
+	public static Scope with(String sKey, String sValue)
+	{
+		Scope aScope = new Scope(aThreadContext.get());
+
+		put(sKey, sValue);
+
+		return aScope;
+	}
+
+	/***************************************
+	 * Wraps a callable so that it will be executed with the context of the
+	 * current thread.
+	 *
+	 * @param  fCallable The callable to wrap
+	 *
+	 * @return The wrapped callable
+	 */
+	public static <T> Callable<T> wrap(Callable<T> fCallable)
+	{
+		Map<String, String> rContext = aThreadContext.get();
+
+		return () ->
+			   {
+				   try (Scope aScope = withContext(rContext))
+				   {
+					   return fCallable.call();
+				   }
+			   };
+	}
+
+	/***************************************
+	 * Wraps an executor so that all tasks will be executed with the context of
+	 * the thread that submitted the task.
+	 *
+	 * @param  rExecutor The executor to wrap
+	 *
+	 * @return The wrapped executor
+	 */
+	public static Executor wrap(Executor rExecutor)
+	{
+		return rTask -> rExecutor.execute(wrap(rTask));
+	}
+
+	/***************************************
+	 * Wraps a runnable so that it will be executed with the context of the
+	 * current thread.
+	 *
+	 * @param  fRunnable The runnable to wrap
+	 *
+	 * @return The wrapped runnable
+	 */
+	public static Runnable wrap(Runnable fRunnable)
+	{
+		Map<String, String> rContext = aThreadContext.get();
+
+		return () ->
+			   {
+				   try (Scope aScope = withContext(rContext))
+				   {
+					   fRunnable.run();
+				   }
+			   };
+	}
+
+	/***************************************
+	 * Sets the context snapshot of the current thread.
+	 *
+	 * @param rContext The new context or NULL for none
+	 */
+	private static void set(Map<String, String> rContext)
+	{
+		if (rContext != null)
+		{
+			aThreadContext.set(rContext);
+		}
+		else
+		{
+			aThreadContext.remove();
+		}
+	}
+
+	/***************************************
+	 * Replaces the complete context of the current thread for a code block.
+	 *
+	 * @param  rContext The context snapshot or NULL for none
+	 *
+	 * @return The scope to close at the end of the block
+	 */
+	private static Scope withContext(Map<String, String> rContext)
+	{
+		Scope aScope = new Scope(aThreadContext.get());
+
+		set(rContext);
+
+		return aScope;
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * A scope that restores a previous context when closed.
+	 *
+	 * @author eso
+	 */
+	public static final class Scope implements AutoCloseable
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private final Map<String, String> rPreviousContext;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param rPreviousContext The context to restore
+		 */
+		Scope(Map<String, String> rPreviousContext)
+		{
+			this.rPreviousContext = rPreviousContext;
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Restores the previous context.
+		 */
+		@Override
+		public void close()
+		{
+			set(rPreviousContext);
+		}
+	}
+}
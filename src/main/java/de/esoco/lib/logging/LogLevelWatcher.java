@@ -0,0 +1,283 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeMap;
+
+
+/********************************************************************
+ * Watches a configuration file with per-package log levels and applies any
+ * changes to {@link Log#setLogLevel(String, LogLevel)}. The file must be in
+ * properties format with entries of the form [package or class name]=[log
+ * level]. The file is monitored with a {@link WatchService} in a daemon thread
+ * that blocks until the file system signals a change, so no polling is
+ * performed.
+ *
+ * <p>Changes are applied incrementally: only entries that have been added,
+ * modified, or removed since the last reload are set or reset, which only
+ * invalidates the cached log configuration of the affected packages. Log
+ * levels that have been set by other means will not be modified unless the
+ * configuration file contains an entry for the same name. If the file is
+ * deleted all levels that have been set from it will be removed.</p>
+ *
+ * <p>A watcher for the standard logging can be started with the system
+ * property 'esoco.log.levels' (see {@link Log}).</p>
+ *
+ * @author eso
+ */
+public class LogLevelWatcher implements AutoCloseable
+{
+	//~ Instance fields --------------------------------------------------------
+
+	private final Path rConfigFile;
+
+	private Map<String, LogLevel> aAppliedLevels = new TreeMap<>();
+	private WatchService		  aWatchService;
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance. The configuration will only be loaded and watched
+	 * after {@link #start()} has been invoked.
+	 *
+	 * @param rConfigFile The path of the log level configuration file
+	 */
+	public LogLevelWatcher(Path rConfigFile)
+	{
+		this.rConfigFile = rConfigFile.toAbsolutePath();
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Stops watching the configuration file. The log levels that have been
+	 * applied will remain active.
+	 *
+	 * @throws IOException If closing the watch service fails
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (aWatchService != null)
+		{
+			aWatchService.close();
+			aWatchService = null;
+		}
+	}
+
+	/***************************************
+	 * Returns the path of the watched configuration file.
+	 *
+	 * @return The configuration file path
+	 */
+	public final Path getConfigFile()
+	{
+		return rConfigFile;
+	}
+
+	/***************************************
+	 * Returns the log levels that are currently applied from the
+	 * configuration file.
+	 *
+	 * @return A new map containing the applied log levels
+	 */
+	public synchronized Map<String, LogLevel> getLogLevels()
+	{
+		return new TreeMap<>(aAppliedLevels);
+	}
+
+	/***************************************
+	 * Reads the configuration file and applies all changes since the last
+	 * reload. Invalid entries will be logged and ignored. This method is
+	 * invoked automatically on file changes but can also be invoked directly.
+	 * The levels are applied in the order of their names so that parent
+	 * packages are always updated before their children.
+	 *
+	 * @throws IOException If reading the configuration file fails
+	 */
+	public synchronized void reload() throws IOException
+	{
+		Map<String, LogLevel> aNewLevels = readLevels();
+
+		for (String sName : aAppliedLevels.keySet())
+		{
+			if (!aNewLevels.containsKey(sName))
+			{
+				Log.setLogLevel(sName, null);
+			}
+		}
+
+		for (Entry<String, LogLevel> rEntry : aNewLevels.entrySet())
+		{
+			LogLevel eLevel = rEntry.getValue();
+
+			if (eLevel != aAppliedLevels.get(rEntry.getKey()))
+			{
+				Log.setLogLevel(rEntry.getKey(), eLevel);
+			}
+		}
+
+		aAppliedLevels = aNewLevels;
+	}
+
+	/***************************************
+	 * Loads the configuration file and starts to watch it for changes.
+	 *
+	 * @throws IOException If loading the file or creating the watch service
+	 *                     fails
+	 */
+	public synchronized void start() throws IOException
+	{
+		if (aWatchService != null)
+		{
+			throw new IllegalStateException("Already started: " + this);
+		}
+
+		reload();
+
+		aWatchService = rConfigFile.getFileSystem().newWatchService();
+
+		rConfigFile.getParent()
+				   .register(aWatchService,
+							 StandardWatchEventKinds.ENTRY_CREATE,
+							 StandardWatchEventKinds.ENTRY_MODIFY,
+							 StandardWatchEventKinds.ENTRY_DELETE);
+
+		Thread aWatchThread = new Thread(this::watch, toString());
+
+		aWatchThread.setDaemon(true);
+		aWatchThread.start();
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString()
+	{
+		return getClass().getSimpleName() + "[" + rConfigFile + "]";
+	}
+
+	/***************************************
+	 * Reads the log levels from the configuration file.
+	 *
+	 * @return A new map containing the configured log levels (empty if the
+	 *         file doesn't exist)
+	 *
+	 * @throws IOException If reading the file fails
+	 */
+	private Map<String, LogLevel> readLevels() throws IOException
+	{
+		Map<String, LogLevel> aLevels = new TreeMap<>();
+
+		if (Files.exists(rConfigFile))
+		{
+			Properties aProperties = new Properties();
+
+			try (Reader aReader =
+				 Files.newBufferedReader(rConfigFile, StandardCharsets.UTF_8))
+			{
+				aProperties.load(aReader);
+			}
+
+			for (String sName : aProperties.stringPropertyNames())
+			{
+				String sLevel = aProperties.getProperty(sName).trim();
+
+				try
+				{
+					aLevels.put(sName, LogLevel.valueOf(sLevel.toUpperCase()));
+				}
+				catch (IllegalArgumentException e)
+				{
+					Log.warnf("Invalid log level in %s: %s=%s",
+							  rConfigFile,
+							  sName,
+							  sLevel);
+				}
+			}
+		}
+
+		return aLevels;
+	}
+
+	/***************************************
+	 * The main loop of the watch thread that waits for changes of the
+	 * configuration file until the watch service is closed.
+	 */
+	private void watch()
+	{
+		WatchService rWatchService = aWatchService;
+		Path		 rFileName     = rConfigFile.getFileName();
+
+		try
+		{
+			while (true)
+			{
+				WatchKey rKey	  = rWatchService.take();
+				boolean  bChanged = false;
+
+				for (WatchEvent<?> rEvent : rKey.pollEvents())
+				{
+					bChanged |= rFileName.equals(rEvent.context()) ||
+								rEvent.kind() ==
+								StandardWatchEventKinds.OVERFLOW;
+				}
+
+				if (bChanged)
+				{
+					try
+					{
+						reload();
+					}
+					catch (IOException e)
+					{
+						Log.error("Reloading log levels failed: " + this, e);
+					}
+				}
+
+				if (!rKey.reset())
+				{
+					break;
+				}
+			}
+		}
+		catch (ClosedWatchServiceException e)
+		{
+			// watcher has been closed
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
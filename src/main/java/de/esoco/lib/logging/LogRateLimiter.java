@@ -0,0 +1,292 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+
+/********************************************************************
+ * Limits the rate of log records per call site, i.e. per source code location
+ * of a log call. Each call site may log a maximum number of records in a time
+ * window. Further records in the same window are suppressed, except for an
+ * optional sample of every n-th record. When the window of a call site has
+ * expired a summary record with the number of suppressed records will be
+ * emitted for that site. Summaries are emitted on the next log call of the
+ * same site or, for sites that have become silent, by a sweep that is
+ * performed at most once per window on arbitrary log calls.
+ *
+ * <p>Records without a captured location are not limited. Instances are
+ * typically created through {@link Log#enableRateLimiting(int, long, int)}.
+ * </p>
+ *
+ * @author eso
+ */
+public class LogRateLimiter
+{
+	//~ Instance fields --------------------------------------------------------
+
+	private final int  nMaxRecords;
+	private final long nWindow;
+	private final int  nSampleRate;
+
+	private final Map<StackTraceElement, CallSite> aCallSites =
+		new ConcurrentHashMap<>();
+
+	private final AtomicLong aNextSweep		 = new AtomicLong();
+	private final LongAdder  aSuppressedCount = new LongAdder();
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance.
+	 *
+	 * @param nMaxRecords The maximum number of records per call site in a time
+	 *                    window
+	 * @param nWindow     The length of the time window in milliseconds
+	 * @param nSampleRate If greater than zero every n-th record that exceeds
+	 *                    the limit will still be logged
+	 */
+	public LogRateLimiter(int nMaxRecords, long nWindow, int nSampleRate)
+	{
+		if (nMaxRecords < 0 || nWindow <= 0 || nSampleRate < 0)
+		{
+			throw new IllegalArgumentException("Invalid rate limit");
+		}
+
+		this.nMaxRecords = nMaxRecords;
+		this.nWindow     = nWindow;
+		this.nSampleRate = nSampleRate;
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Returns the number of call sites that are currently tracked by this
+	 * instance.
+	 *
+	 * @return The call site count
+	 */
+	public final int getCallSiteCount()
+	{
+		return aCallSites.size();
+	}
+
+	/***************************************
+	 * Returns the total number of log records that have been suppressed by
+	 * this instance.
+	 *
+	 * @return The suppressed record count
+	 */
+	public final long getSuppressedCount()
+	{
+		return aSuppressedCount.sum();
+	}
+
+	/***************************************
+	 * Checks whether a log record may be logged. Summary records of call sites
+	 * with suppressed records are handed to the given output function before
+	 * this method returns.
+	 *
+	 * @param  rRecord        The log record to check
+	 * @param  fSummaryOutput The function that processes summary records
+	 *
+	 * @return TRUE if the record may be logged, FALSE if it is suppressed
+	 */
+	public boolean permit(LogRecord rRecord, Consumer<LogRecord> fSummaryOutput)
+	{
+		if (!rRecord.hasLocation())
+		{
+			return true;
+		}
+
+		long nTime = rRecord.getTime();
+
+		CallSite rSite =
+			aCallSites.computeIfAbsent(rRecord.getLogLocation(),
+									   k -> new CallSite(nTime));
+
+		boolean bPermit = rSite.permit(rRecord, nTime, fSummaryOutput);
+
+		long nNextSweep = aNextSweep.get();
+
+		if (nTime >= nNextSweep &&
+			aNextSweep.compareAndSet(nNextSweep, nTime + nWindow))
+		{
+			sweep(nTime, fSummaryOutput);
+		}
+
+		return bPermit;
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	@SuppressWarnings("boxing")
+	public String toString()
+	{
+		return String.format("%s(%d/%dms, sample %d)",
+							 getClass().getSimpleName(),
+							 nMaxRecords,
+							 nWindow,
+							 nSampleRate);
+	}
+
+	/***************************************
+	 * Emits the summaries of all silent call sites with expired windows and
+	 * removes call sites that have been idle for more than one window.
+	 *
+	 * @param nTime          The current time
+	 * @param fSummaryOutput The function that processes summary records
+	 */
+	private void sweep(long nTime, Consumer<LogRecord> fSummaryOutput)
+	{
+		Iterator<CallSite> rSites = aCallSites.values().iterator();
+
+		while (rSites.hasNext())
+		{
+			CallSite rSite = rSites.next();
+
+			if (nTime - rSite.aWindowStart.get() >= nWindow)
+			{
+				if (!rSite.startWindow(nTime, fSummaryOutput) &&
+					rSite.aSuppressed.get() == 0)
+				{
+					rSites.remove();
+				}
+			}
+		}
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * The counters of a single call site.
+	 *
+	 * @author eso
+	 */
+	class CallSite
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		final AtomicLong    aWindowStart;
+		final AtomicInteger aCount	    = new AtomicInteger();
+		final AtomicInteger aSuppressed = new AtomicInteger();
+
+		volatile LogRecord rLastSuppressed;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param nTime The start time of the first window
+		 */
+		CallSite(long nTime)
+		{
+			aWindowStart = new AtomicLong(nTime);
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Checks whether a record from this call site may be logged.
+		 *
+		 * @param  rRecord        The log record
+		 * @param  nTime          The time of the record
+		 * @param  fSummaryOutput The function that processes summary records
+		 *
+		 * @return TRUE if the record may be logged
+		 */
+		boolean permit(LogRecord		   rRecord,
+					   long				   nTime,
+					   Consumer<LogRecord> fSummaryOutput)
+		{
+			if (nTime - aWindowStart.get() >= nWindow)
+			{
+				startWindow(nTime, fSummaryOutput);
+			}
+
+			int nCount = aCount.incrementAndGet();
+
+			if (nCount <= nMaxRecords ||
+				(nSampleRate > 0 && (nCount - nMaxRecords) % nSampleRate == 0))
+			{
+				return true;
+			}
+
+			rLastSuppressed = rRecord;
+			aSuppressed.incrementAndGet();
+			aSuppressedCount.increment();
+
+			return false;
+		}
+
+		/***************************************
+		 * Starts a new window and emits a summary if records have been
+		 * suppressed in the previous window. Only one of multiple concurrent
+		 * invocations will succeed.
+		 *
+		 * @param  nTime          The start time of the new window
+		 * @param  fSummaryOutput The function that processes summary records
+		 *
+		 * @return TRUE if a summary has been emitted
+		 */
+		@SuppressWarnings("boxing")
+		boolean startWindow(long nTime, Consumer<LogRecord> fSummaryOutput)
+		{
+			long nStart = aWindowStart.get();
+
+			if (nTime - nStart < nWindow ||
+				!aWindowStart.compareAndSet(nStart, nTime))
+			{
+				return false;
+			}
+
+			int nSuppressed = aSuppressed.getAndSet(0);
+
+			aCount.set(0);
+
+			LogRecord rTemplate = rLastSuppressed;
+
+			rLastSuppressed = null;
+
+			if (nSuppressed > 0 && rTemplate != null)
+			{
+				LogRecord aSummary =
+					new LogRecord(rTemplate,
+								  "%d similar log messages suppressed in %d ms, " +
+								  "last: %s",
+								  nSuppressed,
+								  nTime - nStart,
+								  rTemplate.getMessage());
+
+				fSummaryOutput.accept(aSummary);
+
+				return true;
+			}
+
+			return false;
+		}
+	}
+}
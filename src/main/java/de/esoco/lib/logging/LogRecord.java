@@ -18,11 +18,18 @@ package de.esoco.lib.logging;
 
 import de.esoco.lib.expression.predicate.AbstractPredicate;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
 import java.text.DateFormat;
 
-import java.util.ArrayList;
+import java.time.temporal.TemporalAccessor;
+
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 
 /********************************************************************
@@ -48,10 +55,17 @@ public final class LogRecord
 			}
 		};
 
-	// stack frames to be omitted from returned stacks
-	private static int nStackOverhead = -1;
+	private static final StackTraceElement[] NO_STACK =
+		new StackTraceElement[0];
+
+	private static final StackTraceElement UNKNOWN_LOCATION =
+		new StackTraceElement("", "", null, -1);
 
-	private static final int MAX_CAUSE_STACK_SIZE = 50;
+	private static final String LOGGING_PACKAGE =
+		LogRecord.class.getPackage().getName();
+
+	private static volatile boolean bCaptureLocation =
+		!"false".equalsIgnoreCase(System.getProperty("esoco.log.location"));
 
 	//~ Instance fields --------------------------------------------------------
 
@@ -61,7 +75,10 @@ public final class LogRecord
 	private final Throwable			  rCause;
 	private final long				  nTime;
 	private final Thread			  rLogThread;
-	private final StackTraceElement[] aLogStack;
+	private final Throwable			  aCallSite;
+	private final Map<String, String> rContext;
+
+	private volatile StackTraceElement[] aLogStack;
 
 	//~ Constructors -----------------------------------------------------------
 
@@ -88,18 +105,84 @@ public final class LogRecord
 		this.nTime		    = System.currentTimeMillis();
 		rLogThread		    = Thread.currentThread();
 
-		StackTraceElement[] rStackTrace = rLogThread.getStackTrace();
+		// only records the VM backtrace; the stack trace elements are created
+		// on demand by getLogStackTrace()
+		aCallSite = bCaptureLocation ? new Throwable() : null;
+		rContext  = LogContext.current();
+	}
 
-		if (nStackOverhead == -1)
-		{
-			nStackOverhead =
-				getStackOverhead(getClass().getPackage(), rStackTrace);
-		}
+	/***************************************
+	 * Creates a new record with a different message at the same level and
+	 * location as another record, e.g. for a summary of suppressed records.
+	 *
+	 * @param rOrigin        The record to copy the level and location from
+	 * @param sMessageFormat The format string for the log message
+	 * @param rMessageValues The log message values to be inserted into the
+	 *                       format string or NULL if no formatting is necessary
+	 */
+	LogRecord(LogRecord rOrigin, String sMessageFormat, Object... rMessageValues)
+	{
+		this.rLevel		    = rOrigin.rLevel;
+		this.rCause		    = null;
+		this.sMessageFormat = sMessageFormat;
+		this.rMessageValues = rMessageValues;
+		this.nTime		    = System.currentTimeMillis();
+		rLogThread		    = rOrigin.rLogThread;
+		aCallSite		    = rOrigin.aCallSite;
+		aLogStack		    = rOrigin.aLogStack;
+		rContext		    = rOrigin.rContext;
+	}
 
-		int nLength = rStackTrace.length - nStackOverhead;
+	/***************************************
+	 * Creates a new record from previously recorded data, e.g. when decoding
+	 * binary log files. Such records have no log thread.
+	 *
+	 * @param rLevel         The log level
+	 * @param rCause         The log cause (may be NULL)
+	 * @param sMessageFormat The format string for the log message
+	 * @param rMessageValues The log message values or NULL for none
+	 * @param nTime          The log time
+	 * @param rLocation      The location of the log call (NULL for none)
+	 * @param rContext       The log context
+	 */
+	LogRecord(LogLevel			  rLevel,
+			  Throwable			  rCause,
+			  String			  sMessageFormat,
+			  Object[]			  rMessageValues,
+			  long				  nTime,
+			  StackTraceElement   rLocation,
+			  Map<String, String> rContext)
+	{
+		this.rLevel		    = rLevel;
+		this.rCause		    = rCause;
+		this.sMessageFormat = sMessageFormat;
+		this.rMessageValues = rMessageValues;
+		this.nTime		    = nTime;
+		this.rContext	    = rContext;
+		rLogThread		    = null;
+		aCallSite		    = null;
+		aLogStack		    =
+			rLocation != null ? new StackTraceElement[] { rLocation }
+							  : NO_STACK;
+	}
 
-		aLogStack = new StackTraceElement[nLength];
-		System.arraycopy(rStackTrace, nStackOverhead, aLogStack, 0, nLength);
+	/***************************************
+	 * Creates a copy of another record with different message values.
+	 *
+	 * @param rOrigin        The record to copy
+	 * @param rMessageValues The new message values
+	 */
+	private LogRecord(LogRecord rOrigin, Object[] rMessageValues)
+	{
+		this.rLevel		    = rOrigin.rLevel;
+		this.rCause		    = rOrigin.rCause;
+		this.sMessageFormat = rOrigin.sMessageFormat;
+		this.rMessageValues = rMessageValues;
+		this.nTime		    = rOrigin.nTime;
+		rLogThread		    = rOrigin.rLogThread;
+		aCallSite		    = rOrigin.aCallSite;
+		aLogStack		    = rOrigin.aLogStack;
+		rContext		    = rOrigin.rContext;
 	}
 
 	//~ Static methods ---------------------------------------------------------
@@ -121,9 +204,78 @@ public final class LogRecord
 		Package				rPackage,
 		StackTraceElement[] rStackTrace)
 	{
-		String sPackage  = rPackage.getName();
-		int    nMax		 = rStackTrace.length - 1;
-		int    nOverhead = 0;
+		return getStackOverhead(rPackage.getName(), rStackTrace);
+	}
+
+	/***************************************
+	 * Checks whether the source location of log calls is captured.
+	 *
+	 * @return TRUE if the location is captured
+	 *
+	 * @see    #setCaptureLocation(boolean)
+	 */
+	public static boolean isCaptureLocation()
+	{
+		return bCaptureLocation;
+	}
+
+	/***************************************
+	 * Enables or disables the capturing of the source location of log calls.
+	 * If disabled the records will not contain any information about the
+	 * location of the log call and it's stack trace. The logging then only
+	 * uses the default log handlers because package log handlers cannot be
+	 * determined. The default is TRUE unless the system property
+	 * 'esoco.log.location' has been set to 'false'.
+	 *
+	 * <p>If enabled the creation of a log record only records the call stack
+	 * in the VM. The (expensive) stack trace elements will only be created if
+	 * any location data of the record is queried.</p>
+	 *
+	 * <p>The capturing is not derived from the logging configuration because
+	 * log handlers and log aspects are arbitrary functions which may access
+	 * the location of any record. Applications that don't output location
+	 * data should therefore disable it with this method.</p>
+	 *
+	 * @param bCapture TRUE to capture the log location
+	 */
+	public static void setCaptureLocation(boolean bCapture)
+	{
+		bCaptureLocation = bCapture;
+	}
+
+	/***************************************
+	 * Returns the name of the class that invoked the logging framework, i.e.
+	 * the class of the first stack frame outside of the logging package. This
+	 * creates the stack trace elements of the current thread and should
+	 * therefore only be used if the class is needed before a record is
+	 * created.
+	 *
+	 * @return The name of the calling class
+	 */
+	static String getCallerClassName()
+	{
+		StackTraceElement[] rStackTrace = new Throwable().getStackTrace();
+
+		return rStackTrace[getStackOverhead(LOGGING_PACKAGE, rStackTrace)]
+			   .getClassName();
+	}
+
+	/***************************************
+	 * Implementation of {@link #getStackOverhead(Package, StackTraceElement[])}
+	 * for a package name.
+	 *
+	 * @param  sPackage    The name of the package to search for
+	 * @param  rStackTrace The stack trace to analyze
+	 *
+	 * @return The index of the first stack trace element after the last entry
+	 *         with the given package
+	 */
+	private static int getStackOverhead(
+		String				sPackage,
+		StackTraceElement[] rStackTrace)
+	{
+		int nMax	  = rStackTrace.length - 1;
+		int nOverhead = 0;
 
 		while (nOverhead < nMax &&
 			   !rStackTrace[nOverhead].getClassName().startsWith(sPackage))
@@ -140,6 +292,41 @@ public final class LogRecord
 		return nOverhead;
 	}
 
+	/***************************************
+	 * Returns an immutable snapshot of a message value. Immutable values are
+	 * returned unchanged, dates and calendars are copied, and all other values
+	 * are converted to their string representation.
+	 *
+	 * @param  rValue The message value
+	 *
+	 * @return The value snapshot
+	 */
+	private static Object snapshotValue(Object rValue)
+	{
+		if (rValue == null || rValue instanceof String ||
+			rValue instanceof Integer || rValue instanceof Long ||
+			rValue instanceof Double || rValue instanceof Float ||
+			rValue instanceof Short || rValue instanceof Byte ||
+			rValue instanceof Boolean || rValue instanceof Character ||
+			rValue instanceof BigInteger || rValue instanceof BigDecimal ||
+			rValue instanceof Enum || rValue instanceof TemporalAccessor)
+		{
+			return rValue;
+		}
+		else if (rValue instanceof Date)
+		{
+			return ((Date) rValue).clone();
+		}
+		else if (rValue instanceof Calendar)
+		{
+			return ((Calendar) rValue).clone();
+		}
+		else
+		{
+			return String.valueOf(rValue);
+		}
+	}
+
 	//~ Methods ----------------------------------------------------------------
 
 	/***************************************
@@ -175,36 +362,26 @@ public final class LogRecord
 
 	/***************************************
 	 * Returns the full stack trace of the exception that caused the log entry.
-	 * This will include the stack traces of all causing exceptions.
+	 * This will include the stack traces of all causing exceptions. Frames
+	 * that are shared with the enclosing exception are elided. See {@link
+	 * StackTraceRenderer} for details.
 	 *
-	 * @return An array of stack trace elements
+	 * @return A list of stack trace lines (empty if no cause exists)
 	 */
 	public final List<String> getCauseStackTrace()
 	{
-		List<String> aFullStackTrace = new ArrayList<String>();
-		Throwable    e				 = rCause;
-		String		 sPrefix		 = "\t| ";
-
-		while (e != null)
-		{
-			int nStackElements = 0;
-
-			aFullStackTrace.add("   Caused by " + e);
-
-			for (StackTraceElement rStackTraceElement : e.getStackTrace())
-			{
-				aFullStackTrace.add(sPrefix + rStackTraceElement.toString());
-
-				if (++nStackElements >= MAX_CAUSE_STACK_SIZE)
-				{
-					break;
-				}
-			}
-
-			e = e.getCause();
-		}
+		return StackTraceRenderer.render(rCause);
+	}
 
-		return aFullStackTrace;
+	/***************************************
+	 * Returns the snapshot of the {@link LogContext} of the logging thread at
+	 * the time this record has been created.
+	 *
+	 * @return The immutable log context map (empty for none)
+	 */
+	public final Map<String, String> getContext()
+	{
+		return rContext;
 	}
 
 	/***************************************
@@ -230,10 +407,15 @@ public final class LogRecord
 	/***************************************
 	 * Returns the class which caused the log entry.
 	 *
-	 * @return The log class name
+	 * @return The log class or NULL if the log location hasn't been captured
 	 */
 	public final Class<?> getLogClass()
 	{
+		if (!hasLocation())
+		{
+			return null;
+		}
+
 		try
 		{
 			return Class.forName(getLogLocation().getClassName());
@@ -265,7 +447,9 @@ public final class LogRecord
 	 */
 	public final StackTraceElement getLogLocation()
 	{
-		return aLogStack[0];
+		StackTraceElement[] rStack = getLogStackTrace();
+
+		return rStack.length > 0 ? rStack[0] : UNKNOWN_LOCATION;
 	}
 
 	/***************************************
@@ -301,19 +485,44 @@ public final class LogRecord
 	/***************************************
 	 * Returns the stack trace of the code that caused the log entry. This
 	 * returns the internal array of stack trace elements and must therefore not
-	 * be modified.
+	 * be modified. The array will be created on the first invocation of this
+	 * method. If the log location has not been captured it will be empty.
 	 *
 	 * @return An array of stack trace elements
 	 */
 	public final StackTraceElement[] getLogStackTrace()
 	{
-		return aLogStack;
+		StackTraceElement[] rStack = aLogStack;
+
+		if (rStack == null)
+		{
+			if (aCallSite != null)
+			{
+				StackTraceElement[] rStackTrace = aCallSite.getStackTrace();
+
+				int nOverhead = getStackOverhead(LOGGING_PACKAGE, rStackTrace);
+
+				rStack =
+					Arrays.copyOfRange(rStackTrace,
+									   nOverhead,
+									   rStackTrace.length);
+			}
+			else
+			{
+				rStack = NO_STACK;
+			}
+
+			aLogStack = rStack;
+		}
+
+		return rStack;
 	}
 
 	/***************************************
 	 * Returns the thread from which the logging occurred.
 	 *
-	 * @return The log thread
+	 * @return The log thread (NULL for records that have been decoded from
+	 *         recorded data)
 	 */
 	public final Thread getLogThread()
 	{
@@ -372,6 +581,18 @@ public final class LogRecord
 		return nTime;
 	}
 
+	/***************************************
+	 * Checks whether this record contains the location of the log call.
+	 *
+	 * @return TRUE if the log location is available
+	 */
+	public final boolean hasLocation()
+	{
+		StackTraceElement[] rStack = aLogStack;
+
+		return aCallSite != null || (rStack != null && rStack.length > 0);
+	}
+
 	/***************************************
 	 * Returns a string description of this record.
 	 *
@@ -388,4 +609,43 @@ public final class LogRecord
 
 		return sb.toString();
 	}
+
+	/***************************************
+	 * Returns a record that is safe to be formatted in another thread because
+	 * it's message values cannot be modified by the logging code. Mutable
+	 * values will be replaced with snapshots that are created in the calling
+	 * thread. If all values are immutable this record will be returned.
+	 *
+	 * @return This record or a copy with immutable message values
+	 */
+	LogRecord snapshot()
+	{
+		if (rMessageValues != null)
+		{
+			Object[] aValues = null;
+
+			for (int i = 0; i < rMessageValues.length; i++)
+			{
+				Object rValue    = rMessageValues[i];
+				Object rSnapshot = snapshotValue(rValue);
+
+				if (rSnapshot != rValue && aValues == null)
+				{
+					aValues = rMessageValues.clone();
+				}
+
+				if (aValues != null)
+				{
+					aValues[i] = rSnapshot;
+				}
+			}
+
+			if (aValues != null)
+			{
+				return new LogRecord(this, aValues);
+			}
+		}
+
+		return this;
+	}
 }
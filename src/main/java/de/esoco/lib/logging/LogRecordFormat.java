@@ -31,6 +31,7 @@ import de.esoco.lib.expression.function.TokenStringFormat;
  *   <li>m|message: the log message [String]</li>
  *   <li>t|time: the log time in milliseconds [long]</li>
  *   <li>c|cause: the causing error (may be NULL) [Throwable]</li>
+ *   <li>context: the log context of the record [Map]</li>
  *   <li>package: the name of the package where the logging call occurred</li>
  *   <li>class: the name without package of the class where the logging call
  *     occurred</li>
@@ -74,6 +75,7 @@ public class LogRecordFormat extends TokenStringFormat<LogRecord>
 		aToken = new PropertyToken("getCause");
 		registerToken("c", aToken);
 		registerToken("cause", aToken);
+		registerToken("context", new PropertyToken("getContext"));
 		registerToken("package", new PropertyToken("getLogPackage"));
 		registerToken("class", new PropertyToken("getLogClassName"));
 		registerToken("method", new PropertyToken("getLogMethod"));
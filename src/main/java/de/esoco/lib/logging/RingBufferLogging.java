@@ -0,0 +1,277 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import org.obrel.core.RelationType;
+import org.obrel.core.RelationTypes;
+
+import static org.obrel.core.RelationTypes.newDefaultValueType;
+import static org.obrel.core.RelationTypes.newInitialValueType;
+import static org.obrel.core.RelationTypes.newType;
+
+
+/********************************************************************
+ * A log aspect that keeps the most recent log records in memory for
+ * post-mortem analysis. The records are captured with {@link
+ * Log#setLogCapture(Consumer, LogLevel)} starting at {@link #MIN_LOG_LEVEL}
+ * which defaults to {@link LogLevel#TRACE} for this aspect, i.e. the buffer
+ * also contains the records of levels that are disabled for the regular log
+ * output. The records are stored in a preallocated ring buffer of fixed size
+ * ({@link #RING_BUFFER_SIZE}) that is written without locking, so that the
+ * capturing only costs the creation of the log record.
+ *
+ * <p>If a record of {@link #DUMP_LOG_LEVEL} or higher is logged the buffered
+ * records are dumped in the background thread of the aspect. A dump can also
+ * be created on demand with {@link #dump()}. Dumps are appended to the file
+ * {@link #DUMP_FILE} if set and handed to the function in {@link
+ * #DUMP_HANDLER} if set. Each dump contains all buffered records that have
+ * not been contained in a previous dump. Only one ring buffer aspect can be
+ * active at a time.</p>
+ *
+ * @author eso
+ */
+public class RingBufferLogging extends LogAspect<LogRecord>
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	/**
+	 * The number of log records to keep in memory. Will be rounded up to the
+	 * next power of two. Defaults to 1024.
+	 */
+	public static final RelationType<Integer> RING_BUFFER_SIZE =
+		newInitialValueType(1024);
+
+	/**
+	 * The minimum log level that triggers a dump of the buffered records.
+	 * Defaults to {@link LogLevel#ERROR}.
+	 */
+	public static final RelationType<LogLevel> DUMP_LOG_LEVEL =
+		newDefaultValueType(LogLevel.ERROR);
+
+	/** The name of a file to append dumps to (optional). */
+	public static final RelationType<String> DUMP_FILE = newType();
+
+	/** A function that receives the lines of each dump (optional). */
+	public static final RelationType<Consumer<List<String>>> DUMP_HANDLER =
+		newType();
+
+	static
+	{
+		RelationTypes.init(RingBufferLogging.class);
+	}
+
+	//~ Instance fields --------------------------------------------------------
+
+	private AtomicReferenceArray<LogRecord> aRingBuffer;
+	private int							    nIndexMask;
+
+	private final AtomicLong aNextSequence = new AtomicLong();
+
+	private long nDumpedSequence = 0;
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance that captures all log levels.
+	 */
+	public RingBufferLogging()
+	{
+		set(MIN_LOG_LEVEL, LogLevel.TRACE);
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Dumps all buffered records that have not been dumped before to the
+	 * configured dump targets.
+	 *
+	 * @return The dumped lines
+	 *
+	 * @throws IOException If writing the dump file fails
+	 */
+	public synchronized List<String> dump() throws IOException
+	{
+		long		    nSequence = aNextSequence.get();
+		List<LogRecord> rRecords  = getRecords(nDumpedSequence, nSequence);
+		LogLevel	    eMinStack = get(MIN_STACK_LOG_LEVEL);
+		List<String>    aLines    = new ArrayList<>(rRecords.size() + 1);
+
+		nDumpedSequence = nSequence;
+
+		aLines.add(String.format("=== %s: last %d log records ===",
+								 this,
+								 Integer.valueOf(rRecords.size())));
+
+		for (LogRecord rRecord : rRecords)
+		{
+			aLines.add(rRecord.format(eMinStack));
+		}
+
+		aLines = Collections.unmodifiableList(aLines);
+
+		String				   sFile    = get(DUMP_FILE);
+		Consumer<List<String>> fHandler = get(DUMP_HANDLER);
+
+		if (sFile != null)
+		{
+			try (Writer aWriter =
+				 Files.newBufferedWriter(Paths.get(sFile),
+										 StandardCharsets.UTF_8,
+										 StandardOpenOption.CREATE,
+										 StandardOpenOption.APPEND))
+			{
+				for (String sLine : aLines)
+				{
+					aWriter.write(sLine);
+					aWriter.write('\n');
+				}
+			}
+		}
+
+		if (fHandler != null)
+		{
+			fHandler.accept(aLines);
+		}
+
+		return aLines;
+	}
+
+	/***************************************
+	 * Returns the log records that are currently buffered.
+	 *
+	 * @return A new list containing the buffered records, ordered from oldest
+	 *         to newest
+	 */
+	public List<LogRecord> getRecords()
+	{
+		return getRecords(0, aNextSequence.get());
+	}
+
+	/***************************************
+	 * Returns the record if it's level requires a dump, NULL otherwise.
+	 *
+	 * @see LogAspect#createLogObject(LogRecord)
+	 */
+	@Override
+	protected LogRecord createLogObject(LogRecord rLogRecord)
+	{
+		return rLogRecord.getLevel().compareTo(get(DUMP_LOG_LEVEL)) >= 0
+			   ? rLogRecord : null;
+	}
+
+	/***************************************
+	 * Allocates the ring buffer and starts capturing records.
+	 *
+	 * @see LogAspect#init()
+	 */
+	@Override
+	@SuppressWarnings("boxing")
+	protected void init()
+	{
+		int nSize = Integer.highestOneBit(Math.max(get(RING_BUFFER_SIZE), 1));
+
+		if (nSize < get(RING_BUFFER_SIZE))
+		{
+			nSize <<= 1;
+		}
+
+		aRingBuffer = new AtomicReferenceArray<>(nSize);
+		nIndexMask  = nSize - 1;
+
+		Log.setLogCapture(this::capture, get(MIN_LOG_LEVEL));
+	}
+
+	/***************************************
+	 * Creates a single dump for a batch of records that triggered a dump.
+	 *
+	 * @see LogAspect#processLogObjects(Collection)
+	 */
+	@Override
+	protected void processLogObjects(Collection<LogRecord> rLogObjects)
+		throws Exception
+	{
+		dump();
+	}
+
+	/***************************************
+	 * Stops capturing records.
+	 *
+	 * @see LogAspect#shutdown()
+	 */
+	@Override
+	protected void shutdown()
+	{
+		Log.setLogCapture(null, null);
+	}
+
+	/***************************************
+	 * Stores a log record in the ring buffer, overwriting the oldest record if
+	 * the buffer is full.
+	 *
+	 * @param rRecord The record to store
+	 */
+	private void capture(LogRecord rRecord)
+	{
+		long nSequence = aNextSequence.getAndIncrement();
+
+		aRingBuffer.lazySet((int) (nSequence & nIndexMask), rRecord);
+	}
+
+	/***************************************
+	 * Returns the buffered records in a range of sequence numbers. Records
+	 * that have already been overwritten are omitted.
+	 *
+	 * @param  nFrom The sequence number of the first record (inclusive)
+	 * @param  nTo   The sequence number of the last record (exclusive)
+	 *
+	 * @return A new list of the records, ordered from oldest to newest
+	 */
+	private List<LogRecord> getRecords(long nFrom, long nTo)
+	{
+		long			nStart   = Math.max(nFrom, nTo - aRingBuffer.length());
+		List<LogRecord> aRecords = new ArrayList<>((int) (nTo - nStart));
+
+		for (long nSequence = nStart; nSequence < nTo; nSequence++)
+		{
+			LogRecord rRecord =
+				aRingBuffer.get((int) (nSequence & nIndexMask));
+
+			if (rRecord != null)
+			{
+				aRecords.add(rRecord);
+			}
+		}
+
+		return aRecords;
+	}
+}
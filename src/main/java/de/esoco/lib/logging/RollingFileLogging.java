@@ -0,0 +1,533 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.text.SimpleDateFormat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.obrel.core.RelationType;
+import org.obrel.core.RelationTypes;
+
+import static org.obrel.core.RelationTypes.newInitialValueType;
+
+
+/********************************************************************
+ * A log aspect that appends log records to a file through a {@link
+ * FileChannel} and rolls the file over when it reaches a certain size or when a
+ * time interval has elapsed. Log records are encoded into a reusable direct
+ * byte buffer that is written to the channel once per processed batch of
+ * records or when the buffer is full, i.e. the file is neither re-opened nor
+ * flushed for each record. The data is not forced to the storage device
+ * explicitly, that is left to the operating system.
+ *
+ * <p>Rolled files are renamed by appending a timestamp to the file name and
+ * are then compressed with GZIP in a background thread if {@link
+ * #COMPRESS_LOG_FILES} is TRUE. After each roll-over only the newest {@link
+ * #LOG_FILE_GENERATIONS} rolled files are kept, older ones are deleted. The
+ * other configuration relations are {@link #MAX_LOG_FILE_SIZE}, {@link
+ * #LOG_ROLL_INTERVAL}, and {@link #LOG_BUFFER_SIZE}. They must be set before
+ * {@link #initLogging()} is invoked.</p>
+ *
+ * @author eso
+ */
+public class RollingFileLogging extends LogAspect<String>
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	/**
+	 * The size in bytes at which the log file will be rolled over. Defaults to
+	 * 10 MB, a value of zero disables size-based rolling.
+	 */
+	public static final RelationType<Long> MAX_LOG_FILE_SIZE =
+		newInitialValueType(10L * 1024 * 1024);
+
+	/**
+	 * The interval in milliseconds after which the log file will be rolled
+	 * over. The roll-over times are aligned to multiples of the interval since
+	 * the epoch (in UTC), so a value of one day will roll the file at midnight
+	 * UTC. Defaults to one day, a value of zero disables time-based rolling.
+	 */
+	public static final RelationType<Long> LOG_ROLL_INTERVAL =
+		newInitialValueType(TimeUnit.DAYS.toMillis(1));
+
+	/**
+	 * The number of rolled log files to keep. Defaults to 10, a value of zero
+	 * deletes rolled files immediately.
+	 */
+	public static final RelationType<Integer> LOG_FILE_GENERATIONS =
+		newInitialValueType(10);
+
+	/** A flag to compress rolled log files with GZIP. Defaults to TRUE. */
+	public static final RelationType<Boolean> COMPRESS_LOG_FILES =
+		newInitialValueType(Boolean.TRUE);
+
+	/** The size of the write buffer in bytes. Defaults to 64 KB. */
+	public static final RelationType<Integer> LOG_BUFFER_SIZE =
+		newInitialValueType(64 * 1024);
+
+	private static final String COMPRESSED_SUFFIX = ".gz";
+
+	static
+	{
+		RelationTypes.init(RollingFileLogging.class);
+	}
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final Path aLogFile;
+
+	private long    nMaxSize;
+	private long    nRollInterval;
+	private int     nGenerations;
+	private boolean bCompress;
+
+	private ByteBuffer	   aBuffer;
+	private CharsetEncoder aEncoder;
+	private FileChannel    aChannel;
+	private long		   nFileSize;
+	private long		   nNextRollTime;
+
+	private ExecutorService aRollExecutor;
+	private boolean		    bClosed;
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Creates a new instance that logs to a certain file.
+	 *
+	 * @param sFileName The name of the log file
+	 */
+	public RollingFileLogging(String sFileName)
+	{
+		aLogFile = Paths.get(sFileName).toAbsolutePath();
+	}
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Returns the path of the current log file.
+	 *
+	 * @return The log file path
+	 */
+	public final Path getLogFile()
+	{
+		return aLogFile;
+	}
+
+	/***************************************
+	 * Returns the rolled log files in ascending order of their age, i.e. the
+	 * oldest file is the first in the list. Files that are currently being
+	 * compressed may be contained twice, in compressed and uncompressed form.
+	 *
+	 * @return The list of rolled log files
+	 *
+	 * @throws IOException If reading the log directory fails
+	 */
+	public List<Path> getRolledFiles() throws IOException
+	{
+		String     sPrefix = aLogFile.getFileName() + ".";
+		List<Path> aFiles  = new ArrayList<>();
+
+		try (DirectoryStream<Path> aDir =
+			 Files.newDirectoryStream(aLogFile.getParent(), sPrefix + "*"))
+		{
+			for (Path rFile : aDir)
+			{
+				if (!rFile.getFileName().toString().endsWith(".tmp"))
+				{
+					aFiles.add(rFile);
+				}
+			}
+		}
+
+		aFiles.sort(Comparator.comparing(this::getRolledBaseName));
+
+		return aFiles;
+	}
+
+	/***************************************
+	 * Rolls the current log file over immediately. Any buffered data will be
+	 * written to the log file before it is rolled.
+	 *
+	 * @throws IOException If the roll-over fails
+	 */
+	public synchronized void roll() throws IOException
+	{
+		if (bClosed)
+		{
+			return;
+		}
+
+		if (aChannel != null)
+		{
+			writeBuffer();
+		}
+
+		rollFile(System.currentTimeMillis());
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected String createLogObject(LogRecord rLogRecord)
+	{
+		return rLogRecord.format(get(MIN_STACK_LOG_LEVEL));
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected String getLogInitMessage()
+	{
+		return "Starting rolling logging to file " + aLogFile;
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void init()
+	{
+		nMaxSize	  = get(MAX_LOG_FILE_SIZE).longValue();
+		nRollInterval = get(LOG_ROLL_INTERVAL).longValue();
+		nGenerations  = get(LOG_FILE_GENERATIONS).intValue();
+		bCompress     = get(COMPRESS_LOG_FILES).booleanValue();
+		bClosed		  = false;
+
+		aBuffer  = ByteBuffer.allocateDirect(get(LOG_BUFFER_SIZE).intValue());
+		aEncoder =
+			StandardCharsets.UTF_8.newEncoder()
+								  .onMalformedInput(CodingErrorAction.REPLACE)
+								  .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		aRollExecutor =
+			Executors.newSingleThreadExecutor(rRunnable ->
+											  {
+												  Thread aThread =
+													  new Thread(rRunnable,
+																 "RollingFileLogging");
+
+												  aThread.setDaemon(true);
+
+												  return aThread;
+											  });
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected synchronized void processLogObjects(Collection<String> rLogs)
+		throws Exception
+	{
+		long nTime = System.currentTimeMillis();
+
+		if (bClosed)
+		{
+			// the processing thread outlived the shutdown timeout; don't
+			// reopen the file and the terminated roll executor
+			return;
+		}
+
+		if (aChannel == null)
+		{
+			openFile(nTime);
+		}
+
+		for (String sLog : rLogs)
+		{
+			if ((nMaxSize > 0 && nFileSize + aBuffer.position() >= nMaxSize) ||
+				(nRollInterval > 0 && nTime >= nNextRollTime))
+			{
+				writeBuffer();
+				rollFile(nTime);
+				openFile(nTime);
+			}
+
+			encode(sLog);
+			encode("\n");
+		}
+
+		writeBuffer();
+	}
+
+	/***************************************
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected synchronized void shutdown()
+	{
+		bClosed = true;
+
+		try
+		{
+			if (aChannel != null)
+			{
+				writeBuffer();
+				aChannel.close();
+				aChannel = null;
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Closing log file failed: " + e);
+		}
+
+		aRollExecutor.shutdown();
+
+		try
+		{
+			aRollExecutor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/***************************************
+	 * Compresses a rolled log file with GZIP and deletes the original file.
+	 * The compressed data is first written to a temporary file that will then
+	 * be renamed to the final name.
+	 *
+	 * @param  rFile The file to compress
+	 *
+	 * @throws IOException If the compression fails
+	 */
+	private void compress(Path rFile) throws IOException
+	{
+		Path rTarget =
+			rFile.resolveSibling(rFile.getFileName() + COMPRESSED_SUFFIX);
+		Path rTemp   = rFile.resolveSibling(rTarget.getFileName() + ".tmp");
+
+		try (InputStream rIn = Files.newInputStream(rFile);
+			 OutputStream rOut =
+			 new GZIPOutputStream(Files.newOutputStream(rTemp), 64 * 1024))
+		{
+			byte[] aData = new byte[64 * 1024];
+			int    nRead;
+
+			while ((nRead = rIn.read(aData)) > 0)
+			{
+				rOut.write(aData, 0, nRead);
+			}
+		}
+
+		Files.move(rTemp, rTarget, StandardCopyOption.ATOMIC_MOVE);
+		Files.delete(rFile);
+	}
+
+	/***************************************
+	 * Deletes the oldest rolled log files so that only the configured number
+	 * of generations remains.
+	 *
+	 * @throws IOException If deleting a file fails
+	 */
+	private void deleteOldGenerations() throws IOException
+	{
+		List<Path> aFiles = getRolledFiles();
+
+		for (int i = aFiles.size() - nGenerations - 1; i >= 0; i--)
+		{
+			Files.deleteIfExists(aFiles.get(i));
+		}
+	}
+
+	/***************************************
+	 * Encodes a string into the write buffer and writes the buffer to the log
+	 * file if it is full.
+	 *
+	 * @param  sText The text to encode
+	 *
+	 * @throws IOException If writing the buffer fails
+	 */
+	private void encode(String sText) throws IOException
+	{
+		CharBuffer aChars = CharBuffer.wrap(sText);
+
+		aEncoder.reset();
+
+		while (true)
+		{
+			CoderResult aResult = aEncoder.encode(aChars, aBuffer, true);
+
+			if (aResult.isOverflow())
+			{
+				writeBuffer();
+			}
+			else
+			{
+				break;
+			}
+		}
+
+		while (aEncoder.flush(aBuffer).isOverflow())
+		{
+			writeBuffer();
+		}
+	}
+
+	/***************************************
+	 * Returns the name of a rolled file without the compression suffix. This
+	 * is used to sort rolled files by their age because a numbered suffix for
+	 * files that are rolled within the same millisecond would otherwise be
+	 * sorted before the compression suffix.
+	 *
+	 * @param  rFile The rolled file
+	 *
+	 * @return The base name
+	 */
+	private String getRolledBaseName(Path rFile)
+	{
+		String sName = rFile.getFileName().toString();
+
+		if (sName.endsWith(COMPRESSED_SUFFIX))
+		{
+			sName =
+				sName.substring(0, sName.length() - COMPRESSED_SUFFIX.length());
+		}
+
+		return sName;
+	}
+
+	/***************************************
+	 * Opens the log file for appending.
+	 *
+	 * @param  nTime The current time
+	 *
+	 * @throws IOException If opening the file fails
+	 */
+	private void openFile(long nTime) throws IOException
+	{
+		aChannel =
+			FileChannel.open(aLogFile,
+							 StandardOpenOption.CREATE,
+							 StandardOpenOption.WRITE,
+							 StandardOpenOption.APPEND);
+
+		nFileSize = aChannel.size();
+
+		if (nRollInterval > 0)
+		{
+			nNextRollTime = (nTime / nRollInterval + 1) * nRollInterval;
+		}
+	}
+
+	/***************************************
+	 * Closes and renames the current log file and schedules the compression
+	 * and the cleanup of the rolled files.
+	 *
+	 * @param  nTime The current time
+	 *
+	 * @throws IOException If renaming the file fails
+	 */
+	private void rollFile(long nTime) throws IOException
+	{
+		if (aChannel != null)
+		{
+			aChannel.close();
+			aChannel = null;
+		}
+
+		if (!Files.exists(aLogFile) || Files.size(aLogFile) == 0)
+		{
+			return;
+		}
+
+		String sBaseName =
+			aLogFile.getFileName() + "." +
+			new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(nTime));
+
+		Path rRolled = aLogFile.resolveSibling(sBaseName);
+		int  nCount  = 1;
+
+		while (Files.exists(rRolled) ||
+			   Files.exists(rRolled.resolveSibling(sBaseName +
+												   COMPRESSED_SUFFIX)))
+		{
+			rRolled = aLogFile.resolveSibling(sBaseName + "-" + nCount++);
+		}
+
+		Files.move(aLogFile, rRolled);
+
+		Path rFile = rRolled;
+
+		aRollExecutor.execute(() ->
+							  {
+								  try
+								  {
+									  if (bCompress)
+									  {
+										  compress(rFile);
+									  }
+
+									  deleteOldGenerations();
+								  }
+								  catch (IOException e)
+								  {
+									  System.err.println("Log file roll-over failed: " +
+														 e);
+								  }
+							  });
+	}
+
+	/***************************************
+	 * Writes the content of the buffer to the log file.
+	 *
+	 * @throws IOException If writing fails
+	 */
+	private void writeBuffer() throws IOException
+	{
+		aBuffer.flip();
+
+		while (aBuffer.hasRemaining())
+		{
+			nFileSize += aChannel.write(aBuffer);
+		}
+
+		aBuffer.clear();
+	}
+}
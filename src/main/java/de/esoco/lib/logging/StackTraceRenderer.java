@@ -0,0 +1,395 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+
+/********************************************************************
+ * Renders the stack traces of exceptions and their causes into lists of text
+ * lines. Like {@link Throwable#printStackTrace()} the frames of a cause that
+ * are identical with the end of the enclosing trace are elided and replaced
+ * with a line of the form '... 42 more'. The number of rendered frames per
+ * exception is limited by a configurable maximum depth.
+ *
+ * <p>Because the same exceptions typically occur repeatedly (e.g. for failing
+ * connections) the rendered frame lines of each trace are cached in a bounded
+ * LRU cache that is keyed by the hash of the rendered stack frames. Only the header
+ * lines of the exceptions which contain the (varying) messages are created
+ * for each invocation. The maximum depth and cache size default to the values
+ * of the system properties 'esoco.log.tracedepth' (default 50) and
+ * 'esoco.log.tracecache' (default 256; 0 disables caching).</p>
+ *
+ * @author eso
+ */
+public final class StackTraceRenderer
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	/** The prefix of rendered stack frame lines. */
+	public static final String FRAME_PREFIX = "\t| ";
+
+	private static final int MAX_CAUSE_CHAIN = 20;
+
+	private static volatile int nMaxDepth =
+		Integer.getInteger("esoco.log.tracedepth", 50).intValue();
+
+	private static int nCacheSize =
+		Integer.getInteger("esoco.log.tracecache", 256).intValue();
+
+	private static final Map<TraceKey, List<String>> aTraceCache =
+		new LinkedHashMap<TraceKey, List<String>>(64, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+				Entry<TraceKey, List<String>> rEldest)
+			{
+				return size() > nCacheSize;
+			}
+		};
+
+	//~ Constructors -----------------------------------------------------------
+
+	/***************************************
+	 * Private, only static use.
+	 */
+	private StackTraceRenderer()
+	{
+	}
+
+	//~ Static methods ---------------------------------------------------------
+
+	/***************************************
+	 * Removes all cached stack traces.
+	 */
+	public static void clearCache()
+	{
+		synchronized (aTraceCache)
+		{
+			aTraceCache.clear();
+		}
+	}
+
+	/***************************************
+	 * Returns the number of currently cached stack traces.
+	 *
+	 * @return The cache size
+	 */
+	public static int getCachedTraceCount()
+	{
+		synchronized (aTraceCache)
+		{
+			return aTraceCache.size();
+		}
+	}
+
+	/***************************************
+	 * Returns the maximum number of frames that will be rendered for each
+	 * exception in a chain of causes.
+	 *
+	 * @return The maximum stack depth
+	 */
+	public static int getMaxDepth()
+	{
+		return nMaxDepth;
+	}
+
+	/***************************************
+	 * Renders the stack trace of an exception and all of it's causes. Each
+	 * exception is rendered as a header line of the form 'Caused by
+	 * [exception]' followed by the stack frame lines.
+	 *
+	 * @param  rException The exception to render (NULL for none)
+	 *
+	 * @return A new list containing the stack trace lines (empty for NULL)
+	 */
+	public static List<String> render(Throwable rException)
+	{
+		List<String>	    aLines     = new ArrayList<>();
+		List<Throwable>	    aRendered  = new ArrayList<>();
+		StackTraceElement[] rEnclosing = null;
+		Throwable		    e		   = rException;
+
+		while (e != null && aRendered.size() < MAX_CAUSE_CHAIN &&
+			   !containsInstance(aRendered, e))
+		{
+			StackTraceElement[] rStack = e.getStackTrace();
+
+			aLines.add("   Caused by " + e);
+			aLines.addAll(getFrameLines(rStack,
+										countCommonFrames(rStack, rEnclosing)));
+
+			aRendered.add(e);
+			rEnclosing = rStack;
+			e		   = e.getCause();
+		}
+
+		return aLines;
+	}
+
+	/***************************************
+	 * Sets the maximum size of the stack trace cache. Reducing the size
+	 * will clear the cache.
+	 *
+	 * @param nSize The maximum number of cached traces (0 to disable caching)
+	 */
+	public static void setCacheSize(int nSize)
+	{
+		if (nSize < 0)
+		{
+			throw new IllegalArgumentException("Invalid cache size: " + nSize);
+		}
+
+		synchronized (aTraceCache)
+		{
+			if (nSize < nCacheSize)
+			{
+				aTraceCache.clear();
+			}
+
+			nCacheSize = nSize;
+		}
+	}
+
+	/***************************************
+	 * Sets the maximum number of frames that will be rendered for each
+	 * exception in a chain of causes. This will also clear the cache.
+	 *
+	 * @param nDepth The new maximum stack depth (must be &gt; 0)
+	 */
+	public static void setMaxDepth(int nDepth)
+	{
+		if (nDepth <= 0)
+		{
+			throw new IllegalArgumentException("Invalid depth: " + nDepth);
+		}
+
+		nMaxDepth = nDepth;
+		clearCache();
+	}
+
+	/***************************************
+	 * Checks whether a list contains a certain object instance.
+	 *
+	 * @param  rList   The list to search
+	 * @param  rObject The object to search for
+	 *
+	 * @return TRUE if the list contains the exact instance
+	 */
+	private static boolean containsInstance(List<?> rList, Object rObject)
+	{
+		for (Object rElement : rList)
+		{
+			if (rElement == rObject)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/***************************************
+	 * Counts the number of frames at the end of a stack trace that are
+	 * identical with the end of the enclosing stack trace.
+	 *
+	 * @param  rStack     The stack trace
+	 * @param  rEnclosing The enclosing stack trace (NULL for none)
+	 *
+	 * @return The number of common frames
+	 */
+	private static int countCommonFrames(
+		StackTraceElement[] rStack,
+		StackTraceElement[] rEnclosing)
+	{
+		int nCommon = 0;
+
+		if (rEnclosing != null)
+		{
+			int i = rStack.length - 1;
+			int j = rEnclosing.length - 1;
+
+			while (i >= 0 && j >= 0 && rStack[i].equals(rEnclosing[j]))
+			{
+				nCommon++;
+				i--;
+				j--;
+			}
+		}
+
+		return nCommon;
+	}
+
+	/***************************************
+	 * Returns the rendered frame lines of a stack trace, either from the cache
+	 * or by rendering and caching them.
+	 *
+	 * @param  rStack  The stack trace
+	 * @param  nCommon The number of frames in common with the enclosing trace
+	 *
+	 * @return The immutable list of frame lines
+	 */
+	private static List<String> getFrameLines(
+		StackTraceElement[] rStack,
+		int					nCommon)
+	{
+		int			 nCount = Math.min(rStack.length - nCommon, nMaxDepth);
+		TraceKey     aKey   = new TraceKey(rStack, nCount);
+		List<String> rLines;
+
+		synchronized (aTraceCache)
+		{
+			rLines = aTraceCache.get(aKey);
+		}
+
+		if (rLines == null)
+		{
+			rLines = renderFrames(rStack, nCount);
+
+			synchronized (aTraceCache)
+			{
+				if (nCacheSize > 0)
+				{
+					aTraceCache.put(aKey, rLines);
+				}
+			}
+		}
+
+		return rLines;
+	}
+
+	/***************************************
+	 * Renders the frames of a stack trace.
+	 *
+	 * @param  rStack The stack trace
+	 * @param  nCount The number of frames to render
+	 *
+	 * @return The immutable list of frame lines
+	 */
+	private static List<String> renderFrames(
+		StackTraceElement[] rStack,
+		int					nCount)
+	{
+		List<String> aLines = new ArrayList<>(nCount + 1);
+
+		for (int i = 0; i < nCount; i++)
+		{
+			aLines.add(FRAME_PREFIX + rStack[i]);
+		}
+
+		if (nCount < rStack.length)
+		{
+			aLines.add(FRAME_PREFIX + "... " + (rStack.length - nCount) +
+					   " more");
+		}
+
+		return Collections.unmodifiableList(aLines);
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * The cache key of rendered stack frames. Only the rendered frames and the
+	 * number of omitted frames are relevant for the key, therefore traces that
+	 * only differ in elided frames will share the same rendering.
+	 *
+	 * @author eso
+	 */
+	static final class TraceKey
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private final StackTraceElement[] rStack;
+		private final int				  nCount;
+		private final int				  nHash;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param rStack The stack trace
+		 * @param nCount The number of rendered frames
+		 */
+		TraceKey(StackTraceElement[] rStack, int nCount)
+		{
+			int nHash = 31 * nCount + rStack.length;
+
+			for (int i = 0; i < nCount; i++)
+			{
+				nHash = 31 * nHash + rStack[i].hashCode();
+			}
+
+			this.rStack = rStack;
+			this.nCount = nCount;
+			this.nHash  = nHash;
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean equals(Object rObject)
+		{
+			if (this == rObject)
+			{
+				return true;
+			}
+
+			if (!(rObject instanceof TraceKey))
+			{
+				return false;
+			}
+
+			TraceKey rOther = (TraceKey) rObject;
+
+			if (nHash != rOther.nHash || nCount != rOther.nCount ||
+				rStack.length != rOther.rStack.length)
+			{
+				return false;
+			}
+
+			for (int i = 0; i < nCount; i++)
+			{
+				if (!rStack[i].equals(rOther.rStack[i]))
+				{
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		public int hashCode()
+		{
+			return nHash;
+		}
+	}
+}
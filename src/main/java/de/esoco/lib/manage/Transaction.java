@@ -145,6 +145,16 @@ public class Transaction implements Transactional
 		}
 	}
 
+	/***************************************
+	 * Returns the ID of this transaction which is unique in the current VM.
+	 *
+	 * @return The transaction ID
+	 */
+	public final int getId()
+	{
+		return nId;
+	}
+
 	/***************************************
 	 * Returns the current transaction level. The starting level of a
 	 * transaction is 1. A level of zero means that the transaction has been
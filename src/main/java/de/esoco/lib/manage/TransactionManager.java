@@ -17,6 +17,7 @@
 package de.esoco.lib.manage;
 
 import de.esoco.lib.logging.Log;
+import de.esoco.lib.logging.LogContext;
 
 
 /********************************************************************
@@ -134,6 +135,8 @@ public class TransactionManager
 		{
 			aTransaction = new Transaction();
 			aThreadTransaction.set(aTransaction);
+			LogContext.put(LogContext.TRANSACTION_ID,
+						   Integer.toString(aTransaction.getId()));
 		}
 		else
 		{
@@ -313,5 +316,6 @@ public class TransactionManager
 			   rTransaction;
 
 		aThreadTransaction.remove();
+		LogContext.remove(LogContext.TRANSACTION_ID);
 	}
 }
@@ -0,0 +1,88 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import de.esoco.lib.comm.CircuitBreaker.State;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link CircuitBreaker}.
+ *
+ * @author eso
+ */
+public class CircuitBreakerTest
+{
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test of the half-open probing of an open breaker.
+	 */
+	@Test
+	public void testHalfOpenProbe()
+	{
+		CircuitBreaker aBreaker = new CircuitBreaker(1, 0);
+
+		aBreaker.recordFailure();
+		assertEquals(State.OPEN, aBreaker.getState());
+
+		assertTrue(aBreaker.allowCall());
+		assertEquals(State.HALF_OPEN, aBreaker.getState());
+		assertFalse(aBreaker.allowCall());
+
+		aBreaker.recordFailure();
+		assertEquals(State.OPEN, aBreaker.getState());
+		assertEquals(2, aBreaker.getOpenCount());
+
+		assertTrue(aBreaker.allowCall());
+		aBreaker.recordSuccess();
+		assertEquals(State.CLOSED, aBreaker.getState());
+		assertTrue(aBreaker.allowCall());
+	}
+
+	/***************************************
+	 * Test of opening a breaker after consecutive failures.
+	 */
+	@Test
+	public void testOpenOnFailures()
+	{
+		CircuitBreaker aBreaker = new CircuitBreaker(3, 60 * 1000);
+
+		aBreaker.recordFailure();
+		aBreaker.recordFailure();
+		aBreaker.recordSuccess();
+		aBreaker.recordFailure();
+		aBreaker.recordFailure();
+		assertEquals(State.CLOSED, aBreaker.getState());
+		assertTrue(aBreaker.allowCall());
+
+		aBreaker.recordFailure();
+		assertEquals(State.OPEN, aBreaker.getState());
+		assertFalse(aBreaker.allowCall());
+		assertEquals(1, aBreaker.getRejectionCount());
+		assertEquals(5, aBreaker.getFailureCount());
+		assertEquals(1, aBreaker.getSuccessCount());
+
+		aBreaker.reset();
+		assertTrue(aBreaker.allowCall());
+	}
+}
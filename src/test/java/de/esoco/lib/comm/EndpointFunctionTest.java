@@ -0,0 +1,392 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import de.esoco.lib.comm.CircuitBreaker.State;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static de.esoco.lib.comm.CommunicationRelationTypes.CIRCUIT_BREAKER;
+import static de.esoco.lib.comm.CommunicationRelationTypes.HEDGE_DELAY;
+import static de.esoco.lib.comm.CommunicationRelationTypes.MAX_RETRIES;
+import static de.esoco.lib.comm.CommunicationRelationTypes.REQUEST_DEADLINE;
+import static de.esoco.lib.comm.CommunicationRelationTypes.RETRY_DELAY;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/********************************************************************
+ * Test of the resilience features of {@link EndpointFunction}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class EndpointFunctionTest
+{
+	//~ Instance fields --------------------------------------------------------
+
+	private final CountDownLatch aRelease = new CountDownLatch(1);
+
+	private TestEndpoint   aEndpoint;
+	private CircuitBreaker aBreaker;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test setup.
+	 */
+	@Before
+	public void setUp()
+	{
+		aEndpoint = new TestEndpoint();
+		aBreaker  = new CircuitBreaker(3, 60 * 1000);
+
+		aEndpoint.set(CIRCUIT_BREAKER, aBreaker);
+		aEndpoint.set(RETRY_DELAY, 1);
+	}
+
+	/***************************************
+	 * Test cleanup.
+	 */
+	@After
+	public void tearDown()
+	{
+		aRelease.countDown();
+	}
+
+	/***************************************
+	 * Test that a call that exceeds the deadline is aborted by closing it's
+	 * connection.
+	 *
+	 * @throws InterruptedException If waiting for the close fails
+	 */
+	@Test(timeout = 10000)
+	public void testDeadline() throws InterruptedException
+	{
+		TestMethod fMethod =
+			new TestMethod(false, nCall -> block(aEndpoint.aClosed));
+
+		aEndpoint.set(REQUEST_DEADLINE, 100);
+
+		try
+		{
+			fMethod.from(aEndpoint).receive();
+			fail();
+		}
+		catch (CommunicationException e)
+		{
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+
+		assertTrue(aEndpoint.aClosed.await(5, TimeUnit.SECONDS));
+		assertEquals(1, aBreaker.getTimeoutCount());
+		assertEquals(0, aBreaker.getRetryCount());
+	}
+
+	/***************************************
+	 * Test that an error completes a half-open probe of a circuit breaker.
+	 */
+	@Test
+	public void testErrorInHalfOpenProbe()
+	{
+		TestMethod fMethod =
+			new TestMethod(false,
+						   nCall ->
+						   {
+							   throw new AssertionError("Probe failed");
+						   });
+
+		CircuitBreaker aProbeBreaker = new CircuitBreaker(1, 0);
+
+		aEndpoint.set(CIRCUIT_BREAKER, aProbeBreaker);
+		aProbeBreaker.recordFailure();
+
+		try
+		{
+			fMethod.from(aEndpoint).receive();
+			fail();
+		}
+		catch (AssertionError e)
+		{
+			assertEquals("Probe failed", e.getMessage());
+		}
+
+		assertEquals(State.OPEN, aProbeBreaker.getState());
+		assertEquals(1, aEndpoint.nConnections.get());
+		assertEquals(0, aEndpoint.aClosed.getCount());
+	}
+
+	/***************************************
+	 * Test that a slow call of an idempotent method is hedged by a second
+	 * call.
+	 */
+	@Test(timeout = 10000)
+	public void testHedging()
+	{
+		TestMethod fMethod =
+			new TestMethod(true,
+						   nCall -> nCall == 1 ? block(aRelease) : "hedged");
+
+		aEndpoint.set(HEDGE_DELAY, 50);
+
+		assertEquals("hedged", fMethod.from(aEndpoint).receive());
+		assertEquals(2, fMethod.aCalls.get());
+		assertEquals(1, aBreaker.getHedgeCount());
+	}
+
+	/***************************************
+	 * Test that methods that are not idempotent are never hedged.
+	 */
+	@Test(timeout = 10000)
+	public void testNoHedgingOfNonIdempotentMethod()
+	{
+		TestMethod fMethod = new TestMethod(false, nCall -> sleep(200));
+
+		aEndpoint.set(HEDGE_DELAY, 50);
+
+		assertEquals("slept", fMethod.from(aEndpoint).receive());
+		assertEquals(1, fMethod.aCalls.get());
+		assertEquals(0, aBreaker.getHedgeCount());
+	}
+
+	/***************************************
+	 * Test that calls of methods that are not idempotent are never retried.
+	 */
+	@Test
+	public void testNoRetryOfNonIdempotentMethod()
+	{
+		TestMethod fMethod =
+			new TestMethod(false,
+						   nCall ->
+						   {
+							   throw new CommunicationException("Failed");
+						   });
+
+		aEndpoint.set(MAX_RETRIES, 3);
+
+		try
+		{
+			fMethod.from(aEndpoint).receive();
+			fail();
+		}
+		catch (CommunicationException e)
+		{
+			assertEquals(1, fMethod.aCalls.get());
+			assertEquals(0, aBreaker.getRetryCount());
+		}
+	}
+
+	/***************************************
+	 * Test that failed calls are retried up to the maximum number of retries.
+	 */
+	@Test
+	public void testRetries()
+	{
+		TestMethod fMethod =
+			new TestMethod(true,
+						   nCall ->
+						   {
+							   if (nCall < 3)
+							   {
+								   throw new CommunicationException("Failed");
+							   }
+
+							   return "success";
+						   });
+
+		aEndpoint.set(MAX_RETRIES, 2);
+
+		assertEquals("success", fMethod.from(aEndpoint).receive());
+		assertEquals(3, fMethod.aCalls.get());
+		assertEquals(2, aBreaker.getRetryCount());
+		assertEquals(2, aBreaker.getFailureCount());
+		assertEquals(1, aBreaker.getSuccessCount());
+
+		fMethod.aCalls.set(0);
+		aEndpoint.set(MAX_RETRIES, 1);
+
+		try
+		{
+			fMethod.from(aEndpoint).receive();
+			fail();
+		}
+		catch (CommunicationException e)
+		{
+			assertEquals(2, fMethod.aCalls.get());
+		}
+	}
+
+	/***************************************
+	 * Blocks the calling thread until a latch is released or the thread is
+	 * interrupted.
+	 *
+	 * @param  rLatch The latch to wait for
+	 *
+	 * @return Nothing, always throws an exception
+	 */
+	private String block(CountDownLatch rLatch)
+	{
+		try
+		{
+			rLatch.await();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		throw new CommunicationException("Released");
+	}
+
+	/***************************************
+	 * Sleeps for a certain time.
+	 *
+	 * @param  nMillis The time to sleep
+	 *
+	 * @return A fixed string
+	 */
+	private String sleep(long nMillis)
+	{
+		try
+		{
+			Thread.sleep(nMillis);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		return "slept";
+	}
+
+	//~ Inner Interfaces -------------------------------------------------------
+
+	/********************************************************************
+	 * The call handler of a {@link TestMethod}.
+	 *
+	 * @author eso
+	 */
+	interface CallHandler
+	{
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * Handles a call.
+		 *
+		 * @param  nCall The one-based index of the call
+		 *
+		 * @return The call result
+		 */
+		String handleCall(int nCall);
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * An endpoint that counts the connections created on it and signals the
+	 * closing of connections.
+	 *
+	 * @author eso
+	 */
+	static class TestEndpoint extends Endpoint
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		final AtomicInteger  nConnections = new AtomicInteger();
+		final CountDownLatch aClosed	  = new CountDownLatch(1);
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void closeConnection(Connection rConnection)
+		{
+			aClosed.countDown();
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void initConnection(Connection rConnection)
+		{
+			nConnections.incrementAndGet();
+		}
+	}
+
+	/********************************************************************
+	 * A communication method that delegates to a call handler.
+	 *
+	 * @author eso
+	 */
+	static class TestMethod extends CommunicationMethod<String, String>
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		final AtomicInteger aCalls = new AtomicInteger();
+
+		private final boolean	  bIdempotent;
+		private final CallHandler fHandler;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 *
+		 * @param bIdempotent The idempotent flag
+		 * @param fHandler    The call handler
+		 */
+		TestMethod(boolean bIdempotent, CallHandler fHandler)
+		{
+			super("TestMethod", null);
+
+			this.bIdempotent = bIdempotent;
+			this.fHandler    = fHandler;
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String doOn(Connection rConnection, String rInput)
+		{
+			return fHandler.handleCall(aCalls.incrementAndGet());
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean isIdempotent()
+		{
+			return bIdempotent;
+		}
+	}
+}
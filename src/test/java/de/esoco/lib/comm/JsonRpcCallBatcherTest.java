@@ -0,0 +1,425 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import de.esoco.lib.comm.EndpointFunctionTest.TestEndpoint;
+import de.esoco.lib.comm.JsonRpcCallBatcher.BatchedCall;
+import de.esoco.lib.comm.JsonRpcEndpoint.Call;
+import de.esoco.lib.comm.JsonRpcEndpoint.JsonRpcBatchCall;
+import de.esoco.lib.comm.JsonRpcEndpoint.JsonRpcMethod;
+import de.esoco.lib.comm.JsonRpcEndpoint.JsonRpcRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/********************************************************************
+ * Test of {@link JsonRpcCallBatcher}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class JsonRpcCallBatcherTest
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	private static final JsonRpcMethod<String, String> UPPER =
+		JsonRpcEndpoint.call("upper", null, String.class);
+
+	private static final JsonRpcMethod<String, String> FAIL =
+		JsonRpcEndpoint.call("fail", null, String.class);
+
+	private static final JsonRpcMethod<String, String> SLOW =
+		JsonRpcEndpoint.call("slow", null, String.class);
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final List<Integer>  aBatchSizes = new CopyOnWriteArrayList<>();
+	private final CountDownLatch aSending    = new CountDownLatch(1);
+	private final CountDownLatch aRelease    = new CountDownLatch(1);
+
+	private TestEndpoint	   aEndpoint;
+	private JsonRpcCallBatcher aBatcher;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test setup.
+	 */
+	@Before
+	public void setUp()
+	{
+		aEndpoint = new TestEndpoint();
+	}
+
+	/***************************************
+	 * Test cleanup.
+	 */
+	@After
+	public void tearDown()
+	{
+		aRelease.countDown();
+
+		if (aBatcher != null)
+		{
+			aBatcher.close();
+		}
+	}
+
+	/***************************************
+	 * Test that errors of single calls only complete the futures of these
+	 * calls exceptionally.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testCallErrors() throws Exception
+	{
+		aBatcher = createBatcher(60 * 1000, 3, 1);
+
+		CompletableFuture<String> aFirst  = aBatcher.call(UPPER, "a");
+		CompletableFuture<String> aFailed = aBatcher.call(FAIL, "b");
+		CompletableFuture<String> aThird  = aBatcher.call(UPPER, "c");
+
+		assertEquals("A", receive(aFirst));
+		assertEquals("C", receive(aThird));
+		assertFailed(aFailed);
+		assertEquals(Arrays.asList(3), aBatchSizes);
+	}
+
+	/***************************************
+	 * Test closing an instance while batches are being sent or are waiting
+	 * to be sent.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testCloseWithCallsInFlight() throws Exception
+	{
+		aBatcher = createBatcher(60 * 1000, 2, 1);
+
+		CompletableFuture<String> aSlow = aBatcher.call(SLOW, "s");
+		CompletableFuture<String> aA    = aBatcher.call(UPPER, "a");
+
+		assertTrue(aSending.await(5, TimeUnit.SECONDS));
+
+		// the second batch waits for the single batch thread
+		CompletableFuture<String> aB = aBatcher.call(UPPER, "b");
+		CompletableFuture<String> aC = aBatcher.call(UPPER, "c");
+		CompletableFuture<String> aD = aBatcher.call(UPPER, "d");
+
+		aBatcher.close();
+
+		// pending calls are sent by close()
+		assertTrue(aD.isDone());
+		assertEquals("D", aD.get());
+		assertEquals(0, aBatcher.getPendingCount());
+
+		try
+		{
+			aBatcher.call(UPPER, "e");
+			fail();
+		}
+		catch (IllegalStateException e)
+		{
+			// expected
+		}
+
+		aRelease.countDown();
+
+		assertEquals("S", receive(aSlow));
+		assertEquals("A", receive(aA));
+		assertEquals("B", receive(aB));
+		assertEquals("C", receive(aC));
+	}
+
+	/***************************************
+	 * Test that closing an instance concurrently to calls never rejects a
+	 * batch and that all accepted calls are completed.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testConcurrentClose() throws Exception
+	{
+		aBatcher = createBatcher(1, 2, 2);
+
+		List<CompletableFuture<String>> aCalls   = new CopyOnWriteArrayList<>();
+		AtomicReference<Throwable>	    aError   = new AtomicReference<>();
+		List<Thread>				    aCallers = new ArrayList<>();
+
+		for (int t = 0; t < 4; t++)
+		{
+			Thread aCaller =
+				new Thread(() ->
+						   {
+							   try
+							   {
+								   for (int i = 0; i < 1000; i++)
+								   {
+									   aCalls.add(aBatcher.call(UPPER, "x"));
+								   }
+							   }
+							   catch (IllegalStateException e)
+							   {
+								   // closed
+							   }
+							   catch (Throwable e)
+							   {
+								   aError.set(e);
+							   }
+						   });
+
+			aCallers.add(aCaller);
+			aCaller.start();
+		}
+
+		Thread.sleep(5);
+		aBatcher.close();
+
+		for (Thread rCaller : aCallers)
+		{
+			rCaller.join();
+		}
+
+		assertNull(aError.get());
+
+		for (CompletableFuture<String> rCall : aCalls)
+		{
+			assertEquals("X", receive(rCall));
+		}
+	}
+
+	/***************************************
+	 * Test that pending calls are sent after the maximum delay.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testDelayTriggeredFlush() throws Exception
+	{
+		aBatcher = createBatcher(20, 100, 1);
+
+		CompletableFuture<String> aFirst  = aBatcher.call(UPPER, "a");
+		CompletableFuture<String> aSecond = aBatcher.call(UPPER, "b");
+
+		assertEquals("A", receive(aFirst));
+		assertEquals("B", receive(aSecond));
+		assertEquals(Arrays.asList(2), aBatchSizes);
+		assertEquals(0, aBatcher.getPendingCount());
+	}
+
+	/***************************************
+	 * Test that a batch is sent as soon as the maximum batch size has been
+	 * reached.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testSizeTriggeredFlush() throws Exception
+	{
+		aBatcher = createBatcher(60 * 1000, 2, 1);
+
+		CompletableFuture<String> aFirst = aBatcher.call(UPPER, "a");
+
+		assertEquals(1, aBatcher.getPendingCount());
+
+		CompletableFuture<String> aSecond = aBatcher.call(UPPER, "b");
+
+		assertEquals(0, aBatcher.getPendingCount());
+		assertEquals("A", receive(aFirst));
+		assertEquals("B", receive(aSecond));
+
+		aBatcher.call(UPPER, "c");
+		assertEquals(1, aBatcher.getPendingCount());
+		assertEquals(Arrays.asList(2), aBatchSizes);
+	}
+
+	/***************************************
+	 * Asserts that a call future fails with a {@link CommunicationException}.
+	 *
+	 * @param rCall The call future
+	 *
+	 * @throws Exception If waiting for the call fails
+	 */
+	private void assertFailed(CompletableFuture<String> rCall) throws Exception
+	{
+		try
+		{
+			rCall.get(5, TimeUnit.SECONDS);
+			fail();
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause() instanceof CommunicationException);
+		}
+	}
+
+	/***************************************
+	 * Creates a new batcher that sends it's batches with {@link
+	 * TestBatchCall}.
+	 *
+	 * @param  nMaxDelay          The maximum call delay
+	 * @param  nMaxBatchSize      The maximum batch size
+	 * @param  nConcurrentBatches The number of concurrent batches
+	 *
+	 * @return The new batcher
+	 */
+	private JsonRpcCallBatcher createBatcher(long nMaxDelay,
+											 int  nMaxBatchSize,
+											 int  nConcurrentBatches)
+	{
+		return new JsonRpcCallBatcher(aEndpoint,
+									  nMaxDelay,
+									  nMaxBatchSize,
+									  nConcurrentBatches)
+		{
+			@Override
+			JsonRpcBatchCall createBatchCall()
+			{
+				return new TestBatchCall();
+			}
+		};
+	}
+
+	/***************************************
+	 * Waits for the result of a call.
+	 *
+	 * @param  rCall The call future
+	 *
+	 * @return The call result
+	 *
+	 * @throws Exception If the call failed
+	 */
+	private String receive(CompletableFuture<String> rCall) throws Exception
+	{
+		return rCall.get(5, TimeUnit.SECONDS);
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * A batch call that creates the responses itself instead of sending the
+	 * batch to a server. The method "upper" returns the upper case parameter,
+	 * "fail" returns an error, and "slow" blocks until the test releases it.
+	 *
+	 * @author eso
+	 */
+	class TestBatchCall extends JsonRpcBatchCall
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		private final List<BatchedCall<?, ?>> aRequests = new ArrayList<>();
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		public <R> JsonRpcBatchCall call(
+			JsonRpcRequest<?, R> rRequest,
+			Consumer<? super R>  fResponseHandler)
+		{
+			aRequests.add((BatchedCall<?, ?>) rRequest);
+
+			return super.call(rRequest, fResponseHandler);
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		public List<Object> doOn(Connection rConnection, List<Call<?>> rCalls)
+		{
+			StringBuilder aResponse = new StringBuilder("[");
+			int			  nId	    = 1;
+
+			buildRequest(rCalls, nId);
+			aBatchSizes.add(rCalls.size());
+
+			for (BatchedCall<?, ?> rRequest : aRequests)
+			{
+				String sMethod = rRequest.getToken();
+				String sParam  = rRequest.getDefaultInput().toString();
+
+				if (nId > 1)
+				{
+					aResponse.append(',');
+				}
+
+				aResponse.append("{\"jsonrpc\":\"2.0\",\"id\":").append(nId++);
+
+				if (sMethod.equals("fail"))
+				{
+					aResponse.append(",\"error\":{\"code\":-32603," +
+									 "\"message\":\"Failed\"}}");
+				}
+				else
+				{
+					if (sMethod.equals("slow"))
+					{
+						awaitRelease();
+					}
+
+					aResponse.append(",\"result\":\"")
+							 .append(sParam.toUpperCase())
+							 .append("\"}");
+				}
+			}
+
+			aResponse.append(']');
+
+			return parseRawResponse(aResponse.toString(), rCalls);
+		}
+
+		/***************************************
+		 * Signals that a slow call is being sent and waits until the test
+		 * releases it.
+		 */
+		private void awaitRelease()
+		{
+			aSending.countDown();
+
+			try
+			{
+				aRelease.await();
+			}
+			catch (InterruptedException e)
+			{
+				throw new CommunicationException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,249 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import de.esoco.lib.comm.JsonRpcEndpoint.JsonRpcBatchMethod;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static de.esoco.lib.comm.JsonRpcEndpoint.RPC_MAX_BATCH_SIZE;
+import static de.esoco.lib.comm.JsonRpcEndpoint.RPC_PARALLEL_BATCHES;
+import static de.esoco.lib.comm.JsonRpcEndpoint.RPC_POOL_IDLE_TIME;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/********************************************************************
+ * Test of the concurrent execution of split batches by {@link
+ * JsonRpcEndpoint}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class JsonRpcEndpointTest
+{
+	//~ Instance fields --------------------------------------------------------
+
+	private final List<Integer> aInputs = new ArrayList<>();
+
+	private TestEndpoint aEndpoint;
+
+	private EndpointFunction<List<Integer>, List<Integer>> fSendBatch;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test setup.
+	 */
+	@Before
+	public void setUp()
+	{
+		aEndpoint  = new TestEndpoint();
+		fSendBatch = new TestBatchMethod().from(aEndpoint);
+
+		aEndpoint.set(RPC_MAX_BATCH_SIZE, 1);
+		aEndpoint.set(RPC_PARALLEL_BATCHES, 3);
+
+		for (int i = 0; i < 20; i++)
+		{
+			aInputs.add(i);
+		}
+	}
+
+	/***************************************
+	 * Test that no further sub-batches are sent after a sub-batch has failed.
+	 *
+	 * @throws InterruptedException If sleeping is interrupted
+	 */
+	@Test
+	public void testFailedSubBatch() throws InterruptedException
+	{
+		TestBatchMethod fBatch = new TestBatchMethod();
+
+		fBatch.nFailingInput = 3;
+		fBatch.nSendDelay    = 5;
+
+		try
+		{
+			fBatch.from(aEndpoint).send(aInputs);
+			fail();
+		}
+		catch (CommunicationException e)
+		{
+			assertEquals("Failed: 3", e.getMessage());
+		}
+
+		int nSent = fBatch.aSentBatches.get();
+
+		// at most the sub-batches that were in progress on the other workers
+		// may have been sent after the failed one
+		assertTrue(nSent <= 3 + 2);
+
+		Thread.sleep(100);
+		assertEquals(nSent, fBatch.aSentBatches.get());
+	}
+
+	/***************************************
+	 * Test that pooled connections are closed after the idle time.
+	 *
+	 * @throws InterruptedException If sleeping is interrupted
+	 */
+	@Test
+	public void testIdleConnections() throws InterruptedException
+	{
+		aEndpoint.set(RPC_POOL_IDLE_TIME, 10);
+
+		assertEquals(aInputs, fSendBatch.send(aInputs));
+		assertEquals(2, aEndpoint.aOpenConnections.get());
+
+		Thread.sleep(50);
+
+		// a single worker replaces the idle connections with a new one
+		aEndpoint.set(RPC_PARALLEL_BATCHES, 2);
+		assertEquals(aInputs, fSendBatch.send(aInputs));
+		assertEquals(1, aEndpoint.aOpenConnections.get());
+
+		aEndpoint.closeConnectionPool();
+		assertEquals(0, aEndpoint.aOpenConnections.get());
+	}
+
+	/***************************************
+	 * Test that the connection pool is bounded by the number of concurrent
+	 * sub-batch workers.
+	 */
+	@Test
+	public void testPoolSize()
+	{
+		for (int i = 0; i < 5; i++)
+		{
+			assertEquals(aInputs, fSendBatch.send(aInputs));
+
+			// the connection of the calling thread is not pooled
+			assertEquals(2, aEndpoint.aOpenConnections.get());
+		}
+
+		aEndpoint.set(RPC_PARALLEL_BATCHES, 1);
+		assertEquals(aInputs, fSendBatch.send(aInputs));
+		assertEquals(2, aEndpoint.aOpenConnections.get());
+
+		aEndpoint.set(RPC_PARALLEL_BATCHES, 2);
+		assertEquals(aInputs, fSendBatch.send(aInputs));
+		assertEquals(1, aEndpoint.aOpenConnections.get());
+
+		aEndpoint.closeConnectionPool();
+		assertEquals(0, aEndpoint.aOpenConnections.get());
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * A batch method that returns the inputs instead of sending them and that
+	 * can be configured to fail on a certain input.
+	 *
+	 * @author eso
+	 */
+	static class TestBatchMethod extends JsonRpcBatchMethod<Integer, Integer>
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		final AtomicInteger aSentBatches = new AtomicInteger();
+
+		int  nFailingInput = -1;
+		long nSendDelay    = 0;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 */
+		TestBatchMethod()
+		{
+			super(JsonRpcEndpoint.call("echo", null, Integer.class),
+				  Collections.emptyList());
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		List<Integer> sendBatch(Connection rConnection, List<Integer> rInputs)
+		{
+			if (nSendDelay > 0)
+			{
+				try
+				{
+					Thread.sleep(nSendDelay);
+				}
+				catch (InterruptedException e)
+				{
+					throw new CommunicationException(e);
+				}
+			}
+
+			if (rInputs.contains(nFailingInput))
+			{
+				throw new CommunicationException("Failed: " + nFailingInput);
+			}
+
+			aSentBatches.incrementAndGet();
+
+			return new ArrayList<>(rInputs);
+		}
+	}
+
+	/********************************************************************
+	 * A JSON RPC endpoint that only counts it's open connections.
+	 *
+	 * @author eso
+	 */
+	static class TestEndpoint extends JsonRpcEndpoint
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		final AtomicInteger aOpenConnections = new AtomicInteger();
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void closeConnection(Connection rConnection)
+		{
+			aOpenConnections.decrementAndGet();
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void initConnection(Connection rConnection)
+		{
+			aOpenConnections.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,113 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link JsonRpcResponse}.
+ *
+ * @author eso
+ */
+public class JsonRpcResponseTest
+{
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test of {@link JsonRpcResponse#parseBatch(String)}.
+	 */
+	@Test
+	public void testParseBatch()
+	{
+		List<JsonRpcResponse> aResponses =
+			JsonRpcResponse.parseBatch("[{\"jsonrpc\":\"2.0\",\"id\":3," +
+									   "\"result\":{\"a\":[1,\"]}\"]}}, " +
+									   "{\"id\":1,\"result\":\"x\\\"y\"},\n" +
+									   "{\"id\":2,\"error\":{\"code\":-32601," +
+									   "\"message\":\"Not \\u0066ound\"}}]");
+
+		assertEquals(3, aResponses.size());
+
+		JsonRpcResponse rFirst  = aResponses.get(0);
+		JsonRpcResponse rSecond = aResponses.get(1);
+		JsonRpcResponse rThird  = aResponses.get(2);
+
+		assertEquals(1, rFirst.getId());
+		assertEquals("\"x\\\"y\"", rFirst.getResult());
+		assertFalse(rFirst.isError());
+		assertTrue(rSecond.isError());
+		assertNull(rSecond.getResult());
+		assertEquals("-32601", rSecond.getErrorCode());
+		assertEquals("Not found", rSecond.getErrorMessage());
+		assertEquals(3, rThird.getId());
+		assertEquals("{\"a\":[1,\"]}\"]}", rThird.getResult());
+	}
+
+	/***************************************
+	 * Test of the parsing of responses with invalid unicode escapes.
+	 */
+	@Test(expected = CommunicationException.class)
+	public void testParseInvalidEscape()
+	{
+		JsonRpcResponse.parse("{\"id\":1,\"error\":{\"code\":1," +
+							  "\"message\":\"\\u00zz\"}}");
+	}
+
+	/***************************************
+	 * Test of the parsing of responses with a null error.
+	 */
+	@Test
+	public void testParseNullError()
+	{
+		JsonRpcResponse aResponse =
+			JsonRpcResponse.parse("{\"id\":1,\"result\":true,\"error\":null}");
+
+		assertFalse(aResponse.isError());
+		assertNull(aResponse.getErrorMessage());
+		assertEquals("true", aResponse.getResult());
+	}
+
+	/***************************************
+	 * Test of {@link JsonRpcResponse#parse(String)}.
+	 */
+	@Test
+	public void testParseSingle()
+	{
+		JsonRpcResponse aResponse =
+			JsonRpcResponse.parse(" {\"id\": \"7\", \"result\": 42 } ");
+
+		assertEquals(7, aResponse.getId());
+		assertEquals("42", aResponse.getResult());
+	}
+
+	/***************************************
+	 * Test of the parsing of invalid responses.
+	 */
+	@Test(expected = CommunicationException.class)
+	public void testParseInvalid()
+	{
+		JsonRpcResponse.parseBatch("[{\"id\":1,\"result\":true}");
+	}
+}
@@ -0,0 +1,216 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import de.esoco.lib.comm.LoadBalancingEndpoint.Strategy;
+
+import org.junit.Test;
+
+import static de.esoco.lib.comm.CommunicationRelationTypes.EJECTION_DURATION;
+import static de.esoco.lib.comm.CommunicationRelationTypes.EJECTION_THRESHOLD;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link LoadBalancingEndpoint}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class LoadBalancingEndpointTest
+{
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test that closing a connection without a call result releases it's
+	 * outstanding request.
+	 */
+	@Test
+	public void testCloseReleasesOutstanding()
+	{
+		TestEndpoint aFirst  = new TestEndpoint();
+		TestEndpoint aSecond = new TestEndpoint();
+
+		LoadBalancingEndpoint aBalancer =
+			new LoadBalancingEndpoint(Strategy.LEAST_OUTSTANDING,
+									  aFirst,
+									  aSecond);
+
+		Connection aBusy = aBalancer.connect();
+
+		for (int i = 0; i < 3; i++)
+		{
+			aBalancer.connect().close();
+		}
+
+		assertTrue(aBalancer.connect().getEndpoint() != aBusy.getEndpoint());
+	}
+
+	/***************************************
+	 * Test of the ejection of failing endpoints.
+	 */
+	@Test
+	public void testEjection()
+	{
+		TestEndpoint aFirst  = new TestEndpoint();
+		TestEndpoint aSecond = new TestEndpoint();
+
+		LoadBalancingEndpoint aBalancer =
+			new LoadBalancingEndpoint(Strategy.ROUND_ROBIN, aFirst, aSecond);
+
+		aBalancer.set(EJECTION_THRESHOLD, 2);
+
+		for (int i = 0; i < 4; i++)
+		{
+			Connection aConnection = aBalancer.connect();
+
+			aBalancer.callFinished(aConnection,
+								   1000,
+								   aConnection.getEndpoint() != aFirst);
+		}
+
+		assertTrue(aBalancer.isEjected(aFirst));
+		assertFalse(aBalancer.isEjected(aSecond));
+
+		for (int i = 0; i < 4; i++)
+		{
+			assertSame(aSecond, aBalancer.connect().getEndpoint());
+		}
+	}
+
+	/***************************************
+	 * Test that an ejected endpoint is used again after a half-open probe
+	 * connection has been closed without a call result.
+	 */
+	@Test
+	public void testHalfOpenProbeWithoutResult()
+	{
+		TestEndpoint aFirst  = new TestEndpoint();
+		TestEndpoint aSecond = new TestEndpoint();
+
+		LoadBalancingEndpoint aBalancer =
+			new LoadBalancingEndpoint(Strategy.ROUND_ROBIN, aFirst, aSecond);
+
+		aBalancer.set(EJECTION_THRESHOLD, 1);
+		aBalancer.set(EJECTION_DURATION, 0);
+
+		Connection aFailed = aBalancer.connect();
+
+		assertSame(aFirst, aFailed.getEndpoint());
+		aBalancer.callFinished(aFailed, 1000, false);
+		aFailed.close();
+		assertTrue(aBalancer.isEjected(aFirst));
+
+		aBalancer.connect().close();
+
+		Connection aProbe = aBalancer.connect();
+
+		assertSame(aFirst, aProbe.getEndpoint());
+		aProbe.close();
+
+		aBalancer.connect().close();
+		assertSame(aFirst, aBalancer.connect().getEndpoint());
+	}
+
+	/***************************************
+	 * Test of the least outstanding requests strategy.
+	 */
+	@Test
+	public void testLeastOutstanding()
+	{
+		TestEndpoint aFirst  = new TestEndpoint();
+		TestEndpoint aSecond = new TestEndpoint();
+
+		LoadBalancingEndpoint aBalancer =
+			new LoadBalancingEndpoint(Strategy.LEAST_OUTSTANDING,
+									  aFirst,
+									  aSecond);
+
+		Connection aBusy = aBalancer.connect();
+
+		for (int i = 0; i < 3; i++)
+		{
+			Connection aConnection = aBalancer.connect();
+
+			assertTrue(aConnection.getEndpoint() != aBusy.getEndpoint());
+			aBalancer.callFinished(aConnection, 1000, true);
+		}
+	}
+
+	/***************************************
+	 * Test of the round-robin strategy.
+	 */
+	@Test
+	public void testRoundRobin()
+	{
+		TestEndpoint aFirst  = new TestEndpoint();
+		TestEndpoint aSecond = new TestEndpoint();
+		TestEndpoint aThird  = new TestEndpoint();
+
+		LoadBalancingEndpoint aBalancer =
+			new LoadBalancingEndpoint(Strategy.ROUND_ROBIN,
+									  aFirst,
+									  aSecond,
+									  aThird);
+
+		for (int i = 0; i < 6; i++)
+		{
+			aBalancer.connect();
+		}
+
+		assertEquals(2, aFirst.nConnections);
+		assertEquals(2, aSecond.nConnections);
+		assertEquals(2, aThird.nConnections);
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * An endpoint that only counts the connections created on it.
+	 *
+	 * @author eso
+	 */
+	static class TestEndpoint extends Endpoint
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		int nConnections = 0;
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void closeConnection(Connection rConnection)
+		{
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void initConnection(Connection rConnection)
+		{
+			nConnections++;
+		}
+	}
+}
@@ -0,0 +1,298 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static de.esoco.lib.comm.CommunicationRelationTypes.BUFFER_SIZE;
+import static de.esoco.lib.comm.CommunicationRelationTypes.MAX_RESPONSE_SIZE;
+import static de.esoco.lib.comm.PipeEndpoint.PIPE_LENGTH_PREFIX;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+
+/********************************************************************
+ * Test of {@link PipeEndpoint}. Uses a regular file instead of a named pipe
+ * which contains the request followed by the response. Writing the request
+ * overwrites the request data in the file and the response will then be read
+ * from the following position.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class PipeEndpointTest
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	private static final String REQUEST = "request";
+
+	//~ Instance fields --------------------------------------------------------
+
+	private Path	   aPipeFile;
+	private Endpoint   aEndpoint;
+	private Connection aConnection;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test setup.
+	 *
+	 * @throws IOException If creating the pipe file fails
+	 */
+	@Before
+	public void setUp() throws IOException
+	{
+		aPipeFile = Files.createTempFile("pipe", ".tmp");
+		aEndpoint = Endpoint.at("pipe:" + aPipeFile.toAbsolutePath());
+
+		aEndpoint.set(BUFFER_SIZE, 4);
+		aEndpoint.set(MAX_RESPONSE_SIZE, 16);
+	}
+
+	/***************************************
+	 * Test cleanup.
+	 *
+	 * @throws IOException If deleting the pipe file fails
+	 */
+	@After
+	public void tearDown() throws IOException
+	{
+		if (aConnection != null)
+		{
+			aConnection.close();
+		}
+
+		Files.delete(aPipeFile);
+	}
+
+	/***************************************
+	 * Test reading a response with a length prefix that is followed by other
+	 * data.
+	 *
+	 * @throws IOException On errors
+	 */
+	@Test
+	public void testFramedResponse() throws IOException
+	{
+		aEndpoint.set(PIPE_LENGTH_PREFIX);
+		writePipe(frame(REQUEST), frame("0123456789"), bytes("NEXT"));
+
+		assertEquals("0123456789", sendText());
+
+		byte[] rFile = Files.readAllBytes(aPipeFile);
+
+		assertArrayEquals(frame(REQUEST),
+						  Arrays.copyOf(rFile, REQUEST.length() + 4));
+	}
+
+	/***************************************
+	 * Test that framed responses are streamed in blocks of the buffer size.
+	 *
+	 * @throws IOException On errors
+	 */
+	@Test
+	public void testFramedStreaming() throws IOException
+	{
+		List<String> aBlocks = new ArrayList<>();
+
+		aEndpoint.set(PIPE_LENGTH_PREFIX);
+		writePipe(frame(REQUEST), frame("0123456789"), bytes("NEXT"));
+
+		long nSize =
+			PipeEndpoint.streamingRequest(REQUEST,
+										  this::bytes,
+										  b -> aBlocks.add(text(b)))
+						.getFrom(connect(), null);
+
+		assertEquals(10, nSize);
+		assertEquals(Arrays.asList("0123", "4567", "89"), aBlocks);
+	}
+
+	/***************************************
+	 * Test that length prefixes that exceed the maximum response size or that
+	 * are negative are rejected.
+	 *
+	 * @throws IOException On errors
+	 */
+	@Test
+	public void testInvalidResponseLength() throws IOException
+	{
+		aEndpoint.set(PIPE_LENGTH_PREFIX);
+
+		for (int nLength : new int[] { 17, -1, Integer.MAX_VALUE })
+		{
+			byte[] aLength = ByteBuffer.allocate(4).putInt(nLength).array();
+
+			writePipe(frame(REQUEST), aLength, new byte[17]);
+			assertFails();
+		}
+
+		// the maximum size is valid
+		writePipe(frame(REQUEST), frame("0123456789ABCDEF"));
+		assertEquals("0123456789ABCDEF", sendText());
+	}
+
+	/***************************************
+	 * Test that responses without length prefix are limited to the maximum
+	 * response size.
+	 *
+	 * @throws IOException On errors
+	 */
+	@Test
+	public void testMaxResponseSize() throws IOException
+	{
+		writePipe(bytes(REQUEST), bytes("0123456789ABCDEFG"));
+		assertFails();
+
+		writePipe(bytes(REQUEST), bytes("0123456789ABCDEF"));
+		assertEquals("0123456789ABCDEF", sendText());
+	}
+
+	/***************************************
+	 * Test reading a response without length prefix in multiple blocks until
+	 * the end of the available data.
+	 *
+	 * @throws IOException On errors
+	 */
+	@Test
+	public void testUnframedResponse() throws IOException
+	{
+		writePipe(bytes(REQUEST), bytes("0123456789"));
+
+		assertEquals("0123456789", sendText());
+	}
+
+	/***************************************
+	 * Asserts that a text request fails with a {@link CommunicationException}.
+	 */
+	private void assertFails()
+	{
+		try
+		{
+			sendText();
+			fail();
+		}
+		catch (CommunicationException e)
+		{
+			// expected
+		}
+	}
+
+	/***************************************
+	 * Converts a string into a byte array.
+	 *
+	 * @param  sText The string
+	 *
+	 * @return The byte array
+	 */
+	private byte[] bytes(String sText)
+	{
+		return sText.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/***************************************
+	 * Closes the current connection if necessary and opens a new connection
+	 * to the pipe endpoint.
+	 *
+	 * @return The new connection
+	 */
+	private Connection connect()
+	{
+		if (aConnection != null)
+		{
+			aConnection.close();
+		}
+
+		aConnection = aEndpoint.connect();
+
+		return aConnection;
+	}
+
+	/***************************************
+	 * Returns a string with a length prefix.
+	 *
+	 * @param  sText The string
+	 *
+	 * @return The framed string bytes
+	 */
+	private byte[] frame(String sText)
+	{
+		byte[] rBytes = bytes(sText);
+
+		return ByteBuffer.allocate(rBytes.length + 4)
+						 .putInt(rBytes.length)
+						 .put(rBytes)
+						 .array();
+	}
+
+	/***************************************
+	 * Sends the text request to the pipe and returns the response.
+	 *
+	 * @return The response text
+	 */
+	private String sendText()
+	{
+		return PipeEndpoint.textRequest(REQUEST).getFrom(connect(), null);
+	}
+
+	/***************************************
+	 * Converts the remaining bytes of a buffer into a string.
+	 *
+	 * @param  rBuffer The byte buffer
+	 *
+	 * @return The string
+	 */
+	private String text(ByteBuffer rBuffer)
+	{
+		return StandardCharsets.UTF_8.decode(rBuffer).toString();
+	}
+
+	/***************************************
+	 * Writes the contents of the pipe file.
+	 *
+	 * @param  rData The data blocks to write
+	 *
+	 * @throws IOException If writing the file fails
+	 */
+	private void writePipe(byte[]... rData) throws IOException
+	{
+		ByteArrayOutputStream aData = new ByteArrayOutputStream();
+
+		for (byte[] rBlock : rData)
+		{
+			aData.write(rBlock);
+		}
+
+		Files.write(aPipeFile, aData.toByteArray());
+	}
+}
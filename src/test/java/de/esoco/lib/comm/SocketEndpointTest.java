@@ -0,0 +1,269 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm;
+
+import de.esoco.lib.comm.SocketEndpoint.MultiplexedRequest;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static de.esoco.lib.comm.CommunicationRelationTypes.SOCKET_MULTIPLEXING;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/********************************************************************
+ * Test of the multiplexed requests of {@link SocketEndpoint}.
+ *
+ * @author eso
+ */
+public class SocketEndpointTest
+{
+	//~ Instance fields --------------------------------------------------------
+
+	private final CountDownLatch aReceived = new CountDownLatch(1);
+
+	private ServerSocket   aServerSocket;
+	private SocketEndpoint aEndpoint;
+	private Connection     aConnection;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test setup.
+	 *
+	 * @throws IOException If opening the server socket fails
+	 */
+	@Before
+	public void setUp() throws IOException
+	{
+		aServerSocket = new ServerSocket(0);
+		aEndpoint     =
+			(SocketEndpoint) Endpoint.at("socket://localhost:" +
+										 aServerSocket.getLocalPort());
+
+		aEndpoint.set(SOCKET_MULTIPLEXING);
+		aConnection = aEndpoint.connect();
+	}
+
+	/***************************************
+	 * Test cleanup.
+	 *
+	 * @throws IOException If closing the server socket fails
+	 */
+	@After
+	public void tearDown() throws IOException
+	{
+		aEndpoint.closeMultiplexer();
+		aConnection.close();
+		aServerSocket.close();
+	}
+
+	/***************************************
+	 * Test that closing the multiplexer fails pending requests and that the
+	 * next request opens a new socket.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testCloseMultiplexer() throws Exception
+	{
+		startServer(2, false);
+
+		CompletableFuture<byte[]> aPending = send("pending");
+
+		assertTrue(aReceived.await(5, TimeUnit.SECONDS));
+		aEndpoint.closeMultiplexer();
+		assertFailed(aPending);
+
+		startServer(1, true);
+		assertEquals("AGAIN", receive(send("again")));
+	}
+
+	/***************************************
+	 * Test that responses are assigned to their requests if they are sent in
+	 * a different order.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testOutOfOrderResponses() throws Exception
+	{
+		startServer(2, true);
+
+		CompletableFuture<byte[]> aFirst  = send("first");
+		CompletableFuture<byte[]> aSecond = send("second");
+
+		assertEquals("SECOND", receive(aSecond));
+		assertEquals("FIRST", receive(aFirst));
+	}
+
+	/***************************************
+	 * Test that pending requests fail if the socket is closed by the remote
+	 * endpoint.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testRemoteClose() throws Exception
+	{
+		startServer(1, false);
+
+		CompletableFuture<byte[]> aPending = send("unanswered");
+
+		assertFailed(aPending);
+	}
+
+	/***************************************
+	 * Asserts that a request future fails with a {@link
+	 * CommunicationException}.
+	 *
+	 * @param rResponse The response future
+	 *
+	 * @throws InterruptedException If waiting for the response is interrupted
+	 */
+	private void assertFailed(CompletableFuture<byte[]> rResponse)
+		throws InterruptedException
+	{
+		try
+		{
+			rResponse.get();
+			fail();
+		}
+		catch (ExecutionException e)
+		{
+			assertTrue(e.getCause() instanceof CommunicationException);
+		}
+	}
+
+	/***************************************
+	 * Waits for a response and converts it into a string.
+	 *
+	 * @param  rResponse The response future
+	 *
+	 * @return The response string
+	 *
+	 * @throws Exception If the request failed
+	 */
+	private String receive(CompletableFuture<byte[]> rResponse)
+		throws Exception
+	{
+		return new String(rResponse.get(5, TimeUnit.SECONDS),
+						  StandardCharsets.UTF_8);
+	}
+
+	/***************************************
+	 * Sends a multiplexed request.
+	 *
+	 * @param  sRequest The request string
+	 *
+	 * @return The response future
+	 *
+	 * @throws IOException If opening the socket fails
+	 */
+	private CompletableFuture<byte[]> send(String sRequest) throws IOException
+	{
+		MultiplexedRequest fRequest =
+			SocketEndpoint.multiplexedRequest(new byte[0]);
+
+		return fRequest.sendAsync(aConnection,
+								  sRequest.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/***************************************
+	 * Starts a server thread that accepts a single connection and reads a
+	 * certain number of request frames. If the frames are answered the
+	 * responses contain the upper case request data and are sent in reverse
+	 * order. Otherwise the server keeps the last request unanswered and
+	 * closes the socket after it has been closed by the client or, if only a
+	 * single request is expected, after the request has been received.
+	 *
+	 * @param nRequests The number of requests to read
+	 * @param bAnswer   TRUE to answer the requests
+	 */
+	private void startServer(int nRequests, boolean bAnswer)
+	{
+		Thread aServer =
+			new Thread(() ->
+					   {
+						   try (Socket rSocket = aServerSocket.accept())
+						   {
+							   DataInputStream  aIn  =
+								   new DataInputStream(rSocket.getInputStream());
+							   DataOutputStream aOut =
+								   new DataOutputStream(rSocket
+														.getOutputStream());
+
+							   int[]    aIds  = new int[nRequests];
+							   byte[][] aData = new byte[nRequests][];
+
+							   for (int i = 0; i < nRequests; i++)
+							   {
+								   aIds[i]  = aIn.readInt();
+								   aData[i] = new byte[aIn.readInt()];
+								   aIn.readFully(aData[i]);
+								   aReceived.countDown();
+
+								   if (!bAnswer && i == nRequests - 1)
+								   {
+									   return;
+								   }
+							   }
+
+							   for (int i = nRequests - 1; i >= 0; i--)
+							   {
+								   byte[] aResponse =
+									   new String(aData[i],
+												  StandardCharsets.UTF_8)
+									   .toUpperCase()
+									   .getBytes(StandardCharsets.UTF_8);
+
+								   aOut.writeInt(aIds[i]);
+								   aOut.writeInt(aResponse.length);
+								   aOut.write(aResponse);
+							   }
+
+							   aOut.flush();
+							   aIn.read();
+						   }
+						   catch (IOException e)
+						   {
+							   // socket closed by the client
+						   }
+					   });
+
+		aServer.setDaemon(true);
+		aServer.start();
+	}
+}
@@ -0,0 +1,58 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm.http;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+/********************************************************************
+ * Test of {@link HttpRequest}.
+ *
+ * @author eso
+ */
+public class HttpRequestTest
+{
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test of {@link HttpRequest#getHeaderField(String)}.
+	 */
+	@Test
+	public void testGetHeaderField()
+	{
+		Map<String, List<String>> aHeaders = new LinkedHashMap<>();
+
+		aHeaders.put("x-request-id", Arrays.asList("42"));
+
+		HttpRequest aRequest =
+			new HttpRequest(HttpRequestMethod.GET, "/", aHeaders, null);
+
+		List<String> aExpected = Arrays.asList("42");
+
+		assertEquals(aExpected, aRequest.getHeaderField("X-Request-ID"));
+		assertEquals(aExpected, aRequest.getHeaderField("x-request-id"));
+		assertNull(aRequest.getHeaderField("X-Other"));
+	}
+}
@@ -0,0 +1,224 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm.http;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link JsonRpcHttpMethodHandler}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class JsonRpcHttpMethodHandlerTest
+{
+	//~ Instance fields --------------------------------------------------------
+
+	private final AtomicInteger aNotifications = new AtomicInteger();
+
+	private JsonRpcHttpMethodHandler aHandler;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test setup.
+	 */
+	@Before
+	public void setUp()
+	{
+		aHandler = new JsonRpcHttpMethodHandler(Runnable::run);
+
+		aHandler.register("upper", String.class, String::toUpperCase);
+		aHandler.register("notify",
+						  rParams -> aNotifications.incrementAndGet());
+		aHandler.register("fail",
+						  rParams ->
+						  {
+							  throw new IllegalStateException("Failed");
+						  });
+	}
+
+	/***************************************
+	 * Test of batch requests.
+	 */
+	@Test
+	public void testBatch()
+	{
+		assertEquals("[" + response("1", "\"A\"") + "," +
+					 response("2", "\"B\"") + "]",
+					 aHandler.executeBatch("[" + request("1", "upper", "a") +
+										   "," +
+										   request(null, "notify", "x") +
+										   "," + request("2", "upper", "b") +
+										   "]"));
+		assertEquals(1, aNotifications.get());
+
+		assertNull(aHandler.executeBatch("[" +
+										 request(null, "notify", "x") + "]"));
+		assertEquals(2, aNotifications.get());
+	}
+
+	/***************************************
+	 * Test of error responses.
+	 */
+	@Test
+	public void testErrors()
+	{
+		assertError(JsonRpcHttpMethodHandler.PARSE_ERROR,
+					aHandler.execute("{\"jsonrpc\":"));
+		assertError(JsonRpcHttpMethodHandler.PARSE_ERROR,
+					aHandler.executeBatch("[{\"jsonrpc\":"));
+		assertError(JsonRpcHttpMethodHandler.INVALID_REQUEST,
+					aHandler.executeBatch("[]"));
+		assertError(JsonRpcHttpMethodHandler.INVALID_REQUEST,
+					aHandler.execute("{\"jsonrpc\":\"2.0\",\"id\":1}"));
+		assertError(JsonRpcHttpMethodHandler.METHOD_NOT_FOUND,
+					aHandler.execute(request("1", "unknown", "a")));
+		assertError(JsonRpcHttpMethodHandler.INTERNAL_ERROR,
+					aHandler.execute(request("1", "fail", "a")));
+	}
+
+	/***************************************
+	 * Test that batch elements which are not objects are rejected as invalid
+	 * requests.
+	 */
+	@Test
+	public void testInvalidBatchElement()
+	{
+		String sResponse = aHandler.executeBatch("[1," +
+												 request("2", "upper", "b") +
+												 "]");
+
+		assertTrue(sResponse.startsWith("[{"));
+		assertTrue(sResponse.contains("\"id\":null"));
+		assertTrue(sResponse.contains("\"code\":" +
+									  JsonRpcHttpMethodHandler.INVALID_REQUEST));
+		assertTrue(sResponse.endsWith(response("2", "\"B\"") + "]"));
+	}
+
+	/***************************************
+	 * Test that NULL batch elements are rejected as invalid requests.
+	 */
+	@Test
+	public void testNullBatchElement()
+	{
+		String sResponse = aHandler.executeBatch("[null]");
+
+		assertTrue(sResponse, sResponse.startsWith("[{"));
+		assertError(JsonRpcHttpMethodHandler.INVALID_REQUEST,
+					sResponse.substring(1, sResponse.length() - 1));
+
+		sResponse =
+			aHandler.executeBatch("[1,null," + request("3", "upper", "c") +
+								  "]");
+
+		String[] aParts = sResponse.split("\\},\\{");
+
+		assertEquals(3, aParts.length);
+		assertTrue(aParts[0].contains("\"code\":" +
+									  JsonRpcHttpMethodHandler.INVALID_REQUEST));
+		assertTrue(aParts[1].contains("\"code\":" +
+									  JsonRpcHttpMethodHandler.INVALID_REQUEST));
+		assertTrue(sResponse.endsWith(response("3", "\"C\"") + "]"));
+	}
+
+	/***************************************
+	 * Test that requests with a missing or wrong version are rejected.
+	 */
+	@Test
+	public void testInvalidVersion()
+	{
+		assertError(JsonRpcHttpMethodHandler.INVALID_REQUEST,
+					aHandler.execute("{\"jsonrpc\":\"1.0\",\"id\":1," +
+									 "\"method\":\"upper\",\"params\":\"a\"}"));
+		assertError(JsonRpcHttpMethodHandler.INVALID_REQUEST,
+					aHandler.execute("{\"id\":1,\"method\":\"upper\"," +
+									 "\"params\":\"a\"}"));
+	}
+
+	/***************************************
+	 * Test that notifications are executed without a response.
+	 */
+	@Test
+	public void testNotification()
+	{
+		assertNull(aHandler.execute(request(null, "notify", "x")));
+		assertNull(aHandler.execute(request(null, "unknown", "x")));
+		assertEquals(1, aNotifications.get());
+	}
+
+	/***************************************
+	 * Test of a single request.
+	 */
+	@Test
+	public void testSingleRequest()
+	{
+		assertEquals(response("1", "\"HELLO\""),
+					 aHandler.execute(request("1", "upper", "hello")));
+	}
+
+	/***************************************
+	 * Asserts that a response is an error response with a certain code.
+	 *
+	 * @param nCode     The expected error code
+	 * @param sResponse The response
+	 */
+	private void assertError(int nCode, String sResponse)
+	{
+		assertTrue(sResponse,
+				   sResponse.startsWith("{\"jsonrpc\":\"2.0\",\"id\":"));
+		assertTrue(sResponse, sResponse.contains("\"code\":" + nCode + ","));
+	}
+
+	/***************************************
+	 * Creates a request string.
+	 *
+	 * @param  sId     The request ID or NULL for a notification
+	 * @param  sMethod The method name
+	 * @param  sParam  The string parameter
+	 *
+	 * @return The request string
+	 */
+	private String request(String sId, String sMethod, String sParam)
+	{
+		return "{\"jsonrpc\":\"2.0\"," +
+			   (sId != null ? "\"id\":" + sId + "," : "") + "\"method\":\"" +
+			   sMethod + "\",\"params\":\"" + sParam + "\"}";
+	}
+
+	/***************************************
+	 * Creates a success response string.
+	 *
+	 * @param  sId     The request ID
+	 * @param  sResult The JSON result
+	 *
+	 * @return The response string
+	 */
+	private String response(String sId, String sResult)
+	{
+		return "{\"jsonrpc\":\"2.0\",\"id\":" + sId + ",\"result\":" + sResult +
+			   "}";
+	}
+}
@@ -0,0 +1,447 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.comm.smtp;
+
+import de.esoco.lib.comm.CommunicationException;
+import de.esoco.lib.comm.Endpoint;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static de.esoco.lib.comm.CommunicationRelationTypes.MAX_RETRIES;
+import static de.esoco.lib.comm.CommunicationRelationTypes.RETRY_DELAY;
+import static de.esoco.lib.comm.smtp.Email.email;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/********************************************************************
+ * Test of {@link SmtpDeliveryQueue} with a local fake SMTP server.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class SmtpDeliveryQueueTest
+{
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test that an exception thrown by the failure handler doesn't terminate
+	 * the delivery.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testFailureHandlerError() throws Exception
+	{
+		try (FakeSmtpServer aServer = new FakeSmtpServer())
+		{
+			SmtpDeliveryQueue aQueue = createQueue(aServer);
+
+			aQueue.setFailureHandler((rEmail, e) ->
+									 {
+										 throw new IllegalStateException(
+											 "Handler failed");
+									 });
+
+			try
+			{
+				aQueue.deliver(email().from("test@localhost")).get();
+				fail();
+			}
+			catch (ExecutionException e)
+			{
+				Throwable[] rSuppressed = e.getCause().getSuppressed();
+
+				assertEquals(1, rSuppressed.length);
+				assertTrue(rSuppressed[0] instanceof IllegalStateException);
+			}
+
+			aQueue.deliver(testEmail(1)).get(5, TimeUnit.SECONDS);
+			aQueue.shutdown();
+
+			assertEquals(1, aQueue.getFailedCount());
+			assertEquals(1, aServer.aMessages.get());
+		}
+	}
+
+	/***************************************
+	 * Test that a delivery fails finally after the maximum number of retries.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testFinalFailure() throws Exception
+	{
+		try (FakeSmtpServer aServer = new FakeSmtpServer())
+		{
+			SmtpDeliveryQueue aQueue = createQueue(aServer);
+			List<Email>		  aFailed = new ArrayList<>();
+			Email			  aEmail  = testEmail(1);
+
+			aServer.nRejectMessages = 3;
+			aQueue.setFailureHandler((rEmail, e) -> aFailed.add(rEmail));
+
+			try
+			{
+				aQueue.deliver(aEmail).get();
+				fail();
+			}
+			catch (ExecutionException e)
+			{
+				assertTrue(e.getCause() instanceof CommunicationException);
+			}
+
+			aQueue.shutdown();
+
+			assertEquals(1, aQueue.getFailedCount());
+			assertEquals(aEmail, aFailed.get(0));
+			assertEquals(3, aServer.aSessions.get());
+			assertEquals(0, aServer.aMessages.get());
+		}
+	}
+
+	/***************************************
+	 * Test that emails without a recipient fail without a session and are
+	 * reported to the failure handler.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test
+	public void testMissingAddress() throws Exception
+	{
+		try (FakeSmtpServer aServer = new FakeSmtpServer())
+		{
+			SmtpDeliveryQueue aQueue =
+				new SmtpDeliveryQueue(Endpoint.at("smtp://localhost:" +
+												  aServer.getPort()));
+
+			List<Email> aFailed = new ArrayList<>();
+
+			aQueue.setFailureHandler((rEmail, e) -> aFailed.add(rEmail));
+
+			Email aEmail = email().from("test@localhost").subject("Test");
+
+			try
+			{
+				aQueue.deliver(aEmail).get(5, TimeUnit.SECONDS);
+				fail();
+			}
+			catch (ExecutionException e)
+			{
+				assertTrue(e.getCause() instanceof CommunicationException);
+			}
+
+			aQueue.shutdown();
+
+			assertEquals(1, aQueue.getFailedCount());
+			assertEquals(aEmail, aFailed.get(0));
+			assertEquals(0, aServer.aSessions.get());
+		}
+	}
+
+	/***************************************
+	 * Test that a rejected email is retried on a new session.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testRetry() throws Exception
+	{
+		try (FakeSmtpServer aServer = new FakeSmtpServer())
+		{
+			SmtpDeliveryQueue aQueue = createQueue(aServer);
+
+			aServer.nRejectMessages = 1;
+
+			aQueue.deliver(testEmail(1)).get();
+			aQueue.shutdown();
+
+			assertEquals(0, aQueue.getFailedCount());
+			assertEquals(2, aServer.aSessions.get());
+			assertEquals(1, aServer.aMessages.get());
+		}
+	}
+
+	/***************************************
+	 * Test of the delivery of multiple emails in a single SMTP session.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test
+	public void testSessionReuse() throws Exception
+	{
+		try (FakeSmtpServer aServer = new FakeSmtpServer())
+		{
+			SmtpDeliveryQueue aQueue =
+				new SmtpDeliveryQueue(Endpoint.at("smtp://localhost:" +
+												  aServer.getPort()));
+
+			List<CompletableFuture<Void>> aResults = new ArrayList<>();
+
+			for (int i = 0; i < 3; i++)
+			{
+				aResults.add(aQueue.deliver(testEmail(i)));
+			}
+
+			for (CompletableFuture<Void> rResult : aResults)
+			{
+				rResult.get(5, TimeUnit.SECONDS);
+			}
+
+			aQueue.shutdown();
+
+			assertEquals(1, aServer.aSessions.get());
+			assertEquals(3, aServer.aMessages.get());
+			assertEquals(2, aServer.aResets.get());
+		}
+	}
+
+	/***************************************
+	 * Test the delivery to a server that doesn't support pipelining.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test(timeout = 10000)
+	public void testWithoutPipelining() throws Exception
+	{
+		try (FakeSmtpServer aServer = new FakeSmtpServer())
+		{
+			SmtpDeliveryQueue aQueue = createQueue(aServer);
+
+			aServer.bPipelining = false;
+
+			CompletableFuture<Void> aFirst  = aQueue.deliver(testEmail(1));
+			CompletableFuture<Void> aSecond = aQueue.deliver(testEmail(2));
+
+			aFirst.get();
+			aSecond.get();
+			aQueue.shutdown();
+
+			assertEquals(1, aServer.aSessions.get());
+			assertEquals(2, aServer.aMessages.get());
+		}
+	}
+
+	/***************************************
+	 * Creates a delivery queue for a fake server with a short retry delay.
+	 *
+	 * @param  rServer The server
+	 *
+	 * @return The new queue
+	 */
+	private SmtpDeliveryQueue createQueue(FakeSmtpServer rServer)
+	{
+		Endpoint aEndpoint =
+			Endpoint.at("smtp://localhost:" + rServer.getPort());
+
+		aEndpoint.set(RETRY_DELAY, 10);
+		aEndpoint.set(MAX_RETRIES, 2);
+
+		return new SmtpDeliveryQueue(aEndpoint);
+	}
+
+	/***************************************
+	 * Creates a valid test email.
+	 *
+	 * @param  nIndex The index of the email
+	 *
+	 * @return The new email
+	 */
+	private Email testEmail(int nIndex)
+	{
+		return email().from("test@localhost")
+					  .to("log@localhost")
+					  .subject("Test " + nIndex)
+					  .message("Message " + nIndex);
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * A minimal SMTP server that accepts all commands and counts sessions,
+	 * messages, and transaction resets. It can be configured to reject a
+	 * number of messages and to not announce the PIPELINING extension.
+	 *
+	 * @author eso
+	 */
+	static class FakeSmtpServer implements Runnable, AutoCloseable
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		final AtomicInteger aSessions = new AtomicInteger();
+		final AtomicInteger aMessages = new AtomicInteger();
+		final AtomicInteger aResets   = new AtomicInteger();
+
+		volatile int	 nRejectMessages = 0;
+		volatile boolean bPipelining     = true;
+
+		private final ServerSocket aServerSocket;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance on a free port and starts the server thread.
+		 *
+		 * @throws IOException If creating the server socket fails
+		 */
+		FakeSmtpServer() throws IOException
+		{
+			aServerSocket = new ServerSocket(0);
+
+			Thread aThread = new Thread(this);
+
+			aThread.setDaemon(true);
+			aThread.start();
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void close() throws IOException
+		{
+			aServerSocket.close();
+		}
+
+		/***************************************
+		 * Returns the server port.
+		 *
+		 * @return The port
+		 */
+		public int getPort()
+		{
+			return aServerSocket.getLocalPort();
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run()
+		{
+			try
+			{
+				while (true)
+				{
+					try (Socket rSocket = aServerSocket.accept())
+					{
+						aSessions.incrementAndGet();
+						handleSession(rSocket);
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				// server socket closed
+			}
+		}
+
+		/***************************************
+		 * Handles an SMTP session.
+		 *
+		 * @param  rSocket The client socket
+		 *
+		 * @throws IOException On errors
+		 */
+		private void handleSession(Socket rSocket) throws IOException
+		{
+			BufferedReader aIn  =
+				new BufferedReader(new InputStreamReader(rSocket
+														 .getInputStream()));
+			PrintWriter    aOut =
+				new PrintWriter(rSocket.getOutputStream(), true);
+
+			boolean bData = false;
+			String  sLine;
+
+			aOut.println("220 localhost");
+
+			while ((sLine = aIn.readLine()) != null)
+			{
+				if (bData)
+				{
+					if (sLine.equals("."))
+					{
+						bData = false;
+
+						if (nRejectMessages > 0)
+						{
+							nRejectMessages--;
+							aOut.println("554 Transaction failed");
+						}
+						else
+						{
+							aMessages.incrementAndGet();
+							aOut.println("250 OK");
+						}
+					}
+				}
+				else if (sLine.startsWith("EHLO"))
+				{
+					if (bPipelining)
+					{
+						aOut.println("250-localhost");
+						aOut.println("250 PIPELINING");
+					}
+					else
+					{
+						aOut.println("250 localhost");
+					}
+				}
+				else if (sLine.startsWith("DATA"))
+				{
+					bData = true;
+					aOut.println("354 Start mail input");
+				}
+				else if (sLine.startsWith("QUIT"))
+				{
+					aOut.println("221 Bye");
+
+					break;
+				}
+				else
+				{
+					if (sLine.startsWith("RSET"))
+					{
+						aResets.incrementAndGet();
+					}
+
+					aOut.println("250 OK");
+				}
+			}
+		}
+	}
+}
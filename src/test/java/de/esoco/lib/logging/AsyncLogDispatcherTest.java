@@ -0,0 +1,303 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import de.esoco.lib.logging.AsyncLogDispatcher.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link AsyncLogDispatcher}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class AsyncLogDispatcherTest
+{
+	//~ Instance fields --------------------------------------------------------
+
+	private final List<String> aProcessed = new ArrayList<>();
+
+	private final CountDownLatch aProcessing = new CountDownLatch(1);
+	private final CountDownLatch aRelease    = new CountDownLatch(1);
+
+	private AsyncLogDispatcher aDispatcher;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test cleanup.
+	 */
+	@After
+	public void tearDown()
+	{
+		aRelease.countDown();
+
+		if (aDispatcher != null)
+		{
+			aDispatcher.shutdown();
+		}
+	}
+
+	/***************************************
+	 * Test that records are dropped if the ring buffer is full.
+	 *
+	 * @throws InterruptedException On errors
+	 */
+	@Test
+	public void testDrop() throws InterruptedException
+	{
+		aDispatcher = createDispatcher(this::blockingProcess,
+									   2,
+									   OverflowPolicy.DROP);
+
+		assertTrue(aDispatcher.publish(record("A")));
+		assertTrue(aProcessing.await(5, TimeUnit.SECONDS));
+		assertTrue(aDispatcher.publish(record("B")));
+		assertTrue(aDispatcher.publish(record("C")));
+		assertFalse(aDispatcher.publish(record("D")));
+
+		aRelease.countDown();
+		aDispatcher.flush();
+
+		assertEquals(1, aDispatcher.getDroppedCount());
+		assertEquals("[A, B, C]", aProcessed.toString());
+	}
+
+	/***************************************
+	 * Test that an error thrown by the processing function doesn't terminate
+	 * the consumer thread.
+	 */
+	@Test(timeout = 10000)
+	public void testErrorInProcessing()
+	{
+		aDispatcher =
+			createDispatcher(rRecord ->
+							 {
+								 if (rRecord.getMessage().equals("A"))
+								 {
+									 throw new StackOverflowError("A");
+								 }
+
+								 process(rRecord);
+							 },
+							 1,
+							 OverflowPolicy.BLOCK);
+
+		aDispatcher.publish(record("A"));
+
+		for (int i = 0; i < 10; i++)
+		{
+			aDispatcher.publish(record("B" + i));
+		}
+
+		aDispatcher.flush();
+
+		assertEquals(10, aProcessed.size());
+		assertEquals("B9", aProcessed.get(9));
+	}
+
+	/***************************************
+	 * Test that records of multiple producers are all processed in the order
+	 * of each producer.
+	 *
+	 * @throws InterruptedException On errors
+	 */
+	@Test
+	public void testMultipleProducers() throws InterruptedException
+	{
+		int nThreads = 4;
+		int nCount   = 1000;
+
+		aDispatcher = createDispatcher(this::process, 16, OverflowPolicy.BLOCK);
+
+		List<Thread> aThreads = new ArrayList<>();
+
+		for (int t = 0; t < nThreads; t++)
+		{
+			String sPrefix = t + ":";
+			Thread aThread =
+				new Thread(() ->
+						   {
+							   for (int i = 0; i < nCount; i++)
+							   {
+								   aDispatcher.publish(record(sPrefix + i));
+							   }
+						   });
+
+			aThreads.add(aThread);
+			aThread.start();
+		}
+
+		for (Thread rThread : aThreads)
+		{
+			rThread.join();
+		}
+
+		aDispatcher.flush();
+
+		assertEquals(nThreads * nCount, aProcessed.size());
+		assertEquals(0, aDispatcher.getDroppedCount());
+
+		int[] aNext = new int[nThreads];
+
+		for (String sRecord : aProcessed)
+		{
+			String[] aParts = sRecord.split(":");
+			int		 nThread = Integer.parseInt(aParts[0]);
+
+			assertEquals(aNext[nThread]++, Integer.parseInt(aParts[1]));
+		}
+	}
+
+	/***************************************
+	 * Test that a record that is logged by the processing function while the
+	 * ring buffer is full doesn't block the consumer thread.
+	 *
+	 * @throws InterruptedException On errors
+	 */
+	@Test(timeout = 10000)
+	public void testPublishFromConsumer() throws InterruptedException
+	{
+		aDispatcher =
+			createDispatcher(rRecord ->
+							 {
+								 if (rRecord.getMessage().equals("A"))
+								 {
+									 blockingProcess(rRecord);
+									 aDispatcher.publish(record("Nested"));
+								 }
+								 else
+								 {
+									 process(rRecord);
+								 }
+							 },
+							 1,
+							 OverflowPolicy.BLOCK);
+
+		aDispatcher.publish(record("A"));
+		assertTrue(aProcessing.await(5, TimeUnit.SECONDS));
+		aDispatcher.publish(record("B"));
+
+		aRelease.countDown();
+		aDispatcher.flush();
+
+		assertEquals("[A, Nested, B]", aProcessed.toString());
+	}
+
+	/***************************************
+	 * Test that mutable message values are captured when a record is
+	 * published.
+	 *
+	 * @throws InterruptedException On errors
+	 */
+	@Test
+	public void testSnapshot() throws InterruptedException
+	{
+		StringBuilder aValue = new StringBuilder("before");
+
+		aDispatcher = createDispatcher(this::blockingProcess,
+									   4,
+									   OverflowPolicy.BLOCK);
+
+		aDispatcher.publish(record("A"));
+		assertTrue(aProcessing.await(5, TimeUnit.SECONDS));
+		aDispatcher.publish(new LogRecord(LogLevel.INFO, null, "%s", aValue));
+		aValue.setLength(0);
+		aValue.append("after");
+
+		aRelease.countDown();
+		aDispatcher.flush();
+
+		assertEquals("[A, before]", aProcessed.toString());
+	}
+
+	/***************************************
+	 * A processing function that waits for the release latch.
+	 *
+	 * @param rRecord The record to process
+	 */
+	private void blockingProcess(LogRecord rRecord)
+	{
+		aProcessing.countDown();
+
+		try
+		{
+			aRelease.await();
+		}
+		catch (InterruptedException e)
+		{
+			throw new IllegalStateException(e);
+		}
+
+		process(rRecord);
+	}
+
+	/***************************************
+	 * Creates a new dispatcher.
+	 *
+	 * @param  fProcess        The processing function
+	 * @param  nCapacity       The capacity
+	 * @param  eOverflowPolicy The overflow policy
+	 *
+	 * @return The new dispatcher
+	 */
+	private AsyncLogDispatcher createDispatcher(
+		Consumer<LogRecord> fProcess,
+		int					nCapacity,
+		OverflowPolicy		eOverflowPolicy)
+	{
+		return new AsyncLogDispatcher(fProcess,
+									  nCapacity,
+									  eOverflowPolicy,
+									  LogLevel.ERROR);
+	}
+
+	/***************************************
+	 * A processing function that records the message of a log record.
+	 *
+	 * @param rRecord The record to process
+	 */
+	private void process(LogRecord rRecord)
+	{
+		aProcessed.add(rRecord.getMessage());
+	}
+
+	/***************************************
+	 * Creates a new log record.
+	 *
+	 * @param  sMessage The log message
+	 *
+	 * @return The new record
+	 */
+	private LogRecord record(String sMessage)
+	{
+		return new LogRecord(LogLevel.INFO, null, sMessage);
+	}
+}
@@ -0,0 +1,166 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+/********************************************************************
+ * Test of {@link BinaryLogging} and {@link BinaryLogDecoder}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class BinaryLoggingTest
+{
+	//~ Instance fields --------------------------------------------------------
+
+	private Path aLogFile;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test setup.
+	 *
+	 * @throws IOException On errors
+	 */
+	@Before
+	public void setUp() throws IOException
+	{
+		aLogFile = Files.createTempFile("binarylog", ".log");
+		Files.delete(aLogFile);
+	}
+
+	/***************************************
+	 * Test cleanup.
+	 *
+	 * @throws IOException On errors
+	 */
+	@After
+	public void tearDown() throws IOException
+	{
+		Files.deleteIfExists(aLogFile);
+	}
+
+	/***************************************
+	 * Test of encoding and decoding records over multiple mapped segments and
+	 * multiple logging sessions.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test
+	public void testEncodeDecode() throws Exception
+	{
+		writeRecords("A");
+		writeRecords("B");
+
+		List<LogRecord> aRecords = new ArrayList<>();
+
+		assertEquals(8, new BinaryLogDecoder(aLogFile).decode(aRecords::add));
+
+		LogRecord rRecord = aRecords.get(5);
+
+		assertEquals(LogLevel.DEBUG, rRecord.getLevel());
+		assertEquals("B: 1 2 3.5 true x", rRecord.getMessage());
+		assertEquals(Thread.currentThread().getName(),
+					 rRecord.getContext().get(BinaryLogDecoder.CONTEXT_THREAD));
+		assertEquals("Plain B", aRecords.get(7).getMessage());
+		assertEquals("java.io.IOException: Failed",
+					 aRecords.get(7).getCause().toString());
+	}
+
+	/***************************************
+	 * Test that mutable message values are captured when the log object is
+	 * created and not when it is encoded.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test
+	public void testMutableValues() throws Exception
+	{
+		BinaryLogging aLogging = new BinaryLogging(aLogFile.toString());
+		StringBuilder aValue   = new StringBuilder("before");
+
+		aLogging.init();
+
+		LogRecord aRecord =
+			aLogging.createLogObject(new LogRecord(LogLevel.INFO,
+												   null,
+												   "Value %s",
+												   aValue));
+
+		aValue.setLength(0);
+		aValue.append("after");
+
+		aLogging.processLogObjects(Arrays.asList(aRecord));
+		aLogging.shutdown();
+
+		List<LogRecord> aRecords = new ArrayList<>();
+
+		new BinaryLogDecoder(aLogFile).decode(aRecords::add);
+
+		assertEquals("Value before", aRecords.get(0).getMessage());
+	}
+
+	/***************************************
+	 * Writes test records in a separate logging session.
+	 *
+	 * @param  sSession The session name
+	 *
+	 * @throws Exception On errors
+	 */
+	private void writeRecords(String sSession) throws Exception
+	{
+		BinaryLogging aLogging = new BinaryLogging(aLogFile.toString());
+
+		aLogging.set(BinaryLogging.LOG_MAP_SIZE, 64);
+		aLogging.init();
+
+		LogRecord aFormatted =
+			new LogRecord(LogLevel.DEBUG,
+						  null,
+						  "%s: %d %d %s %b %c",
+						  sSession,
+						  1,
+						  2L,
+						  3.5,
+						  true,
+						  'x');
+
+		LogRecord aPlain =
+			new LogRecord(LogLevel.ERROR,
+						  new IOException("Failed"),
+						  "Plain " + sSession);
+
+		aLogging.processLogObjects(Arrays.asList(aFormatted, aFormatted));
+		aLogging.processLogObjects(Arrays.asList(aFormatted, aPlain));
+		aLogging.shutdown();
+	}
+}
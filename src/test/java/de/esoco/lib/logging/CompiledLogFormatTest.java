@@ -0,0 +1,229 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import java.text.SimpleDateFormat;
+
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/********************************************************************
+ * Test of {@link CompiledLogFormat}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class CompiledLogFormatTest
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	private static final StackTraceElement LOCATION =
+		new StackTraceElement("de.esoco.test.Sample",
+							  "run",
+							  "Sample.java",
+							  42);
+
+	// the last millisecond of a second
+	private static final long TIME = 1500000000999L;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test that the cached date is updated when the second changes.
+	 */
+	@Test
+	public void testDateCache()
+	{
+		CompiledLogFormat aFormat = new CompiledLogFormat("{t:DHH:mm:ss.}");
+
+		assertEquals(date("HH:mm:ss.", TIME), format(aFormat, TIME));
+		assertEquals(date("HH:mm:ss.", TIME + 1), format(aFormat, TIME + 1));
+		assertEquals(date("HH:mm:ss.", TIME), format(aFormat, TIME));
+
+		// patterns with milliseconds are not cached
+		aFormat = new CompiledLogFormat("{t:Dss.SSS}");
+
+		assertEquals(date("ss.SSS", TIME - 1), format(aFormat, TIME - 1));
+		assertEquals(date("ss.SSS", TIME), format(aFormat, TIME));
+	}
+
+	/***************************************
+	 * Test that the default format pattern renders records like {@link
+	 * LogRecordFormat}, including the padding of the level, the change of the
+	 * second of the time, and messages with arguments.
+	 */
+	@Test
+	public void testDefaultFormat()
+	{
+		CompiledLogFormat aFormat =
+			new CompiledLogFormat(Log.DEFAULT_FORMAT_PATTERN);
+
+		LogRecord[] aRecords =
+			new LogRecord[]
+			{
+				record(LogLevel.INFO, TIME, "Message"),
+				record(LogLevel.ERROR, TIME + 1, "Message"),
+				record(LogLevel.WARN, TIME + 1001, "%s=%d", "Value", 42),
+				record(LogLevel.DEBUG, TIME, "Literal %s", (Object[]) null)
+			};
+
+		for (LogRecord rRecord : aRecords)
+		{
+			assertEquals(Log.DEFAULT_FORMAT.apply(rRecord),
+						 aFormat.format(rRecord));
+		}
+
+		String sDate = date("yyyy.MM.dd-HH:mm:ss", TIME + 1001);
+
+		assertEquals("[WARN ]" + sDate +
+					 ": Value=42  [de.esoco.test.Sample.run() [42]]",
+					 aFormat.format(aRecords[2]));
+		assertTrue(aFormat.format(aRecords[1]).startsWith("[ERROR]"));
+		assertTrue(aFormat.format(aRecords[3])
+				   .contains(": Literal %s  [de.esoco"));
+	}
+
+	/***************************************
+	 * Test of {@link CompiledLogFormat#println(LogRecord, PrintWriter)} and
+	 * {@link CompiledLogFormat#formatTo(LogRecord, StringBuilder)}.
+	 */
+	@Test
+	public void testOutput()
+	{
+		CompiledLogFormat aFormat = new CompiledLogFormat("{level}: {m}");
+		StringWriter	  aOut    = new StringWriter();
+		StringBuilder	  aTarget = new StringBuilder("> ");
+		LogRecord		  aRecord = record(LogLevel.INFO, TIME, "%d", 1);
+
+		aFormat.println(aRecord, new PrintWriter(aOut));
+		aFormat.formatTo(aRecord, aTarget);
+
+		assertEquals("INFO: 1" + System.lineSeparator(), aOut.toString());
+		assertEquals("> INFO: 1", aTarget.toString());
+	}
+
+	/***************************************
+	 * Test the rendering of the thread and context tokens.
+	 */
+	@Test
+	public void testThreadAndContext()
+	{
+		CompiledLogFormat aFormat =
+			new CompiledLogFormat("{thread}{context}|{class}");
+
+		try (LogContext.Scope rScope = LogContext.with("id", "1"))
+		{
+			LogRecord aRecord = new LogRecord(LogLevel.INFO, null, "Test");
+
+			assertEquals(Thread.currentThread().getName() + "{id=1}|" +
+						 aRecord.getLogClassName(),
+						 aFormat.format(aRecord));
+		}
+
+		// decoded records have no thread
+		assertEquals("|Sample", format(aFormat, TIME));
+	}
+
+	/***************************************
+	 * Test that unsupported tokens and options are rejected.
+	 */
+	@Test
+	public void testUnsupportedTokens()
+	{
+		String[] aPatterns =
+			new String[]
+			{
+				"{stack}", "{getMessage()}", "{level:X}", "{level:F%d}",
+				"{time:X}", "{message:F%s}", "{line:F%5s}", "Open {level"
+			};
+
+		for (String sPattern : aPatterns)
+		{
+			try
+			{
+				new CompiledLogFormat(sPattern);
+				fail("Pattern accepted: " + sPattern);
+			}
+			catch (IllegalArgumentException e)
+			{
+				// expected
+			}
+		}
+	}
+
+	/***************************************
+	 * Formats a date with a certain pattern.
+	 *
+	 * @param  sPattern The date pattern
+	 * @param  nTime    The time in milliseconds
+	 *
+	 * @return The formatted date
+	 */
+	private String date(String sPattern, long nTime)
+	{
+		return new SimpleDateFormat(sPattern).format(new Date(nTime));
+	}
+
+	/***************************************
+	 * Formats a record for a certain time.
+	 *
+	 * @param  rFormat The format
+	 * @param  nTime   The log time
+	 *
+	 * @return The formatted record
+	 */
+	private String format(CompiledLogFormat rFormat, long nTime)
+	{
+		return rFormat.format(record(LogLevel.INFO, nTime, "Test"));
+	}
+
+	/***************************************
+	 * Creates a log record with a fixed location.
+	 *
+	 * @param  eLevel  The log level
+	 * @param  nTime   The log time
+	 * @param  sFormat The message format
+	 * @param  rArgs   The message arguments
+	 *
+	 * @return The new record
+	 */
+	private LogRecord record(LogLevel  eLevel,
+							 long	   nTime,
+							 String    sFormat,
+							 Object... rArgs)
+	{
+		Object[] rValues = rArgs != null && rArgs.length > 0 ? rArgs : null;
+
+		return new LogRecord(eLevel,
+							 null,
+							 sFormat,
+							 rValues,
+							 nTime,
+							 LOCATION,
+							 Collections.emptyMap());
+	}
+}
@@ -0,0 +1,341 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import de.esoco.lib.json.JsonObject;
+import de.esoco.lib.json.JsonParser;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link JsonLogFormat}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class JsonLogFormatTest
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	private static final StackTraceElement LOCATION =
+		new StackTraceElement("de.esoco.test.Sample",
+							  "run",
+							  "Sample.java",
+							  42);
+
+	private static final long TIME = 1500000000999L;
+
+	private static final String SPECIAL_CHARS =
+		"Say \"hi\" \\ \n\r\t\u0001\u001f/ä";
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test the encoding of the chain of causes including the limitation of
+	 * the depth.
+	 */
+	@Test
+	public void testCauseChain()
+	{
+		Exception aRoot  = new IllegalStateException();
+		Exception aCause = new RuntimeException("Cause", aRoot);
+		Exception aError = new Exception("Error \"1\"", aCause);
+
+		JsonObject aException =
+			(JsonObject) parse(record(LogLevel.ERROR, aError, "Failed", null))
+			.get("exception");
+
+		assertEquals(Exception.class.getName(), aException.get("class"));
+		assertEquals("Error \"1\"", aException.get("message"));
+		assertStack(aError, aException);
+
+		aException = (JsonObject) aException.get("cause");
+		assertEquals("Cause", aException.get("message"));
+		assertStack(aCause, aException);
+
+		aException = (JsonObject) aException.get("cause");
+		assertEquals(IllegalStateException.class.getName(),
+					 aException.get("class"));
+		assertFalse(aException.getPropertyNames().contains("message"));
+		assertNull(aException.get("cause"));
+
+		Exception aChain = new Exception("0");
+
+		for (int i = 1; i < 20; i++)
+		{
+			aChain = new Exception(Integer.toString(i), aChain);
+		}
+
+		aException =
+			(JsonObject) parse(record(LogLevel.ERROR, aChain, "Chain", null))
+			.get("exception");
+
+		int nDepth = 0;
+
+		while (aException.get("cause") != null)
+		{
+			aException = (JsonObject) aException.get("cause");
+			nDepth++;
+		}
+
+		assertEquals(10, nDepth);
+		assertEquals("9", aException.get("message"));
+	}
+
+	/***************************************
+	 * Test the escaping of quotes, backslashes, and control characters in
+	 * literal and formatted messages and in the values of context fields.
+	 */
+	@Test
+	public void testEscaping()
+	{
+		JsonLogFormat aFormat = new JsonLogFormat();
+
+		Map<String, String> aContext =
+			Collections.singletonMap("key\"\n", SPECIAL_CHARS);
+
+		LogRecord[] aRecords =
+			new LogRecord[]
+			{
+				record(LogLevel.INFO, null, SPECIAL_CHARS, aContext),
+				record(LogLevel.INFO,
+					   null,
+					   "%s",
+					   aContext,
+					   SPECIAL_CHARS)
+			};
+
+		for (LogRecord rRecord : aRecords)
+		{
+			String sJson = aFormat.format(rRecord);
+
+			for (char c : sJson.toCharArray())
+			{
+				assertTrue("Unescaped control character", c >= 0x20);
+			}
+
+			assertTrue(sJson.contains("Say \\\"hi\\\" \\\\ \\n\\r\\t" +
+									  "\\u0001\\u001f/ä"));
+
+			JsonObject aObject = new JsonParser().parseObject(sJson);
+
+			assertEquals(SPECIAL_CHARS, aObject.get("message"));
+			assertEquals(SPECIAL_CHARS,
+						 ((JsonObject) aObject.get("context")).get("key\"\n"));
+		}
+	}
+
+	/***************************************
+	 * Test of {@link JsonLogFormat#println(LogRecord, PrintWriter)} and
+	 * {@link JsonLogFormat#formatTo(LogRecord, StringBuilder)}.
+	 */
+	@Test
+	public void testOutput()
+	{
+		JsonLogFormat aFormat = new JsonLogFormat();
+		StringWriter  aOut    = new StringWriter();
+		StringBuilder aTarget = new StringBuilder("> ");
+		LogRecord     aRecord = record(LogLevel.INFO, null, "Test", null);
+		String		  sJson   = aFormat.format(aRecord);
+
+		aFormat.println(aRecord, new PrintWriter(aOut));
+		aFormat.formatTo(aRecord, aTarget);
+
+		assertEquals(sJson + System.lineSeparator(), aOut.toString());
+		assertEquals("> " + sJson, aTarget.toString());
+	}
+
+	/***************************************
+	 * Test that a record can be parsed back into the values it has been
+	 * created from.
+	 */
+	@Test
+	public void testRoundTrip()
+	{
+		LogRecord aRecord =
+			record(LogLevel.WARN,
+				   null,
+				   "%s=%d",
+				   Collections.emptyMap(),
+				   "Value",
+				   42);
+
+		JsonObject aObject = parse(aRecord);
+
+		assertEquals(new HashSet<>(Arrays.asList("timestamp",
+												 "level",
+												 "logger",
+												 "location",
+												 "message")),
+					 new HashSet<>(aObject.getPropertyNames()));
+		assertEquals("2017-07-14T02:40:00.999Z", aObject.get("timestamp"));
+		assertEquals("WARN", aObject.get("level"));
+		assertEquals("de.esoco.test.Sample", aObject.get("logger"));
+		assertEquals("Value=42", aObject.get("message"));
+
+		JsonObject aLocation = (JsonObject) aObject.get("location");
+
+		assertEquals("run", aLocation.get("method"));
+		assertEquals("Sample.java", aLocation.get("file"));
+		assertEquals(42, ((Number) aLocation.get("line")).intValue());
+
+		aObject = parse(new LogRecord(LogLevel.DEBUG, null, null));
+
+		assertNull(aObject.get("message"));
+		assertEquals(Thread.currentThread().getName(), aObject.get("thread"));
+	}
+
+	/***************************************
+	 * Test the static fields and the fields of the log context.
+	 */
+	@Test
+	public void testStaticFieldsAndContext()
+	{
+		Map<String, Object> aFields = new LinkedHashMap<>();
+
+		aFields.put("service", "test");
+		aFields.put("port", 8080);
+		aFields.put("debug", true);
+		aFields.put("host", null);
+
+		JsonLogFormat aFormat = new JsonLogFormat(aFields);
+
+		try (LogContext.Scope rScope = LogContext.with("id", "1"))
+		{
+			String sJson =
+				aFormat.format(new LogRecord(LogLevel.INFO, null, "Test"));
+
+			assertTrue(sJson.endsWith(",\"service\":\"test\",\"port\":8080," +
+									  "\"debug\":true,\"host\":null," +
+									  "\"context\":{\"id\":\"1\"}}"));
+
+			JsonObject aObject = new JsonParser().parseObject(sJson);
+
+			assertEquals("test", aObject.get("service"));
+			assertEquals(8080, ((Number) aObject.get("port")).intValue());
+			assertEquals(true, aObject.get("debug"));
+			assertTrue(aObject.getPropertyNames().contains("host"));
+			assertEquals("1", ((JsonObject) aObject.get("context")).get("id"));
+		}
+
+		LogRecord aRecord = record(LogLevel.INFO, null, "Test", null);
+
+		assertFalse(aFormat.format(aRecord).contains("context"));
+	}
+
+	/***************************************
+	 * Test the formatting of the milliseconds of the timestamp.
+	 */
+	@Test
+	public void testTimestamp()
+	{
+		long[]   aTimes  = new long[] { TIME - 999, TIME - 994, TIME - 949 };
+		String[] aMillis = new String[] { ".000Z", ".005Z", ".050Z" };
+
+		for (int i = 0; i < aTimes.length; i++)
+		{
+			LogRecord aRecord =
+				new LogRecord(LogLevel.INFO,
+							  null,
+							  "Test",
+							  null,
+							  aTimes[i],
+							  null,
+							  Collections.emptyMap());
+
+			assertEquals("2017-07-14T02:40:00" + aMillis[i],
+						 parse(aRecord).get("timestamp"));
+		}
+	}
+
+	/***************************************
+	 * Asserts that the stack of an encoded exception matches the stack trace
+	 * of the original exception.
+	 *
+	 * @param rException The original exception
+	 * @param rEncoded   The encoded exception
+	 */
+	private void assertStack(Throwable rException, JsonObject rEncoded)
+	{
+		StackTraceElement[] rStack		  = rException.getStackTrace();
+		List<?>			    rEncodedStack = (List<?>) rEncoded.get("stack");
+
+		assertEquals(Math.min(rStack.length, StackTraceRenderer.getMaxDepth()),
+					 rEncodedStack.size());
+		assertEquals(rStack[0].getClassName() + "." +
+					 rStack[0].getMethodName() + ":" +
+					 rStack[0].getLineNumber(),
+					 rEncodedStack.get(0));
+	}
+
+	/***************************************
+	 * Formats a record with the default format and parses the result.
+	 *
+	 * @param  rRecord The record
+	 *
+	 * @return The parsed JSON object
+	 */
+	private JsonObject parse(LogRecord rRecord)
+	{
+		String sJson = new JsonLogFormat().format(rRecord);
+
+		return new JsonParser().parseObject(sJson);
+	}
+
+	/***************************************
+	 * Creates a log record with a fixed time and location.
+	 *
+	 * @param  eLevel   The log level
+	 * @param  rCause   The log cause (may be NULL)
+	 * @param  sFormat  The message format
+	 * @param  rContext The log context or NULL for none
+	 * @param  rArgs    The message arguments
+	 *
+	 * @return The new record
+	 */
+	private LogRecord record(LogLevel			 eLevel,
+							 Throwable			 rCause,
+							 String				 sFormat,
+							 Map<String, String> rContext,
+							 Object...			 rArgs)
+	{
+		return new LogRecord(eLevel,
+							 rCause,
+							 sFormat,
+							 rArgs.length > 0 ? rArgs : null,
+							 TIME,
+							 LOCATION,
+							 rContext != null ? rContext
+											  : Collections.emptyMap());
+	}
+}
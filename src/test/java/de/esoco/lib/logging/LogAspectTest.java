@@ -0,0 +1,243 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of the queueing and batching in {@link LogAspect}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class LogAspectTest
+{
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test that log objects are processed in batches of limited size and that
+	 * all queued objects are processed on shutdown.
+	 */
+	@Test
+	public void testBatching()
+	{
+		TestAspect aAspect = new TestAspect();
+
+		aAspect.set(LogAspect.LOG_BATCH_SIZE, 5);
+		aAspect.set(LogAspect.LOG_LINGER_TIME, 200L);
+		aAspect.initLogging();
+
+		for (int i = 0; i < 12; i++)
+		{
+			Log.errorf("Batch %d", i);
+		}
+
+		aAspect.shutdownLogging();
+
+		assertEquals(12, aAspect.aProcessed.size());
+		assertEquals("Batch 0", aAspect.aProcessed.get(0));
+		assertEquals("Batch 11", aAspect.aProcessed.get(11));
+
+		for (int nSize : aAspect.aBatchSizes)
+		{
+			assertTrue(nSize <= 5);
+		}
+	}
+
+	/***************************************
+	 * Test that log objects are dropped and counted if the queue is full.
+	 *
+	 * @throws InterruptedException If waiting for the processing fails
+	 */
+	@Test
+	public void testDropping() throws InterruptedException
+	{
+		TestAspect aAspect = new TestAspect();
+
+		aAspect.set(LogAspect.LOG_QUEUE_CAPACITY, 2);
+		aAspect.set(LogAspect.LOG_LINGER_TIME, 0L);
+		aAspect.aRelease = new CountDownLatch(1);
+		aAspect.initLogging();
+
+		Log.error("First");
+		assertTrue(aAspect.aProcessing.await(5, TimeUnit.SECONDS));
+
+		for (int i = 0; i < 5; i++)
+		{
+			Log.errorf("Queued %d", i);
+		}
+
+		aAspect.aRelease.countDown();
+		aAspect.shutdownLogging();
+
+		assertEquals(3, aAspect.getDroppedCount());
+		assertEquals(3, aAspect.aProcessed.size());
+		assertEquals("Queued 1", aAspect.aProcessed.get(2));
+	}
+
+	/***************************************
+	 * Test that an error thrown by the processing of log objects doesn't
+	 * terminate the processing thread.
+	 */
+	@Test
+	public void testErrorInProcessing()
+	{
+		TestAspect aAspect = new TestAspect();
+
+		aAspect.set(LogAspect.LOG_BATCH_SIZE, 1);
+		aAspect.set(LogAspect.MAX_LOGGING_ERRORS, 2);
+		aAspect.sErrorMessage = "Error";
+		aAspect.initLogging();
+
+		Log.error("Error");
+		Log.error("After error");
+
+		aAspect.shutdownLogging();
+
+		assertEquals(1, aAspect.aProcessed.size());
+		assertEquals("After error", aAspect.aProcessed.get(0));
+	}
+
+	/***************************************
+	 * Test that a shutdown doesn't block a subclass that synchronizes its
+	 * processing on the aspect instance.
+	 */
+	@Test
+	public void testShutdownWithSynchronizedProcessing()
+	{
+		TestAspect aAspect = new TestAspect();
+
+		aAspect.set(LogAspect.LOG_BATCH_SIZE, 1);
+		aAspect.nProcessingDelay = 100;
+		aAspect.initLogging();
+
+		for (int i = 0; i < 3; i++)
+		{
+			Log.errorf("Delayed %d", i);
+		}
+
+		long nStart = System.currentTimeMillis();
+
+		aAspect.shutdownLogging();
+
+		assertTrue(System.currentTimeMillis() - nStart < 5000);
+		assertEquals(3, aAspect.aProcessed.size());
+		assertTrue(aAspect.bShutdown);
+
+		Log.error("Ignored");
+		assertEquals(3, aAspect.aProcessed.size());
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * A log aspect that records the processed log messages.
+	 *
+	 * @author eso
+	 */
+	static class TestAspect extends LogAspect<String>
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		final List<String>  aProcessed  = new ArrayList<>();
+		final List<Integer> aBatchSizes = new ArrayList<>();
+
+		final CountDownLatch aProcessing = new CountDownLatch(1);
+
+		CountDownLatch aRelease		    = null;
+		long		   nProcessingDelay = 0;
+		boolean		   bShutdown	    = false;
+		String		   sErrorMessage    = null;
+
+		//~ Constructors -------------------------------------------------------
+
+		/***************************************
+		 * Creates a new instance.
+		 */
+		TestAspect()
+		{
+			set(MIN_LOG_LEVEL, LogLevel.ERROR);
+		}
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected String createLogObject(LogRecord rLogRecord)
+		{
+			return rLogRecord.getMessage();
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected String getLogInitMessage()
+		{
+			return null;
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected synchronized void processLogObjects(
+			Collection<String> rLogObjects) throws Exception
+		{
+			aProcessing.countDown();
+
+			if (aRelease != null)
+			{
+				aRelease.await();
+			}
+
+			if (nProcessingDelay > 0)
+			{
+				Thread.sleep(nProcessingDelay);
+			}
+
+			if (rLogObjects.contains(sErrorMessage))
+			{
+				throw new StackOverflowError(sErrorMessage);
+			}
+
+			aBatchSizes.add(rLogObjects.size());
+			aProcessed.addAll(rLogObjects);
+		}
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected synchronized void shutdown()
+		{
+			bShutdown = true;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link LogContext}.
+ *
+ * @author eso
+ */
+public class LogContextTest
+{
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test cleanup.
+	 */
+	@After
+	public void tearDown()
+	{
+		LogContext.clear();
+	}
+
+	/***************************************
+	 * Test of {@link LogContext#with(String, String)}.
+	 */
+	@Test
+	public void testScope()
+	{
+		try (LogContext.Scope aOuter = LogContext.with("a", "1"))
+		{
+			Map<String, String> rSnapshot = LogContext.current();
+
+			try (LogContext.Scope aInner = LogContext.with("b", "2"))
+			{
+				assertEquals("1", LogContext.get("a"));
+				assertEquals("2", LogContext.get("b"));
+				assertEquals(1, rSnapshot.size());
+			}
+
+			assertSame(rSnapshot, LogContext.current());
+		}
+
+		assertTrue(LogContext.current().isEmpty());
+	}
+
+	/***************************************
+	 * Test of {@link LogContext#wrap(java.util.concurrent.Executor)}.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test
+	public void testWrap() throws Exception
+	{
+		ExecutorService aExecutor = Executors.newSingleThreadExecutor();
+
+		try
+		{
+			String[] aResult = new String[2];
+
+			try (LogContext.Scope aScope = LogContext.with("id", "42"))
+			{
+				LogContext.wrap(aExecutor)
+						  .execute(() -> aResult[0] = LogContext.get("id"));
+			}
+
+			aExecutor.submit(() -> aResult[1] = LogContext.get("id")).get();
+
+			assertEquals("42", aResult[0]);
+			assertNull(aResult[1]);
+		}
+		finally
+		{
+			aExecutor.shutdown();
+		}
+	}
+}
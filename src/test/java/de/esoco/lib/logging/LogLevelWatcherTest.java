@@ -0,0 +1,156 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link LogLevelWatcher}.
+ *
+ * @author eso
+ */
+public class LogLevelWatcherTest
+{
+	//~ Instance fields --------------------------------------------------------
+
+	private Path			aConfigFile;
+	private LogLevelWatcher aWatcher;
+	private LogLevel		eGlobalLevel;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test setup.
+	 *
+	 * @throws IOException On errors
+	 */
+	@Before
+	public void setUp() throws IOException
+	{
+		aConfigFile  = Files.createTempFile("loglevels", ".properties");
+		aWatcher	 = new LogLevelWatcher(aConfigFile);
+		eGlobalLevel = Log.getGlobalMinimumLogLevel();
+
+		Log.setGlobalMinimumLogLevel(LogLevel.TRACE);
+	}
+
+	/***************************************
+	 * Test cleanup.
+	 *
+	 * @throws IOException On errors
+	 */
+	@After
+	public void tearDown() throws IOException
+	{
+		Files.delete(aConfigFile);
+		aWatcher.reload();
+		aWatcher.close();
+		Log.setGlobalMinimumLogLevel(eGlobalLevel);
+	}
+
+	/***************************************
+	 * Test of {@link LogLevelWatcher#reload()}.
+	 *
+	 * @throws IOException On errors
+	 */
+	@Test
+	public void testReload() throws IOException
+	{
+		String sPackage = getClass().getPackage().getName();
+
+		writeConfig(sPackage + "=ERROR\njava.lang=WARN\n");
+		aWatcher.reload();
+
+		assertEquals(2, aWatcher.getLogLevels().size());
+		assertFalse(Log.isLevelEnabled(getClass(), LogLevel.WARN));
+		assertTrue(Log.isLevelEnabled(getClass(), LogLevel.ERROR));
+
+		writeConfig("java.lang=WARN\n");
+		aWatcher.reload();
+
+		assertEquals(1, aWatcher.getLogLevels().size());
+		assertTrue(Log.isLevelEnabled(getClass(), LogLevel.WARN));
+	}
+
+	/***************************************
+	 * Test that the dispatching of log records uses the closest package level
+	 * after parent and child levels have been changed. The records are logged
+	 * through {@link LogTest#log(LogLevel, String)} because the location of
+	 * records logged from this class would be outside of it's package.
+	 *
+	 * @throws IOException On errors
+	 */
+	@Test
+	public void testReloadParentAndChild() throws IOException
+	{
+		List<LogRecord> aRecords = new ArrayList<>();
+
+		Consumer<LogRecord> fHandler = aRecords::add;
+
+		Log.addDefaultLogHandler(fHandler);
+
+		try
+		{
+			writeConfig("java=ERROR\njava.util=INFO\n");
+			aWatcher.reload();
+			writeConfig("java=WARN\njava.util=INFO\n");
+			aWatcher.reload();
+
+			LogTest.log(LogLevel.INFO, "Dispatched");
+			LogTest.log(LogLevel.DEBUG, "Filtered");
+
+			assertTrue(Log.isLevelEnabled(Collections.class, LogLevel.INFO));
+			assertFalse(Log.isLevelEnabled(String.class, LogLevel.INFO));
+			assertEquals(1, aRecords.size());
+			assertEquals("Dispatched", aRecords.get(0).getMessage());
+		}
+		finally
+		{
+			Log.removeDefaultLogHandler(fHandler);
+		}
+	}
+
+	/***************************************
+	 * Writes the configuration file.
+	 *
+	 * @param  sConfig The configuration
+	 *
+	 * @throws IOException On errors
+	 */
+	private void writeConfig(String sConfig) throws IOException
+	{
+		Files.write(aConfigFile, sConfig.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,207 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link LogRateLimiter}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class LogRateLimiterTest
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	private static final StackTraceElement SITE_A =
+		new StackTraceElement("de.esoco.test.Sample", "a", "Sample.java", 1);
+
+	private static final StackTraceElement SITE_B =
+		new StackTraceElement("de.esoco.test.Sample", "b", "Sample.java", 2);
+
+	private static final long TIME   = 1500000000000L;
+	private static final long WINDOW = 1000;
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final List<LogRecord> aSummaries = new ArrayList<>();
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test that records without a location are never limited.
+	 */
+	@Test
+	public void testRecordsWithoutLocation()
+	{
+		LogRateLimiter aLimiter = new LogRateLimiter(0, WINDOW, 0);
+
+		for (int i = 0; i < 10; i++)
+		{
+			assertTrue(permit(aLimiter, null, TIME, "Test"));
+		}
+
+		assertEquals(0, aLimiter.getSuppressedCount());
+		assertEquals(0, aLimiter.getCallSiteCount());
+	}
+
+	/***************************************
+	 * Test that every n-th record that exceeds the limit is logged as a
+	 * sample.
+	 */
+	@Test
+	public void testSampling()
+	{
+		LogRateLimiter aLimiter = new LogRateLimiter(2, WINDOW, 3);
+		StringBuilder  aPermits = new StringBuilder();
+
+		for (int i = 1; i <= 11; i++)
+		{
+			boolean bPermit = permit(aLimiter, SITE_A, TIME + i, "M");
+
+			aPermits.append(bPermit ? '+' : '-');
+		}
+
+		assertEquals("++--+--+--+", aPermits.toString());
+		assertEquals(6, aLimiter.getSuppressedCount());
+		assertTrue(aSummaries.isEmpty());
+	}
+
+	/***************************************
+	 * Test that the next log call of a call site after the end of a window
+	 * emits a summary of the records that have been suppressed in the
+	 * previous window.
+	 */
+	@Test
+	public void testSummaryOnWindowRollover()
+	{
+		LogRateLimiter aLimiter = new LogRateLimiter(1, WINDOW, 0);
+
+		assertTrue(permit(aLimiter, SITE_A, TIME, "M1"));
+		assertFalse(permit(aLimiter, SITE_A, TIME + 1, "M2"));
+		assertFalse(permit(aLimiter, SITE_A, TIME + 2, "M3"));
+		assertTrue(aSummaries.isEmpty());
+
+		assertTrue(permit(aLimiter, SITE_A, TIME + WINDOW, "M4"));
+		assertEquals(1, aSummaries.size());
+
+		LogRecord rSummary = aSummaries.get(0);
+
+		assertEquals(LogLevel.WARN, rSummary.getLevel());
+		assertEquals(SITE_A, rSummary.getLogLocation());
+		assertEquals("2 similar log messages suppressed in 1000 ms, last: M3",
+					 rSummary.getMessage());
+
+		// no summary for a window without suppressed records
+		assertTrue(permit(aLimiter, SITE_A, TIME + 2 * WINDOW, "M5"));
+		assertEquals(1, aSummaries.size());
+		assertEquals(2, aLimiter.getSuppressedCount());
+	}
+
+	/***************************************
+	 * Test that records are suppressed per call site if the maximum number of
+	 * records in a window has been reached.
+	 */
+	@Test
+	public void testSuppression()
+	{
+		LogRateLimiter aLimiter = new LogRateLimiter(2, WINDOW, 0);
+
+		assertTrue(permit(aLimiter, SITE_A, TIME, "A"));
+		assertTrue(permit(aLimiter, SITE_A, TIME + 1, "A"));
+		assertFalse(permit(aLimiter, SITE_A, TIME + 2, "A"));
+		assertFalse(permit(aLimiter, SITE_A, TIME + WINDOW - 1, "A"));
+
+		// other call sites are limited independently
+		assertTrue(permit(aLimiter, SITE_B, TIME + 3, "B"));
+		assertTrue(permit(aLimiter, SITE_B, TIME + 4, "B"));
+		assertFalse(permit(aLimiter, SITE_B, TIME + 5, "B"));
+
+		assertEquals(3, aLimiter.getSuppressedCount());
+		assertEquals(2, aLimiter.getCallSiteCount());
+		assertTrue(aSummaries.isEmpty());
+	}
+
+	/***************************************
+	 * Test that the sweep emits the summaries of silent call sites and
+	 * removes call sites that have been idle for a whole window.
+	 */
+	@Test
+	public void testSweep()
+	{
+		LogRateLimiter aLimiter = new LogRateLimiter(2, WINDOW, 0);
+
+		assertTrue(permit(aLimiter, SITE_A, TIME, "A0"));
+		assertTrue(permit(aLimiter, SITE_A, TIME, "A1"));
+		assertFalse(permit(aLimiter, SITE_A, TIME + 1, "A2"));
+
+		// the first sweep after the window is triggered by another call site
+		assertTrue(permit(aLimiter, SITE_B, TIME + WINDOW, "B"));
+		assertEquals(1, aSummaries.size());
+		assertSame(SITE_A, aSummaries.get(0).getLogLocation());
+		assertTrue(aSummaries.get(0).getMessage().endsWith("last: A2"));
+		assertEquals(2, aLimiter.getCallSiteCount());
+
+		// sweeps are performed at most once per window
+		assertTrue(permit(aLimiter, SITE_B, TIME + 2 * WINDOW - 1, "B"));
+		assertEquals(2, aLimiter.getCallSiteCount());
+
+		// site A has been silent for a whole window after it's summary
+		assertTrue(permit(aLimiter, SITE_B, TIME + 2 * WINDOW, "B"));
+		assertEquals(1, aSummaries.size());
+		assertEquals(1, aLimiter.getCallSiteCount());
+	}
+
+	/***************************************
+	 * Checks a new record with the rate limiter and collects the emitted
+	 * summaries.
+	 *
+	 * @param  rLimiter  The rate limiter
+	 * @param  rLocation The log location or NULL for none
+	 * @param  nTime     The log time
+	 * @param  sMessage  The log message
+	 *
+	 * @return The result of the rate limiter
+	 */
+	private boolean permit(LogRateLimiter    rLimiter,
+						   StackTraceElement rLocation,
+						   long				 nTime,
+						   String			 sMessage)
+	{
+		LogRecord aRecord =
+			new LogRecord(LogLevel.WARN,
+						  null,
+						  sMessage,
+						  null,
+						  nTime,
+						  rLocation,
+						  Collections.emptyMap());
+
+		return rLimiter.permit(aRecord, aSummaries::add);
+	}
+}
@@ -0,0 +1,414 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of the package-specific log handling of {@link Log}. Because the log
+ * location of a record is the first call site outside of the logging package
+ * the records are logged through a JDK class, i.e. with a location in the
+ * package 'java.util'.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class LogTest
+{
+	//~ Static fields/initializers ---------------------------------------------
+
+	private static final Class<?> LOG_CLASS_TYPE =
+		Collections.singletonList(null).getClass();
+
+	private static final String LOG_CLASS = LOG_CLASS_TYPE.getName();
+
+	//~ Instance fields --------------------------------------------------------
+
+	private final List<LogRecord> aDefaultRecords = new ArrayList<>();
+	private final List<LogRecord> aPackageRecords = new ArrayList<>();
+
+	private final Consumer<LogRecord> fDefaultHandler = aDefaultRecords::add;
+	private final Consumer<LogRecord> fPackageHandler = aPackageRecords::add;
+
+	private final AtomicInteger    aSupplierCalls = new AtomicInteger();
+	private final Supplier<String> fMessage	      =
+		() -> "Supplied " + aSupplierCalls.incrementAndGet();
+
+	private LogLevel eGlobalLevel;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test setup.
+	 */
+	@Before
+	public void setUp()
+	{
+		eGlobalLevel = Log.getGlobalMinimumLogLevel();
+
+		Log.setGlobalMinimumLogLevel(LogLevel.TRACE);
+		Log.addDefaultLogHandler(fDefaultHandler);
+	}
+
+	/***************************************
+	 * Test cleanup.
+	 */
+	@After
+	public void tearDown()
+	{
+		Log.setLogLevel("java", null);
+		Log.setLogLevel("java.util", null);
+		Log.setLogLevel(LOG_CLASS, null);
+		Log.removeDefaultLogHandler(fDefaultHandler);
+		Log.setGlobalMinimumLogLevel(eGlobalLevel);
+	}
+
+	/***************************************
+	 * Test that lookups of log handlers and levels that run concurrently with
+	 * changes of the log configuration never leave stale entries in the
+	 * caches. Each configuration change is immediately verified by a log call
+	 * while other threads continuously perform lookups for the same class.
+	 *
+	 * @throws InterruptedException If waiting for the logging threads fails
+	 */
+	@Test(timeout = 60000)
+	public void testConcurrentConfigurationChanges()
+		throws InterruptedException
+	{
+		AtomicInteger aDefaultChecks = new AtomicInteger();
+		AtomicInteger aPackageChecks = new AtomicInteger();
+		List<Thread>  aThreads		 = new ArrayList<>();
+
+		Consumer<LogRecord> fDefaultCheck =
+			rRecord -> countCheck(rRecord, aDefaultChecks);
+		Consumer<LogRecord> fPackageCheck =
+			rRecord -> countCheck(rRecord, aPackageChecks);
+
+		Package rPackage = Collections.class.getPackage();
+
+		Log.removeStandardLogHandler();
+		Log.removeDefaultLogHandler(fDefaultHandler);
+		Log.addDefaultLogHandler(fDefaultCheck);
+
+		AtomicBoolean aRunning = new AtomicBoolean(true);
+
+		try
+		{
+			for (int t = 0; t < 3; t++)
+			{
+				Thread aThread =
+					new Thread(() ->
+							   {
+								   while (aRunning.get())
+								   {
+									   log(LogLevel.INFO, "Lookup");
+									   Log.isLevelEnabled(LOG_CLASS_TYPE,
+														  LogLevel.INFO);
+								   }
+							   });
+
+				aThreads.add(aThread);
+				aThread.start();
+			}
+
+			for (int i = 1; i <= 5000; i++)
+			{
+				Log.registerLogHandler(rPackage, fPackageCheck);
+				log(LogLevel.INFO, "Check");
+
+				assertEquals(i, aPackageChecks.get());
+				assertTrue(Log.isLevelEnabled(LOG_CLASS_TYPE, LogLevel.INFO));
+
+				Log.setLogLevel(rPackage.getName(), LogLevel.WARN);
+				log(LogLevel.WARN, "Check");
+
+				assertEquals(i, aDefaultChecks.get());
+				assertFalse(Log.isLevelEnabled(LOG_CLASS_TYPE, LogLevel.INFO));
+			}
+		}
+		finally
+		{
+			aRunning.set(false);
+
+			for (Thread rThread : aThreads)
+			{
+				rThread.join();
+			}
+
+			Log.removeDefaultLogHandler(fDefaultCheck);
+			Log.addDefaultLogHandler(Log.getStandardLogHandler());
+		}
+	}
+
+	/***************************************
+	 * Test that the level-guarded log methods don't create messages if the
+	 * level is disabled globally.
+	 */
+	@Test
+	public void testGuardedMethods()
+	{
+		Counter aCounter = new Counter();
+
+		Log.setGlobalMinimumLogLevel(LogLevel.INFO);
+
+		Log.debug(fMessage);
+		Log.debugf("%s", aCounter);
+		Log.debugf("%s %s %s %s", aCounter, aCounter, aCounter, aCounter);
+		Log.debugf("%d", 42);
+		Log.debugf("%d", 42L);
+
+		assertEquals(0, aSupplierCalls.get());
+		assertEquals(0, aCounter.nCalls);
+		assertTrue(aDefaultRecords.isEmpty());
+
+		Log.info(fMessage);
+		Log.infof("%s %s", aCounter, aCounter);
+		Log.infof("%d", 42);
+
+		assertEquals(1, aSupplierCalls.get());
+		assertEquals(3, aDefaultRecords.size());
+		assertEquals("Supplied 1", aDefaultRecords.get(0).getMessage());
+		assertTrue(aDefaultRecords.get(1).getMessage().matches("\\d+ \\d+"));
+		assertEquals("42", aDefaultRecords.get(2).getMessage());
+	}
+
+	/***************************************
+	 * Test that the level-guarded log methods consider the levels of the
+	 * calling class.
+	 */
+	@Test
+	public void testGuardedMethodsWithClassLevel()
+	{
+		Counter aCounter = new Counter();
+
+		Log.setLogLevel(LOG_CLASS, LogLevel.INFO);
+
+		call(() -> Log.debug(fMessage));
+		call(() -> Log.debugf("%s %s", aCounter, aCounter));
+
+		assertEquals(0, aSupplierCalls.get());
+		assertEquals(0, aCounter.nCalls);
+		assertTrue(aDefaultRecords.isEmpty());
+
+		// the class level doesn't apply to other classes
+		Log.debug(fMessage);
+		call(() -> Log.infof("%s", aCounter));
+
+		assertEquals(1, aSupplierCalls.get());
+		assertEquals(2, aDefaultRecords.size());
+		assertEquals(LOG_CLASS,
+					 aDefaultRecords.get(1).getLogLocation().getClassName());
+
+		// a class level cannot enable a level that is disabled globally
+		Log.setGlobalMinimumLogLevel(LogLevel.WARN);
+		Log.setLogLevel(LOG_CLASS, LogLevel.DEBUG);
+		call(() -> Log.info(fMessage));
+
+		assertEquals(1, aSupplierCalls.get());
+		assertFalse(Log.isLevelEnabled(LOG_CLASS_TYPE, LogLevel.INFO));
+	}
+
+	/***************************************
+	 * Test that a log handler of a package prevents the filtering of it's
+	 * records by the level of a parent package.
+	 */
+	@Test
+	public void testHandlerOverridesParentLevel()
+	{
+		Log.setLogLevel("java", LogLevel.ERROR);
+		Log.registerLogHandler(Collections.class.getPackage(), fPackageHandler);
+
+		log(LogLevel.DEBUG, "Package");
+
+		assertEquals(1, aPackageRecords.size());
+		assertEquals("Package", aPackageRecords.get(0).getMessage());
+		assertTrue(aDefaultRecords.isEmpty());
+		assertTrue(Log.isLevelEnabled(Collections.class, LogLevel.DEBUG));
+		assertFalse(Log.isLevelEnabled(String.class, LogLevel.DEBUG));
+	}
+
+	/***************************************
+	 * Test of {@link Log#isLevelEnabled(Class, LogLevel)}.
+	 */
+	@Test
+	public void testIsLevelEnabled()
+	{
+		Log.setGlobalMinimumLogLevel(LogLevel.INFO);
+		Log.setLogLevel("java.util", LogLevel.WARN);
+
+		assertFalse(Log.isLevelEnabled(ArrayList.class, LogLevel.INFO));
+		assertTrue(Log.isLevelEnabled(ArrayList.class, LogLevel.WARN));
+		assertTrue(Log.isLevelEnabled(String.class, LogLevel.INFO));
+		assertFalse(Log.isLevelEnabled(String.class, LogLevel.DEBUG));
+
+		Log.setLogLevel("java.util", null);
+
+		assertTrue(Log.isLevelEnabled(ArrayList.class, LogLevel.INFO));
+	}
+
+	/***************************************
+	 * Test that the level of a class is applied to the records of a package
+	 * log handler.
+	 */
+	@Test
+	public void testLevelBelowHandler()
+	{
+		Log.registerLogHandler(Collections.class.getPackage(), fPackageHandler);
+		Log.setLogLevel(LOG_CLASS, LogLevel.WARN);
+
+		log(LogLevel.INFO, "Filtered");
+		log(LogLevel.WARN, "Logged");
+
+		assertEquals(1, aPackageRecords.size());
+		assertEquals("Logged", aPackageRecords.get(0).getMessage());
+		assertTrue(aDefaultRecords.isEmpty());
+	}
+
+	/***************************************
+	 * Test that the level-guarded log methods don't allocate memory if the
+	 * level is disabled.
+	 */
+	@Test
+	public void testNoAllocationIfDisabled()
+	{
+		ThreadMXBean rBean = ManagementFactory.getThreadMXBean();
+
+		Assume.assumeTrue(rBean instanceof com.sun.management.ThreadMXBean);
+
+		com.sun.management.ThreadMXBean rThreadBean =
+			(com.sun.management.ThreadMXBean) rBean;
+
+		Assume.assumeTrue(rThreadBean.isThreadAllocatedMemoryEnabled());
+
+		Object rArg	  = "Arg";
+		long   nThread = Thread.currentThread().getId();
+		int    nCount  = 10000;
+
+		Log.setGlobalMinimumLogLevel(LogLevel.INFO);
+
+		long nStart = rThreadBean.getThreadAllocatedBytes(nThread);
+
+		for (int i = 0; i < nCount; i++)
+		{
+			Log.debugf("%s %s %s", rArg, rArg, rArg);
+			Log.tracef("%d", i);
+			Log.debug(fMessage);
+		}
+
+		long nAllocated = rThreadBean.getThreadAllocatedBytes(nThread) - nStart;
+
+		// an argument array or boxed value would need at least 16 bytes
+		assertTrue("Allocated " + nAllocated, nAllocated < nCount);
+		assertEquals(0, aSupplierCalls.get());
+	}
+
+	/***************************************
+	 * Test that the level of a parent package is applied if no closer
+	 * registration exists.
+	 */
+	@Test
+	public void testParentLevel()
+	{
+		Log.setLogLevel("java", LogLevel.ERROR);
+
+		log(LogLevel.WARN, "Filtered");
+		log(LogLevel.ERROR, "Logged");
+
+		assertEquals(1, aDefaultRecords.size());
+		assertEquals("Logged", aDefaultRecords.get(0).getMessage());
+	}
+
+	/***************************************
+	 * Performs a log call with a log location in a JDK class.
+	 *
+	 * @param fLogCall The log call
+	 */
+	static void call(Runnable fLogCall)
+	{
+		Collections.singletonList(fLogCall).forEach(Runnable::run);
+	}
+
+	/***************************************
+	 * Logs a message with a log location in a JDK class.
+	 *
+	 * @param eLevel   The log level
+	 * @param sMessage The message
+	 */
+	static void log(LogLevel eLevel, String sMessage)
+	{
+		call(() -> Log.log(eLevel, sMessage));
+	}
+
+	/***************************************
+	 * Counts the check records that are logged by {@link
+	 * #testConcurrentConfigurationChanges()}.
+	 *
+	 * @param rRecord The log record
+	 * @param rCount  The counter
+	 */
+	private static void countCheck(LogRecord rRecord, AtomicInteger rCount)
+	{
+		if (rRecord.getMessage().equals("Check"))
+		{
+			rCount.incrementAndGet();
+		}
+	}
+
+	//~ Inner Classes ----------------------------------------------------------
+
+	/********************************************************************
+	 * A format argument that counts the conversions into strings.
+	 *
+	 * @author eso
+	 */
+	static class Counter
+	{
+		//~ Instance fields ----------------------------------------------------
+
+		int nCalls = 0;
+
+		//~ Methods ------------------------------------------------------------
+
+		/***************************************
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString()
+		{
+			return Integer.toString(++nCalls);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.io.IOException;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link RingBufferLogging}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class RingBufferLoggingTest
+{
+	//~ Instance fields --------------------------------------------------------
+
+	private RingBufferLogging aLogBuffer;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test setup.
+	 *
+	 * @throws IOException If discarding the initial records fails
+	 */
+	@Before
+	public void setUp() throws IOException
+	{
+		aLogBuffer = new RingBufferLogging();
+		aLogBuffer.set(RingBufferLogging.RING_BUFFER_SIZE, 4);
+		aLogBuffer.set(RingBufferLogging.DUMP_LOG_LEVEL, LogLevel.FATAL);
+
+		Log.addLogAspect(aLogBuffer);
+
+		// discard the records that have been captured during initialization
+		aLogBuffer.dump();
+	}
+
+	/***************************************
+	 * Test cleanup.
+	 */
+	@After
+	public void tearDown()
+	{
+		Log.removeLogAspect(RingBufferLogging.class);
+	}
+
+	/***************************************
+	 * Test of {@link RingBufferLogging#dump()}.
+	 *
+	 * @throws IOException On errors
+	 */
+	@Test
+	public void testDump() throws IOException
+	{
+		Log.trace("A");
+		Log.trace("B");
+
+		assertEquals(3, aLogBuffer.dump().size());
+		assertEquals(1, aLogBuffer.dump().size());
+
+		Log.trace("C");
+
+		List<String> rDump = aLogBuffer.dump();
+
+		assertEquals(2, rDump.size());
+		assertTrue(rDump.get(1).contains("C"));
+	}
+
+	/***************************************
+	 * Test of capturing records below the global log level.
+	 */
+	@Test
+	public void testRingBuffer()
+	{
+		for (int i = 0; i < 6; i++)
+		{
+			Log.tracef("Record %d", i);
+		}
+
+		List<LogRecord> rRecords = aLogBuffer.getRecords();
+
+		assertEquals(4, rRecords.size());
+		assertEquals("Record 2", rRecords.get(0).getMessage());
+		assertEquals("Record 5", rRecords.get(3).getMessage());
+	}
+}
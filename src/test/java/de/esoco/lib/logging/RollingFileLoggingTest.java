@@ -0,0 +1,122 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link RollingFileLogging}.
+ *
+ * @author eso
+ */
+@SuppressWarnings("boxing")
+public class RollingFileLoggingTest
+{
+	//~ Instance fields --------------------------------------------------------
+
+	/** The folder for the test log files. */
+	@Rule
+	public TemporaryFolder aFolder = new TemporaryFolder();
+
+	private RollingFileLogging aLogging;
+
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test setup.
+	 */
+	@Before
+	public void setup()
+	{
+		aLogging =
+			new RollingFileLogging(aFolder.getRoot() + "/test.log");
+
+		aLogging.set(RollingFileLogging.MAX_LOG_FILE_SIZE, 1000L);
+		aLogging.set(RollingFileLogging.LOG_FILE_GENERATIONS, 3);
+		aLogging.set(RollingFileLogging.LOG_BUFFER_SIZE, 64);
+		aLogging.init();
+	}
+
+	/***************************************
+	 * Test cleanup.
+	 */
+	@After
+	public void tearDown()
+	{
+		aLogging.shutdown();
+	}
+
+	/***************************************
+	 * Test of appending to the log file.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test
+	public void testAppend() throws Exception
+	{
+		aLogging.processLogObjects(Arrays.asList("A", "ä€"));
+		aLogging.processLogObjects(Arrays.asList("C"));
+
+		List<String> aLines =
+			Files.readAllLines(aLogging.getLogFile(), StandardCharsets.UTF_8);
+
+		assertEquals(Arrays.asList("A", "ä€", "C"), aLines);
+	}
+
+	/***************************************
+	 * Test of rolling over the log file by size and the retention of
+	 * generations.
+	 *
+	 * @throws Exception On errors
+	 */
+	@Test
+	public void testRollBySize() throws Exception
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			aLogging.processLogObjects(Arrays.asList("Log message " + i,
+													 "Second message " + i));
+		}
+
+		aLogging.shutdown();
+
+		List<Path> aRolled = aLogging.getRolledFiles();
+
+		assertTrue(Files.size(aLogging.getLogFile()) < 1000);
+		assertEquals(3, aRolled.size());
+
+		for (Path rFile : aRolled)
+		{
+			assertTrue(rFile.toString().endsWith(".gz"));
+		}
+	}
+}
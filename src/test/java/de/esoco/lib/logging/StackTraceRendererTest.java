@@ -0,0 +1,127 @@
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+// This file is a part of the 'esoco-lib' project.
+// Copyright 2018 Elmar Sonnenschein, esoco GmbH, Flensburg, Germany
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//	  http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+//++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++++
+package de.esoco.lib.logging;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+/********************************************************************
+ * Test of {@link StackTraceRenderer}.
+ *
+ * @author eso
+ */
+public class StackTraceRendererTest
+{
+	//~ Methods ----------------------------------------------------------------
+
+	/***************************************
+	 * Test cleanup.
+	 */
+	@After
+	public void tearDown()
+	{
+		StackTraceRenderer.setMaxDepth(50);
+		StackTraceRenderer.clearCache();
+	}
+
+	/***************************************
+	 * Test of the caching of rendered frames.
+	 */
+	@Test
+	public void testCache()
+	{
+		StackTraceRenderer.clearCache();
+
+		@SuppressWarnings("unchecked")
+		List<String>[] aTraces = new List[2];
+
+		for (int i = 0; i < aTraces.length; i++)
+		{
+			aTraces[i] = StackTraceRenderer.render(createException("E" + i));
+		}
+
+		List<String> aFirst  = aTraces[0];
+		List<String> aSecond = aTraces[1];
+
+		assertEquals(2, StackTraceRenderer.getCachedTraceCount());
+		assertTrue(aFirst.get(0).endsWith("E0"));
+		assertTrue(aSecond.get(0).endsWith("E1"));
+		assertSame(aFirst.get(1), aSecond.get(1));
+	}
+
+	/***************************************
+	 * Test of the elision of common frames in causes.
+	 */
+	@Test
+	public void testCommonFrameElision()
+	{
+		Exception    e	    = createException("test");
+		List<String> aLines = StackTraceRenderer.render(e);
+		int			 nCause = aLines.indexOf("   Caused by " + e.getCause());
+
+		assertEquals(e.getStackTrace().length + 1, nCause);
+		assertEquals(StackTraceRenderer.FRAME_PREFIX + "... " +
+					 e.getStackTrace().length + " more",
+					 aLines.get(aLines.size() - 1));
+	}
+
+	/***************************************
+	 * Test of {@link StackTraceRenderer#setMaxDepth(int)}.
+	 */
+	@Test
+	public void testMaxDepth()
+	{
+		StackTraceRenderer.setMaxDepth(2);
+
+		Exception    e	    = new Exception("test");
+		List<String> aLines = StackTraceRenderer.render(e);
+
+		assertEquals(4, aLines.size());
+		assertEquals(StackTraceRenderer.FRAME_PREFIX + "... " +
+					 (e.getStackTrace().length - 2) + " more",
+					 aLines.get(3));
+	}
+
+	/***************************************
+	 * Creates an exception with a cause that is created in a nested method.
+	 *
+	 * @param  sMessage The exception message
+	 *
+	 * @return The new exception
+	 */
+	private Exception createException(String sMessage)
+	{
+		return new Exception(sMessage, createCause());
+	}
+
+	/***************************************
+	 * Creates a cause exception.
+	 *
+	 * @return The new exception
+	 */
+	private Exception createCause()
+	{
+		return new IllegalStateException("cause");
+	}
+}